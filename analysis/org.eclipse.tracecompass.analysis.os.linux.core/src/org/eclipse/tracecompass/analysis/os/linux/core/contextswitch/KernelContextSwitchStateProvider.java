@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.analysis.os.linux.core.contextswitch;
 
+import java.util.Set;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
@@ -29,6 +31,8 @@ import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Class used to build a state system of the context switches of a trace
  *
@@ -74,6 +78,12 @@ public class KernelContextSwitchStateProvider extends AbstractTmfStateProvider {
         return new KernelContextSwitchStateProvider(getTrace(), fLayout);
     }
 
+    /** @since 2.1 */
+    @Override
+    public @Nullable Set<String> getEventTypes() {
+        return ImmutableSet.of(fLayout.eventSchedSwitch());
+    }
+
     /*
      * Classify sched_switch events for every CPU
      */
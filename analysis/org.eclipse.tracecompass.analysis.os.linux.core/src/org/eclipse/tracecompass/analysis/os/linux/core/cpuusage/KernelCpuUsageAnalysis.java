@@ -14,6 +14,7 @@ package org.eclipse.tracecompass.analysis.os.linux.core.cpuusage;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -198,11 +199,25 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
                 }
             }
 
-            /* Query full states at start and end times */
-            List<ITmfStateInterval> kernelEndState = kernelSs.queryFullState(endTime);
-            List<ITmfStateInterval> endState = cpuSs.queryFullState(endTime);
-            List<ITmfStateInterval> kernelStartState = kernelSs.queryFullState(startTime);
-            List<ITmfStateInterval> startState = cpuSs.queryFullState(startTime);
+            /* Get the quarks of the threads running on each CPU */
+            Map<Integer, @NonNull Integer> currentThreadQuarks = new HashMap<>();
+            Set<@NonNull Integer> tidQuarks = new HashSet<>();
+            for (Entry<Integer, List<Integer>> entry : tidsPerCpu.entrySet()) {
+                String cpuName = cpuSs.getAttributeName(entry.getKey());
+                currentThreadQuarks.put(entry.getKey(), kernelSs.getQuarkAbsolute(Attributes.CPUS, cpuName, Attributes.CURRENT_THREAD));
+                tidQuarks.addAll(entry.getValue());
+            }
+
+            /*
+             * Query the states of those quarks only, at start and end times, in
+             * one pass over each history.
+             */
+            Map<Integer, ITmfStateInterval> kernelEndState = new HashMap<>();
+            Map<Integer, ITmfStateInterval> kernelStartState = new HashMap<>();
+            queryAtStartAndEnd(kernelSs, currentThreadQuarks.values(), startTime, endTime, kernelStartState, kernelEndState);
+            Map<Integer, ITmfStateInterval> endState = new HashMap<>();
+            Map<Integer, ITmfStateInterval> startState = new HashMap<>();
+            queryAtStartAndEnd(cpuSs, tidQuarks, startTime, endTime, startState, endState);
 
             long countAtStart, countAtEnd;
 
@@ -214,17 +229,19 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
                 long cpuTotal = 0;
 
                 /* Get the quark of the thread running on this CPU */
-                int currentThreadQuark = kernelSs.getQuarkAbsolute(Attributes.CPUS, curCpuName, Attributes.CURRENT_THREAD);
+                int currentThreadQuark = checkNotNull(currentThreadQuarks.get(cpuNode));
+                ITmfStateInterval kernelStartInterval = checkNotNull(kernelStartState.get(currentThreadQuark));
+                ITmfStateInterval kernelEndInterval = checkNotNull(kernelEndState.get(currentThreadQuark));
                 /* Get the currently running thread on this CPU */
-                int startThread = kernelStartState.get(currentThreadQuark).getStateValue().unboxInt();
-                int endThread = kernelEndState.get(currentThreadQuark).getStateValue().unboxInt();
+                int startThread = kernelStartInterval.getStateValue().unboxInt();
+                int endThread = kernelEndInterval.getStateValue().unboxInt();
 
                 for (int tidNode : tidNodes) {
                     String curTidName = cpuSs.getAttributeName(tidNode);
                     int tid = Integer.parseInt(curTidName);
 
-                    countAtEnd = endState.get(tidNode).getStateValue().unboxLong();
-                    countAtStart = startState.get(tidNode).getStateValue().unboxLong();
+                    countAtEnd = checkNotNull(endState.get(tidNode)).getStateValue().unboxLong();
+                    countAtStart = checkNotNull(startState.get(tidNode)).getStateValue().unboxLong();
                     if (countAtStart == -1) {
                         countAtStart = 0;
                     }
@@ -237,14 +254,14 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
                      * those times
                      */
                     if (tid == startThread || startThread == -1) {
-                        long runningTime = kernelStartState.get(currentThreadQuark).getEndTime() - kernelStartState.get(currentThreadQuark).getStartTime();
-                        long runningEnd = kernelStartState.get(currentThreadQuark).getEndTime();
+                        long runningTime = kernelStartInterval.getEndTime() - kernelStartInterval.getStartTime();
+                        long runningEnd = kernelStartInterval.getEndTime();
 
                         countAtStart = interpolateCount(countAtStart, startTime, runningEnd, runningTime);
                     }
                     if (tid == endThread) {
-                        long runningTime = kernelEndState.get(currentThreadQuark).getEndTime() - kernelEndState.get(currentThreadQuark).getStartTime();
-                        long runningEnd = kernelEndState.get(currentThreadQuark).getEndTime();
+                        long runningTime = kernelEndInterval.getEndTime() - kernelEndInterval.getStartTime();
+                        long runningEnd = kernelEndInterval.getEndTime();
 
                         countAtEnd = interpolateCount(countAtEnd, endTime, runningEnd, runningTime);
                     }
@@ -298,6 +315,22 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
         return map;
     }
 
+    /*
+     * Get the intervals of the given quarks at the start and end times of a
+     * range, with a 2D query whose only sampled timestamps are start and end.
+     */
+    private static void queryAtStartAndEnd(ITmfStateSystem ss, Collection<@NonNull Integer> quarks, long start, long end,
+            Map<Integer, ITmfStateInterval> startState, Map<Integer, ITmfStateInterval> endState) throws StateSystemDisposedException {
+        for (ITmfStateInterval interval : ss.query2D(quarks, start, end, Math.max(1, end - start))) {
+            if (interval.intersects(start)) {
+                startState.put(interval.getAttribute(), interval);
+            }
+            if (interval.intersects(end)) {
+                endState.put(interval.getAttribute(), interval);
+            }
+        }
+    }
+
     private static long interpolateCount(long count, long ts, long runningEnd, long runningTime) {
         long newCount = count;
 
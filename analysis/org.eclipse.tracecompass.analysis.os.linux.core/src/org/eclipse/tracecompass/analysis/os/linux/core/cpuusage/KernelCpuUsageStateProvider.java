@@ -17,6 +17,7 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
@@ -32,6 +33,8 @@ import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Creates a state system with the total time spent on CPU for each thread and
  * for each CPU from a kernel trace.
@@ -90,6 +93,12 @@ public class KernelCpuUsageStateProvider extends AbstractTmfStateProvider {
         return new KernelCpuUsageStateProvider(this.getTrace(), this.fLayout);
     }
 
+    /** @since 2.1 */
+    @Override
+    public @Nullable Set<String> getEventTypes() {
+        return ImmutableSet.of(fLayout.eventSchedSwitch());
+    }
+
     @Override
     protected void eventHandle(@Nullable ITmfEvent event) {
         if (event == null) {
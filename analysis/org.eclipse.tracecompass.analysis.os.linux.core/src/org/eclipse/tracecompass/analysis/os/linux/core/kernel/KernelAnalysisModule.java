@@ -82,6 +82,13 @@ public class KernelAnalysisModule extends TmfStateSystemAnalysisModule {
         REQUIREMENTS = Collections.EMPTY_SET;
     }
 
+    /**
+     * Maximum number of history trees built in parallel. The kernel state
+     * provider inserts a lot of intervals, but past a few writers the single
+     * thread feeding them becomes the bottleneck.
+     */
+    private static final int MAX_HISTORY_PARTITIONS = 4;
+
     @Override
     protected @NonNull ITmfStateProvider createStateProvider() {
         ITmfTrace trace = checkNotNull(getTrace());
@@ -97,6 +104,11 @@ public class KernelAnalysisModule extends TmfStateSystemAnalysisModule {
         return new KernelStateProvider(trace, layout);
     }
 
+    @Override
+    protected int getNbHistoryPartitions() {
+        return Math.min(MAX_HISTORY_PARTITIONS, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
     @Override
     protected String getFullHelpText() {
         return NonNullUtils.nullToEmptyString(Messages.LttngKernelAnalysisModule_Help);
@@ -10,7 +10,10 @@ package org.eclipse.tracecompass.analysis.os.linux.core.kernelmemoryusage;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.Set;
+
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernel.KernelTidAspect;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.Activator;
@@ -24,6 +27,8 @@ import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Creates a state system and computes the total memory usage for all threads
  * and for each selected thread from a kernel trace. It examines the page
@@ -78,6 +83,12 @@ public class KernelMemoryStateProvider extends AbstractTmfStateProvider {
         return new KernelMemoryStateProvider(getTrace(), fLayout);
     }
 
+    /** @since 2.1 */
+    @Override
+    public @Nullable Set<String> getEventTypes() {
+        return ImmutableSet.of(fLayout.eventKmemPageAlloc(), fLayout.eventKmemPageFree());
+    }
+
     @Override
     protected void eventHandle(@NonNull ITmfEvent event) {
         String name = event.getName();
@@ -10,9 +10,11 @@
 package org.eclipse.tracecompass.analysis.os.linux.core.tid;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.Activator;
@@ -26,6 +28,8 @@ import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Active TID state provider, this only does one thing: figure out the active
  * TID on any given CPU. This state provider is designed to do one thing and do
@@ -71,6 +75,11 @@ class ActiveTidStateProvider extends AbstractTmfStateProvider {
         return new ActiveTidStateProvider(getTrace(), fLayout);
     }
 
+    @Override
+    public @Nullable Set<String> getEventTypes() {
+        return ImmutableSet.of(fSchedSwitch);
+    }
+
     @Override
     protected void eventHandle(@NonNull ITmfEvent event) {
         Integer cpu = TmfTraceUtils.resolveIntEventAspectOfClassForEvent(event.getTrace(), TmfCpuAspect.class, event);
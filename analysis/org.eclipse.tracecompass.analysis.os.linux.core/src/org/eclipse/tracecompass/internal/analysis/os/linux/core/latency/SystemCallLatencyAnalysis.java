@@ -13,6 +13,9 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -21,19 +24,22 @@ import java.util.Map;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
-import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernel.KernelTidAspect;
 import org.eclipse.tracecompass.analysis.os.linux.core.tid.TidAnalysisModule;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelTrace;
 import org.eclipse.tracecompass.analysis.timing.core.segmentstore.AbstractSegmentStoreAnalysisEventBasedModule;
+import org.eclipse.tracecompass.internal.analysis.os.linux.core.Activator;
+import org.eclipse.tracecompass.internal.analysis.timing.core.store.ISegmentCodec;
+import org.eclipse.tracecompass.internal.analysis.timing.core.store.OffHeapSegmentStore;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
 import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.segment.ISegmentAspect;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -49,7 +55,16 @@ public class SystemCallLatencyAnalysis extends AbstractSegmentStoreAnalysisEvent
      */
     public static final String ID = "org.eclipse.tracecompass.analysis.os.linux.latency.syscall"; //$NON-NLS-1$
 
-    private static final String DATA_FILENAME = "latency-analysis.dat"; //$NON-NLS-1$
+    private static final String COLUMNS_FILENAME = "latency-analysis.columns"; //$NON-NLS-1$
+
+    /** The file of the system calls saved by the previous versions */
+    private static final String OLD_DATA_FILENAME = "latency-analysis.dat"; //$NON-NLS-1$
+
+    /**
+     * The version of the saved system calls, to increment when the system
+     * calls found in a trace change
+     */
+    private static final int VERSION = 1;
 
     private static final Collection<ISegmentAspect> BASE_ASPECTS =
             ImmutableList.of(SyscallNameAspect.INSTANCE);
@@ -78,13 +93,53 @@ public class SystemCallLatencyAnalysis extends AbstractSegmentStoreAnalysisEvent
     }
 
     @Override
-    public @NonNull String getDataFileName() {
-        return DATA_FILENAME;
+    public AbstractSegmentStoreAnalysisRequest createAnalysisRequest(ISegmentStore<ISegment> syscalls) {
+        return new SyscallLatencyAnalysisRequest(syscalls);
     }
 
     @Override
-    public AbstractSegmentStoreAnalysisRequest createAnalysisRequest(ISegmentStore<ISegment> syscalls) {
-        return new SyscallLatencyAnalysisRequest(syscalls);
+    protected @Nullable ISegmentStore<ISegment> openSegmentStore() {
+        ITmfTrace trace = getTrace();
+        if (trace == null) {
+            return null;
+        }
+        Path file = Paths.get(TmfTraceManager.getSupplementaryFileDir(trace), COLUMNS_FILENAME);
+        return OffHeapSegmentStore.open(SyscallCodec.INSTANCE, file, VERSION);
+    }
+
+    @Override
+    protected ISegmentStore<ISegment> createSegmentStore(Object[] segments) {
+        /*
+         * There can be tens of millions of system calls, keep them off the
+         * heap, in a file next to the trace if possible. The file is saved
+         * when the analysis completes.
+         */
+        ISegmentStore<ISegment> store = null;
+        ITmfTrace trace = getTrace();
+        if (trace != null) {
+            Path oldFile = Paths.get(TmfTraceManager.getSupplementaryFileDir(trace), OLD_DATA_FILENAME);
+            try {
+                /* The segments are rebuilt, the old file is not read anymore */
+                Files.deleteIfExists(oldFile);
+            } catch (IOException e) {
+                Activator.getDefault().logWarning("Could not delete the old system call file " + oldFile, e); //$NON-NLS-1$
+            }
+            Path file = Paths.get(TmfTraceManager.getSupplementaryFileDir(trace), COLUMNS_FILENAME);
+            try {
+                store = new OffHeapSegmentStore<>(SyscallCodec.INSTANCE, file, VERSION);
+            } catch (IOException e) {
+                Activator.getDefault().logWarning("Could not create the system call columns file " + file, e); //$NON-NLS-1$
+            }
+        }
+        if (store == null) {
+            store = new OffHeapSegmentStore<>(SyscallCodec.INSTANCE);
+        }
+        for (Object segment : segments) {
+            if (segment instanceof SystemCall) {
+                store.add((SystemCall) segment);
+            }
+        }
+        return store;
     }
 
     @Override
@@ -177,6 +232,28 @@ public class SystemCallLatencyAnalysis extends AbstractSegmentStoreAnalysisEvent
         }
     }
 
+    private static final class SyscallCodec implements ISegmentCodec<ISegment> {
+        public static final ISegmentCodec<ISegment> INSTANCE = new SyscallCodec();
+
+        private SyscallCodec() { }
+
+        @Override
+        public int getAttributeCount() {
+            return 1;
+        }
+        @Override
+        public Object getAttribute(ISegment segment, int index) {
+            if (!(segment instanceof SystemCall)) {
+                throw new IllegalArgumentException("Not a system call: " + segment); //$NON-NLS-1$
+            }
+            return ((SystemCall) segment).getName();
+        }
+        @Override
+        public ISegment decode(long start, long end, @Nullable Object[] attributes) {
+            return new SystemCall(new SystemCall.InitialInfo(start, String.valueOf(attributes[0])), end);
+        }
+    }
+
     private static final class SyscallNameAspect implements ISegmentAspect {
         public static final ISegmentAspect INSTANCE = new SyscallNameAspect();
 
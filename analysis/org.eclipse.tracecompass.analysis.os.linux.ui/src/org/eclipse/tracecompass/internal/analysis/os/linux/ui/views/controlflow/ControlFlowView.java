@@ -851,50 +851,75 @@ public class ControlFlowView extends AbstractStateSystemTimeGraphView {
     @Override
     protected @Nullable List<ITimeEvent> getEventList(@NonNull TimeGraphEntry tgentry, ITmfStateSystem ss,
             @NonNull List<List<ITmfStateInterval>> fullStates, @Nullable List<ITmfStateInterval> prevFullState, @NonNull IProgressMonitor monitor) {
-        List<ITimeEvent> eventList = null;
         if (!(tgentry instanceof ControlFlowEntry)) {
-            return eventList;
+            return null;
         }
         ControlFlowEntry entry = (ControlFlowEntry) tgentry;
-        try {
-            int statusQuark = entry.getThreadQuark();
-            eventList = new ArrayList<>(fullStates.size());
-            ITmfStateInterval lastInterval = prevFullState == null || statusQuark >= prevFullState.size() ? null : prevFullState.get(statusQuark);
-            long lastStartTime = lastInterval == null ? -1 : lastInterval.getStartTime();
-            long lastEndTime = lastInterval == null ? -1 : lastInterval.getEndTime() + 1;
-            for (List<ITmfStateInterval> fullState : fullStates) {
-                if (monitor.isCanceled()) {
-                    return null;
-                }
-                if (statusQuark >= fullState.size()) {
-                    /* No information on this thread (yet?), skip it for now */
-                    continue;
-                }
-                ITmfStateInterval statusInterval = fullState.get(statusQuark);
-                long time = statusInterval.getStartTime();
-                if (time == lastStartTime) {
-                    continue;
-                }
-                long duration = statusInterval.getEndTime() - time + 1;
-                int status = -1;
-                try {
-                    status = statusInterval.getStateValue().unboxInt();
-                } catch (StateValueTypeException e) {
-                    Activator.getDefault().logError(e.getMessage());
-                }
-                if (lastEndTime != time && lastEndTime != -1) {
-                    eventList.add(new TimeEvent(entry, lastEndTime, time - lastEndTime));
-                }
-                if (!statusInterval.getStateValue().isNull()) {
-                    eventList.add(new TimeEvent(entry, time, duration, status));
-                } else {
-                    eventList.add(new NullTimeEvent(entry, time, duration));
-                }
-                lastStartTime = time;
-                lastEndTime = time + duration;
+        int statusQuark = entry.getThreadQuark();
+        List<ITmfStateInterval> statusIntervals = new ArrayList<>(fullStates.size());
+        for (List<ITmfStateInterval> fullState : fullStates) {
+            if (statusQuark >= fullState.size()) {
+                /* No information on this thread (yet?), skip it for now */
+                continue;
+            }
+            statusIntervals.add(fullState.get(statusQuark));
+        }
+        ITmfStateInterval lastInterval = prevFullState == null || statusQuark >= prevFullState.size() ? null : prevFullState.get(statusQuark);
+        return createEventList(entry, statusIntervals, lastInterval, monitor);
+    }
+
+    @Override
+    protected int getZoomQuark(@NonNull TimeGraphEntry entry) {
+        if (entry instanceof ControlFlowEntry) {
+            return ((ControlFlowEntry) entry).getThreadQuark();
+        }
+        return super.getZoomQuark(entry);
+    }
+
+    @Override
+    protected @Nullable List<ITimeEvent> getEventList(@NonNull TimeGraphEntry entry, ITmfStateSystem ss,
+            @NonNull List<@NonNull ITmfStateInterval> intervals, @NonNull IProgressMonitor monitor) {
+        if (!(entry instanceof ControlFlowEntry)) {
+            return null;
+        }
+        return createEventList((ControlFlowEntry) entry, intervals, null, monitor);
+    }
+
+    /**
+     * Create the time events of a thread from its status intervals, sorted by
+     * start time. An interval may be repeated if it was sampled more than
+     * once, the previous interval is the last one of the previous call.
+     */
+    private static @Nullable List<ITimeEvent> createEventList(ControlFlowEntry entry, List<ITmfStateInterval> statusIntervals,
+            @Nullable ITmfStateInterval lastInterval, IProgressMonitor monitor) {
+        List<ITimeEvent> eventList = new ArrayList<>(statusIntervals.size());
+        long lastStartTime = lastInterval == null ? -1 : lastInterval.getStartTime();
+        long lastEndTime = lastInterval == null ? -1 : lastInterval.getEndTime() + 1;
+        for (ITmfStateInterval statusInterval : statusIntervals) {
+            if (monitor.isCanceled()) {
+                return null;
+            }
+            long time = statusInterval.getStartTime();
+            if (time == lastStartTime) {
+                continue;
+            }
+            long duration = statusInterval.getEndTime() - time + 1;
+            int status = -1;
+            try {
+                status = statusInterval.getStateValue().unboxInt();
+            } catch (StateValueTypeException e) {
+                Activator.getDefault().logError(e.getMessage());
             }
-        } catch (TimeRangeException e) {
-            Activator.getDefault().logError(e.getMessage());
+            if (lastEndTime != time && lastEndTime != -1) {
+                eventList.add(new TimeEvent(entry, lastEndTime, time - lastEndTime));
+            }
+            if (!statusInterval.getStateValue().isNull()) {
+                eventList.add(new TimeEvent(entry, time, duration, status));
+            } else {
+                eventList.add(new NullTimeEvent(entry, time, duration));
+            }
+            lastStartTime = time;
+            lastEndTime = time + duration;
         }
         return eventList;
     }
@@ -961,48 +986,62 @@ public class ControlFlowView extends AbstractStateSystemTimeGraphView {
     }
 
     @Override
-    protected @NonNull List<ILinkEvent> getLinkList(ITmfStateSystem ss,
-            @NonNull List<List<ITmfStateInterval>> fullStates, @Nullable List<ITmfStateInterval> prevFullState, @NonNull IProgressMonitor monitor) {
+    protected boolean isFullStateZoomNeeded() {
+        /* The arrows are built from 2D queries, and there are no markers */
+        return false;
+    }
+
+    @Override
+    protected @NonNull List<ILinkEvent> getLinkList(ITmfStateSystem ss, long start, long end, long resolution, @NonNull IProgressMonitor monitor) {
         List<ILinkEvent> list = new ArrayList<>();
         List<TimeGraphEntry> entryList = getEntryList(ss);
         if (entryList == null) {
             return list;
         }
-        for (ITmfTrace trace : TmfTraceManager.getTraceSet(getTrace())) {
-            List<Integer> currentThreadQuarks = ss.getQuarks(Attributes.CPUS, "*", Attributes.CURRENT_THREAD); //$NON-NLS-1$
-            for (int currentThreadQuark : currentThreadQuarks) {
-                if (currentThreadQuark >= fullStates.get(0).size()) {
-                    /* No information on this cpu (yet?), skip it for now */
-                    continue;
+        List<@NonNull Integer> currentThreadQuarks = ss.getQuarks(Attributes.CPUS, "*", Attributes.CURRENT_THREAD); //$NON-NLS-1$
+        if (currentThreadQuarks.isEmpty()) {
+            return list;
+        }
+        Map<Integer, List<ITmfStateInterval>> intervalsByQuark = new HashMap<>();
+        for (int currentThreadQuark : currentThreadQuarks) {
+            intervalsByQuark.put(currentThreadQuark, new ArrayList<>());
+        }
+        try {
+            for (ITmfStateInterval interval : ss.query2D(currentThreadQuarks, start, end, resolution)) {
+                List<ITmfStateInterval> intervals = intervalsByQuark.get(interval.getAttribute());
+                if (intervals != null) {
+                    intervals.add(interval);
                 }
-                List<ITmfStateInterval> currentThreadIntervals = new ArrayList<>(fullStates.size() + 2);
-                try {
-                    /*
-                     * Add the previous interval if it is the first query
-                     * iteration and the first interval has currentThread=0. Add
-                     * the following interval if the last interval has
-                     * currentThread=0. These are diagonal arrows crossing the
-                     * query iteration range.
-                     */
-                    if (prevFullState == null) {
-                        ITmfStateInterval currentThreadInterval = fullStates.get(0).get(currentThreadQuark);
-                        if (currentThreadInterval.getStateValue().unboxInt() == 0) {
-                            long start = Math.max(currentThreadInterval.getStartTime() - 1, ss.getStartTime());
-                            currentThreadIntervals.add(ss.querySingleState(start, currentThreadQuark));
-                        }
-                    }
-                    for (List<ITmfStateInterval> fullState : fullStates) {
-                        currentThreadIntervals.add(fullState.get(currentThreadQuark));
-                    }
-                    ITmfStateInterval currentThreadInterval = fullStates.get(fullStates.size() - 1).get(currentThreadQuark);
-                    if (currentThreadInterval.getStateValue().unboxInt() == 0) {
-                        long end = Math.min(currentThreadInterval.getEndTime() + 1, ss.getCurrentEndTime());
-                        currentThreadIntervals.add(ss.querySingleState(end, currentThreadQuark));
-                    }
-                } catch (StateSystemDisposedException e) {
-                    /* Ignored */
+            }
+            for (List<ITmfStateInterval> intervals : intervalsByQuark.values()) {
+                if (monitor.isCanceled()) {
                     return list;
                 }
+                intervals.sort(Comparator.comparingLong(ITmfStateInterval::getStartTime));
+                if (intervals.isEmpty()) {
+                    continue;
+                }
+                /*
+                 * Add the previous interval if the first interval has
+                 * currentThread=0, and the following interval if the last
+                 * interval has currentThread=0. These are diagonal arrows
+                 * crossing the zoomed range.
+                 */
+                ITmfStateInterval first = intervals.get(0);
+                if (first.getStateValue().unboxInt() == 0 && first.getStartTime() > ss.getStartTime()) {
+                    intervals.add(0, ss.querySingleState(first.getStartTime() - 1, first.getAttribute()));
+                }
+                ITmfStateInterval last = intervals.get(intervals.size() - 1);
+                if (last.getStateValue().unboxInt() == 0 && last.getEndTime() < ss.getCurrentEndTime()) {
+                    intervals.add(ss.querySingleState(last.getEndTime() + 1, last.getAttribute()));
+                }
+            }
+        } catch (StateSystemDisposedException e) {
+            /* Ignored */
+            return list;
+        }
+        for (ITmfTrace trace : TmfTraceManager.getTraceSet(getTrace())) {
+            for (List<ITmfStateInterval> currentThreadIntervals : intervalsByQuark.values()) {
                 int prevThread = 0;
                 long prevEnd = 0;
                 long lastEnd = 0;
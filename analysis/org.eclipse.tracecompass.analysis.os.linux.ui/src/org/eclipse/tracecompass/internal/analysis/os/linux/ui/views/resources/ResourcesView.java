@@ -334,32 +334,62 @@ public class ResourcesView extends AbstractStateSystemTimeGraphView {
             @NonNull List<List<ITmfStateInterval>> fullStates, @Nullable List<ITmfStateInterval> prevFullState, @NonNull IProgressMonitor monitor) {
         ResourcesEntry resourcesEntry = (ResourcesEntry) entry;
         int quark = resourcesEntry.getQuark();
+        if (quark < 0) {
+            return null;
+        }
+        List<ITmfStateInterval> intervals = new ArrayList<>(fullStates.size());
+        for (List<ITmfStateInterval> fullState : fullStates) {
+            if (quark >= fullState.size()) {
+                /* No information on this resource (yet?), skip it for now */
+                continue;
+            }
+            intervals.add(fullState.get(quark));
+        }
+        ITmfStateInterval lastInterval = prevFullState == null || quark >= prevFullState.size() ? null : prevFullState.get(quark);
+        return createEventList(resourcesEntry, intervals, lastInterval, monitor);
+    }
 
-        if (resourcesEntry.getType().equals(Type.CPU)) {
-            return createCpuEventsList(entry, fullStates, prevFullState, monitor, quark);
-        } else if ((resourcesEntry.getType().equals(Type.IRQ) || resourcesEntry.getType().equals(Type.SOFT_IRQ)) && (quark >= 0)) {
-            return createIrqEventsList(entry, fullStates, prevFullState, monitor, quark);
+    @Override
+    protected int getZoomQuark(@NonNull TimeGraphEntry entry) {
+        ResourcesEntry resourcesEntry = (ResourcesEntry) entry;
+        Type type = resourcesEntry.getType();
+        if (type.equals(Type.CPU) || type.equals(Type.IRQ) || type.equals(Type.SOFT_IRQ)) {
+            return resourcesEntry.getQuark();
         }
+        return super.getZoomQuark(entry);
+    }
+
+    @Override
+    protected @Nullable List<ITimeEvent> getEventList(@NonNull TimeGraphEntry entry, ITmfStateSystem ssq,
+            @NonNull List<@NonNull ITmfStateInterval> intervals, @NonNull IProgressMonitor monitor) {
+        return createEventList((ResourcesEntry) entry, intervals, null, monitor);
+    }
 
+    @Override
+    protected boolean isFullStateZoomNeeded() {
+        /* This view has no links nor markers */
+        return false;
+    }
+
+    private static @Nullable List<ITimeEvent> createEventList(ResourcesEntry entry, List<ITmfStateInterval> intervals, @Nullable ITmfStateInterval lastInterval, IProgressMonitor monitor) {
+        if (entry.getType().equals(Type.CPU)) {
+            return createCpuEventsList(entry, intervals, lastInterval, monitor);
+        } else if (entry.getType().equals(Type.IRQ) || entry.getType().equals(Type.SOFT_IRQ)) {
+            return createIrqEventsList(entry, intervals, lastInterval, monitor);
+        }
         return null;
     }
 
-    private static List<ITimeEvent> createCpuEventsList(ITimeGraphEntry entry, List<List<ITmfStateInterval>> fullStates, List<ITmfStateInterval> prevFullState, IProgressMonitor monitor, int quark) {
+    private static List<ITimeEvent> createCpuEventsList(ITimeGraphEntry entry, List<ITmfStateInterval> intervals, ITmfStateInterval lastInterval, IProgressMonitor monitor) {
         List<ITimeEvent> eventList;
-        boolean isZoomThread = Thread.currentThread() instanceof ZoomThread;
-        eventList = new ArrayList<>(fullStates.size());
-        ITmfStateInterval lastInterval = prevFullState == null || quark >= prevFullState.size() ? null : prevFullState.get(quark);
+        boolean isZoomThread = isZoomThread();
+        eventList = new ArrayList<>(intervals.size());
         long lastStartTime = lastInterval == null ? -1 : lastInterval.getStartTime();
         long lastEndTime = lastInterval == null ? -1 : lastInterval.getEndTime() + 1;
-        for (List<ITmfStateInterval> fullState : fullStates) {
+        for (ITmfStateInterval statusInterval : intervals) {
             if (monitor.isCanceled()) {
                 return null;
             }
-            if (quark >= fullState.size()) {
-                /* No information on this CPU (yet?), skip it for now */
-                continue;
-            }
-            ITmfStateInterval statusInterval = fullState.get(quark);
             int status = statusInterval.getStateValue().unboxInt();
             long time = statusInterval.getStartTime();
             long duration = statusInterval.getEndTime() - time + 1;
@@ -380,23 +410,17 @@ public class ResourcesView extends AbstractStateSystemTimeGraphView {
         return eventList;
     }
 
-    private static List<ITimeEvent> createIrqEventsList(ITimeGraphEntry entry, List<List<ITmfStateInterval>> fullStates, List<ITmfStateInterval> prevFullState, IProgressMonitor monitor, int quark) {
+    private static List<ITimeEvent> createIrqEventsList(ITimeGraphEntry entry, List<ITmfStateInterval> intervals, ITmfStateInterval lastInterval, IProgressMonitor monitor) {
         List<ITimeEvent> eventList;
-        boolean isZoomThread = Thread.currentThread() instanceof ZoomThread;
-        eventList = new ArrayList<>(fullStates.size());
-        ITmfStateInterval lastInterval = prevFullState == null || quark >= prevFullState.size() ? null : prevFullState.get(quark);
+        boolean isZoomThread = isZoomThread();
+        eventList = new ArrayList<>(intervals.size());
         long lastStartTime = lastInterval == null ? -1 : lastInterval.getStartTime();
         long lastEndTime = lastInterval == null ? -1 : lastInterval.getEndTime() + 1;
         boolean lastIsNull = lastInterval == null ? false : lastInterval.getStateValue().isNull();
-        for (List<ITmfStateInterval> fullState : fullStates) {
+        for (ITmfStateInterval irqInterval : intervals) {
             if (monitor.isCanceled()) {
                 return null;
             }
-            if (quark >= fullState.size()) {
-                /* No information on this IRQ (yet?), skip it for now */
-                continue;
-            }
-            ITmfStateInterval irqInterval = fullState.get(quark);
             long time = irqInterval.getStartTime();
             long duration = irqInterval.getEndTime() - time + 1;
             if (time == lastStartTime) {
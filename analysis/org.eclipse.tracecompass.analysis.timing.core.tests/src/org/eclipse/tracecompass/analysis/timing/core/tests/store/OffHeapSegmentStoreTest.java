@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.analysis.timing.core.tests.store;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.analysis.timing.core.store.ISegmentCodec;
+import org.eclipse.tracecompass.internal.analysis.timing.core.store.OffHeapSegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for the {@link OffHeapSegmentStore}
+ *
+ * @author Matthew Khouzam
+ */
+public class OffHeapSegmentStoreTest extends AbstractTestSegmentStore {
+
+    /**
+     * Codec of the segments of the common tests. Basic segments are compared
+     * by identity, so the segment itself is kept as the attribute for the
+     * store to give back the added instances.
+     */
+    private static final ISegmentCodec<@NonNull ISegment> BASIC_CODEC = new ISegmentCodec<@NonNull ISegment>() {
+        @Override
+        public int getAttributeCount() {
+            return 1;
+        }
+
+        @Override
+        public @Nullable Object getAttribute(ISegment segment, int index) {
+            return segment;
+        }
+
+        @Override
+        public ISegment decode(long start, long end, @Nullable Object[] attributes) {
+            return (ISegment) checkNotNull(attributes[0]);
+        }
+    };
+
+    private static final @NonNull List<@NonNull String> NAMES = ImmutableList.of("read", "write", "poll", "ioctl");
+
+    /**
+     * Segment with a name, compared by value so that the decoded segments are
+     * equal to the added ones
+     */
+    private static final class NamedSegment implements ISegment {
+        private static final long serialVersionUID = 3366617436232327390L;
+
+        private final long fStart;
+        private final long fEnd;
+        private final @Nullable String fName;
+
+        public NamedSegment(long start, long end, @Nullable String name) {
+            fStart = start;
+            fEnd = end;
+            fName = name;
+        }
+
+        @Override
+        public long getStart() {
+            return fStart;
+        }
+
+        @Override
+        public long getEnd() {
+            return fEnd;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fStart, fEnd, fName);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof NamedSegment)) {
+                return false;
+            }
+            NamedSegment other = (NamedSegment) obj;
+            return fStart == other.fStart && fEnd == other.fEnd && Objects.equals(fName, other.fName);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + fStart + ", " + fEnd + "] " + fName;
+        }
+    }
+
+    private static final ISegmentCodec<@NonNull NamedSegment> CODEC = new ISegmentCodec<@NonNull NamedSegment>() {
+        @Override
+        public int getAttributeCount() {
+            return 1;
+        }
+
+        @Override
+        public @Nullable Object getAttribute(NamedSegment segment, int index) {
+            return segment.fName;
+        }
+
+        @Override
+        public NamedSegment decode(long start, long end, @Nullable Object[] attributes) {
+            return new NamedSegment(start, end, (String) attributes[0]);
+        }
+    };
+
+    private static final Comparator<ISegment> ORDER = Comparator.comparingLong(ISegment::getStart).thenComparingLong(ISegment::getEnd);
+
+    private static List<@NonNull NamedSegment> randomSegments(int count) {
+        Random random = new Random(42);
+        List<@NonNull NamedSegment> segments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long start = random.nextInt(1000000);
+            /* Mostly short segments, and a few very long ones */
+            long length = (i % 1000 == 0) ? random.nextInt(500000) : random.nextInt(100);
+            segments.add(new NamedSegment(start, start + length, NAMES.get(random.nextInt(NAMES.size()))));
+        }
+        return segments;
+    }
+
+    private static void assertIntersecting(List<@NonNull NamedSegment> segments, ISegmentStore<@NonNull NamedSegment> store, long start, long end) {
+        List<NamedSegment> expected = segments.stream()
+                .filter(segment -> segment.getStart() <= end && segment.getEnd() >= start)
+                .sorted(ORDER)
+                .collect(Collectors.toList());
+        List<NamedSegment> actual = Lists.newArrayList(store.getIntersectingElements(start, end));
+        assertEquals(expected, actual);
+    }
+
+    @Override
+    protected ISegmentStore<@NonNull ISegment> getSegmentStore() {
+        return new OffHeapSegmentStore<>(BASIC_CODEC);
+    }
+
+    /**
+     * Test the index when segments are added between queries: segments that
+     * sort after all the others, before them, or anywhere
+     */
+    @Test
+    public void testIncrementalIndex() {
+        List<@NonNull NamedSegment> segments = new ArrayList<>();
+        ISegmentStore<@NonNull NamedSegment> store = new OffHeapSegmentStore<>(CODEC);
+        List<@NonNull NamedSegment> random = randomSegments(20000);
+        for (int batch = 0; batch < 20; batch++) {
+            List<@NonNull NamedSegment> added = new ArrayList<>(random.subList(batch * 1000, (batch + 1) * 1000));
+            long shift = 1000000L * (batch + 1);
+            if (batch % 3 == 0) {
+                /* After all the previous segments */
+                added.replaceAll(segment -> new NamedSegment(segment.getStart() + shift, segment.getEnd() + shift, segment.fName));
+                added.sort(ORDER);
+            } else if (batch % 3 == 1) {
+                /* Before all the previous segments */
+                added.replaceAll(segment -> new NamedSegment(segment.getStart() - shift, segment.getEnd() - shift, segment.fName));
+            }
+            store.addAll(added);
+            segments.addAll(added);
+            assertEquals(segments.size(), store.size());
+            assertIntersecting(segments, store, 400000, 400100);
+            assertIntersecting(segments, store, -shift, -shift + 1000000);
+            assertIntersecting(segments, store, shift, shift + 100);
+        }
+        List<NamedSegment> expected = new ArrayList<>(segments);
+        expected.sort(ORDER);
+        assertEquals(expected, Lists.newArrayList(store));
+        store.dispose();
+    }
+
+    /**
+     * Test a store whose columns are mapped from a file
+     *
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    @Test
+    public void testFileBacked() throws IOException {
+        Path file = Files.createTempFile("segments", ".columns");
+        List<@NonNull NamedSegment> segments = randomSegments(70000);
+        ISegmentStore<@NonNull NamedSegment> store = new OffHeapSegmentStore<>(CODEC, file, 1);
+        store.addAll(segments);
+        assertTrue(Files.size(file) > 0);
+        assertIntersecting(segments, store, 400000, 400100);
+
+        store.dispose();
+        assertFalse(Files.exists(file));
+    }
+
+    /**
+     * Test saving a store in its file and opening it again
+     *
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    @Test
+    public void testSaveAndOpen() throws IOException {
+        Path file = Files.createTempFile("segments", ".columns");
+        List<@NonNull NamedSegment> segments = new ArrayList<>(randomSegments(70000));
+        segments.add(new NamedSegment(5, 10, null));
+        OffHeapSegmentStore<@NonNull NamedSegment> store = new OffHeapSegmentStore<>(CODEC, file, 1);
+        store.addAll(segments);
+
+        /* The file is only valid once the store is closed */
+        assertNull(OffHeapSegmentStore.open(CODEC, file, 1));
+        store.close(false);
+        store.dispose();
+        assertTrue(Files.exists(file));
+
+        assertNull(OffHeapSegmentStore.open(CODEC, file, 2));
+        OffHeapSegmentStore<@NonNull NamedSegment> opened = OffHeapSegmentStore.open(CODEC, file, 1);
+        assertNotNull(opened);
+        assertEquals(segments.size(), opened.size());
+        assertIntersecting(segments, opened, 400000, 400100);
+        assertIntersecting(segments, opened, 7, 7);
+        List<NamedSegment> expected = new ArrayList<>(segments);
+        expected.sort(ORDER);
+        assertEquals(expected, Lists.newArrayList(opened));
+
+        /* Adding segments invalidates the file until it is closed again */
+        NamedSegment added = new NamedSegment(400050, 400060, "read");
+        opened.add(added);
+        segments.add(added);
+        assertIntersecting(segments, opened, 400000, 400100);
+        assertNull(OffHeapSegmentStore.open(CODEC, file, 1));
+        opened.close(false);
+        opened.dispose();
+
+        OffHeapSegmentStore<@NonNull NamedSegment> reopened = OffHeapSegmentStore.open(CODEC, file, 1);
+        assertNotNull(reopened);
+        assertIntersecting(segments, reopened, 400000, 400100);
+
+        /* Closing with deleteFiles removes the file */
+        reopened.close(true);
+        assertFalse(Files.exists(file));
+        reopened.dispose();
+    }
+
+    /**
+     * Test a store that does not map its file, as on Windows, and its
+     * compatibility with the files of the mapped stores
+     *
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    @Test
+    public void testNotMapped() throws IOException {
+        Path file = Files.createTempFile("segments", ".columns");
+        List<@NonNull NamedSegment> segments = new ArrayList<>(randomSegments(70000));
+        OffHeapSegmentStore<@NonNull NamedSegment> store = new OffHeapSegmentStore<>(CODEC, file, 1, false);
+        store.addAll(segments);
+        assertIntersecting(segments, store, 400000, 400100);
+        store.close(false);
+        store.dispose();
+
+        OffHeapSegmentStore<@NonNull NamedSegment> opened = OffHeapSegmentStore.open(CODEC, file, 1, true);
+        assertNotNull(opened);
+        assertIntersecting(segments, opened, 400000, 400100);
+        NamedSegment added = new NamedSegment(400050, 400060, "read");
+        opened.add(added);
+        segments.add(added);
+        opened.close(false);
+        opened.dispose();
+
+        OffHeapSegmentStore<@NonNull NamedSegment> reopened = OffHeapSegmentStore.open(CODEC, file, 1, false);
+        assertNotNull(reopened);
+        assertEquals(segments.size(), reopened.size());
+        assertIntersecting(segments, reopened, 400000, 400100);
+        reopened.add(new NamedSegment(1, 2, null));
+        reopened.dispose();
+        assertFalse(Files.exists(file));
+    }
+}
@@ -119,6 +119,34 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
      */
     protected abstract boolean buildAnalysisSegments(ISegmentStore<ISegment> segmentStore, IProgressMonitor monitor) throws TmfAnalysisException;
 
+    /**
+     * Create the segment store of this analysis. By default, the segments are
+     * kept on the heap. Analyses producing a large number of segments can
+     * override this method to use a more compact store.
+     *
+     * @param segments
+     *            The segments to put in the store, read from the data file, or
+     *            an empty array if the store will be filled by
+     *            {@link #buildAnalysisSegments}
+     * @return The segment store
+     * @since 1.2
+     */
+    protected ISegmentStore<ISegment> createSegmentStore(Object[] segments) {
+        return new ArrayListStore<>(segments);
+    }
+
+    /**
+     * Open the segment store saved by a previous execution of this analysis,
+     * for segment stores that save themselves when they are closed. By
+     * default, there is no such store.
+     *
+     * @return The complete segment store, or null if it has to be built
+     * @since 1.2
+     */
+    protected @Nullable ISegmentStore<ISegment> openSegmentStore() {
+        return null;
+    }
+
     @Override
     public @Nullable ISegmentStore<ISegment> getSegmentStore() {
         return fSegmentStore;
@@ -137,6 +165,13 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
     protected boolean executeAnalysis(IProgressMonitor monitor) throws TmfAnalysisException {
         ITmfTrace trace = checkNotNull(getTrace());
 
+        ISegmentStore<ISegment> savedStore = openSegmentStore();
+        if (savedStore != null) {
+            fSegmentStore = savedStore;
+            sendUpdate(savedStore);
+            return true;
+        }
+
         final @Nullable String dataFileName = getDataFileName();
         if (dataFileName != null) {
             /* See if the data file already exists on disk */
@@ -147,7 +182,7 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
                 /* Attempt to read the existing file */
                 try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(file))) {
                     Object[] segmentArray = readObject(ois);
-                    ISegmentStore<ISegment> store = new ArrayListStore<>(NonNullUtils.checkNotNullContents(segmentArray));
+                    ISegmentStore<ISegment> store = createSegmentStore(NonNullUtils.checkNotNullContents(segmentArray));
                     fSegmentStore = store;
                     sendUpdate(store);
                     return true;
@@ -164,7 +199,7 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
             }
         }
 
-        ISegmentStore<ISegment> segmentStore = new ArrayListStore<>();
+        ISegmentStore<ISegment> segmentStore = createSegmentStore(new Object[0]);
         boolean completed = buildAnalysisSegments(segmentStore, monitor);
         if (!completed) {
             return false;
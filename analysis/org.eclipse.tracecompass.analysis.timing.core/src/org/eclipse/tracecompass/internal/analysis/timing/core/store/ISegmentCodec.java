@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.analysis.timing.core.store;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+
+/**
+ * Converts segments to and from the columns of an {@link OffHeapSegmentStore}.
+ * A segment is stored as its start time, its end time and a fixed number of
+ * attributes. The attributes are interned by the store, so they should be
+ * immutable and have few distinct values, like the name of a system call. They
+ * must also be serializable to be saved with a file-backed store.
+ *
+ * @param <E>
+ *            The type of segment
+ *
+ * @author Matthew Khouzam
+ */
+public interface ISegmentCodec<@NonNull E extends ISegment> {
+
+    /**
+     * Get the number of attributes stored for each segment
+     *
+     * @return The number of attributes
+     */
+    int getAttributeCount();
+
+    /**
+     * Get an attribute of a segment
+     *
+     * @param segment
+     *            The segment
+     * @param index
+     *            The index of the attribute, between 0 and
+     *            {@link #getAttributeCount()}
+     * @return The attribute value, which must implement equals and hashCode
+     * @throws IllegalArgumentException
+     *             If this codec cannot store this segment
+     */
+    @Nullable Object getAttribute(E segment, int index);
+
+    /**
+     * Build a segment from its stored columns
+     *
+     * @param start
+     *            The start time
+     * @param end
+     *            The end time
+     * @param attributes
+     *            The attributes, as returned by {@link #getAttribute}
+     * @return The segment
+     */
+    E decode(long start, long end, @Nullable Object[] attributes);
+}
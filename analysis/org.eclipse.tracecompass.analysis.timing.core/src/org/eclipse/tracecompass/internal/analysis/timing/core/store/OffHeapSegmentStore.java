@@ -0,0 +1,1076 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.analysis.timing.core.store;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.analysis.timing.core.Activator;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+
+/**
+ * Implementation of an {@link ISegmentStore} that keeps the segments outside of
+ * the Java heap, in columns. The segments are converted to a start time, an
+ * end time and interned attributes by an {@link ISegmentCodec}, and only the
+ * segments returned by a query or an iteration are built as objects.
+ *
+ * The columns are allocated by chunks, either in direct memory or, if a file
+ * is given, in a memory mapping of this file so that the operating system can
+ * write them to disk when memory is short. The attribute dictionary and the
+ * sorted index (one int per segment, also in direct memory) stay in memory.
+ * The mappings are disabled by default on Windows, where a mapped file cannot
+ * be deleted until the mapping is garbage collected: the chunks then stay in
+ * direct memory and are written to the file through its channel when the store
+ * is saved.
+ *
+ * A file-backed store is saved when it is closed with
+ * {@link #close(boolean) close(false)}: the index, the attribute dictionary
+ * and a header recording the version of the segment provider are written to
+ * the file. {@link #open} then maps the file back, without reading the
+ * segments, which are paged in by the operating system as they are queried,
+ * or reads them back in direct memory when the mappings are disabled.
+ *
+ * The segments are appended in insertion order. The index, sorted by start
+ * then end times, is built lazily by the next read, outside of the lock of the
+ * additions: the new segments are sorted, then merged in the previous index
+ * from the first position they change. The positions before it are kept, and
+ * new segments that sort after the whole index are appended in place. For
+ * every block of the index, the store keeps the largest end time, so that
+ * queries can skip the blocks that end before the requested range, and a
+ * binary search on the running maximum of these end times finds the first
+ * block to read. The iteration order is by ascending start times, then end
+ * times, then insertion order.
+ *
+ * Queries and iterators work on a snapshot of the store, later additions are
+ * not visible to them. Removal operations are not supported.
+ *
+ * @param <E>
+ *            The type of segment held in this store
+ *
+ * @author Matthew Khouzam
+ */
+public class OffHeapSegmentStore<@NonNull E extends ISegment> implements ISegmentStore<E> {
+
+    private static final String ERROR_MESSAGE = "Cannot remove from a segment store"; //$NON-NLS-1$
+
+    /** Maximum number of segments, limited by the size of the index buffer */
+    public static final int MAX_SIZE = Integer.MAX_VALUE / Integer.BYTES;
+
+    /* Number of segments per chunk of the columns */
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /* Offsets of the columns in a chunk */
+    private static final int END_OFFSET = CHUNK_SIZE * Long.BYTES;
+    private static final int ATTRIBUTES_OFFSET = 2 * CHUNK_SIZE * Long.BYTES;
+
+    /* Number of index positions summarized by one maximum end time */
+    private static final int BLOCK_BITS = 10;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /* Attribute id of null attributes */
+    private static final int NULL_ATTRIBUTE = -1;
+
+    /**
+     * System property to enable or disable the memory mappings of the store
+     * files. They are disabled by default on Windows, where a mapped file
+     * cannot be deleted until the mapping is garbage collected.
+     */
+    private static final String MAPPED_FILES_PROPERTY = "org.eclipse.tracecompass.analysis.timing.core.mappedSegmentStores"; //$NON-NLS-1$
+
+    private static final boolean MAPPED_FILES_ENABLED;
+    static {
+        String property = System.getProperty(MAPPED_FILES_PROPERTY);
+        if (property != null) {
+            MAPPED_FILES_ENABLED = Boolean.parseBoolean(property);
+        } else {
+            String os = System.getProperty("os.name"); //$NON-NLS-1$
+            MAPPED_FILES_ENABLED = (os == null || !os.startsWith("Windows")); //$NON-NLS-1$
+        }
+    }
+
+    /*
+     * File format: the header, the chunks of columns, then the positions of
+     * the chunks, the index, the maximum end times of the index blocks and the
+     * serialized attribute dictionary. All numbers are little endian.
+     */
+    private static final int MAGIC = 0x53454753;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4096;
+
+    private final ISegmentCodec<E> fCodec;
+    private final int fAttributeCount;
+    private final int fChunkBytes;
+    private final @Nullable Path fFile;
+    private final int fProviderVersion;
+    /* Whether the chunks are mapped from the file, or written at save time */
+    private final boolean fMapped;
+
+    private final ReadWriteLock fLock = new ReentrantReadWriteLock(false);
+    /* Only one index is built at a time */
+    private final Object fBuildLock = new Object();
+
+    /* Fields guarded by fLock */
+    private @Nullable FileChannel fChannel;
+    private long fFileSize = 0;
+    private ByteBuffer[] fChunks = new ByteBuffer[0];
+    /* Position of the chunks in the file, or -1 if they are in memory */
+    private long[] fChunkPositions = new long[0];
+    private int fSize = 0;
+    /* Whether the file is up to date with the content of the store */
+    private boolean fSaved = false;
+    private final List<@Nullable Object> fAttributes = new ArrayList<>();
+    private final Map<Object, Integer> fAttributeIds = new HashMap<>();
+    private Snapshot fSnapshot;
+
+    /**
+     * Constructor of a store kept in direct memory
+     *
+     * @param codec
+     *            The codec of the segments
+     */
+    public OffHeapSegmentStore(ISegmentCodec<E> codec) {
+        fCodec = codec;
+        fAttributeCount = codec.getAttributeCount();
+        fChunkBytes = ATTRIBUTES_OFFSET + fAttributeCount * CHUNK_SIZE * Integer.BYTES;
+        fFile = null;
+        fProviderVersion = 0;
+        fMapped = false;
+        fChannel = null;
+        fSnapshot = new Snapshot(fChunks, new Object[0], IntBuffer.allocate(0), false, new long[0], 0);
+    }
+
+    /**
+     * Constructor of a store whose columns are mapped from a file. The file is
+     * overwritten. It is deleted when the store is disposed, unless the store
+     * was saved by {@link #close(boolean) close(false)}.
+     *
+     * @param codec
+     *            The codec of the segments
+     * @param file
+     *            The file to spill the columns to
+     * @param providerVersion
+     *            The version of the provider of the segments, recorded in the
+     *            file when the store is saved
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    public OffHeapSegmentStore(ISegmentCodec<E> codec, Path file, int providerVersion) throws IOException {
+        this(codec, file, providerVersion, MAPPED_FILES_ENABLED);
+    }
+
+    /**
+     * Constructor of a store backed by a file, choosing whether the columns
+     * are mapped from the file or kept in direct memory until the store is
+     * saved. The file is overwritten. It is deleted when the store is
+     * disposed, unless the store was saved by {@link #close(boolean)
+     * close(false)}.
+     *
+     * @param codec
+     *            The codec of the segments
+     * @param file
+     *            The file to save the columns to
+     * @param providerVersion
+     *            The version of the provider of the segments, recorded in the
+     *            file when the store is saved
+     * @param mapped
+     *            Whether to map the columns from the file
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    public OffHeapSegmentStore(ISegmentCodec<E> codec, Path file, int providerVersion, boolean mapped) throws IOException {
+        fCodec = codec;
+        fAttributeCount = codec.getAttributeCount();
+        fChunkBytes = ATTRIBUTES_OFFSET + fAttributeCount * CHUNK_SIZE * Integer.BYTES;
+        fFile = file;
+        fProviderVersion = providerVersion;
+        fMapped = mapped;
+        fChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fFileSize = HEADER_SIZE;
+        fSnapshot = new Snapshot(fChunks, new Object[0], IntBuffer.allocate(0), false, new long[0], 0);
+    }
+
+    /**
+     * Open a store saved in a file
+     *
+     * @param codec
+     *            The codec of the segments
+     * @param file
+     *            The file of the store
+     * @param providerVersion
+     *            The version of the provider of the segments. Files written by
+     *            other versions are not opened.
+     * @return The store, or null if the file does not exist, is not complete
+     *         or was written by another provider version
+     */
+    public static <@NonNull E extends ISegment> @Nullable OffHeapSegmentStore<E> open(ISegmentCodec<E> codec, Path file, int providerVersion) {
+        return open(codec, file, providerVersion, MAPPED_FILES_ENABLED);
+    }
+
+    /**
+     * Open a store saved in a file, choosing whether the columns are mapped
+     * from the file or read in direct memory
+     *
+     * @param codec
+     *            The codec of the segments
+     * @param file
+     *            The file of the store
+     * @param providerVersion
+     *            The version of the provider of the segments. Files written by
+     *            other versions are not opened.
+     * @param mapped
+     *            Whether to map the columns from the file
+     * @return The store, or null if the file does not exist, is not complete
+     *         or was written by another provider version
+     */
+    public static <@NonNull E extends ISegment> @Nullable OffHeapSegmentStore<E> open(ISegmentCodec<E> codec, Path file, int providerVersion, boolean mapped) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        OffHeapSegmentStore<E> store = null;
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            store = new OffHeapSegmentStore<>(codec, file, providerVersion, mapped, channel);
+            if (store.load()) {
+                return store;
+            }
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            /* Corrupt file, the caller will rebuild it */
+            Activator.getInstance().logWarning("Could not open the segment store file " + file, e); //$NON-NLS-1$
+        }
+        if (store != null) {
+            store.closeChannel();
+        }
+        return null;
+    }
+
+    private OffHeapSegmentStore(ISegmentCodec<E> codec, Path file, int providerVersion, boolean mapped, FileChannel channel) {
+        fCodec = codec;
+        fAttributeCount = codec.getAttributeCount();
+        fChunkBytes = ATTRIBUTES_OFFSET + fAttributeCount * CHUNK_SIZE * Integer.BYTES;
+        fFile = file;
+        fProviderVersion = providerVersion;
+        fMapped = mapped;
+        fChannel = channel;
+        fSnapshot = new Snapshot(fChunks, new Object[0], IntBuffer.allocate(0), false, new long[0], 0);
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods from Collection
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterator<E> iterator() {
+        return getSnapshot().iterator(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public boolean add(@Nullable E val) {
+        if (val == null) {
+            throw new IllegalArgumentException("Cannot add null value"); //$NON-NLS-1$
+        }
+
+        fLock.writeLock().lock();
+        try {
+            if (fSaved) {
+                invalidateFile();
+            }
+            int[] attributes = new int[fAttributeCount];
+            for (int i = 0; i < fAttributeCount; i++) {
+                attributes[i] = intern(fCodec.getAttribute(val, i));
+            }
+            int row = fSize;
+            if (row == MAX_SIZE) {
+                throw new IllegalStateException("Segment store is full"); //$NON-NLS-1$
+            }
+            if ((row >>> CHUNK_BITS) == fChunks.length) {
+                addChunk();
+            }
+            ByteBuffer chunk = fChunks[row >>> CHUNK_BITS];
+            int offset = row & CHUNK_MASK;
+            chunk.putLong(offset * Long.BYTES, val.getStart());
+            chunk.putLong(END_OFFSET + offset * Long.BYTES, val.getEnd());
+            for (int i = 0; i < fAttributeCount; i++) {
+                chunk.putInt(ATTRIBUTES_OFFSET + (i * CHUNK_SIZE + offset) * Integer.BYTES, attributes[i]);
+            }
+            fSize++;
+            return true;
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        fLock.readLock().lock();
+        try {
+            return fSize;
+        } finally {
+            fLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+        if (!(o instanceof ISegment)) {
+            return false;
+        }
+        /* An equal segment has the same start time, so it intersects it */
+        long start = ((ISegment) o).getStart();
+        Iterator<E> iterator = getSnapshot().iterator(start, start);
+        while (iterator.hasNext()) {
+            if (iterator.next().equals(o)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean containsAll(@Nullable Collection<?> c) {
+        if (c == null) {
+            throw new IllegalArgumentException();
+        }
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return Lists.newArrayList(iterator()).toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return Lists.newArrayList(iterator()).toArray(a);
+    }
+
+    @Override
+    public boolean remove(@Nullable Object o) {
+        throw new UnsupportedOperationException(ERROR_MESSAGE);
+    }
+
+    @Override
+    public boolean addAll(@Nullable Collection<? extends E> c) {
+        if (c == null) {
+            throw new IllegalArgumentException();
+        }
+
+        fLock.writeLock().lock();
+        try {
+            boolean changed = false;
+            for (E elem : c) {
+                if (add(elem)) {
+                    changed = true;
+                }
+            }
+            return changed;
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAll(@Nullable Collection<?> c) {
+        throw new UnsupportedOperationException(ERROR_MESSAGE);
+    }
+
+    @Override
+    public boolean retainAll(@Nullable Collection<?> c) {
+        throw new UnsupportedOperationException(ERROR_MESSAGE);
+    }
+
+    @Override
+    public void clear() {
+        fLock.writeLock().lock();
+        try {
+            /*
+             * Previous snapshots may still read the chunks, so the file is not
+             * truncated, the next chunks are mapped after them.
+             */
+            if (fSaved) {
+                invalidateFile();
+            }
+            fChunks = new ByteBuffer[0];
+            fChunkPositions = new long[0];
+            fSize = 0;
+            fAttributes.clear();
+            fAttributeIds.clear();
+            fSnapshot = new Snapshot(fChunks, new Object[0], IntBuffer.allocate(0), false, new long[0], 0);
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods added by ISegmentStore
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterable<E> getIntersectingElements(long position) {
+        return getIntersectingElements(position, position);
+    }
+
+    @Override
+    public Iterable<E> getIntersectingElements(long start, long end) {
+        Snapshot snapshot = getSnapshot();
+        return () -> snapshot.iterator(start, end);
+    }
+
+    @Override
+    public void dispose() {
+        fLock.writeLock().lock();
+        try {
+            boolean saved = fSaved;
+            fSaved = false;
+            fChunks = new ByteBuffer[0];
+            fChunkPositions = new long[0];
+            fSize = 0;
+            fAttributes.clear();
+            fAttributeIds.clear();
+            fSnapshot = new Snapshot(fChunks, new Object[0], IntBuffer.allocate(0), false, new long[0], 0);
+            if (saved) {
+                closeChannel();
+            } else {
+                deleteFile();
+            }
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close(boolean deleteFiles) {
+        fLock.writeLock().lock();
+        try {
+            if (deleteFiles) {
+                deleteFile();
+                return;
+            }
+            FileChannel channel = fChannel;
+            if (channel == null || fSaved) {
+                return;
+            }
+            for (long position : fChunkPositions) {
+                if (position < 0) {
+                    /* Some chunks could not be mapped from the file */
+                    return;
+                }
+            }
+            if (fSnapshot.fCount != fSize) {
+                fSnapshot = buildSnapshot(fSnapshot, fChunks, checkNotNull(fAttributes.toArray()), fSize);
+            }
+            save(channel, fSnapshot);
+            fSaved = true;
+        } catch (IOException e) {
+            Activator.getInstance().logWarning("Could not save the segment store file " + fFile, e); //$NON-NLS-1$
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private int intern(@Nullable Object attribute) {
+        if (attribute == null) {
+            return NULL_ATTRIBUTE;
+        }
+        Integer id = fAttributeIds.get(attribute);
+        if (id == null) {
+            id = fAttributes.size();
+            fAttributes.add(attribute);
+            fAttributeIds.put(attribute, id);
+        }
+        return id;
+    }
+
+    private void addChunk() {
+        ByteBuffer chunk = null;
+        long position = -1;
+        FileChannel channel = fChannel;
+        if (channel != null && fMapped) {
+            try {
+                chunk = channel.map(MapMode.READ_WRITE, fFileSize, fChunkBytes);
+                position = fFileSize;
+                fFileSize += fChunkBytes;
+            } catch (IOException e) {
+                Activator.getInstance().logWarning("Could not map the segment store file " + fFile + ", using memory instead", e); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        } else if (channel != null) {
+            /* The chunk is written at this position when the store is saved */
+            position = fFileSize;
+            fFileSize += fChunkBytes;
+        }
+        if (chunk == null) {
+            chunk = ByteBuffer.allocateDirect(fChunkBytes);
+        }
+        chunk.order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer[] chunks = Arrays.copyOf(fChunks, fChunks.length + 1);
+        chunks[fChunks.length] = chunk;
+        fChunks = chunks;
+        long[] positions = Arrays.copyOf(fChunkPositions, fChunkPositions.length + 1);
+        positions[fChunkPositions.length] = position;
+        fChunkPositions = positions;
+    }
+
+    // ------------------------------------------------------------------------
+    // File operations
+    // ------------------------------------------------------------------------
+
+    /**
+     * Write everything but the columns after the chunks, then the header.
+     * DO NOT CALL FROM OUTSIDE OF THE WRITE LOCK!
+     */
+    private void save(FileChannel channel, Snapshot snapshot) throws IOException {
+        if (!fMapped) {
+            for (int i = 0; i < fChunks.length; i++) {
+                ByteBuffer chunk = fChunks[i].duplicate();
+                chunk.clear();
+                write(channel, fChunkPositions[i], chunk);
+            }
+        }
+
+        long position = fFileSize;
+
+        long chunkPositions = position;
+        ByteBuffer buffer = allocate(fChunkPositions.length * Long.BYTES);
+        buffer.asLongBuffer().put(fChunkPositions);
+        write(channel, position, buffer);
+        position += fChunkPositions.length * Long.BYTES;
+
+        long index = position;
+        IntBuffer indexData = snapshot.fIndex.duplicate();
+        indexData.clear();
+        indexData.limit(snapshot.fCount);
+        buffer = allocate(snapshot.fCount * Integer.BYTES);
+        buffer.asIntBuffer().put(indexData);
+        write(channel, position, buffer);
+        position += snapshot.fCount * Integer.BYTES;
+
+        long blockMaxEnd = position;
+        buffer = allocate(snapshot.fBlockMaxEnd.length * Long.BYTES);
+        buffer.asLongBuffer().put(snapshot.fBlockMaxEnd);
+        write(channel, position, buffer);
+        position += snapshot.fBlockMaxEnd.length * Long.BYTES;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(snapshot.fSnapshotAttributes);
+        }
+        byte[] dictionary = bytes.toByteArray();
+        write(channel, position, ByteBuffer.wrap(dictionary));
+
+        /* The magic number is written last, once the rest is complete */
+        forceChunks();
+        channel.force(false);
+        ByteBuffer header = allocate(HEADER_SIZE);
+        header.position(Integer.BYTES);
+        header.putInt(FORMAT_VERSION);
+        header.putInt(fProviderVersion);
+        header.putInt(fAttributeCount);
+        header.putInt(snapshot.fCount);
+        header.putInt(fChunkPositions.length);
+        header.putLong(chunkPositions);
+        header.putLong(index);
+        header.putLong(blockMaxEnd);
+        header.putLong(position);
+        header.putInt(dictionary.length);
+        header.clear();
+        write(channel, 0, header);
+        channel.force(false);
+        ByteBuffer magic = allocate(Integer.BYTES);
+        magic.putInt(0, MAGIC);
+        write(channel, 0, magic);
+        channel.force(false);
+    }
+
+    /**
+     * Read the header and map the content of the file
+     *
+     * @return False if the file is not complete or not compatible
+     */
+    private boolean load() throws IOException, ClassNotFoundException {
+        FileChannel channel = checkNotNull(fChannel);
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = read(channel, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION ||
+                header.getInt() != fProviderVersion || header.getInt() != fAttributeCount) {
+            return false;
+        }
+        int count = header.getInt();
+        int chunkCount = header.getInt();
+        long chunkPositions = header.getLong();
+        long index = header.getLong();
+        long blockMaxEnd = header.getLong();
+        long dictionary = header.getLong();
+        int dictionaryLength = header.getInt();
+
+        long[] positions = new long[chunkCount];
+        read(channel, chunkPositions, chunkCount * Long.BYTES).asLongBuffer().get(positions);
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            chunks[i] = fMapped ? map(channel, positions[i], fChunkBytes) : read(channel, positions[i], fChunkBytes);
+        }
+
+        IntBuffer indexData = (fMapped ? map(channel, index, count * Integer.BYTES) : read(channel, index, count * Integer.BYTES)).asIntBuffer();
+        long[] blockMaxEndData = new long[(count + BLOCK_MASK) >>> BLOCK_BITS];
+        read(channel, blockMaxEnd, blockMaxEndData.length * Long.BYTES).asLongBuffer().get(blockMaxEndData);
+
+        byte[] dictionaryData = new byte[dictionaryLength];
+        read(channel, dictionary, dictionaryLength).get(dictionaryData);
+        Object[] attributes;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(dictionaryData))) {
+            attributes = (Object[]) ois.readObject();
+        }
+
+        fChunks = chunks;
+        fChunkPositions = positions;
+        fSize = count;
+        for (Object attribute : attributes) {
+            intern(attribute);
+        }
+        fSnapshot = new Snapshot(chunks, checkNotNull(attributes), indexData, fMapped, blockMaxEndData, count);
+        /* New chunks are mapped after the saved data */
+        fFileSize = dictionary + dictionaryLength;
+        fSaved = true;
+        return true;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, int size) throws IOException {
+        return channel.map(MapMode.READ_WRITE, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Read a region of the file through the channel, in direct memory
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the segment store file"); //$NON-NLS-1$
+            }
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Write the remaining bytes of a buffer in the file through the channel
+     */
+    private static void write(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        long offset = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    /**
+     * Flush the mapped chunks to the file
+     */
+    private void forceChunks() {
+        for (ByteBuffer chunk : fChunks) {
+            if (chunk instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) chunk).force();
+            }
+        }
+    }
+
+    /**
+     * The content of the store changes, so the file is no longer valid
+     */
+    private void invalidateFile() {
+        fSaved = false;
+        FileChannel channel = fChannel;
+        if (channel != null) {
+            try {
+                write(channel, 0, allocate(Integer.BYTES));
+            } catch (IOException e) {
+                Activator.getInstance().logWarning("Could not invalidate the segment store file " + fFile, e); //$NON-NLS-1$
+            }
+        }
+    }
+
+    private void closeChannel() {
+        FileChannel channel = fChannel;
+        fChannel = null;
+        if (channel != null) {
+            try {
+                /* The mappings of the chunks remain valid until collected */
+                channel.close();
+            } catch (IOException e) {
+                Activator.getInstance().logWarning("Could not close the segment store file " + fFile, e); //$NON-NLS-1$
+            }
+        }
+    }
+
+    private void deleteFile() {
+        closeChannel();
+        fSaved = false;
+        Path file = fFile;
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                Activator.getInstance().logWarning("Could not delete the segment store file " + file, e); //$NON-NLS-1$
+            }
+        }
+    }
+
+    /**
+     * Get a snapshot of the store with an up to date index. The index is built
+     * without the write lock, the rows of the snapshot do not change.
+     */
+    private Snapshot getSnapshot() {
+        fLock.readLock().lock();
+        try {
+            Snapshot snapshot = fSnapshot;
+            if (snapshot.fCount == fSize) {
+                return snapshot;
+            }
+        } finally {
+            fLock.readLock().unlock();
+        }
+        synchronized (fBuildLock) {
+            Snapshot previous;
+            ByteBuffer[] chunks;
+            Object[] attributes;
+            int count;
+            fLock.readLock().lock();
+            try {
+                previous = fSnapshot;
+                count = fSize;
+                if (previous.fCount == count) {
+                    return previous;
+                }
+                /* The chunks array is replaced, not modified, when a chunk is added */
+                chunks = fChunks;
+                attributes = checkNotNull(fAttributes.toArray());
+            } finally {
+                fLock.readLock().unlock();
+            }
+            Snapshot snapshot = buildSnapshot(previous, chunks, attributes, count);
+            fLock.writeLock().lock();
+            try {
+                /* The store may have been cleared in the meantime */
+                if (fSnapshot == previous) {
+                    fSnapshot = snapshot;
+                }
+            } finally {
+                fLock.writeLock().unlock();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Build the snapshot of the first count rows by merging the rows added
+     * since the previous snapshot in its index. The previous snapshot must be
+     * the latest one, it may share its index buffer with the new one.
+     */
+    private Snapshot buildSnapshot(Snapshot previous, ByteBuffer[] chunks, Object[] attributes, int count) {
+        int previousCount = previous.fCount;
+        IntBuffer previousIndex = previous.fIndex;
+
+        IntBuffer added = allocateIndex(count - previousCount);
+        for (int row = previousCount; row < count; row++) {
+            added.put(row - previousCount, row);
+        }
+        added = sort(added, count - previousCount, chunks);
+
+        /* The first position of the previous index that sorts after a new row */
+        int first = previous.firstPositionAfter(added.get(0), chunks);
+
+        IntBuffer index;
+        if (first == previousCount && previousIndex.capacity() >= count && !previous.fMappedIndex) {
+            /* The new rows come after the previous ones, append them in place */
+            index = previousIndex;
+            for (int i = previousCount; i < count; i++) {
+                index.put(i, added.get(i - previousCount));
+            }
+        } else {
+            /* Keep room for the next additions */
+            index = allocateIndex((int) Math.min(MAX_SIZE, count + (long) count / 2));
+            IntBuffer prefix = previousIndex.duplicate();
+            prefix.clear();
+            prefix.limit(first);
+            index.put(prefix);
+            index.clear();
+            int i = first;
+            int j = 0;
+            for (int k = first; k < count; k++) {
+                if (j >= count - previousCount || (i < previousCount && compareRows(chunks, previousIndex.get(i), added.get(j)) < 0)) {
+                    index.put(k, previousIndex.get(i++));
+                } else {
+                    index.put(k, added.get(j++));
+                }
+            }
+        }
+
+        /* Only the blocks from the first changed position are updated */
+        int firstBlock = first >>> BLOCK_BITS;
+        long[] blockMaxEnd = Arrays.copyOf(previous.fBlockMaxEnd, (count + BLOCK_MASK) >>> BLOCK_BITS);
+        Arrays.fill(blockMaxEnd, firstBlock, blockMaxEnd.length, Long.MIN_VALUE);
+        for (int i = firstBlock << BLOCK_BITS; i < count; i++) {
+            int block = i >>> BLOCK_BITS;
+            blockMaxEnd[block] = Math.max(blockMaxEnd[block], getEnd(chunks, index.get(i)));
+        }
+        return new Snapshot(chunks, attributes, index, false, blockMaxEnd, count);
+    }
+
+    private static IntBuffer allocateIndex(int count) {
+        return ByteBuffer.allocateDirect(count * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static long getStart(ByteBuffer[] chunks, int row) {
+        return chunks[row >>> CHUNK_BITS].getLong((row & CHUNK_MASK) * Long.BYTES);
+    }
+
+    private static long getEnd(ByteBuffer[] chunks, int row) {
+        return chunks[row >>> CHUNK_BITS].getLong(END_OFFSET + (row & CHUNK_MASK) * Long.BYTES);
+    }
+
+    private static int compareRows(ByteBuffer[] chunks, int row1, int row2) {
+        int ret = Long.compare(getStart(chunks, row1), getStart(chunks, row2));
+        if (ret == 0) {
+            ret = Long.compare(getEnd(chunks, row1), getEnd(chunks, row2));
+        }
+        if (ret == 0) {
+            ret = Integer.compare(row1, row2);
+        }
+        return ret;
+    }
+
+    /**
+     * Sort rows with a natural merge sort: the sorted runs are merged two by
+     * two until there is only one. Segments usually arrive almost sorted, so
+     * there are few runs.
+     */
+    private static IntBuffer sort(IntBuffer rows, int count, ByteBuffer[] chunks) {
+        IntBuffer src = rows;
+        IntBuffer dst = null;
+        while (true) {
+            int low = 0;
+            while (low < count) {
+                int mid = runEnd(src, low, count, chunks);
+                if (low == 0 && mid == count) {
+                    return src;
+                }
+                if (dst == null) {
+                    dst = allocateIndex(count);
+                }
+                int high = (mid == count) ? count : runEnd(src, mid, count, chunks);
+                merge(src, low, mid, high, dst, chunks);
+                low = high;
+            }
+            IntBuffer tmp = src;
+            src = checkNotNull(dst);
+            dst = tmp;
+        }
+    }
+
+    private static int runEnd(IntBuffer rows, int low, int count, ByteBuffer[] chunks) {
+        int i = low + 1;
+        while (i < count && compareRows(chunks, rows.get(i - 1), rows.get(i)) < 0) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void merge(IntBuffer src, int low, int mid, int high, IntBuffer dst, ByteBuffer[] chunks) {
+        int i = low;
+        int j = mid;
+        for (int k = low; k < high; k++) {
+            if (j >= high || (i < mid && compareRows(chunks, src.get(i), src.get(j)) < 0)) {
+                dst.put(k, src.get(i++));
+            } else {
+                dst.put(k, src.get(j++));
+            }
+        }
+    }
+
+    /**
+     * An immutable view of the first rows of the store, with their index.
+     * Rows are only appended to the chunks, so the rows of a snapshot do not
+     * change.
+     */
+    private final class Snapshot {
+
+        private final ByteBuffer[] fSnapshotChunks;
+        private final Object[] fSnapshotAttributes;
+        /*
+         * The rows, sorted by start time, then end time, then row number. Only
+         * the first fCount positions belong to this snapshot, the next ones
+         * may be written by the next snapshot.
+         */
+        private final IntBuffer fIndex;
+        /* Whether the index is mapped from the file, and must not be written */
+        private final boolean fMappedIndex;
+        /* The largest end time of each block of the index */
+        private final long[] fBlockMaxEnd;
+        /* The largest end time of the blocks up to each block, ascending */
+        private final long[] fRunningMaxEnd;
+        private final int fCount;
+
+        public Snapshot(ByteBuffer[] chunks, Object[] attributes, IntBuffer index, boolean mappedIndex, long[] blockMaxEnd, int count) {
+            fSnapshotChunks = chunks;
+            fSnapshotAttributes = attributes;
+            fIndex = index;
+            fMappedIndex = mappedIndex;
+            fBlockMaxEnd = blockMaxEnd;
+            fRunningMaxEnd = new long[blockMaxEnd.length];
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < blockMaxEnd.length; i++) {
+                max = Math.max(max, blockMaxEnd[i]);
+                fRunningMaxEnd[i] = max;
+            }
+            fCount = count;
+        }
+
+        /**
+         * Iterate over the segments intersecting [start, end], by index order
+         */
+        public Iterator<E> iterator(long start, long end) {
+            int limit = firstPositionStartingAfter(end);
+            int first = firstBlockReaching(start) << BLOCK_BITS;
+            return new AbstractIterator<E>() {
+                private int fPosition = first;
+
+                @Override
+                protected @Nullable E computeNext() {
+                    while (fPosition < limit) {
+                        if ((fPosition & BLOCK_MASK) == 0 && fBlockMaxEnd[fPosition >>> BLOCK_BITS] < start) {
+                            /* No segment of this block reaches start */
+                            fPosition += BLOCK_SIZE;
+                            continue;
+                        }
+                        int row = fIndex.get(fPosition++);
+                        if (getEnd(fSnapshotChunks, row) >= start) {
+                            return decode(row);
+                        }
+                    }
+                    return endOfData();
+                }
+            };
+        }
+
+        /**
+         * The first block with a segment ending at or after the time. No
+         * segment of the previous blocks reaches it.
+         */
+        private int firstBlockReaching(long time) {
+            int low = 0;
+            int high = fRunningMaxEnd.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (fRunningMaxEnd[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * The first position whose row sorts after the given row, which can
+         * be in chunks added after this snapshot
+         */
+        private int firstPositionAfter(int row, ByteBuffer[] chunks) {
+            int low = 0;
+            int high = fCount;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareRows(chunks, fIndex.get(mid), row) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int firstPositionStartingAfter(long time) {
+            int low = 0;
+            int high = fCount;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (getStart(fSnapshotChunks, fIndex.get(mid)) <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private E decode(int row) {
+            ByteBuffer chunk = fSnapshotChunks[row >>> CHUNK_BITS];
+            int offset = row & CHUNK_MASK;
+            @Nullable Object[] attributes = new Object[fAttributeCount];
+            for (int i = 0; i < fAttributeCount; i++) {
+                int id = chunk.getInt(ATTRIBUTES_OFFSET + (i * CHUNK_SIZE + offset) * Integer.BYTES);
+                attributes[i] = (id == NULL_ATTRIBUTE) ? null : fSnapshotAttributes[id];
+            }
+            return fCodec.decode(getStart(fSnapshotChunks, row), getEnd(fSnapshotChunks, row), attributes);
+        }
+    }
+}
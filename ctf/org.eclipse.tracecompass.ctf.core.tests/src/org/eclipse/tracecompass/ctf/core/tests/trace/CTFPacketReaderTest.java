@@ -14,6 +14,7 @@ package org.eclipse.tracecompass.ctf.core.tests.trace;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
@@ -226,4 +227,107 @@ public class CTFPacketReaderTest {
         assertFalse(cpr.hasMoreEvents());
     }
 
+    /**
+     * Test skipping the events of a packet whose timestamps are in the event
+     * header, so the context and fields are not decoded
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testSkipPacketWithContext() throws CTFException {
+        byte[] bytes = { (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x01, (byte) 0xff, (byte) 0xff, (byte) 0xa5 };
+        BitBuffer input = createBitBuffer(bytes);
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, EMPTY_STRUCT.createDefinition(null, ILexicalScope.TRACE, new BitBuffer()), 8, 0, 0);
+        StructDeclaration eventHeaderDeclaration = new StructDeclaration(8);
+        eventHeaderDeclaration.addField("timestamp", IntegerDeclaration.INT_8_DECL);
+        final EventDeclaration eventDec = new EventDeclaration();
+        eventDec.setName("Hello");
+        StructDeclaration context = new StructDeclaration(8);
+        context.addField("field1", IntegerDeclaration.UINT_16L_DECL);
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("field2", IntegerDeclaration.UINT_8_DECL);
+        eventDec.setContext(context);
+        eventDec.setFields(fields);
+        List<@Nullable IEventDeclaration> declarations = Collections.singletonList(eventDec);
+        CTFTrace trace = new CTFTrace();
+        CTFPacketReader cpr = new CTFPacketReader(input, packetContext, declarations, eventHeaderDeclaration, null, null, trace);
+        assertTrue(cpr.hasMoreEvents());
+        assertEquals(0L, cpr.skipNextEvent());
+        assertEquals(32L, input.position());
+        assertTrue(cpr.hasMoreEvents());
+        assertEquals(1L, cpr.skipNextEvent());
+        assertFalse(cpr.hasMoreEvents());
+    }
+
+    /**
+     * Test skipping the events of a packet whose timestamps are in the fields,
+     * so the events are decoded, followed by lost events
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testSkipPacketWithLostEvents() throws CTFException {
+        byte[] bytes = { (byte) 0x00, (byte) 0x02, (byte) 0x00, (byte) 0x00, (byte) 0x01, (byte) 0x00, (byte) 0x01, (byte) 0x5a };
+        BitBuffer input = createBitBuffer(bytes);
+        final StructDeclaration packetHeader = new StructDeclaration(8);
+        packetHeader.addField(CTFStrings.EVENTS_DISCARDED, IntegerDeclaration.UINT_16L_DECL);
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, packetHeader.createDefinition(null, ILexicalScope.TRACE, input), 8, 0, 16);
+        final EventDeclaration eventDec = new EventDeclaration();
+        eventDec.setName("Hello");
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("timestamp", IntegerDeclaration.UINT_16L_DECL);
+        fields.addField("field", IntegerDeclaration.UINT_8_DECL);
+        eventDec.setFields(fields);
+        List<@Nullable IEventDeclaration> declarations = Collections.singletonList(eventDec);
+        CTFTrace trace = new CTFTrace();
+        CTFPacketReader cpr = new CTFPacketReader(input, packetContext, declarations, null, null, null, trace);
+        assertEquals(0L, cpr.skipNextEvent());
+        assertEquals(256L, cpr.skipNextEvent());
+        /* The lost event */
+        assertTrue(cpr.hasMoreEvents());
+        assertEquals(256L, cpr.skipNextEvent());
+        assertFalse(cpr.hasMoreEvents());
+    }
+
+    /**
+     * Test reading a packet with event types set, so the events of the other
+     * types are read with their timestamps but without their content
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testPacketWithEventTypes() throws CTFException {
+        byte[] bytes = { (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x01, (byte) 0xff, (byte) 0xff, (byte) 0xa5 };
+        BitBuffer input = createBitBuffer(bytes);
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, EMPTY_STRUCT.createDefinition(null, ILexicalScope.TRACE, new BitBuffer()), 8, 0, 0);
+        StructDeclaration eventHeaderDeclaration = new StructDeclaration(8);
+        eventHeaderDeclaration.addField("timestamp", IntegerDeclaration.INT_8_DECL);
+        final EventDeclaration eventDec = new EventDeclaration();
+        eventDec.setName("Hello");
+        StructDeclaration context = new StructDeclaration(8);
+        context.addField("field1", IntegerDeclaration.UINT_16L_DECL);
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("field2", IntegerDeclaration.UINT_8_DECL);
+        eventDec.setContext(context);
+        eventDec.setFields(fields);
+        List<@Nullable IEventDeclaration> declarations = Collections.singletonList(eventDec);
+        CTFTrace trace = new CTFTrace();
+        CTFPacketReader cpr = new CTFPacketReader(input, packetContext, declarations, eventHeaderDeclaration, null, null, trace);
+        cpr.setEventTypes(Collections.singleton("Other"));
+        EventDefinition event = cpr.readNextEvent();
+        assertEquals(0L, event.getTimestamp());
+        assertEquals("Hello", event.getDeclaration().getName());
+        assertNull(event.getContext());
+        assertNull(event.getFields());
+        assertEquals(32L, input.position());
+        cpr.setEventTypes(Collections.singleton("Hello"));
+        event = cpr.readNextEvent();
+        assertEquals(1L, event.getTimestamp());
+        assertEquals(65535L, ((IntegerDefinition) event.getContext().getDefinition("field1")).getValue());
+        assertEquals(0xa5, ((IntegerDefinition) event.getFields().getDefinition("field2")).getValue());
+        assertFalse(cpr.hasMoreEvents());
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -298,6 +298,53 @@ public class CTFTraceReaderTest {
         assertTrue(result);
     }
 
+    /**
+     * Test that a reader decoding its streams in parallel returns the same
+     * events, in the same order, as a sequential reader, including after a
+     * seek in the middle of the trace. The current packet of the streams must
+     * be the one of their current event, not the one being decoded ahead.
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testParallelDecoding() throws CTFException {
+        CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+        try (CTFTraceReader sequential = new CTFTraceReader(trace);
+                CTFTraceReader parallel = new CTFTraceReader(trace, true);) {
+            assertFalse(sequential.isParallelDecoding());
+            assertTrue(parallel.isParallelDecoding());
+            assertSameEvents(sequential, parallel);
+
+            sequential.seek(0);
+            for (int i = 0; i < 10000; i++) {
+                sequential.advance();
+            }
+            IEventDefinition middle = sequential.getCurrentEventDef();
+            assertNotNull(middle);
+            assertEquals(sequential.seek(middle.getTimestamp()), parallel.seek(middle.getTimestamp()));
+            assertSameEvents(sequential, parallel);
+        }
+    }
+
+    private static void assertSameEvents(CTFTraceReader expected, CTFTraceReader actual) throws CTFException {
+        while (expected.hasMoreEvents()) {
+            assertTrue(actual.hasMoreEvents());
+            IEventDefinition expectedEvent = expected.getCurrentEventDef();
+            IEventDefinition actualEvent = actual.getCurrentEventDef();
+            assertNotNull(expectedEvent);
+            assertNotNull(actualEvent);
+            assertEquals(expectedEvent.getTimestamp(), actualEvent.getTimestamp());
+            assertEquals(expectedEvent.getDeclaration().getName(), actualEvent.getDeclaration().getName());
+            assertEquals(expectedEvent.getCPU(), actualEvent.getCPU());
+            assertEquals(expected.getTopStream().getCurrentPacketReader().getCurrentPacket(),
+                    actual.getTopStream().getCurrentPacketReader().getCurrentPacket());
+            expected.advance();
+            actual.advance();
+        }
+        assertFalse(actual.hasMoreEvents());
+    }
+
     /**
      * @return
      */
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.FloatDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.VariantDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.ArrayDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.DeclarationSkipper;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.SequenceDeclaration;
+import org.junit.Test;
+
+/**
+ * Test the {@link DeclarationSkipper} class
+ *
+ * @author Matthew Khouzam
+ */
+public class DeclarationSkipperTest {
+
+    private static final @NonNull String NAME = "test";
+
+    private static @NonNull StructDeclaration createFixedLayoutStruct() {
+        StructDeclaration nested = new StructDeclaration(8);
+        nested.addField("a", IntegerDeclaration.UINT_8_DECL);
+        nested.addField("b", IntegerDeclaration.UINT_5B_DECL);
+
+        StructDeclaration struct = new StructDeclaration(8);
+        struct.addField("int", IntegerDeclaration.UINT_8_DECL);
+        struct.addField("string", StringDeclaration.getStringDeclaration(Encoding.UTF8));
+        struct.addField("float", new FloatDeclaration(8, 24, ByteOrder.BIG_ENDIAN, 32));
+        struct.addField("bytes", new ArrayDeclaration(3, IntegerDeclaration.UINT_8_DECL));
+        struct.addField("ints", new ArrayDeclaration(2, IntegerDeclaration.INT_32B_DECL));
+        struct.addField("enum", new EnumDeclaration(IntegerDeclaration.INT_32B_DECL));
+        struct.addField("nested", nested);
+        return struct;
+    }
+
+    /**
+     * Test which declarations can be skipped
+     */
+    @Test
+    public void testCanSkip() {
+        assertTrue(DeclarationSkipper.canSkip(null));
+        assertTrue(DeclarationSkipper.canSkip(createFixedLayoutStruct()));
+
+        StructDeclaration withSequence = createFixedLayoutStruct();
+        withSequence.addField("len", IntegerDeclaration.UINT_8_DECL);
+        withSequence.addField("seq", new SequenceDeclaration("len", IntegerDeclaration.UINT_8_DECL));
+        assertFalse(DeclarationSkipper.canSkip(withSequence));
+
+        StructDeclaration withVariant = new StructDeclaration(8);
+        withVariant.addField("variant", new VariantDeclaration());
+        assertFalse(DeclarationSkipper.canSkip(withVariant));
+        assertFalse(DeclarationSkipper.canSkip(new ArrayDeclaration(2, withVariant)));
+    }
+
+    /**
+     * Test that skipping a field moves the buffer to the same position as
+     * reading it, including the alignment of each field
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testSkip() throws CTFException {
+        byte[] bytes = new byte[64];
+        /* A string of 5 characters, from the second byte */
+        for (int i = 1; i < 6; i++) {
+            bytes[i] = 'a';
+        }
+        StructDeclaration struct = createFixedLayoutStruct();
+        for (int start : new int[] { 0, 3, 8 }) {
+            BitBuffer read = new BitBuffer(ByteBuffer.wrap(bytes));
+            read.position(start);
+            struct.createDefinition(null, NAME, read);
+
+            BitBuffer skipped = new BitBuffer(ByteBuffer.wrap(bytes));
+            skipped.position(start);
+            DeclarationSkipper.skip(struct, skipped);
+            assertEquals(read.position(), skipped.position());
+        }
+    }
+}
@@ -219,19 +219,25 @@ public class CTFStreamInput implements IDefinitionScope {
      *             If there was a problem reading the packed header
      */
     public boolean addPacketHeaderIndex() throws CTFException {
-        long currentPosBits = 0L;
-        if (!fIndex.isEmpty()) {
-            ICTFPacketDescriptor pos = fIndex.lastElement();
-            if (pos == null) {
-                throw new IllegalStateException("Index contains null packet entries"); //$NON-NLS-1$
+        /*
+         * Readers of the same stream input can index it concurrently, make sure
+         * they do not both append the same packet.
+         */
+        synchronized (fIndex) {
+            long currentPosBits = 0L;
+            if (!fIndex.isEmpty()) {
+                ICTFPacketDescriptor pos = fIndex.lastElement();
+                if (pos == null) {
+                    throw new IllegalStateException("Index contains null packet entries"); //$NON-NLS-1$
+                }
+                currentPosBits = pos.getOffsetBits() + pos.getPacketSizeBits();
             }
-            currentPosBits = pos.getOffsetBits() + pos.getPacketSizeBits();
-        }
-        if (currentPosBits < getStreamSizeBits()) {
-            fIndex.append(createPacketIndexEntry(currentPosBits));
-            return true;
+            if (currentPosBits < getStreamSizeBits()) {
+                fIndex.append(createPacketIndexEntry(currentPosBits));
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     private long getStreamSizeBits() {
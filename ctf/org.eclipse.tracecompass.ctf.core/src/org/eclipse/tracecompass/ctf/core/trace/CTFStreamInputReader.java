@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2015 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -19,6 +19,8 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -33,6 +35,8 @@ import org.eclipse.tracecompass.internal.ctf.core.Activator;
 import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFPacketReader;
 import org.eclipse.tracecompass.internal.ctf.core.trace.NullPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPrefetcher;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPrefetcher.IEventDecoder;
 
 /**
  * A CTF trace event reader. Reads the events of a trace file.
@@ -46,6 +50,12 @@ public class CTFStreamInputReader implements AutoCloseable {
 
     private static final int BITS_PER_BYTE = Byte.SIZE;
 
+    /**
+     * Number of events to read sequentially before handing the decoding over
+     * to a decoding thread. Random accesses then stay on the caller's thread.
+     */
+    private static final int PREFETCH_THRESHOLD = 1024;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -60,7 +70,8 @@ public class CTFStreamInputReader implements AutoCloseable {
     private final @Nullable FileChannel fFileChannel;
 
     /**
-     * The packet reader used to read packets from this trace file.
+     * The packet reader used to read packets from this trace file. It belongs
+     * to the decoding thread while prefetching.
      */
     private IPacketReader fPacketReader;
 
@@ -82,6 +93,46 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     private boolean fLive = false;
 
+    /**
+     * Whether the events can be decoded ahead by a decoding thread
+     */
+    private boolean fPrefetch = false;
+
+    /**
+     * The prefetcher decoding the events, if it is running
+     */
+    private @Nullable StreamInputPrefetcher fPrefetcher = null;
+
+    /**
+     * The decoding of the events by the prefetcher
+     */
+    private final IEventDecoder fDecoder = new IEventDecoder() {
+        @Override
+        public @Nullable IEventDefinition decode() throws CTFException {
+            return decodeNextEvent();
+        }
+
+        @Override
+        public IPacketReader getPacketReader() {
+            return fPacketReader;
+        }
+    };
+
+    /**
+     * Number of events read sequentially since the last seek
+     */
+    private int fSequentialReads = 0;
+
+    /**
+     * Timestamp of the last event skipped by {@link #skipNextEvent()}
+     */
+    private long fSkippedTimestamp = 0;
+
+    /**
+     * The names of the event types whose content is wanted, null for all
+     */
+    private volatile @Nullable Set<String> fEventTypes = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -140,7 +191,9 @@ public class CTFStreamInputReader implements AutoCloseable {
             bitBuffer.position(packet.getPayloadStartBits());
             IDeclaration eventHeaderDeclaration = getStreamInput().getStream().getEventHeaderDeclaration();
             CTFTrace trace = getStreamInput().getStream().getTrace();
-            ctfPacketReader = new CTFPacketReader(bitBuffer, packet, getEventDeclarations(), eventHeaderDeclaration, getStreamEventContextDecl(), trace.getPacketHeaderDef(), trace);
+            CTFPacketReader packetReader = new CTFPacketReader(bitBuffer, packet, getEventDeclarations(), eventHeaderDeclaration, getStreamEventContextDecl(), trace.getPacketHeaderDef(), trace);
+            packetReader.setEventTypes(fEventTypes);
+            ctfPacketReader = packetReader;
         }
         return ctfPacketReader;
     }
@@ -180,6 +233,7 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     @Override
     public void close() throws IOException {
+        stopPrefetching();
         if (fFileChannel != null) {
             fFileChannel.close();
         }
@@ -227,7 +281,7 @@ public class CTFStreamInputReader implements AutoCloseable {
      * @return The CPU id (a number)
      */
     public int getCPU() {
-        return fPacketReader.getCPU();
+        return getCurrentPacketReader().getCPU();
     }
 
     /**
@@ -275,6 +329,51 @@ public class CTFStreamInputReader implements AutoCloseable {
         return fLive;
     }
 
+    /**
+     * Set whether the events of this stream can be decoded ahead of time by a
+     * decoding thread. Once enough events are read sequentially, the decoding
+     * is handed over to the thread and {@link #readNextEvent()} only takes the
+     * already decoded events. Seeking brings the decoding back on the
+     * caller's thread.
+     * <p>
+     * While prefetching, the current packet reader is the one of the current
+     * event, which the decoding thread may still be reading from.
+     *
+     * @param prefetch
+     *            whether the events can be decoded ahead of time
+     * @since 2.1
+     */
+    public void setPrefetch(boolean prefetch) {
+        fPrefetch = prefetch;
+        if (!prefetch) {
+            stopPrefetching();
+        }
+    }
+
+    /**
+     * Set the names of the event types whose content is wanted. The events of
+     * the other types are read without their stream event context, context
+     * and fields, when their layout allows it. Only the events decoded after
+     * this call are affected: while prefetching, the events already decoded
+     * by the decoding thread and the other events of the packet it is reading
+     * keep the content they were decoded with, so a caller widening the set
+     * should seek again.
+     *
+     * @param eventTypes
+     *            the names of the wanted event types, or null for all the event
+     *            types
+     * @since 2.1
+     */
+    public void setEventTypes(@Nullable Set<String> eventTypes) {
+        if (Objects.equals(fEventTypes, eventTypes)) {
+            return;
+        }
+        fEventTypes = eventTypes;
+        if (fPrefetcher == null && fPacketReader instanceof CTFPacketReader) {
+            ((CTFPacketReader) fPacketReader).setEventTypes(eventTypes);
+        }
+    }
+
     /**
      * Get the event context of the stream
      *
@@ -295,7 +394,76 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             if an error occurs
      */
     public CTFResponse readNextEvent() throws CTFException {
+        StreamInputPrefetcher prefetcher = fPrefetcher;
+        if (prefetcher != null) {
+            IEventDefinition event = prefetcher.next();
+            if (event != null) {
+                setCurrentEvent(event);
+                return CTFResponse.OK;
+            }
+            /*
+             * The decoder stopped right after the last event, so the
+             * synchronous path can take over from there, which also handles
+             * packets appended since (live reading).
+             */
+            stopPrefetching();
+        }
+        IEventDefinition event = decodeNextEvent();
+        setCurrentEvent(event);
+        if (event == null) {
+            return fLive ? CTFResponse.WAIT : CTFResponse.FINISH;
+        }
+        if (fPrefetch && ++fSequentialReads >= PREFETCH_THRESHOLD) {
+            fPrefetcher = new StreamInputPrefetcher(fDecoder);
+        }
+        return CTFResponse.OK;
+    }
 
+    /**
+     * Skips the next event, only reading what is needed to get its timestamp,
+     * see {@link IPacketReader#skipNextEvent()}. This is meant to scan the
+     * timestamps of a stream with a reader used only for that: the current
+     * event is not updated.
+     *
+     * @return If an event has been skipped. Its timestamp is then given by
+     *         {@link #getSkippedTimestamp()}.
+     * @throws CTFException
+     *             if an error occurs
+     * @since 2.1
+     */
+    public CTFResponse skipNextEvent() throws CTFException {
+        stopPrefetching();
+        if (!fPacketReader.hasMoreEvents()) {
+            final ICTFPacketDescriptor prevPacket = fPacketReader.getCurrentPacket();
+            if (prevPacket != null || fLive) {
+                goToNextPacket();
+            }
+        }
+        if (!fPacketReader.hasMoreEvents()) {
+            return fLive ? CTFResponse.WAIT : CTFResponse.FINISH;
+        }
+        fSkippedTimestamp = fPacketReader.skipNextEvent();
+        return CTFResponse.OK;
+    }
+
+    /**
+     * Gets the timestamp of the last event skipped by {@link #skipNextEvent()}
+     *
+     * @return the timestamp, in cycles
+     * @since 2.1
+     */
+    public long getSkippedTimestamp() {
+        return fSkippedTimestamp;
+    }
+
+    /**
+     * Decodes the next event of the stream, changing packet if needed.
+     *
+     * @return the decoded event, or null if there are no more events for now
+     * @throws CTFException
+     *             if an error occurs
+     */
+    private @Nullable IEventDefinition decodeNextEvent() throws CTFException {
         /*
          * Change packet if needed
          */
@@ -311,11 +479,22 @@ public class CTFStreamInputReader implements AutoCloseable {
          * If an event is available, read it.
          */
         if (fPacketReader.hasMoreEvents()) {
-            setCurrentEvent(fPacketReader.readNextEvent());
-            return CTFResponse.OK;
+            return fPacketReader.readNextEvent();
         }
-        this.setCurrentEvent(null);
-        return fLive ? CTFResponse.WAIT : CTFResponse.FINISH;
+        return null;
+    }
+
+    /**
+     * Stop the decoding thread, if any. The packet reader is then positioned
+     * after the last decoded event.
+     */
+    private void stopPrefetching() {
+        StreamInputPrefetcher prefetcher = fPrefetcher;
+        if (prefetcher != null) {
+            prefetcher.cancel();
+            fPrefetcher = null;
+        }
+        fSequentialReads = 0;
     }
 
     /**
@@ -362,6 +541,7 @@ public class CTFStreamInputReader implements AutoCloseable {
     public long seek(long timestamp) throws CTFException {
         long offset = 0;
 
+        stopPrefetching();
         gotoPacket(timestamp);
 
         /*
@@ -389,14 +569,16 @@ public class CTFStreamInputReader implements AutoCloseable {
          *
          * - found the first event with a timestamp greater or equal the given
          * timestamp.
+         *
+         * The events are decoded directly, a long seek must not start the
+         * decoding thread.
          */
-        readNextEvent();
-        IEventDefinition currentEvent = getCurrentEvent();
+        IEventDefinition currentEvent = decodeNextEvent();
         while (currentEvent != null && (currentEvent.getTimestamp() < timestamp)) {
-            readNextEvent();
-            currentEvent = getCurrentEvent();
+            currentEvent = decodeNextEvent();
             offset++;
         }
+        setCurrentEvent(currentEvent);
         return offset;
     }
 
@@ -503,12 +685,18 @@ public class CTFStreamInputReader implements AutoCloseable {
     }
 
     /**
-     * Get the current packet reader
+     * Get the current packet reader, the one of the current event. While
+     * prefetching, the decoding thread may still be reading events from it,
+     * so only its packet should be looked at.
      *
      * @return the packetReader
      * @since 2.0
      */
     public IPacketReader getCurrentPacketReader() {
+        StreamInputPrefetcher prefetcher = fPrefetcher;
+        if (prefetcher != null) {
+            return prefetcher.getPacketReader();
+        }
         return fPacketReader;
     }
 
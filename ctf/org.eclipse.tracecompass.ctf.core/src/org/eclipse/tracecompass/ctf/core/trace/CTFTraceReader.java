@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
@@ -81,6 +82,16 @@ public class CTFTraceReader implements AutoCloseable {
      */
     private boolean fClosed = false;
 
+    /**
+     * Whether the streams are decoded in parallel, ahead of the merge
+     */
+    private final boolean fParallelDecoding;
+
+    /**
+     * The names of the event types whose content is wanted, null for all
+     */
+    private @Nullable Set<String> fEventTypes = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -94,7 +105,30 @@ public class CTFTraceReader implements AutoCloseable {
      *             if an error occurs
      */
     public CTFTraceReader(CTFTrace trace) throws CTFException {
+        this(trace, false);
+    }
+
+    /**
+     * Constructs a TraceReader to read a trace, optionally decoding its
+     * streams in parallel.
+     * <p>
+     * In parallel mode, each stream that is read sequentially is decoded
+     * ahead of time, in batches, by a pool of decoding threads. The
+     * timestamp-ordered merge done by {@link #advance()} then only consumes
+     * already decoded events. Seeks are still done synchronously, so random
+     * accesses do not waste any decoding.
+     *
+     * @param trace
+     *            The trace to read from.
+     * @param parallelDecoding
+     *            Whether the streams should be decoded in parallel
+     * @throws CTFException
+     *             if an error occurs
+     * @since 2.1
+     */
+    public CTFTraceReader(CTFTrace trace, boolean parallelDecoding) throws CTFException {
         fTrace = trace;
+        fParallelDecoding = parallelDecoding;
         fStreamInputReaders.clear();
 
         /**
@@ -128,7 +162,7 @@ public class CTFTraceReader implements AutoCloseable {
     public CTFTraceReader copyFrom() throws CTFException {
         CTFTraceReader newReader = null;
 
-        newReader = new CTFTraceReader(fTrace);
+        newReader = new CTFTraceReader(fTrace, fParallelDecoding);
         newReader.fStartTime = fStartTime;
         newReader.setEndTime(fEndTime);
         return newReader;
@@ -168,6 +202,50 @@ public class CTFTraceReader implements AutoCloseable {
         return fStartTime;
     }
 
+    /**
+     * Return whether the streams of this reader are decoded in parallel
+     *
+     * @return true if the streams are decoded ahead of the merge by decoding
+     *         threads
+     * @since 2.1
+     */
+    public boolean isParallelDecoding() {
+        return fParallelDecoding;
+    }
+
+    /**
+     * Set the names of the event types whose content is wanted. The events of
+     * the other types are still read, with their timestamp, but their stream
+     * event context, context and fields are skipped without being decoded
+     * when their layout allows it.
+     * <p>
+     * Only the events read after this call are affected.
+     *
+     * @param eventTypes
+     *            the names of the wanted event types, or null for all the event
+     *            types
+     * @since 2.1
+     */
+    public void setEventTypes(@Nullable Set<String> eventTypes) {
+        fEventTypes = eventTypes;
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                reader.setEventTypes(eventTypes);
+            }
+        }
+    }
+
+    /**
+     * Get the names of the event types whose content is wanted
+     *
+     * @return the names of the wanted event types, or null for all the event
+     *         types
+     * @since 2.1
+     */
+    public @Nullable Set<String> getEventTypes() {
+        return fEventTypes;
+    }
+
     /**
      * Set the trace's end time
      *
@@ -212,7 +290,9 @@ public class CTFTraceReader implements AutoCloseable {
                 /*
                  * Create a reader and add it to the group.
                  */
-                fStreamInputReaders.add(new CTFStreamInputReader(checkNotNull(streamInput)));
+                CTFStreamInputReader streamInputReader = new CTFStreamInputReader(checkNotNull(streamInput));
+                streamInputReader.setPrefetch(fParallelDecoding);
+                fStreamInputReaders.add(streamInputReader);
             }
         }
 
@@ -249,6 +329,8 @@ public class CTFTraceReader implements AutoCloseable {
                 try (CTFStreamInputReader streamInputReader = new CTFStreamInputReader(checkNotNull(streamInput))) {
                     if (!fStreamInputReaders.contains(streamInputReader)) {
                         CTFStreamInputReader streamInputReaderToAdd = new CTFStreamInputReader(checkNotNull(streamInput));
+                        streamInputReaderToAdd.setPrefetch(fParallelDecoding);
+                        streamInputReaderToAdd.setEventTypes(fEventTypes);
                         streamInputReaderToAdd.readNextEvent();
                         fStreamInputReaders.add(streamInputReaderToAdd);
                         readers.add(streamInputReaderToAdd);
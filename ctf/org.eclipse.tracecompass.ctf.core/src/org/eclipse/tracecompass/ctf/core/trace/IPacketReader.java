@@ -63,6 +63,19 @@ public interface IPacketReader {
      */
     IEventDefinition readNextEvent() throws CTFException;
 
+    /**
+     * Reads the next event of the packet only to get its timestamp. Packet
+     * readers can skip the parts of the event that are not needed to get it.
+     *
+     * @return The timestamp of the event that was just read, in cycles
+     * @throws CTFException
+     *             If there was a problem reading the trace
+     * @since 2.1
+     */
+    default long skipNextEvent() throws CTFException {
+        return readNextEvent().getTimestamp();
+    }
+
     /**
      * Get the packet being read
      *
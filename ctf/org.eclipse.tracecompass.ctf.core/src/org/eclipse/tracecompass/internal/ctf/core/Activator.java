@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2015 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -15,6 +15,7 @@ package org.eclipse.tracecompass.internal.ctf.core;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Plugin;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPrefetcher;
 import org.osgi.framework.BundleContext;
 
 /**
@@ -82,6 +83,7 @@ public class Activator extends Plugin {
 
     @Override
     public void stop(BundleContext context) throws Exception {
+        StreamInputPrefetcher.dispose();
         setDefault(null);
         super.stop(context);
     }
@@ -33,6 +33,7 @@ import org.eclipse.tracecompass.ctf.core.trace.CTFIOException;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.DeclarationSkipper;
 import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFStream;
 
@@ -76,6 +77,12 @@ public class EventDeclaration implements IEventDeclaration {
 
     private int fId = (int) UNSET_EVENT_ID;
 
+    /**
+     * Whether the context and fields can be skipped without being decoded,
+     * computed on first use
+     */
+    private @Nullable Boolean fSkippable = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -129,6 +136,113 @@ public class EventDeclaration implements IEventDeclaration {
                 packetDescriptor);
     }
 
+    /**
+     * Reads an event to get its timestamp, without creating the definitions of
+     * its context and fields when their layout allows it. The timestamp must
+     * then come from the event header. Otherwise, the event is fully decoded.
+     *
+     * @param streamEventContextDecl
+     *            event context
+     * @param skipStreamEventContext
+     *            whether the stream event context can be skipped, see
+     *            {@link DeclarationSkipper#canSkip}
+     * @param packetDescriptor
+     *            current packet
+     * @param packetContext
+     *            packet context
+     * @param eventHeaderDef
+     *            The event header definition
+     * @param input
+     *            the bitbuffer input source, positioned after the event header
+     * @param prevTimestamp
+     *            The timestamp of the previous event
+     * @return The timestamp of the event. The input is positioned after the
+     *         event.
+     * @throws CTFException
+     *             As a bitbuffer is used to read, it could have wrapped
+     *             IOExceptions.
+     */
+    public long skipDefinition(StructDeclaration streamEventContextDecl, boolean skipStreamEventContext, ICTFPacketDescriptor packetDescriptor, ICompositeDefinition packetContext, ICompositeDefinition eventHeaderDef, @NonNull BitBuffer input, long prevTimestamp)
+            throws CTFException {
+        if (!canSkip(skipStreamEventContext, eventHeaderDef)) {
+            return createDefinition(streamEventContextDecl, packetDescriptor, packetContext, eventHeaderDef, input, prevTimestamp).getTimestamp();
+        }
+        skipContent(streamEventContextDecl, input);
+        return calculateTimestamp(eventHeaderDef, prevTimestamp, null, null);
+    }
+
+    /**
+     * Creates an EventDefinition without its stream event context, context and
+     * fields, for an event whose content is not wanted. The content is skipped
+     * without being decoded when its layout allows it and the event header has
+     * the timestamp. Otherwise, the complete definition is created.
+     *
+     * @param streamEventContextDecl
+     *            event context
+     * @param skipStreamEventContext
+     *            whether the stream event context can be skipped, see
+     *            {@link DeclarationSkipper#canSkip}
+     * @param packetDescriptor
+     *            current packet
+     * @param packetContext
+     *            packet context
+     * @param eventHeaderDef
+     *            The event header definition
+     * @param input
+     *            the bitbuffer input source, positioned after the event header
+     * @param prevTimestamp
+     *            The timestamp of the previous event
+     * @return A new EventDefinition, which may have no content
+     * @throws CTFException
+     *             As a bitbuffer is used to read, it could have wrapped
+     *             IOExceptions.
+     */
+    public EventDefinition createSkippedDefinition(StructDeclaration streamEventContextDecl, boolean skipStreamEventContext, ICTFPacketDescriptor packetDescriptor, ICompositeDefinition packetContext, ICompositeDefinition eventHeaderDef, @NonNull BitBuffer input, long prevTimestamp)
+            throws CTFException {
+        if (!canSkip(skipStreamEventContext, eventHeaderDef)) {
+            return createDefinition(streamEventContextDecl, packetDescriptor, packetContext, eventHeaderDef, input, prevTimestamp);
+        }
+        skipContent(streamEventContextDecl, input);
+        long timestamp = calculateTimestamp(eventHeaderDef, prevTimestamp, null, null);
+        int cpu = (int) packetDescriptor.getTargetId();
+        return new EventDefinition(
+                this,
+                cpu,
+                timestamp,
+                eventHeaderDef,
+                null,
+                null,
+                packetContext,
+                null,
+                packetDescriptor);
+    }
+
+    private boolean canSkip(boolean skipStreamEventContext, ICompositeDefinition eventHeaderDef) {
+        return skipStreamEventContext && isSkippable() && hasTimestamp(eventHeaderDef);
+    }
+
+    private void skipContent(StructDeclaration streamEventContextDecl, @NonNull BitBuffer input) throws CTFException {
+        DeclarationSkipper.skip(streamEventContextDecl, input);
+        DeclarationSkipper.skip(fContext, input);
+        DeclarationSkipper.skip(fFields, input);
+    }
+
+    private boolean isSkippable() {
+        Boolean skippable = fSkippable;
+        if (skippable == null) {
+            skippable = DeclarationSkipper.canSkip(fContext) && DeclarationSkipper.canSkip(fFields);
+            fSkippable = skippable;
+        }
+        return skippable;
+    }
+
+    private static boolean hasTimestamp(@Nullable ICompositeDefinition eventHeaderDef) {
+        if (eventHeaderDef instanceof EventHeaderDefinition) {
+            return true;
+        }
+        return (eventHeaderDef instanceof StructDefinition) && ((StructDefinition) eventHeaderDef).lookupDefinition(CTFStrings.TIMESTAMP) != null;
+    }
+
     private static long calculateTimestamp(@Nullable ICompositeDefinition eventHeaderDef, long prevTimestamp, StructDefinition eventPayload, StructDefinition eventContext) throws CTFIOException {
         long timestamp = 0;
         Definition def = null;
@@ -207,6 +321,7 @@ public class EventDeclaration implements IEventDeclaration {
      */
     public void setContext(StructDeclaration context) {
         fContext = context;
+        fSkippable = null;
     }
 
     /**
@@ -217,6 +332,7 @@ public class EventDeclaration implements IEventDeclaration {
      */
     public void setFields(StructDeclaration fields) {
         fFields = fields;
+        fSkippable = null;
     }
 
     @Override
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.FloatDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+
+/**
+ * Moves a {@link BitBuffer} over a field without creating its definition. This
+ * is only possible when the layout of the field does not depend on the value
+ * of other fields, which means it has no variant or sequence, as the
+ * definition would be needed to resolve them.
+ *
+ * @author Matthew Khouzam
+ */
+public final class DeclarationSkipper {
+
+    private static final int BITS_PER_BYTE = Byte.SIZE;
+
+    private DeclarationSkipper() {}
+
+    /**
+     * Check if a field can be skipped
+     *
+     * @param declaration
+     *            the declaration of the field, can be null for an absent field
+     * @return true if {@link #skip} can be used for this field
+     */
+    public static boolean canSkip(@Nullable IDeclaration declaration) {
+        if (declaration == null) {
+            return true;
+        }
+        if (declaration instanceof IntegerDeclaration || declaration instanceof EnumDeclaration ||
+                declaration instanceof FloatDeclaration || declaration instanceof StringDeclaration) {
+            return true;
+        }
+        if (declaration instanceof ArrayDeclaration) {
+            return canSkip(((ArrayDeclaration) declaration).getElementType());
+        }
+        if (declaration instanceof StructDeclaration) {
+            StructDeclaration struct = (StructDeclaration) declaration;
+            for (String field : struct.getFieldsList()) {
+                if (!canSkip(struct.getField(field))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Move the buffer after a field, following the same alignment and size
+     * rules as the creation of its definition. {@link #canSkip} must be true
+     * for this declaration.
+     *
+     * @param declaration
+     *            the declaration of the field, can be null for an absent field
+     * @param input
+     *            the buffer, positioned at the field
+     * @throws CTFException
+     *             if the field goes out of the buffer
+     */
+    public static void skip(@Nullable IDeclaration declaration, BitBuffer input) throws CTFException {
+        if (declaration == null) {
+            return;
+        }
+        align(declaration, input);
+        if (declaration instanceof IntegerDeclaration) {
+            input.position(input.position() + ((IntegerDeclaration) declaration).getLength());
+        } else if (declaration instanceof EnumDeclaration) {
+            input.position(input.position() + ((EnumDeclaration) declaration).getContainerType().getLength());
+        } else if (declaration instanceof FloatDeclaration) {
+            FloatDeclaration floatDeclaration = (FloatDeclaration) declaration;
+            int length = floatDeclaration.getExponent() + floatDeclaration.getMantissa();
+            /* Other sizes are not read by the float declaration either */
+            if (length == Integer.SIZE || length == Long.SIZE) {
+                input.position(input.position() + length);
+            }
+        } else if (declaration instanceof StringDeclaration) {
+            while (input.get(BITS_PER_BYTE, false) != 0) {
+                /* Read up to the terminating null character */
+            }
+        } else if (declaration instanceof ArrayDeclaration) {
+            ArrayDeclaration array = (ArrayDeclaration) declaration;
+            if (array.isAlignedBytes()) {
+                input.position(input.position() + (long) array.getLength() * BITS_PER_BYTE);
+            } else {
+                for (int i = 0; i < array.getLength(); i++) {
+                    skip(array.getElementType(), input);
+                }
+            }
+        } else if (declaration instanceof StructDeclaration) {
+            StructDeclaration struct = (StructDeclaration) declaration;
+            for (String field : struct.getFieldsList()) {
+                skip(struct.getField(field), input);
+            }
+        } else {
+            throw new IllegalArgumentException("Cannot skip a field of type " + declaration); //$NON-NLS-1$
+        }
+    }
+
+    private static void align(IDeclaration declaration, BitBuffer input) throws CTFException {
+        /* The alignment is a power of 2 */
+        long mask = declaration.getAlignment() - 1;
+        long pos = input.position();
+        if ((pos & mask) != 0) {
+            input.position((pos + mask) & ~mask);
+        }
+    }
+}
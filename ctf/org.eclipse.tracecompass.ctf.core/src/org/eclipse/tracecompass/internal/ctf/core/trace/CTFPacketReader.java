@@ -13,6 +13,7 @@
 package org.eclipse.tracecompass.internal.ctf.core.trace;
 
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -38,6 +39,7 @@ import org.eclipse.tracecompass.ctf.core.trace.IPacketReader;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.event.LostEventDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.DeclarationSkipper;
 import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderDefinition;
 
 /**
@@ -69,12 +71,16 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
 
     private @Nullable final StructDeclaration fStreamContext;
 
+    private final boolean fSkipStreamContext;
+
     private @Nullable final ICompositeDefinition fTracePacketHeader;
 
     private @Nullable final IDefinitionScope fPacketScope;
 
     private @Nullable ICompositeDefinition fEventHeader;
 
+    private volatile @Nullable Set<String> fEventTypes = null;
+
     /**
      * Constructor
      *
@@ -104,9 +110,23 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
         fLastTimestamp = fPacketContext.getTimestampBegin();
         fStreamEventHeaderDecl = eventHeaderDeclaration;
         fStreamContext = streamContext;
+        fSkipStreamContext = DeclarationSkipper.canSkip(streamContext);
         fTracePacketHeader = packetHeader;
     }
 
+    /**
+     * Set the names of the event types whose content is wanted. The events of
+     * other types are read without their stream event context, context and
+     * fields, when their layout allows it.
+     *
+     * @param eventTypes
+     *            the names of the wanted event types, or null for all the event
+     *            types
+     */
+    public void setEventTypes(@Nullable Set<String> eventTypes) {
+        fEventTypes = eventTypes;
+    }
+
     @Override
     public int getCPU() {
         return (int) fPacketContext.getTargetId();
@@ -119,7 +139,6 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
 
     @Override
     public EventDefinition readNextEvent() throws CTFException {
-        int eventID = (int) IEventDeclaration.UNSET_EVENT_ID;
         final long posStart = fInput.position();
         /*
          * Return the Lost Event after all other events in this packet. We need
@@ -130,6 +149,60 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
             return createLostEvent(fPacketContext);
         }
 
+        EventDeclaration declaration = readEventHeader();
+        Set<String> eventTypes = fEventTypes;
+        EventDefinition eventDef;
+        /* Lost events keep their fields, they are needed to build the TMF event */
+        if (eventTypes == null || eventTypes.contains(declaration.getName()) || CTFStrings.LOST_EVENT_NAME.equals(declaration.getName())) {
+            eventDef = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
+        } else {
+            eventDef = declaration.createSkippedDefinition(fStreamContext, fSkipStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
+        }
+        fLastTimestamp = eventDef.getTimestamp();
+        /*
+         * Set the event timestamp using the timestamp calculated by
+         * updateTimestamp.
+         */
+
+        if (posStart == fInput.position()) {
+            throw new CTFIOException("Empty event not allowed, event: " + eventDef.getDeclaration().getName()); //$NON-NLS-1$
+        }
+
+        return eventDef;
+    }
+
+    /**
+     * Reads the next event only to get its timestamp. The stream event
+     * context, the context and the fields of the event are skipped without
+     * being decoded when their layout allows it, so only the event header is
+     * decoded.
+     */
+    @Override
+    public long skipNextEvent() throws CTFException {
+        final long posStart = fInput.position();
+        /* The lost event is at the timestamp of the last event */
+        if (fHasLost && (posStart >= fPacketContext.getContentSizeBits())) {
+            fHasLost = false;
+            return fLastTimestamp;
+        }
+
+        EventDeclaration declaration = readEventHeader();
+        fLastTimestamp = declaration.skipDefinition(fStreamContext, fSkipStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
+        if (posStart == fInput.position()) {
+            throw new CTFIOException("Empty event not allowed, event: " + declaration.getName()); //$NON-NLS-1$
+        }
+        return fLastTimestamp;
+    }
+
+    /**
+     * Reads the event header of the next event
+     *
+     * @return the declaration of the event
+     * @throws CTFException
+     *             if the header cannot be read or the event id is invalid
+     */
+    private EventDeclaration readEventHeader() throws CTFException {
+        int eventID = (int) IEventDeclaration.UNSET_EVENT_ID;
         fEventHeader = null;
         /* Read the stream event header. */
         final IDeclaration streamEventHeaderDecl = fStreamEventHeaderDecl;
@@ -179,19 +252,7 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
         if (!(eventDeclaration instanceof EventDeclaration)) {
             throw new CTFIOException("Incorrect event id : " + eventID); //$NON-NLS-1$
         }
-        EventDeclaration declaration = (EventDeclaration) eventDeclaration;
-        EventDefinition eventDef = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
-        fLastTimestamp = eventDef.getTimestamp();
-        /*
-         * Set the event timestamp using the timestamp calculated by
-         * updateTimestamp.
-         */
-
-        if (posStart == fInput.position()) {
-            throw new CTFIOException("Empty event not allowed, event: " + eventDef.getDeclaration().getName()); //$NON-NLS-1$
-        }
-
-        return eventDef;
+        return (EventDeclaration) eventDeclaration;
     }
 
     private EventDefinition createLostEvent(final ICTFPacketDescriptor currentPacket) {
@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.trace.IPacketReader;
+
+/**
+ * Decodes the events of one stream input ahead of its consumer, in bounded
+ * batches, on a pool of decoding threads shared by all the readers.
+ * <p>
+ * A decoding task never blocks: it decodes one batch, publishes it and
+ * reschedules itself only while there is room for another batch. The consumer
+ * reschedules it when it takes a batch. This way a small pool can serve any
+ * number of streams without one stream starving the others.
+ * <p>
+ * The decoded events waiting to be consumed are also bounded globally, since
+ * every iterator of every trace has its own readers. Past that bound, a stream
+ * is only decoded when its consumer is waiting for events.
+ * <p>
+ * Along with each event, the packet reader that decoded it is kept, since the
+ * packet reader of the decoder is ahead of the consumer.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class StreamInputPrefetcher {
+
+    /**
+     * Decodes the events of a stream, one at a time. It is called from the
+     * decoding threads, but never concurrently.
+     */
+    public interface IEventDecoder {
+        /**
+         * Decode the next event
+         *
+         * @return the next event, or null if the stream has no more events
+         * @throws CTFException
+         *             if an error occurs
+         */
+        @Nullable IEventDefinition decode() throws CTFException;
+
+        /**
+         * Get the packet reader of the last decoded event
+         *
+         * @return the packet reader
+         */
+        IPacketReader getPacketReader();
+    }
+
+    /** Number of events decoded by a task before it gives its thread back */
+    private static final int BATCH_SIZE = 256;
+
+    /** Maximum number of decoded batches waiting to be consumed */
+    private static final int MAX_BATCHES = 4;
+
+    /**
+     * Maximum number of decoded events waiting to be consumed, for all the
+     * streams together
+     */
+    private static final int MAX_BUFFERED_EVENTS = 64 * BATCH_SIZE;
+
+    /**
+     * Number of decoded events waiting to be consumed, for all the streams. A
+     * whole batch is counted as soon as its decoding is scheduled.
+     */
+    private static final AtomicInteger BUFFERED_EVENTS = new AtomicInteger();
+
+    private static final ExecutorService DECODERS = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        private final AtomicInteger fCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nullable Runnable r) {
+            Thread thread = new Thread(r, "CTF Stream Decoder " + fCount.incrementAndGet()); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final IEventDecoder fDecoder;
+
+    private final Object fLock = new Object();
+
+    /* Fields guarded by fLock */
+    private final Deque<Batch> fBatches = new ArrayDeque<>();
+    private @Nullable Future<?> fTask = null;
+    private boolean fFinished = false;
+    private volatile boolean fCancelled = false;
+
+    /* Fields only accessed by the consumer */
+    private @Nullable Batch fCurrentBatch = null;
+    private int fPosition = 0;
+    private IPacketReader fPacketReader;
+
+    private static final class Batch {
+        private final List<IEventDefinition> fEvents;
+        private final List<IPacketReader> fPacketReaders;
+        private final boolean fLast;
+        private final @Nullable Exception fError;
+
+        public Batch(List<IEventDefinition> events, List<IPacketReader> packetReaders, boolean last, @Nullable Exception error) {
+            fEvents = events;
+            fPacketReaders = packetReaders;
+            fLast = last;
+            fError = error;
+        }
+    }
+
+    /**
+     * Constructor, starts decoding right away
+     *
+     * @param decoder
+     *            the decoder of the stream, which must not be used by anyone
+     *            else until this prefetcher is cancelled
+     */
+    public StreamInputPrefetcher(IEventDecoder decoder) {
+        fDecoder = decoder;
+        fPacketReader = decoder.getPacketReader();
+        synchronized (fLock) {
+            schedule(false);
+        }
+    }
+
+    /**
+     * Stop the decoding threads. Prefetchers created afterwards fail to
+     * decode anything.
+     */
+    public static void dispose() {
+        DECODERS.shutdown();
+    }
+
+    /**
+     * Get the next decoded event, waiting for it to be decoded if needed.
+     *
+     * @return the next event, or null if the stream has no more events
+     * @throws CTFException
+     *             if an error occurred while decoding the stream
+     */
+    public @Nullable IEventDefinition next() throws CTFException {
+        while (true) {
+            Batch batch = fCurrentBatch;
+            if (batch != null) {
+                if (fPosition < batch.fEvents.size()) {
+                    fPacketReader = batch.fPacketReaders.get(fPosition);
+                    return batch.fEvents.get(fPosition++);
+                }
+                if (batch.fLast) {
+                    Exception error = batch.fError;
+                    if (error instanceof CTFException) {
+                        throw (CTFException) error;
+                    } else if (error instanceof RuntimeException) {
+                        throw (RuntimeException) error;
+                    }
+                    return null;
+                }
+            }
+            fCurrentBatch = take();
+            fPosition = 0;
+        }
+    }
+
+    /**
+     * Get the packet reader of the last event returned by {@link #next()}, or
+     * the one of the decoder when this prefetcher was created. The decoding
+     * thread may still be reading events with it, so only its packet should
+     * be looked at.
+     *
+     * @return the packet reader of the last event
+     */
+    public IPacketReader getPacketReader() {
+        return fPacketReader;
+    }
+
+    /**
+     * Stop decoding and wait for the running task, if any, to return. The
+     * decoder is then positioned after the last decoded event, which is
+     * usually further than the last event returned by {@link #next()}, so it
+     * should be repositioned before being used again.
+     */
+    public void cancel() {
+        boolean interrupted = false;
+        synchronized (fLock) {
+            fCancelled = true;
+            Future<?> task = fTask;
+            if (task != null && task.cancel(false)) {
+                fTask = null;
+                BUFFERED_EVENTS.addAndGet(-BATCH_SIZE);
+            }
+            while (fTask != null) {
+                try {
+                    fLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            clearBatches();
+        }
+        fCurrentBatch = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Batch take() throws CTFException {
+        synchronized (fLock) {
+            while (fBatches.isEmpty()) {
+                if (fCancelled) {
+                    return new Batch(Collections.emptyList(), Collections.emptyList(), true, null);
+                }
+                schedule(true);
+                try {
+                    fLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CTFException("Interrupted while waiting for decoded events", e); //$NON-NLS-1$
+                }
+            }
+            Batch batch = fBatches.removeFirst();
+            BUFFERED_EVENTS.addAndGet(-batch.fEvents.size());
+            schedule(false);
+            return batch;
+        }
+    }
+
+    /* Must be called while holding fLock */
+    private void clearBatches() {
+        for (Batch batch : fBatches) {
+            BUFFERED_EVENTS.addAndGet(-batch.fEvents.size());
+        }
+        fBatches.clear();
+    }
+
+    /*
+     * Must be called while holding fLock. A stream whose consumer is waiting
+     * is always decoded, so the global bound can only delay the others.
+     */
+    private void schedule(boolean waiting) {
+        if (fTask != null || fFinished || fCancelled) {
+            return;
+        }
+        if (!waiting && (fBatches.size() >= MAX_BATCHES || BUFFERED_EVENTS.get() >= MAX_BUFFERED_EVENTS)) {
+            return;
+        }
+        try {
+            BUFFERED_EVENTS.addAndGet(BATCH_SIZE);
+            fTask = DECODERS.submit(this::decodeBatch);
+        } catch (RejectedExecutionException e) {
+            BUFFERED_EVENTS.addAndGet(-BATCH_SIZE);
+            fFinished = true;
+            fBatches.addLast(new Batch(Collections.emptyList(), Collections.emptyList(), true, new CTFException("The decoding threads are stopped", e))); //$NON-NLS-1$
+            fLock.notifyAll();
+        }
+    }
+
+    private void decodeBatch() {
+        List<IEventDefinition> events = new ArrayList<>(BATCH_SIZE);
+        List<IPacketReader> packetReaders = new ArrayList<>(BATCH_SIZE);
+        boolean last = false;
+        Exception error = null;
+        try {
+            while (events.size() < BATCH_SIZE && !fCancelled) {
+                IEventDefinition event = fDecoder.decode();
+                if (event == null) {
+                    last = true;
+                    break;
+                }
+                events.add(event);
+                packetReaders.add(fDecoder.getPacketReader());
+            }
+        } catch (CTFException | RuntimeException e) {
+            last = true;
+            error = e;
+        }
+        synchronized (fLock) {
+            fTask = null;
+            if (fCancelled) {
+                BUFFERED_EVENTS.addAndGet(-BATCH_SIZE);
+            } else {
+                BUFFERED_EVENTS.addAndGet(events.size() - BATCH_SIZE);
+                fBatches.addLast(new Batch(events, packetReaders, last, error));
+                fFinished = last;
+                schedule(false);
+            }
+            fLock.notifyAll();
+        }
+    }
+}
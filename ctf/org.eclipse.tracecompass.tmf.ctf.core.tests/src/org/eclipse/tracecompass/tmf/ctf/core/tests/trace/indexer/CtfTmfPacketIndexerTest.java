@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.tests.trace.indexer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.tracecompass.ctf.core.tests.shared.LttngTraceGenerator;
+import org.eclipse.tracecompass.tmf.core.event.ITmfLostEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpointIndex;
+import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEvent;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that the default indexer of CTF traces, which scans the event
+ * timestamps of the streams, builds the same index as reading the trace
+ * events. The trace has several streams and lost events.
+ *
+ * @author Matthew Khouzam
+ */
+public class CtfTmfPacketIndexerTest {
+
+    private static final String TRACE_NAME = "packetIndexerTrace";
+    private static final String TRACE_DIRECTORY = TmfTraceManager.getTemporaryDirPath() + File.separator + "packetIndexerTest";
+    private static final String TRACE_PATH = TRACE_DIRECTORY + File.separator + TRACE_NAME;
+    private static final int NB_CHANNELS = 4;
+    private static final long NB_EVENTS = 100000;
+    private static final long DURATION = 2L * Integer.MAX_VALUE - 100;
+    /* Check every location, including those of events at the same timestamp */
+    private static final int INTERVAL = 1;
+
+    private CtfTmfTrace fTrace;
+
+    /**
+     * Test indexer to give access to checkpoints
+     */
+    private static class TestIndexer extends TmfBTreeTraceIndexer {
+
+        public TestIndexer(CtfTmfTrace trace, int interval) {
+            super(trace, interval);
+        }
+
+        public ITmfCheckpointIndex getCheckpoints() {
+            return getTraceIndex();
+        }
+    }
+
+    /**
+     * Trace with a small checkpoint interval, indexed by the default indexer
+     */
+    private static class SmallIntervalTrace extends CtfTmfTrace {
+        @Override
+        protected void setCacheSize() {
+            setCacheSize(INTERVAL);
+        }
+    }
+
+    /**
+     * Trace indexed by reading its events, or whose index is restored from
+     * the supplementary files
+     */
+    private static class TestTrace extends SmallIntervalTrace {
+        @Override
+        protected ITmfTraceIndexer createIndexer(int interval) {
+            return new TestIndexer(this, interval);
+        }
+
+        @Override
+        public TestIndexer getIndexer() {
+            return (TestIndexer) super.getIndexer();
+        }
+    }
+
+    /**
+     * Generate the trace
+     */
+    @Before
+    public void setUp() {
+        new File(TRACE_DIRECTORY).mkdirs();
+        new LttngTraceGenerator(DURATION, NB_EVENTS, NB_CHANNELS).writeTrace(new File(TRACE_PATH));
+        deleteSupplementaryFiles();
+    }
+
+    /**
+     * Dispose the trace and delete the generated files
+     */
+    @After
+    public void tearDown() {
+        if (fTrace != null) {
+            fTrace.dispose();
+        }
+        deleteSupplementaryFiles();
+        deleteDirectory(new File(TRACE_PATH));
+        new File(TRACE_DIRECTORY).delete();
+    }
+
+    private static void deleteSupplementaryFiles() {
+        deleteDirectory(new File(TmfTraceManager.getTemporaryDirPath() + File.separator + TRACE_NAME));
+    }
+
+    private static void deleteDirectory(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private CtfTmfTrace openTrace(CtfTmfTrace trace) throws TmfTraceException {
+        trace.initTrace(null, TRACE_PATH, CtfTmfEvent.class);
+        fTrace = trace;
+        trace.indexTrace(true);
+        return trace;
+    }
+
+    private void closeTrace() {
+        fTrace.dispose();
+        fTrace = null;
+    }
+
+    /**
+     * Test the checkpoints, number of events and time range of the scan
+     * against those of the indexing by reading the events
+     *
+     * @throws TmfTraceException
+     *             If the trace cannot be opened
+     */
+    @Test
+    public void testSameIndex() throws TmfTraceException {
+        /* Index by reading the events, and check the trace */
+        TestTrace reference = (TestTrace) openTrace(new TestTrace());
+        assertTrue(reference.getIndexer().getCheckpoints().isCreatedFromScratch());
+        List<ITmfCheckpoint> expected = new ArrayList<>();
+        ITmfCheckpointIndex index = reference.getIndexer().getCheckpoints();
+        for (int i = 0; i < index.size(); i++) {
+            expected.add(index.get(i));
+        }
+        long nbEvents = reference.getNbEvents();
+        TmfTimeRange timeRange = reference.getTimeRange();
+        assertTrue("checkpoints", expected.size() > 1);
+        checkStreamsAndLostEvents(reference);
+        closeTrace();
+        deleteSupplementaryFiles();
+
+        /* Index with the scan */
+        CtfTmfTrace trace = openTrace(new SmallIntervalTrace());
+        assertEquals("getNbEvents", nbEvents, trace.getNbEvents());
+        assertEquals("getTimeRange", timeRange, trace.getTimeRange());
+        closeTrace();
+
+        /* Restore the index of the scan to look at its checkpoints */
+        TestTrace restored = (TestTrace) openTrace(new TestTrace());
+        index = restored.getIndexer().getCheckpoints();
+        assertFalse(index.isCreatedFromScratch());
+        assertEquals("getNbEvents", nbEvents, index.getNbEvents());
+        assertEquals("getTimeRange", timeRange, index.getTimeRange());
+        assertEquals("size", expected.size(), index.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ITmfCheckpoint checkpoint = index.get(i);
+            assertEquals("getCheckpointRank", expected.get(i).getCheckpointRank(), checkpoint.getCheckpointRank());
+            assertEquals("getLocation", expected.get(i).getLocation(), checkpoint.getLocation());
+            assertEquals("getTimestamp", expected.get(i).getTimestamp(), checkpoint.getTimestamp());
+        }
+    }
+
+    private static void checkStreamsAndLostEvents(CtfTmfTrace trace) {
+        Set<String> channels = new HashSet<>();
+        long nbLostEvents = 0;
+        ITmfContext context = trace.seekEvent(0);
+        CtfTmfEvent event = trace.getNext(context);
+        while (event != null) {
+            channels.add(event.getChannel());
+            if (event instanceof ITmfLostEvent) {
+                nbLostEvents++;
+            }
+            event = trace.getNext(context);
+        }
+        context.dispose();
+        assertEquals("streams", NB_CHANNELS, channels.size());
+        assertTrue("lost events", nbLostEvents > 0);
+    }
+}
@@ -16,8 +16,10 @@ package org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.util.Objects;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
@@ -37,6 +39,9 @@ import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
  * It doesn't reserve a file handle, so many iterators can be used without
  * worries of I/O errors or resource exhaustion.
  *
+ * The streams are decoded in parallel once they are read sequentially, so
+ * long requests are not bound by the decoding speed of a single thread.
+ *
  * @author Matthew Khouzam
  */
 public class CtfIterator extends CTFTraceReader
@@ -72,7 +77,7 @@ public class CtfIterator extends CTFTraceReader
      *             a read error.
      */
     public CtfIterator(CTFTrace ctfTrace, @NonNull CtfTmfTrace ctfTmfTrace) throws CTFException {
-        super(ctfTrace);
+        super(ctfTrace, true);
         fTrace = ctfTmfTrace;
         if (hasMoreEvents()) {
             fCurLocation = new CtfLocation(ctfTmfTrace.getStartTime());
@@ -101,7 +106,7 @@ public class CtfIterator extends CTFTraceReader
      */
     public CtfIterator(CTFTrace ctfTrace, @NonNull CtfTmfTrace ctfTmfTrace, CtfLocationInfo ctfLocationData, long rank)
             throws CTFException {
-        super(ctfTrace);
+        super(ctfTrace, true);
 
         this.fTrace = ctfTmfTrace;
         if (this.hasMoreEvents()) {
@@ -242,6 +247,35 @@ public class CtfIterator extends CTFTraceReader
     // CTFTraceReader
     // ------------------------------------------------------------------------
 
+    /**
+     * Set the names of the event types whose content is wanted. When the set
+     * is widened, the iterator reads its current events again, since they may
+     * have been read without the content now wanted.
+     *
+     * @param eventTypes
+     *            the names of the wanted event types, or null for all the event
+     *            types
+     */
+    @Override
+    public synchronized void setEventTypes(@Nullable Set<String> eventTypes) {
+        Set<String> previous = getEventTypes();
+        if (Objects.equals(previous, eventTypes)) {
+            return;
+        }
+        super.setEventTypes(eventTypes);
+        if (previous != null && (eventTypes == null || !previous.containsAll(eventTypes))) {
+            CtfLocation location = fCurLocation;
+            long rank = fCurRank;
+            if (!location.equals(NULL_LOCATION)) {
+                /* Make sure the seek is not skipped as being at the current location */
+                fCurLocation = NULL_LOCATION;
+                fPreviousLocation = null;
+                seek(location.getLocationInfo());
+                fCurRank = rank;
+            }
+        }
+    }
+
     @Override
     public boolean seek(long timestamp) {
         return seek(new CtfLocationInfo(timestamp, 0));
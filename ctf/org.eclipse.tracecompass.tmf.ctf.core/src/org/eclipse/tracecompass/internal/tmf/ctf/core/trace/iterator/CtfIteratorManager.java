@@ -111,6 +111,7 @@ public class CtfIteratorManager {
                      */
                     iter = replaceRandomElement(context);
                 }
+                iter.setEventTypes(context.getEventTypes());
                 if (context.getLocation() != null) {
                     final CtfLocationInfo location = (CtfLocationInfo) context.getLocation().getLocationInfo();
                     iter.seek(location);
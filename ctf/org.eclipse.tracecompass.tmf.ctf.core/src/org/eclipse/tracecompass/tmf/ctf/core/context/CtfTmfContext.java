@@ -13,6 +13,9 @@
 
 package org.eclipse.tracecompass.tmf.ctf.core.context;
 
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -36,6 +39,8 @@ public class CtfTmfContext implements ITmfContext {
 
     private final CtfTmfTrace fTrace;
 
+    private @Nullable Set<String> fEventTypes = null;
+
     // -------------------------------------------
     // Constructor
     // -------------------------------------------
@@ -112,6 +117,31 @@ public class CtfTmfContext implements ITmfContext {
         return fTrace;
     }
 
+    /**
+     * Gets the names of the event types whose content is read with this
+     * context.
+     *
+     * @return the names of the event types, or null for all the event types
+     * @since 2.1
+     */
+    public synchronized @Nullable Set<String> getEventTypes() {
+        return fEventTypes;
+    }
+
+    /**
+     * Sets the names of the event types whose content is read with this
+     * context. The events of the other types are read with only their
+     * timestamp, type and CPU, when the layout of the trace allows it.
+     *
+     * @param eventTypes
+     *            the names of the event types, or null for all the event types
+     * @since 2.1
+     */
+    public synchronized void setEventTypes(@Nullable Set<String> eventTypes) {
+        fEventTypes = eventTypes;
+        getIterator().setEventTypes(eventTypes);
+    }
+
     /**
      * Gets the current event. Wrapper to help CtfTmfTrace
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2015 Ericsson
+ * Copyright (c) 2011, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -146,6 +146,51 @@ public class CtfTmfEvent extends TmfEvent
         fPacketAttributes = eventDefinition.getPacketAttributes();
     }
 
+    /**
+     * Constructor with the timestamp in nanoseconds, used by
+     * {@link CtfTmfEventFactory#createEvent}. The timestamp object is only
+     * created when it is asked for.
+     *
+     * @param trace
+     *            The trace to which this event belongs
+     * @param rank
+     *            The rank of the event
+     * @param timestampNanos
+     *            The timestamp, in nanoseconds
+     * @param channel
+     *            The CTF channel of this event
+     * @param cpu
+     *            The event's CPU
+     * @param declaration
+     *            The event declaration
+     * @param eventDefinition
+     *            The event definition
+     * @since 2.1
+     */
+    protected CtfTmfEvent(CtfTmfTrace trace,
+            long rank,
+            long timestampNanos,
+            String channel,
+            int cpu,
+            IEventDeclaration declaration,
+            IEventDefinition eventDefinition) {
+        super(trace,
+                rank,
+                timestampNanos,
+                /* Re-implemented in getType() */
+                null,
+                /* Re-implemented in getContent() */
+                null);
+
+        fEventDeclaration = declaration;
+        fSourceCpu = cpu;
+        fEventName = checkNotNull(declaration.getName());
+        fEvent = eventDefinition;
+        fChannel = channel;
+        fStream = fEvent.getDeclaration().getStream();
+        fPacketAttributes = eventDefinition.getPacketAttributes();
+    }
+
     /**
      * Inner constructor to create "null" events. Don't use this directly in
      * normal usage, use {@link CtfTmfEventFactory#getNullEvent(CtfTmfTrace)} to
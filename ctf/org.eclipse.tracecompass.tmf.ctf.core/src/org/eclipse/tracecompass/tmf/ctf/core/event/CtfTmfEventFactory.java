@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2015 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -81,7 +81,6 @@ public class CtfTmfEventFactory {
         /* Prepare what to pass to CtfTmfEvent's constructor */
         final IEventDeclaration eventDecl = eventDef.getDeclaration();
         final long ts = eventDef.getTimestamp();
-        final ITmfTimestamp timestamp = trace.createTimestamp(trace.timestampCyclesToNanos(ts));
 
         int sourceCPU = eventDef.getCPU();
 
@@ -89,13 +88,17 @@ public class CtfTmfEventFactory {
 
         /* Handle the special case of lost events */
         if (eventDecl.getName().equals(CTFStrings.LOST_EVENT_NAME)) {
+            final ITmfTimestamp timestamp = trace.createTimestamp(trace.timestampCyclesToNanos(ts));
             return createLostEvent(trace, eventDef, eventDecl, ts, timestamp, sourceCPU, reference);
         }
 
-        /* Handle standard event types */
+        /*
+         * Handle standard event types. The timestamp object is only created if
+         * it is asked for, like trace.createTimestamp() would.
+         */
         return new CtfTmfEvent(trace,
                 ITmfContext.UNKNOWN_RANK,
-                timestamp,
+                trace.getTimestampTransform().transform(trace.timestampCyclesToNanos(ts)),
                 reference, // filename
                 sourceCPU,
                 eventDecl,
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.trace;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.trace.CTFResponse;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInput;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
+import org.eclipse.tracecompass.internal.tmf.core.Messages;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceUpdatedSignal;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.ctf.core.context.CtfLocation;
+
+/**
+ * Indexer of CTF traces that scans the event timestamps of the streams instead
+ * of reading the trace events with a request.
+ * <p>
+ * CTF packets do not record how many events they contain, so the event headers
+ * still have to be read to get exact ranks. The contexts and payloads of the
+ * events are skipped without being decoded when their layout allows it, and no
+ * trace event is created. The timestamps of the streams are merged in the same
+ * order as the trace reader to compute the rank and location of each
+ * checkpoint.
+ * <p>
+ * Only the initial indexing of a complete trace is done this way. An index
+ * restored from disk, the indexing of live traces and the updates of the index
+ * are left to the checkpoint indexer.
+ *
+ * @author Matthew Khouzam
+ */
+class CtfTmfPacketIndexer extends TmfBTreeTraceIndexer {
+
+    /** Number of checkpoints between two updates of the trace range */
+    private static final int UPDATE_PERIOD = 100;
+
+    private final CtfTmfTrace fCtfTrace;
+    private final int fInterval;
+
+    private volatile @Nullable Job fScanJob = null;
+    private boolean fScanned = false;
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            the trace to index
+     * @param interval
+     *            the checkpoints interval
+     */
+    public CtfTmfPacketIndexer(CtfTmfTrace trace, int interval) {
+        super(trace, interval);
+        fCtfTrace = trace;
+        fInterval = interval;
+    }
+
+    @Override
+    public void dispose() {
+        Job job = fScanJob;
+        if (job != null) {
+            job.cancel();
+            try {
+                job.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        super.dispose();
+    }
+
+    @Override
+    public boolean isIndexing() {
+        return fScanJob != null || super.isIndexing();
+    }
+
+    @Override
+    public void buildIndex(long offset, TmfTimeRange range, boolean waitForCompletion) {
+        CTFTrace ctfTrace = fCtfTrace.getCTFTrace();
+        Job job;
+        synchronized (fTraceIndex) {
+            if (fScanJob != null) {
+                return;
+            }
+            if (fScanned || offset != 0 || ctfTrace == null || !fTraceIndex.isCreatedFromScratch() || !fCtfTrace.isComplete()) {
+                job = null;
+            } else {
+                fScanned = true;
+                job = new Job(Messages.TmfCheckpointIndexer_Indexing + ' ' + fTrace.getName()) {
+                    @Override
+                    protected IStatus run(IProgressMonitor monitor) {
+                        try {
+                            scan(ctfTrace, monitor);
+                        } catch (CTFException e) {
+                            /* The checkpoint indexer reads the rest of the trace */
+                            Activator.getDefault().logWarning("Cannot scan the timestamps of " + fTrace.getName(), e); //$NON-NLS-1$
+                            CtfTmfPacketIndexer.super.buildIndex(0, TmfTimeRange.ETERNITY, false);
+                        } finally {
+                            fScanJob = null;
+                        }
+                        return Status.OK_STATUS;
+                    }
+                };
+                fScanJob = job;
+            }
+        }
+        if (job == null) {
+            super.buildIndex(offset, range, waitForCompletion);
+            return;
+        }
+        job.schedule();
+        if (waitForCompletion) {
+            try {
+                job.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Merge the event timestamps of the streams, and insert a checkpoint every
+     * interval events.
+     */
+    private void scan(CTFTrace ctfTrace, IProgressMonitor monitor) throws CTFException {
+        List<CTFStreamInputReader> readers = new ArrayList<>();
+        try {
+            PriorityQueue<CTFStreamInputReader> queue = new PriorityQueue<>(Comparator.comparingLong(CTFStreamInputReader::getSkippedTimestamp));
+            for (ICTFStream stream : ctfTrace.getStreams()) {
+                for (CTFStreamInput streamInput : stream.getStreamInputs()) {
+                    CTFStreamInputReader reader = new CTFStreamInputReader(streamInput);
+                    readers.add(reader);
+                    if (reader.skipNextEvent() == CTFResponse.OK) {
+                        queue.add(reader);
+                    }
+                }
+            }
+
+            long rank = 0;
+            long startTime = 0;
+            long endTime = 0;
+            long sameTimestampIndex = 0;
+            CTFStreamInputReader top = queue.poll();
+            while (top != null) {
+                if (monitor.isCanceled()) {
+                    return;
+                }
+                long timestamp = ctfTrace.timestampCyclesToNanos(top.getSkippedTimestamp());
+                if (rank == 0) {
+                    startTime = timestamp;
+                } else if (timestamp == endTime) {
+                    /* Same location index as the iterator, see CtfIterator#advance */
+                    sameTimestampIndex++;
+                } else {
+                    sameTimestampIndex = 0;
+                }
+                /* The merged timestamps are in increasing order */
+                endTime = timestamp;
+                if (rank % fInterval == 0) {
+                    insertCheckpoint(timestamp, sameTimestampIndex, rank / fInterval);
+                    if ((rank / fInterval) % UPDATE_PERIOD == 0) {
+                        signalTraceUpdated(startTime, endTime, rank + 1);
+                    }
+                }
+                rank++;
+                if (top.skipNextEvent() == CTFResponse.OK) {
+                    queue.add(top);
+                }
+                top = queue.poll();
+            }
+
+            if (rank > 0) {
+                signalTraceUpdated(startTime, endTime, rank);
+                fTraceIndex.setTimeRange(new TmfTimeRange(fTrace.createTimestamp(startTime), fTrace.createTimestamp(endTime)));
+                fTraceIndex.setNbEvents(rank);
+            }
+        } finally {
+            for (CTFStreamInputReader reader : readers) {
+                try {
+                    reader.close();
+                } catch (Exception e) {
+                    Activator.getDefault().logWarning(e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private synchronized void insertCheckpoint(long timestamp, long index, long position) {
+        /* Reading the trace may already have inserted it, see updateIndex */
+        if (fTraceIndex.size() == position) {
+            fTraceIndex.insert(new TmfCheckpoint(fTrace.createTimestamp(timestamp), new CtfLocation(timestamp, index), position));
+        }
+    }
+
+    private void signalTraceUpdated(long startTime, long endTime, long nbEvents) {
+        TmfTimeRange range = new TmfTimeRange(fTrace.createTimestamp(startTime), fTrace.createTimestamp(endTime));
+        fTrace.broadcast(new TmfTraceUpdatedSignal(this, fTrace, range, nbEvents));
+    }
+}
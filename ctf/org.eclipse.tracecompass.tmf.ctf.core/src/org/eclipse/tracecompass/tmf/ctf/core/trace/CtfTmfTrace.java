@@ -33,6 +33,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.CTFClock;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
@@ -55,6 +56,7 @@ import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.project.model.ITmfPropertiesProvider;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
@@ -64,7 +66,6 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
-import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndexer;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -417,6 +418,22 @@ public class CtfTmfTrace extends TmfTrace
         return context;
     }
 
+    /**
+     * Only the content of the event types of the request is decoded, the
+     * other events are delivered with their timestamp, type and CPU.
+     *
+     * @since 2.1
+     */
+    @Override
+    public synchronized ITmfContext armRequest(final ITmfEventRequest request) {
+        ITmfContext context = super.armRequest(request);
+        Set<String> eventTypes = request.getEventTypes();
+        if (eventTypes != null && context instanceof CtfTmfContext) {
+            ((CtfTmfContext) context).setEventTypes(eventTypes);
+        }
+        return context;
+    }
+
     /**
      * Method readNextEvent.
      *
@@ -677,7 +694,17 @@ public class CtfTmfTrace extends TmfTrace
 
     @Override
     protected ITmfTraceIndexer createIndexer(int interval) {
-        return new TmfBTreeTraceIndexer(this, interval);
+        return new CtfTmfPacketIndexer(this, interval);
+    }
+
+    /**
+     * Get the CTF trace being read
+     *
+     * @return the CTF trace, or null if the trace is not initialized or
+     *         disposed
+     */
+    @Nullable CTFTrace getCTFTrace() {
+        return fTrace;
     }
 
     @Override
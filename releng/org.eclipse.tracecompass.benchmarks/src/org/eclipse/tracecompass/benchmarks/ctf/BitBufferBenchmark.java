@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.benchmarks.ctf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the reads of the {@link BitBuffer}, for the integer sizes
+ * commonly found in the CTF event headers and payloads, aligned on a byte or
+ * not.
+ *
+ * @author Matthew Khouzam
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BitBufferBenchmark {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int NB_READS = 4096;
+
+    /** Length of the integers read, in bits */
+    @Param({ "5", "8", "27", "32", "64" })
+    public int fLength;
+
+    /** Byte order of the buffer */
+    @Param({ "BIG_ENDIAN", "LITTLE_ENDIAN" })
+    public String fByteOrder;
+
+    private BitBuffer fBitBuffer;
+
+    /**
+     * Fill the buffer with random bytes
+     */
+    @Setup
+    public void setup() {
+        byte[] data = new byte[BUFFER_SIZE];
+        new Random(42).nextBytes(data);
+        ByteOrder order = fByteOrder.equals("LITTLE_ENDIAN") ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN; //$NON-NLS-1$
+        fBitBuffer = new BitBuffer(ByteBuffer.wrap(data), order);
+    }
+
+    /**
+     * Read consecutive integers, aligned on a byte when the length is a
+     * multiple of 8
+     *
+     * @return the sum of the values read
+     * @throws CTFException
+     *             if the buffer can't be read
+     */
+    @Benchmark
+    @OperationsPerInvocation(NB_READS)
+    public long readPacked() throws CTFException {
+        BitBuffer bitBuffer = fBitBuffer;
+        bitBuffer.position(0);
+        long sum = 0;
+        for (int i = 0; i < NB_READS; i++) {
+            sum += bitBuffer.get(fLength, false);
+        }
+        return sum;
+    }
+
+    /**
+     * Read integers separated by one bit, so most of them do not start on a
+     * byte boundary
+     *
+     * @return the sum of the values read
+     * @throws CTFException
+     *             if the buffer can't be read
+     */
+    @Benchmark
+    @OperationsPerInvocation(NB_READS)
+    public long readUnaligned() throws CTFException {
+        BitBuffer bitBuffer = fBitBuffer;
+        bitBuffer.position(3);
+        long sum = 0;
+        for (int i = 0; i < NB_READS; i++) {
+            sum += bitBuffer.get(fLength, true);
+            bitBuffer.position(bitBuffer.position() + 1);
+        }
+        return sum;
+    }
+}
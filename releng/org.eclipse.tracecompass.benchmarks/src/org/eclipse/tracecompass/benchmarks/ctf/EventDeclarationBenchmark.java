@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.benchmarks.ctf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of {@link EventDeclaration#createDefinition}, the decoding of the
+ * payload of an event, on a packet of synthetic events shaped like a kernel
+ * scheduling event: a timestamp, a few integers of different sizes, one of
+ * them not aligned on a byte, and a string.
+ *
+ * @author Matthew Khouzam
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EventDeclarationBenchmark {
+
+    private static final int NB_EVENTS = 4096;
+    private static final String[] COMMS = { "swapper/0", "lttng-sessiond", "bash", "kworker/u8:2" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+    private EventDeclaration fDeclaration;
+    private ICTFPacketDescriptor fPacket;
+    private BitBuffer fBitBuffer;
+
+    /**
+     * Create the event declaration and the packet of events
+     */
+    @Setup
+    public void setup() {
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("timestamp", IntegerDeclaration.createDeclaration(64, false, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 8)); //$NON-NLS-1$ //$NON-NLS-2$
+        fields.addField("tid", IntegerDeclaration.createDeclaration(32, true, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 8)); //$NON-NLS-1$ //$NON-NLS-2$
+        fields.addField("prio", IntegerDeclaration.createDeclaration(8, true, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 8)); //$NON-NLS-1$ //$NON-NLS-2$
+        fields.addField("state", IntegerDeclaration.createDeclaration(5, false, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 1)); //$NON-NLS-1$ //$NON-NLS-2$
+        fields.addField("cpu", IntegerDeclaration.createDeclaration(16, false, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 8)); //$NON-NLS-1$ //$NON-NLS-2$
+        fields.addField("comm", StringDeclaration.getStringDeclaration(Encoding.UTF8)); //$NON-NLS-1$
+
+        fDeclaration = new EventDeclaration();
+        fDeclaration.setName("sched_switch"); //$NON-NLS-1$
+        fDeclaration.setId(0);
+        fDeclaration.setFields(fields);
+
+        ByteBuffer buffer = ByteBuffer.allocate(NB_EVENTS * 64);
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        Random random = new Random(42);
+        long timestamp = 1000000000L;
+        for (int i = 0; i < NB_EVENTS; i++) {
+            timestamp += random.nextInt(10000);
+            buffer.putLong(timestamp);
+            buffer.putInt(random.nextInt(32768));
+            buffer.put((byte) (random.nextInt(140) - 20));
+            /* 5 bits of state, then 3 bits of padding before the cpu */
+            buffer.put((byte) (random.nextInt(32) << 3));
+            buffer.putShort((short) random.nextInt(8));
+            buffer.put(COMMS[random.nextInt(COMMS.length)].getBytes(StandardCharsets.UTF_8));
+            buffer.put((byte) 0);
+        }
+        buffer.flip();
+        fBitBuffer = new BitBuffer(buffer);
+        fPacket = new StreamInputPacketIndexEntry(0, buffer.limit());
+    }
+
+    /**
+     * Decode all the events of the packet
+     *
+     * @param blackhole
+     *            the sink of the definitions
+     * @throws CTFException
+     *             if the packet can't be read
+     */
+    @Benchmark
+    @OperationsPerInvocation(NB_EVENTS)
+    public void createDefinition(Blackhole blackhole) throws CTFException {
+        BitBuffer bitBuffer = fBitBuffer;
+        bitBuffer.position(0);
+        for (int i = 0; i < NB_EVENTS; i++) {
+            blackhole.consume(fDeclaration.createDefinition(null, fPacket, null, null, bitBuffer, 0));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.benchmarks.segmentstore;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.treemap.TreeMapStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the queries of the {@link TreeMapStore}, at a time and over a
+ * range, on segments with a random start and duration like the latencies of
+ * system calls.
+ *
+ * @author Matthew Khouzam
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TreeMapStoreBenchmark {
+
+    private static final int NB_QUERIES = 64;
+    private static final long AVERAGE_GAP = 1000;
+    private static final int MAX_DURATION = 100000;
+
+    /** Number of segments in the store */
+    @Param({ "10000", "100000" })
+    public int fNbSegments;
+
+    private TreeMapStore<ISegment> fStore;
+    private final long[] fQueryStarts = new long[NB_QUERIES];
+    private long fRangeWidth;
+
+    /**
+     * Fill the store and pick the times of the queries
+     */
+    @Setup
+    public void setup() {
+        fStore = new TreeMapStore<>();
+        Random random = new Random(42);
+        long start = 0;
+        for (int i = 0; i < fNbSegments; i++) {
+            start += random.nextInt((int) (2 * AVERAGE_GAP));
+            fStore.add(new BasicSegment(start, start + random.nextInt(MAX_DURATION)));
+        }
+        /* The ranges are 1% of the store, like a zoomed-in view */
+        fRangeWidth = start / 100;
+        for (int i = 0; i < NB_QUERIES; i++) {
+            fQueryStarts[i] = (long) (random.nextDouble() * (start - fRangeWidth));
+        }
+    }
+
+    /**
+     * Get the segments intersecting a time
+     *
+     * @return the total length of the segments found
+     */
+    @Benchmark
+    @OperationsPerInvocation(NB_QUERIES)
+    public long getIntersectingElementsAtTime() {
+        long length = 0;
+        for (int i = 0; i < NB_QUERIES; i++) {
+            for (ISegment segment : fStore.getIntersectingElements(fQueryStarts[i])) {
+                length += segment.getLength();
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Get the segments intersecting a time range
+     *
+     * @return the total length of the segments found
+     */
+    @Benchmark
+    @OperationsPerInvocation(NB_QUERIES)
+    public long getIntersectingElementsInRange() {
+        long length = 0;
+        for (int i = 0; i < NB_QUERIES; i++) {
+            long start = fQueryStarts[i];
+            for (ISegment segment : fStore.getIntersectingElements(start, start + fRangeWidth)) {
+                length += segment.getLength();
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.benchmarks.statesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTInterval;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNodeCache;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HT_IO;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.LeafNode;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of the reads of the history tree nodes: the search of an interval
+ * in a node with {@link HTNode#getRelevantInterval}, and the reads of nodes
+ * through {@link HT_IO}, whose cache is either large enough for the whole
+ * file or too small to keep any node.
+ *
+ * @author Matthew Khouzam
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HistoryTreeNodeBenchmark {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_CHILDREN = 50;
+    private static final int NB_NODES = 256;
+    private static final int NB_ATTRIBUTES = 500;
+    private static final int NB_QUERIES = 1024;
+    private static final long NODE_DURATION = 1000000;
+    private static final long HIT_CACHE_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * How the nodes are read: "hit" from a cache holding all the nodes,
+     * "miss" from the file channel and "mapped" from a memory mapping of the
+     * file, with a cache too small to keep the nodes
+     */
+    @Param({ "hit", "miss", "mapped" })
+    public String fCache;
+
+    private File fFile;
+    private HT_IO fWriter;
+    private HT_IO fReader;
+    private HTNode fNode;
+    private final int[] fQueryNodes = new int[NB_QUERIES];
+    private final int[] fQueryQuarks = new int[NB_QUERIES];
+    private final long[] fQueryTimes = new long[NB_QUERIES];
+
+    /**
+     * Write a file of full leaf nodes, each with intervals of all the
+     * attributes, and open it with the cache of the benchmark
+     *
+     * @throws IOException
+     *             if the file can't be written
+     */
+    @Setup
+    public void setup() throws IOException {
+        fFile = File.createTempFile("benchmark", ".ht"); //$NON-NLS-1$ //$NON-NLS-2$
+        HTConfig config = new HTConfig(fFile, BLOCK_SIZE, MAX_CHILDREN, 0, 0);
+        fWriter = new HT_IO(config, true, new HTNodeCache(1, 100));
+        Random random = new Random(42);
+        long lastEnd = 0;
+        for (int seq = 0; seq < NB_NODES; seq++) {
+            long start = seq * NODE_DURATION;
+            HTNode node = new LeafNode(config, seq, -1, start);
+            long end = start;
+            int quark = 0;
+            while (true) {
+                /* The intervals of a node are sorted by end time */
+                end = Math.min(end + random.nextInt(100), start + NODE_DURATION - 1);
+                long intervalStart = Math.max(start, end - random.nextInt(10000));
+                HTInterval interval = new HTInterval(intervalStart, end, quark, TmfStateValue.newValueInt(random.nextInt()));
+                if (interval.getSizeOnDisk() > node.getNodeFreeSpace()) {
+                    break;
+                }
+                node.addInterval(interval);
+                quark = (quark + 1) % NB_ATTRIBUTES;
+            }
+            node.closeThisNode(start + NODE_DURATION - 1);
+            fWriter.writeNode(node);
+            fNode = node;
+            lastEnd = end;
+        }
+
+        if (fCache.equals("hit")) { //$NON-NLS-1$
+            fReader = new HT_IO(config, false, new HTNodeCache(HIT_CACHE_SIZE, 100));
+            for (int seq = 0; seq < NB_NODES; seq++) {
+                fReader.readNode(seq);
+            }
+        } else {
+            fReader = new HT_IO(config, false, new HTNodeCache(1, 100));
+            if (fCache.equals("mapped")) { //$NON-NLS-1$
+                fReader.enableMappedReads(NB_NODES);
+            }
+        }
+
+        /* Query the times of the last node that are covered by intervals */
+        long nodeStart = fNode.getNodeStart();
+        for (int i = 0; i < NB_QUERIES; i++) {
+            fQueryNodes[i] = random.nextInt(NB_NODES);
+            fQueryQuarks[i] = random.nextInt(NB_ATTRIBUTES);
+            fQueryTimes[i] = nodeStart + (long) (random.nextDouble() * (lastEnd - nodeStart));
+        }
+    }
+
+    /**
+     * Close and delete the file
+     */
+    @TearDown
+    public void tearDown() {
+        fReader.closeFile();
+        fWriter.closeFile();
+        fWriter.deleteFile();
+    }
+
+    /**
+     * Look for the interval of an attribute at a time in a node
+     *
+     * @param blackhole
+     *            the sink of the intervals
+     */
+    @Benchmark
+    @OperationsPerInvocation(NB_QUERIES)
+    public void getRelevantInterval(Blackhole blackhole) {
+        HTNode node = fNode;
+        for (int i = 0; i < NB_QUERIES; i++) {
+            blackhole.consume(node.getRelevantInterval(fQueryQuarks[i], fQueryTimes[i]));
+        }
+    }
+
+    /**
+     * Read random nodes of the file
+     *
+     * @param blackhole
+     *            the sink of the nodes
+     * @throws IOException
+     *             if the file was closed
+     */
+    @Benchmark
+    @OperationsPerInvocation(NB_QUERIES)
+    public void readNode(Blackhole blackhole) throws IOException {
+        HT_IO reader = fReader;
+        for (int i = 0; i < NB_QUERIES; i++) {
+            blackhole.consume(reader.readNode(fQueryNodes[i]));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.benchmarks.tmf;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of the merge of the events of the traces of a
+ * {@link TmfExperiment}, reading the whole experiment from its start. The
+ * time per operation is the time to merge one event.
+ *
+ * @author Matthew Khouzam
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ExperimentMergeBenchmark {
+
+    private static final int NB_EVENTS = 100000;
+
+    /** Number of traces in the experiment */
+    @Param({ "2", "8", "32" })
+    public int fNbTraces;
+
+    private TmfExperiment fExperiment;
+
+    /**
+     * Create the experiment, with the same total number of events whatever
+     * the number of traces
+     *
+     * @throws TmfTraceException
+     *             if a trace can't be created
+     */
+    @Setup
+    public void setup() throws TmfTraceException {
+        ITmfTrace[] traces = new ITmfTrace[fNbTraces];
+        for (int i = 0; i < fNbTraces; i++) {
+            traces[i] = new SyntheticTrace("trace" + i, i, NB_EVENTS / fNbTraces, 1000 * fNbTraces); //$NON-NLS-1$
+        }
+        fExperiment = new TmfExperiment(ITmfEvent.class, "experiment", traces, TmfExperiment.DEFAULT_INDEX_PAGE_SIZE, null); //$NON-NLS-1$
+    }
+
+    /**
+     * Dispose the experiment and its traces
+     */
+    @TearDown
+    public void tearDown() {
+        fExperiment.dispose();
+    }
+
+    /**
+     * Read all the events of the experiment in timestamp order
+     *
+     * @param blackhole
+     *            the sink of the events
+     */
+    @Benchmark
+    @OperationsPerInvocation(NB_EVENTS)
+    public void readAll(Blackhole blackhole) {
+        ITmfContext context = fExperiment.seekEvent((ITmfLocation) null);
+        ITmfEvent event = fExperiment.getNext(context);
+        while (event != null) {
+            blackhole.consume(event);
+            event = fExperiment.getNext(context);
+        }
+        context.dispose();
+    }
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.benchmarks.tmf;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfContentFieldAspect;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.TmfCompiledFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the evaluation of an events table filter, as built by the
+ * filter view, on the events of a {@link SyntheticTrace}. The filter tree is
+ * evaluated either as is, or compiled by {@link TmfCompiledFilter}.
+ *
+ * @author Matthew Khouzam
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FilterBenchmark {
+
+    private static final int NB_EVENTS = 10000;
+
+    /** Whether the filter tree is compiled */
+    @Param({ "false", "true" })
+    public boolean fCompiled;
+
+    private SyntheticTrace fTrace;
+    private final ITmfEvent[] fEvents = new ITmfEvent[NB_EVENTS];
+    private ITmfFilter fFilter;
+
+    /**
+     * Create the events and the filter
+     *
+     * @throws TmfTraceException
+     *             if the trace can't be created
+     */
+    @Setup
+    public void setup() throws TmfTraceException {
+        fTrace = new SyntheticTrace("filter", 42, NB_EVENTS, 1000); //$NON-NLS-1$
+        for (int i = 0; i < NB_EVENTS; i++) {
+            fEvents[i] = fTrace.createEvent(i);
+        }
+
+        /* (type == sched_switch && prio > 0 && comm =~ k.*) || tid == 42 */
+        TmfFilterRootNode root = new TmfFilterRootNode();
+        TmfFilterOrNode or = new TmfFilterOrNode(root);
+        TmfFilterAndNode and = new TmfFilterAndNode(or);
+
+        TmfFilterEqualsNode type = new TmfFilterEqualsNode(and);
+        type.setEventAspect(TmfBaseAspects.getEventTypeAspect());
+        type.setValue("sched_switch"); //$NON-NLS-1$
+
+        TmfFilterCompareNode prio = new TmfFilterCompareNode(and);
+        prio.setEventAspect(new TmfContentFieldAspect(SyntheticTrace.PRIO, SyntheticTrace.PRIO));
+        prio.setType(Type.NUM);
+        prio.setResult(1);
+        prio.setValue("0"); //$NON-NLS-1$
+
+        TmfFilterMatchesNode comm = new TmfFilterMatchesNode(and);
+        comm.setEventAspect(new TmfContentFieldAspect(SyntheticTrace.COMM, SyntheticTrace.COMM));
+        comm.setRegex("k.*"); //$NON-NLS-1$
+
+        TmfFilterCompareNode tid = new TmfFilterCompareNode(or);
+        tid.setEventAspect(new TmfContentFieldAspect(SyntheticTrace.TID, SyntheticTrace.TID));
+        tid.setType(Type.NUM);
+        tid.setResult(0);
+        tid.setValue("42"); //$NON-NLS-1$
+
+        fFilter = fCompiled ? TmfCompiledFilter.compile(root) : root;
+    }
+
+    /**
+     * Dispose the trace
+     */
+    @TearDown
+    public void tearDown() {
+        fTrace.dispose();
+    }
+
+    /**
+     * Evaluate the filter on all the events
+     *
+     * @return the number of matching events
+     */
+    @Benchmark
+    @OperationsPerInvocation(NB_EVENTS)
+    public int matches() {
+        ITmfFilter filter = fFilter;
+        int nbMatches = 0;
+        for (ITmfEvent event : fEvents) {
+            if (filter.matches(event)) {
+                nbMatches++;
+            }
+        }
+        return nbMatches;
+    }
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.benchmarks.tmf;
+
+import java.util.Random;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
+
+/**
+ * An in-memory trace of generated events, so the benchmarks do not depend on
+ * trace files. The events look like kernel events: a few event types, with a
+ * thread ID, a priority and a command name in their content. The same seed
+ * always generates the same trace.
+ *
+ * @author Matthew Khouzam
+ */
+public class SyntheticTrace extends TmfTrace {
+
+    /** Name of the thread ID field */
+    public static final String TID = "tid"; //$NON-NLS-1$
+    /** Name of the priority field */
+    public static final String PRIO = "prio"; //$NON-NLS-1$
+    /** Name of the command name field */
+    public static final String COMM = "comm"; //$NON-NLS-1$
+
+    private static final String[] FIELDS = { TID, PRIO, COMM };
+    private static final String[] COMMS = { "swapper/0", "lttng-sessiond", "bash", "kworker/u8:2", "firefox", "java" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+    private static final ITmfEventType[] TYPES = {
+            new TmfEventType("sched_switch", TmfEventField.makeRoot(FIELDS)), //$NON-NLS-1$
+            new TmfEventType("sched_wakeup", TmfEventField.makeRoot(FIELDS)), //$NON-NLS-1$
+            new TmfEventType("syscall_entry_read", TmfEventField.makeRoot(FIELDS)), //$NON-NLS-1$
+            new TmfEventType("syscall_exit_read", TmfEventField.makeRoot(FIELDS)), //$NON-NLS-1$
+            new TmfEventType("irq_handler_entry", TmfEventField.makeRoot(FIELDS)) //$NON-NLS-1$
+    };
+
+    private final long[] fTimes;
+    private final byte[] fTypes;
+    private final int[] fTids;
+    private long fCurrentRank = 0;
+
+    /**
+     * Constructor
+     *
+     * @param name
+     *            the name of the trace
+     * @param seed
+     *            the seed of the generated events
+     * @param nbEvents
+     *            the number of events
+     * @param averageGap
+     *            the average time between two events, in nanoseconds
+     * @throws TmfTraceException
+     *             if the trace can't be initialized
+     */
+    public SyntheticTrace(String name, long seed, int nbEvents, int averageGap) throws TmfTraceException {
+        super();
+        fTimes = new long[nbEvents];
+        fTypes = new byte[nbEvents];
+        fTids = new int[nbEvents];
+        Random random = new Random(seed);
+        long time = 1000000000L + random.nextInt(averageGap);
+        for (int i = 0; i < nbEvents; i++) {
+            time += random.nextInt(2 * averageGap);
+            fTimes[i] = time;
+            fTypes[i] = (byte) random.nextInt(TYPES.length);
+            fTids[i] = random.nextInt(1000);
+        }
+        initTrace(null, name, ITmfEvent.class);
+    }
+
+    /**
+     * Get the number of events of this trace
+     *
+     * @return the number of events
+     */
+    public int size() {
+        return fTimes.length;
+    }
+
+    /**
+     * Create an event of this trace
+     *
+     * @param rank
+     *            the rank of the event
+     * @return the event
+     */
+    public ITmfEvent createEvent(int rank) {
+        int tid = fTids[rank];
+        ITmfEventField[] fields = {
+                new TmfEventField(TID, (long) tid, null),
+                new TmfEventField(PRIO, (long) (tid % 40 - 20), null),
+                new TmfEventField(COMM, COMMS[tid % COMMS.length], null)
+        };
+        ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, fields);
+        return new TmfEvent(this, rank, TmfTimestamp.fromNanos(fTimes[rank]), TYPES[fTypes[rank]], content);
+    }
+
+    // ------------------------------------------------------------------------
+    // TmfTrace
+    // ------------------------------------------------------------------------
+
+    @Override
+    public IStatus validate(IProject project, String path) {
+        return Status.OK_STATUS;
+    }
+
+    @Override
+    public synchronized ITmfContext seekEvent(ITmfLocation location) {
+        long rank = (location == null) ? 0 : (Long) location.getLocationInfo();
+        fCurrentRank = rank;
+        return new TmfContext(new TmfLongLocation(rank), rank);
+    }
+
+    @Override
+    public ITmfContext seekEvent(double ratio) {
+        return seekEvent(new TmfLongLocation(Math.round(ratio * fTimes.length)));
+    }
+
+    @Override
+    public double getLocationRatio(ITmfLocation location) {
+        return ((Long) location.getLocationInfo()).doubleValue() / fTimes.length;
+    }
+
+    @Override
+    public synchronized ITmfLocation getCurrentLocation() {
+        return new TmfLongLocation(fCurrentRank);
+    }
+
+    @Override
+    public synchronized ITmfEvent parseEvent(ITmfContext context) {
+        long rank = (Long) context.getLocation().getLocationInfo();
+        if (rank >= fTimes.length) {
+            return null;
+        }
+        fCurrentRank = rank + 1;
+        return createEvent((int) rank);
+    }
+}
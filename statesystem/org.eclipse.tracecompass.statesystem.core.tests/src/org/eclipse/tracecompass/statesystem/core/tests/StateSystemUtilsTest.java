@@ -15,8 +15,13 @@ package org.eclipse.tracecompass.statesystem.core.tests;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
@@ -25,7 +30,9 @@ import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
@@ -71,6 +78,71 @@ public class StateSystemUtilsTest {
         fStateSystem.dispose();
     }
 
+    /**
+     * Test the {@link StateSystemUtils#queryHistoryRange} methods.
+     */
+    @Test
+    public void testQueryHistoryRange() {
+        ITmfStateSystem ss = fStateSystem;
+        assertNotNull(ss);
+
+        try {
+            int quark = ss.getQuarkAbsolute(DUMMY_STRING);
+
+            /* All the intervals, in time order */
+            List<ITmfStateInterval> intervals = StateSystemUtils.queryHistoryRange(ss, quark, 1000L, 2000L);
+            assertEquals(3, intervals.size());
+            assertTrue(intervals.get(0).getStateValue().isNull());
+            assertEquals(10, intervals.get(1).getStateValue().unboxInt());
+            assertEquals(20, intervals.get(2).getStateValue().unboxInt());
+
+            /* The end of the range is clamped to the end of the history */
+            intervals = StateSystemUtils.queryHistoryRange(ss, quark, 1300L, 5000L);
+            assertEquals(2, intervals.size());
+            assertEquals(1200L, intervals.get(0).getStartTime());
+            assertEquals(2000L, intervals.get(1).getEndTime());
+
+            /* With a resolution, only the sampled timestamps 1000 and 2000 */
+            intervals = StateSystemUtils.queryHistoryRange(ss, quark, 1000L, 2000L, 1000L, null);
+            assertEquals(2, intervals.size());
+            assertTrue(intervals.get(0).getStateValue().isNull());
+            assertEquals(20, intervals.get(1).getStateValue().unboxInt());
+
+            /* Sampled timestamps 1000, 1300, 1600, 1900 and 2000 */
+            intervals = StateSystemUtils.queryHistoryRange(ss, quark, 1000L, 2000L, 300L, null);
+            assertEquals(3, intervals.size());
+
+            /* Every timestamp, sampled in several passes */
+            intervals = StateSystemUtils.queryHistoryRange(ss, quark, 1000L, 2000L, 1L, null);
+            assertEquals(3, intervals.size());
+            assertEquals(1200L, intervals.get(1).getStartTime());
+            assertEquals(1500L, intervals.get(2).getStartTime());
+
+            /* Nothing is queried once the monitor is canceled */
+            IProgressMonitor monitor = new NullProgressMonitor();
+            monitor.setCanceled(true);
+            intervals = StateSystemUtils.queryHistoryRange(ss, quark, 1000L, 2000L, 1L, monitor);
+            assertTrue(intervals.isEmpty());
+        } catch (AttributeNotFoundException | StateSystemDisposedException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Test a range query starting before the start of the history
+     *
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed, should not happen
+     * @throws AttributeNotFoundException
+     *             If the attribute is not found, should not happen
+     */
+    @Test(expected = TimeRangeException.class)
+    public void testQueryHistoryRangeInvalidStart() throws AttributeNotFoundException, StateSystemDisposedException {
+        ITmfStateSystem ss = fStateSystem;
+        assertNotNull(ss);
+        StateSystemUtils.queryHistoryRange(ss, ss.getQuarkAbsolute(DUMMY_STRING), 500L, 1500L);
+    }
+
     /**
      * Test the {@link StateSystemUtils#queryUntilNonNullValue} method.
      */
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.PartitionedHistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test the {@link PartitionedHistoryTreeBackend} class.
+ *
+ * @author Matthew Khouzam
+ */
+public class PartitionedHistoryTreeBackendTest extends HistoryTreeBackendTest {
+
+    private static final int QUEUE_SIZE = 10;
+    private static final int NB_PARTITIONS = 3;
+
+    /**
+     * Constructor
+     *
+     * @param reOpen
+     *            True if the backend should be disposed and re-opened as a new
+     *            backend from the file, or false to use the backend as-is
+     */
+    public PartitionedHistoryTreeBackendTest(Boolean reOpen) {
+        super(reOpen);
+    }
+
+    @Override
+    @After
+    public void teardown() {
+        super.teardown();
+        for (File historyTreeFile : fHistoryTreeFiles) {
+            PartitionedHistoryTreeBackend.deletePartitionFiles(historyTreeFile);
+        }
+    }
+
+    @Override
+    protected IStateHistoryBackend getBackendForBuilding(long startTime) throws IOException {
+        File historyTreeFile = File.createTempFile("PartitionedHistoryTreeBackendTest", ".ht");
+        fHistoryTreeFiles.add(historyTreeFile);
+        PartitionedHistoryTreeBackend backend = new PartitionedHistoryTreeBackend(SSID, historyTreeFile, PROVIDER_VERSION, startTime, QUEUE_SIZE, NB_PARTITIONS, fBlockSize, fMaxChildren);
+        fBackendMap.put(backend, historyTreeFile);
+        return backend;
+    }
+
+    @Override
+    protected IStateHistoryBackend getBackendForQuerying(IStateHistoryBackend backend) throws IOException {
+        if (!fReOpen) {
+            return backend;
+        }
+        File historyTreeFile = fBackendMap.remove(backend);
+        backend.dispose();
+        /* The factory must recognize the partitions */
+        IStateHistoryBackend reOpenedBackend = StateHistoryBackendFactory.createHistoryTreeBackendExistingFile(SSID, historyTreeFile, PROVIDER_VERSION);
+        assertTrue(reOpenedBackend instanceof PartitionedHistoryTreeBackend);
+        assertEquals(NB_PARTITIONS, ((PartitionedHistoryTreeBackend) reOpenedBackend).getNbPartitions());
+        fBackendMap.put(reOpenedBackend, historyTreeFile);
+        return reOpenedBackend;
+    }
+
+    /**
+     * Test that the partition files are found, and that building a new
+     * history in the same file removes the partitions of the previous one.
+     *
+     * @throws IOException
+     *             If the files could not be created
+     */
+    @Test
+    public void testPartitionFiles() throws IOException {
+        IStateHistoryBackend backend = getBackendForBuilding(0);
+        File historyTreeFile = fBackendMap.get(backend);
+        backend.finishedBuilding(0);
+        assertEquals(NB_PARTITIONS, PartitionedHistoryTreeBackend.getPartitionCount(historyTreeFile));
+
+        IStateHistoryBackend newBackend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(SSID, historyTreeFile, PROVIDER_VERSION, 0, 0);
+        fBackendMap.put(newBackend, historyTreeFile);
+        assertEquals(1, PartitionedHistoryTreeBackend.getPartitionCount(historyTreeFile));
+    }
+
+    /**
+     * Test that opening a history with a missing partition fails, and only
+     * closes the partitions that could be opened
+     *
+     * @throws IOException
+     *             If the files could not be created
+     */
+    @Test
+    public void testMissingPartition() throws IOException {
+        IStateHistoryBackend backend = getBackendForBuilding(0);
+        File historyTreeFile = fBackendMap.remove(backend);
+        backend.finishedBuilding(0);
+        backend.dispose();
+
+        File missingPartition = new File(historyTreeFile.getPath() + ".part1of" + NB_PARTITIONS);
+        assertTrue(missingPartition.delete());
+        try {
+            new PartitionedHistoryTreeBackend(SSID, historyTreeFile, PROVIDER_VERSION);
+            fail("The history should not open without all its partitions");
+        } catch (IOException e) {
+            /* Expected */
+        }
+        /* The partitions that were opened are not deleted */
+        assertTrue(historyTreeFile.exists());
+        assertEquals(NB_PARTITIONS, PartitionedHistoryTreeBackend.getPartitionCount(historyTreeFile));
+    }
+
+    @Override
+    @Test
+    public void testIntervalBeforeStart() {
+        // Exception is thrown in a thread, so we can't catch it
+    }
+
+}
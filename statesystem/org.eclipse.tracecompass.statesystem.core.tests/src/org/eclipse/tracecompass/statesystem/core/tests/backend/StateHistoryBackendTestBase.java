@@ -16,7 +16,9 @@ import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
@@ -257,6 +259,68 @@ public abstract class StateHistoryBackendTestBase {
         buildAndQueryFullRange(startTime, endTime, nbAttr, intervals, false);
     }
 
+    /**
+     * Test the 2D query method with cascading intervals, making sure it
+     * returns all, and only, the intervals of the requested attributes that
+     * contain one of the sampled timestamps, with and without a resolution.
+     */
+    @Test
+    public void testQuery2D() {
+        final int nbAttr = 10;
+        final long duration = 10;
+        final long startTime = 0;
+        final long endTime = 5000;
+
+        List<ITmfStateInterval> intervals = new ArrayList<>();
+        for (long t = startTime + 1; t <= endTime + duration; t++) {
+            intervals.add(new TmfStateInterval(
+                    Math.max(startTime, t - duration),
+                    Math.min(endTime, t - 1),
+                    (int) t % nbAttr,
+                    TmfStateValue.newValueLong(t)));
+        }
+
+        final IStateHistoryBackend backend = prepareBackend(startTime, endTime, intervals);
+        assertNotNull(backend);
+
+        List<Integer> quarks = ImmutableList.of(1, 4, 5, 9);
+        long[][] queries = { { 1234, 3456, 1 }, { 1234, 3456, 37 }, { startTime, endTime, 1000 }, { 2000, 2000, 1 } };
+        try {
+            for (long[] query : queries) {
+                long start = query[0];
+                long end = query[1];
+                long resolution = query[2];
+                Set<String> expected = new HashSet<>();
+                for (ITmfStateInterval interval : intervals) {
+                    if (quarks.contains(interval.getAttribute()) && containsSample(interval, start, end, resolution)) {
+                        expected.add(toKey(interval));
+                    }
+                }
+                List<String> actual = new ArrayList<>();
+                for (ITmfStateInterval interval : backend.query2D(quarks, start, end, resolution)) {
+                    actual.add(toKey(interval));
+                }
+                assertEquals("Duplicate intervals", new HashSet<>(actual).size(), actual.size());
+                assertEquals(expected, new HashSet<>(actual));
+            }
+        } catch (StateSystemDisposedException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static String toKey(ITmfStateInterval interval) {
+        return interval.getAttribute() + ":" + interval.getStartTime() + "-" + interval.getEndTime() + "=" + interval.getStateValue();
+    }
+
+    private static boolean containsSample(ITmfStateInterval interval, long start, long end, long resolution) {
+        for (long t = start; t <= end; t += resolution) {
+            if (interval.intersects(t)) {
+                return true;
+            }
+        }
+        return interval.intersects(end);
+    }
+
     /**
      * Test inserting values of different types and querying them right after
      */
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend.historytree;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTInterval;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTIntervalArray;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Test the {@link HTIntervalArray} class
+ *
+ * @author Matthew Khouzam
+ */
+public class HTIntervalArrayTest {
+
+    private static final List<HTInterval> INTERVALS = ImmutableList.of(
+            new HTInterval(0, 40, 1, TmfStateValue.newValueInt(42)),
+            new HTInterval(5, 10, 2, TmfStateValue.newValueString("hello")),
+            new HTInterval(10, 40, 3, TmfStateValue.newValueLong(Long.MAX_VALUE)),
+            new HTInterval(0, 10, 4, TmfStateValue.newValueDouble(-1.5)),
+            new HTInterval(20, 30, 5, TmfStateValue.nullValue()),
+            new HTInterval(0, 5, 6, TmfStateValue.newValueString("")),
+            new HTInterval(30, 50, 7, TmfStateValue.newValueString("\u00e9t\u00e9")));
+
+    private static HTIntervalArray createArray() {
+        HTIntervalArray array = new HTIntervalArray();
+        INTERVALS.forEach(array::add);
+        return array;
+    }
+
+    private static List<HTInterval> toList(HTIntervalArray array) {
+        List<HTInterval> list = new ArrayList<>();
+        for (int i = 0; i < array.size(); i++) {
+            list.add(array.getInterval(i));
+        }
+        return list;
+    }
+
+    /**
+     * Test that the intervals are sorted by end time, in insertion order for
+     * equal end times, and that their values are kept
+     */
+    @Test
+    public void testAdd() {
+        HTIntervalArray array = createArray();
+        List<HTInterval> expected = new ArrayList<>(INTERVALS);
+        expected.sort(null);
+        assertEquals(expected, toList(array));
+        for (int i = 0; i < array.size(); i++) {
+            HTInterval interval = expected.get(i);
+            assertEquals(interval.getStartTime(), array.getStart(i));
+            assertEquals(interval.getEndTime(), array.getEnd(i));
+            assertEquals(interval.getAttribute(), array.getAttribute(i));
+            assertEquals(interval.getSizeOnDisk(), array.getInterval(i).getSizeOnDisk());
+        }
+    }
+
+    /**
+     * Test the search of the first interval ending after a timestamp
+     */
+    @Test
+    public void testFirstIndexEndingAfter() {
+        HTIntervalArray array = createArray();
+        assertEquals(0, array.firstIndexEndingAfter(-1));
+        assertEquals(0, array.firstIndexEndingAfter(5));
+        assertEquals(1, array.firstIndexEndingAfter(6));
+        assertEquals(1, array.firstIndexEndingAfter(10));
+        assertEquals(4, array.firstIndexEndingAfter(40));
+        assertEquals(6, array.firstIndexEndingAfter(50));
+        assertEquals(7, array.firstIndexEndingAfter(51));
+        assertEquals(0, new HTIntervalArray().firstIndexEndingAfter(0));
+    }
+
+    /**
+     * Test that the intervals are written in the same format as
+     * {@link HTInterval#writeInterval}, and read back
+     *
+     * @throws IOException
+     *             Should not happen
+     */
+    @Test
+    public void testWriteAndRead() throws IOException {
+        HTIntervalArray array = createArray();
+        List<HTInterval> sorted = toList(array);
+        int size = sorted.stream().mapToInt(HTInterval::getSizeOnDisk).sum();
+
+        ByteBuffer expected = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        sorted.forEach(interval -> interval.writeInterval(expected));
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        array.writeTo(buffer);
+        assertEquals(size, buffer.position());
+        assertEquals(expected.flip(), buffer.flip());
+
+        HTIntervalArray read = new HTIntervalArray();
+        read.readFrom(buffer, sorted.size());
+        assertEquals(size, buffer.position());
+        assertEquals(sorted, toList(read));
+    }
+
+    /**
+     * Test reading an interval with an unknown value type
+     *
+     * @throws IOException
+     *             Expected
+     */
+    @Test(expected = IOException.class)
+    public void testReadInvalid() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(0).putLong(10).putInt(0).put((byte) 42);
+        buffer.flip();
+        new HTIntervalArray().readFrom(buffer, 1);
+    }
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend.historytree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNodeCache;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNodeCache.INodeReader;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNodeCache.TreeAccount;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.LeafNode;
+import org.junit.Test;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Test the {@link HTNodeCache} class
+ *
+ * @author Matthew Khouzam
+ */
+public class HTNodeCacheTest {
+
+    /* The cache has 16 segments */
+    private static final int NB_SEGMENTS = 16;
+
+    private static final HTConfig CONFIG = new HTConfig(new File("unused.ht"), 4096, 2, 0, 0);
+    private static final long NODE_SIZE = new LeafNode(CONFIG, 0, -1, 0).getMemorySize();
+
+    private static class CountingReader implements INodeReader {
+        private final AtomicInteger fReads = new AtomicInteger();
+
+        @Override
+        public HTNode readNode(int seqNumber) {
+            fReads.incrementAndGet();
+            return new LeafNode(CONFIG, seqNumber, -1, 0);
+        }
+    }
+
+    /**
+     * Test that a node is read only once, and the hit and miss counters
+     *
+     * @throws IOException
+     *             Should not happen
+     */
+    @Test
+    public void testHitsAndMisses() throws IOException {
+        HTNodeCache cache = new HTNodeCache(NODE_SIZE * NB_SEGMENTS * 4, 100);
+        TreeAccount account = cache.register();
+        CountingReader reader = new CountingReader();
+
+        HTNode node = cache.get(account, 3, reader);
+        assertEquals(3, node.getSequenceNumber());
+        assertSame(node, cache.get(account, 3, reader));
+        assertEquals(1, reader.fReads.get());
+
+        CacheStats stats = account.getStats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(1, stats.missCount());
+        assertEquals(1, stats.loadCount());
+        assertEquals(0, stats.evictionCount());
+        assertEquals(stats, cache.getStats());
+        assertEquals(NODE_SIZE, account.getSize());
+        assertEquals(NODE_SIZE, cache.getSize());
+    }
+
+    /**
+     * Test that the cache stays within its maximum size
+     *
+     * @throws IOException
+     *             Should not happen
+     */
+    @Test
+    public void testMaximumSize() throws IOException {
+        long maxSize = NODE_SIZE * NB_SEGMENTS * 4;
+        HTNodeCache cache = new HTNodeCache(maxSize, 100);
+        TreeAccount account = cache.register();
+        CountingReader reader = new CountingReader();
+
+        for (int seq = 0; seq < 1000; seq++) {
+            cache.get(account, seq, reader);
+            assertTrue(cache.getSize() <= maxSize);
+        }
+        CacheStats stats = cache.getStats();
+        assertEquals(1000, stats.missCount());
+        assertTrue(stats.evictionCount() > 0);
+        assertEquals(cache.getSize(), (stats.loadCount() - stats.evictionCount()) * NODE_SIZE);
+        assertEquals(cache.getSize(), account.getSize());
+    }
+
+    /**
+     * Test that a tree reading many nodes does not evict the nodes of another
+     * tree, beyond its quota
+     *
+     * @throws IOException
+     *             Should not happen
+     */
+    @Test
+    public void testTreeQuota() throws IOException {
+        long maxSize = NODE_SIZE * NB_SEGMENTS * 16;
+        HTNodeCache cache = new HTNodeCache(maxSize, 50);
+        TreeAccount big = cache.register();
+        TreeAccount small = cache.register();
+        CountingReader bigReader = new CountingReader();
+        CountingReader smallReader = new CountingReader();
+
+        for (int seq = 0; seq < 4; seq++) {
+            cache.get(small, seq, smallReader);
+        }
+        for (int seq = 0; seq < 1000; seq++) {
+            cache.get(big, seq, bigReader);
+            assertTrue(big.getSize() <= maxSize / 2);
+        }
+        assertTrue(big.getStats().evictionCount() > 0);
+
+        /* The nodes of the small tree are all still there */
+        for (int seq = 0; seq < 4; seq++) {
+            cache.get(small, seq, smallReader);
+        }
+        assertEquals(4, smallReader.fReads.get());
+        assertEquals(4, small.getStats().hitCount());
+        assertEquals(0, small.getStats().evictionCount());
+    }
+
+    /**
+     * Test removing the nodes of a tree, and replacing a cached node
+     *
+     * @throws IOException
+     *             Should not happen
+     */
+    @Test
+    public void testInvalidateAndPut() throws IOException {
+        HTNodeCache cache = new HTNodeCache(NODE_SIZE * NB_SEGMENTS * 4, 100);
+        TreeAccount account = cache.register();
+        TreeAccount other = cache.register();
+        CountingReader reader = new CountingReader();
+
+        cache.get(account, 0, reader);
+        cache.get(other, 0, reader);
+        cache.invalidate(account);
+        assertEquals(0, account.getSize());
+        assertEquals(NODE_SIZE, other.getSize());
+        cache.get(account, 0, reader);
+        assertEquals(2, account.getStats().missCount());
+
+        /* Written nodes replace the cached ones */
+        HTNode written = new LeafNode(CONFIG, 0, -1, 0);
+        cache.put(account, written);
+        assertSame(written, cache.get(account, 0, reader));
+        assertEquals(NODE_SIZE, account.getSize());
+    }
+
+    /**
+     * Test that a node read while its tree is invalidated is not cached
+     *
+     * @throws IOException
+     *             Should not happen
+     */
+    @Test
+    public void testInvalidateWhileReading() throws IOException {
+        HTNodeCache cache = new HTNodeCache(NODE_SIZE * NB_SEGMENTS * 4, 100);
+        TreeAccount account = cache.register();
+        CountingReader reader = new CountingReader();
+
+        HTNode node = cache.get(account, 0, seqNumber -> {
+            cache.invalidate(account);
+            return reader.readNode(seqNumber);
+        });
+        assertEquals(0, node.getSequenceNumber());
+        assertEquals(0, account.getSize());
+        assertEquals(0, cache.getSize());
+
+        /* The nodes read afterwards are cached again */
+        cache.get(account, 0, reader);
+        cache.get(account, 0, reader);
+        assertEquals(2, reader.fReads.get());
+        assertEquals(NODE_SIZE, account.getSize());
+    }
+}
@@ -11,11 +11,16 @@ package org.eclipse.tracecompass.statesystem.core.tests.backend.historytree;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -320,4 +325,53 @@ public class HistoryTreeTest {
         assertEquals( 5, branch.get(2).getSequenceNumber());
         assertEquals( 4, branch.get(2).getParentSequenceNumber());
     }
+
+    /**
+     * Test that the nodes of a finished tree reopened from its file are the
+     * same, whether they are read from a memory mapping of the file or
+     * through the file channel
+     *
+     * @throws IOException
+     *             If an error occurs reading the file
+     */
+    @Test
+    public void testMappedReads() throws IOException {
+        HistoryTreeClassicStub ht = setupSmallTree();
+        long start = 1;
+        for (int i = 0; i < 10; i++) {
+            start = fillValues(ht, STRING_VALUE, 1, start);
+            start = fillNextLeafNode(ht, start);
+        }
+        ht.closeTree(start);
+        int nodeCount = ht.getNodeCount();
+        ht.closeFile();
+
+        File file = fTempFile;
+        assertNotNull(file);
+        HistoryTreeClassicStub reopened = new HistoryTreeClassicStub(file, 1);
+        String os = System.getProperty("os.name");
+        if (System.getProperty("org.eclipse.tracecompass.statesystem.core.mappedReads") == null
+                && os != null && !os.startsWith("Windows")) {
+            assertTrue(reopened.isMapped());
+        }
+
+        HTConfig config = new HTConfig(file, BLOCK_SIZE, 3, 1, 1);
+        try (FileInputStream fis = new FileInputStream(file);
+                FileChannel fc = fis.getChannel();) {
+            for (int seq = 0; seq < nodeCount; seq++) {
+                HTNode expected = HTNode.readNode(config, fc, IHistoryTree.TREE_HEADER_SIZE + (long) seq * BLOCK_SIZE);
+                HTNode node = reopened.readNode(seq);
+                assertEquals(expected.toString(), node.toString());
+                assertEquals(printIntervals(expected), printIntervals(node));
+            }
+        } finally {
+            reopened.closeFile();
+        }
+    }
+
+    private static String printIntervals(HTNode node) {
+        StringWriter writer = new StringWriter();
+        node.debugPrintIntervals(new PrintWriter(writer));
+        return writer.toString();
+    }
 }
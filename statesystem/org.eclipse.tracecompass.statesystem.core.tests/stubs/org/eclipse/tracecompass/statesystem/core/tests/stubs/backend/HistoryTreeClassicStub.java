@@ -105,6 +105,15 @@ public class HistoryTreeClassicStub extends HistoryTreeClassic {
         return latest.get(pos);
     }
 
+    /**
+     * Get if the nodes are read from a memory mapping of the file
+     *
+     * @return If the mapped reads are enabled
+     */
+    public boolean isMapped() {
+        return getTreeIO().isMapped();
+    }
+
     /**
      * Get the depth of the tree
      *
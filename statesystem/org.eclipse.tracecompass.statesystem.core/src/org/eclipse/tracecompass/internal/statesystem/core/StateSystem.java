@@ -19,6 +19,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -28,6 +30,7 @@ import java.util.logging.Logger;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.TimeSampling;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
@@ -602,6 +605,55 @@ public class StateSystem implements ITmfStateSystemBuilder {
         return ret;
     }
 
+    @Override
+    public Iterable<ITmfStateInterval> query2D(Collection<Integer> quarks,
+            long start, long end, long resolution)
+            throws TimeRangeException, StateSystemDisposedException {
+        if (isDisposed) {
+            throw new StateSystemDisposedException();
+        }
+        if (end < start || resolution <= 0) {
+            throw new TimeRangeException(getSSID() + " Start:" + start + ", End:" + end + ", Resolution:" + resolution); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        final int nbAttr = getNbAttributes();
+        for (int quark : quarks) {
+            if (quark < 0 || quark >= nbAttr) {
+                throw new IndexOutOfBoundsException("Quark: " + quark + ", Attributes: " + nbAttr); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+
+        /* Clamp the time range to the range of the history */
+        long t1 = Math.max(start, getStartTime());
+        long t2 = Math.min(end, getCurrentEndTime());
+        if (t2 < t1 || quarks.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        LOGGER.info(() -> "[StateSystem:2DQueryStart] ssid=" + this.getSSID() + ", start=" + t1 + ", end=" + t2 + ", attributes=" + quarks.size());  //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+        List<ITmfStateInterval> intervals = new ArrayList<>();
+        /*
+         * If we are currently building the history, the "ongoing" states are
+         * only in the transient state, the backend has everything before them.
+         */
+        if (transState.isActive()) {
+            TimeSampling sampling = new TimeSampling(t1, t2, resolution);
+            for (int quark : quarks) {
+                ITmfStateInterval ongoing = transState.getIntervalAt(t2, quark);
+                if (ongoing != null && sampling.intersects(ongoing.getStartTime(), ongoing.getEndTime())) {
+                    intervals.add(ongoing);
+                }
+            }
+        }
+
+        /* Query the storage backend */
+        for (ITmfStateInterval interval : backend.query2D(quarks, t1, t2, resolution)) {
+            intervals.add(interval);
+        }
+        LOGGER.info(() -> "[StateSystem:2DQueryEnd]");  //$NON-NLS-1$
+        return intervals;
+    }
+
     //--------------------------------------------------------------------------
     //        Debug methods
     //--------------------------------------------------------------------------
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend;
+
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+
+/**
+ * The timestamps sampled by a 2D query: <code>start + k * resolution</code>
+ * for every k that stays within the range, plus the end time of the range.
+ * This is the same sampling as the one of the resolution-based
+ * StateSystemUtils.queryHistoryRange(). With a resolution of 1, every
+ * timestamp of the range is sampled.
+ *
+ * @author Matthew Khouzam
+ */
+public final class TimeSampling {
+
+    private final long fStart;
+    private final long fEnd;
+    private final long fResolution;
+
+    /**
+     * Constructor
+     *
+     * @param start
+     *            The start of the range, the first sampled timestamp
+     * @param end
+     *            The end of the range, the last sampled timestamp
+     * @param resolution
+     *            The step between two sampled timestamps
+     * @throws TimeRangeException
+     *             If end is smaller than start or if the resolution is not
+     *             greater than zero
+     */
+    public TimeSampling(long start, long end, long resolution) {
+        if (end < start || resolution <= 0) {
+            throw new TimeRangeException("Start:" + start + ", End:" + end + ", Resolution:" + resolution); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        fStart = start;
+        fEnd = end;
+        fResolution = resolution;
+    }
+
+    /**
+     * Get the start of the range
+     *
+     * @return The first sampled timestamp
+     */
+    public long getStart() {
+        return fStart;
+    }
+
+    /**
+     * Get the end of the range
+     *
+     * @return The last sampled timestamp
+     */
+    public long getEnd() {
+        return fEnd;
+    }
+
+    /**
+     * Get the first sampled timestamp greater than or equal to t.
+     *
+     * @param t
+     *            The timestamp
+     * @return The sampled timestamp, or {@link Long#MAX_VALUE} if there is none
+     *         after t
+     */
+    public long next(long t) {
+        if (t <= fStart) {
+            return fStart;
+        }
+        if (t > fEnd) {
+            return Long.MAX_VALUE;
+        }
+        /* Round up to the next step, the end of the range is also sampled */
+        long steps = (t - fStart - 1) / fResolution + 1;
+        long offset = fEnd - fStart;
+        if (steps > offset / fResolution) {
+            return fEnd;
+        }
+        return fStart + steps * fResolution;
+    }
+
+    /**
+     * Check if a time range contains a sampled timestamp
+     *
+     * @param rangeStart
+     *            The start of the time range
+     * @param rangeEnd
+     *            The end of the time range, inclusive
+     * @return If a sampled timestamp is in [rangeStart, rangeEnd]
+     */
+    public boolean intersects(long rangeStart, long rangeEnd) {
+        return rangeStart <= rangeEnd && rangeStart <= fEnd && next(rangeStart) <= rangeEnd;
+    }
+}
@@ -43,12 +43,12 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
     private static final String errMsg = "Invalid interval data. Maybe your file is corrupt?"; //$NON-NLS-1$
 
     /* 'Byte' equivalent for state values types */
-    private static final byte TYPE_NULL = -1;
-    private static final byte TYPE_INTEGER = 0;
-    private static final byte TYPE_STRING = 1;
-    private static final byte TYPE_LONG = 2;
-    private static final byte TYPE_DOUBLE = 3;
-    private static final byte TYPE_CUSTOM = 20;
+    static final byte TYPE_NULL = -1;
+    static final byte TYPE_INTEGER = 0;
+    static final byte TYPE_STRING = 1;
+    static final byte TYPE_LONG = 2;
+    static final byte TYPE_DOUBLE = 3;
+    static final byte TYPE_CUSTOM = 20;
 
     private final long start;
     private final long end;
@@ -136,7 +136,7 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
      * of the strings entry, so there is no need to call
      * {@link #computeStringsEntrySize()} and do an extra copy.
      */
-    private HTInterval(long intervalStart, long intervalEnd, int attribute,
+    HTInterval(long intervalStart, long intervalEnd, int attribute,
             @NonNull TmfStateValue value, int size) throws TimeRangeException {
         if (intervalStart > intervalEnd) {
             throw new TimeRangeException("Start:" + intervalStart + ", End:" + intervalEnd); //$NON-NLS-1$ //$NON-NLS-2$
@@ -171,8 +171,6 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
      *             If there was an error reading from the buffer
      */
     public static final HTInterval readFrom(ByteBuffer buffer) throws IOException {
-        TmfStateValue value;
-
         int posStart = buffer.position();
         /* Read the Data Section entry */
         long intervalStart = buffer.getLong();
@@ -180,16 +178,34 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
         int attribute = buffer.getInt();
 
         /* Read the 'type' of the value, then react accordingly */
-        byte valueType = buffer.get();
+        TmfStateValue value = readValue(buffer.get(), buffer);
+
+        try {
+            return new HTInterval(intervalStart, intervalEnd, attribute, value, buffer.position() - posStart);
+        } catch (TimeRangeException e) {
+            throw new IOException(errMsg);
+        }
+    }
+
+    /**
+     * Read a state value, without its type byte, from a ByteBuffer
+     *
+     * @param valueType
+     *            The type byte of the value, as written in the file
+     * @param buffer
+     *            The ByteBuffer, positioned at the start of the value
+     * @return The state value
+     * @throws IOException
+     *             If the type is unknown or the value is corrupt
+     */
+    static TmfStateValue readValue(byte valueType, ByteBuffer buffer) throws IOException {
         switch (valueType) {
 
         case TYPE_NULL:
-            value = TmfStateValue.nullValue();
-            break;
+            return TmfStateValue.nullValue();
 
         case TYPE_INTEGER:
-            value = TmfStateValue.newValueInt(buffer.getInt());
-            break;
+            return TmfStateValue.newValueInt(buffer.getInt());
 
         case TYPE_STRING: {
             /* the first short = the size to read */
@@ -197,42 +213,32 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
 
             byte[] array = new byte[valueSize];
             buffer.get(array);
-            value = TmfStateValue.newValueString(new String(array, CHARSET));
 
             /* Confirm the 0'ed byte at the end */
             byte res = buffer.get();
             if (res != 0) {
                 throw new IOException(errMsg);
             }
-            break;
+            return TmfStateValue.newValueString(new String(array, CHARSET));
         }
 
         case TYPE_LONG:
             /* Go read the matching entry in the Strings section of the block */
-            value = TmfStateValue.newValueLong(buffer.getLong());
-            break;
+            return TmfStateValue.newValueLong(buffer.getLong());
 
         case TYPE_DOUBLE:
             /* Go read the matching entry in the Strings section of the block */
-            value = TmfStateValue.newValueDouble(buffer.getDouble());
-            break;
+            return TmfStateValue.newValueDouble(buffer.getDouble());
 
         case TYPE_CUSTOM: {
             short valueSize = buffer.getShort();
             ISafeByteBufferReader safeBuffer = SafeByteBufferFactory.wrapReader(buffer, valueSize);
-            value = CustomStateValue.readSerializedValue(safeBuffer);
-            break;
+            return CustomStateValue.readSerializedValue(safeBuffer);
         }
         default:
             /* Unknown data, better to not make anything up... */
             throw new IOException(errMsg);
         }
-
-        try {
-            return new HTInterval(intervalStart, intervalEnd, attribute, value, buffer.position() - posStart);
-        } catch (TimeRangeException e) {
-            throw new IOException(errMsg);
-        }
     }
 
     /**
@@ -262,6 +268,20 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
         buffer.putInt(attribute);
         buffer.put(byteFromType);
 
+        writeValue(sv, byteFromType, buffer);
+    }
+
+    /**
+     * Write a state value, without its type byte, in a ByteBuffer
+     *
+     * @param sv
+     *            The state value
+     * @param byteFromType
+     *            The type byte of the value
+     * @param buffer
+     *            The ByteBuffer, positioned where to write the value
+     */
+    static void writeValue(ITmfStateValue sv, byte byteFromType, ByteBuffer buffer) {
         switch (byteFromType) {
         case TYPE_NULL:
             break;
@@ -404,7 +424,7 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
      * Here we determine how state values "types" are written in the 8-bit field
      * that indicates the value type in the file.
      */
-    private static byte getByteFromType(ITmfStateValue.Type type) {
+    static byte getByteFromType(ITmfStateValue.Type type) {
         switch (type) {
         case NULL:
             return TYPE_NULL;
@@ -0,0 +1,387 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+
+/**
+ * The intervals of a node, kept sorted by end time in parallel primitive
+ * arrays instead of one {@link HTInterval} object (and one state value object)
+ * per interval.
+ * <p>
+ * Integer, long and double values are stored directly in the value array.
+ * String and custom values are kept in a byte pool, in their serialized form,
+ * and the value array holds their offset in the pool. Reading a node from disk
+ * is then a plain copy, and {@link HTInterval} objects are only built for the
+ * intervals returned by a query.
+ * <p>
+ * This class is not thread-safe, the node guards it with its own lock.
+ *
+ * @author Matthew Khouzam
+ */
+public final class HTIntervalArray {
+
+    private static final String ERR_MSG = "Invalid interval data. Maybe your file is corrupt?"; //$NON-NLS-1$
+
+    /*
+     * Size on disk of an interval with a null value: 2x long (start and end),
+     * 1x int (attribute) and 1x byte (value type).
+     */
+    private static final int MIN_INTERVAL_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES + Byte.BYTES;
+
+    /* Bytes used in memory by one interval in the parallel arrays */
+    private static final int INTERVAL_ARRAYS_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES + Byte.BYTES + Long.BYTES;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] fStarts;
+    private long[] fEnds;
+    private int[] fAttributes;
+    private byte[] fTypes;
+    /* The value itself, or its offset in fPool for strings and custom values */
+    private long[] fValues;
+    private int fSize = 0;
+
+    private byte[] fPool;
+    private int fPoolSize = 0;
+
+    /**
+     * Constructor
+     */
+    public HTIntervalArray() {
+        this(INITIAL_CAPACITY);
+    }
+
+    private HTIntervalArray(int capacity) {
+        fStarts = new long[capacity];
+        fEnds = new long[capacity];
+        fAttributes = new int[capacity];
+        fTypes = new byte[capacity];
+        fValues = new long[capacity];
+        fPool = new byte[0];
+    }
+
+    /**
+     * Get the number of intervals
+     *
+     * @return The number of intervals
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Get the start time of an interval
+     *
+     * @param index
+     *            The index of the interval
+     * @return The start time
+     */
+    public long getStart(int index) {
+        return fStarts[index];
+    }
+
+    /**
+     * Get the end time of an interval
+     *
+     * @param index
+     *            The index of the interval
+     * @return The end time
+     */
+    public long getEnd(int index) {
+        return fEnds[index];
+    }
+
+    /**
+     * Get the attribute of an interval
+     *
+     * @param index
+     *            The index of the interval
+     * @return The attribute quark
+     */
+    public int getAttribute(int index) {
+        return fAttributes[index];
+    }
+
+    /**
+     * Build the {@link HTInterval} object for an interval
+     *
+     * @param index
+     *            The index of the interval
+     * @return The interval
+     */
+    public HTInterval getInterval(int index) {
+        long value = fValues[index];
+        TmfStateValue sv;
+        int size = MIN_INTERVAL_SIZE;
+        switch (fTypes[index]) {
+        case HTInterval.TYPE_NULL:
+            sv = TmfStateValue.nullValue();
+            break;
+        case HTInterval.TYPE_INTEGER:
+            sv = TmfStateValue.newValueInt((int) value);
+            size += Integer.BYTES;
+            break;
+        case HTInterval.TYPE_LONG:
+            sv = TmfStateValue.newValueLong(value);
+            size += Long.BYTES;
+            break;
+        case HTInterval.TYPE_DOUBLE:
+            sv = TmfStateValue.newValueDouble(Double.longBitsToDouble(value));
+            size += Double.BYTES;
+            break;
+        default: {
+            /* Serialized value, already validated when it was stored */
+            ByteBuffer buffer = poolBuffer((int) value);
+            try {
+                sv = HTInterval.readValue(fTypes[index], buffer);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            size += buffer.position() - (int) value;
+            break;
+        }
+        }
+        return new HTInterval(fStarts[index], fEnds[index], fAttributes[index], sv, size);
+    }
+
+    /**
+     * Get the index of the first interval whose end time is greater than or
+     * equal to t. Since the intervals are sorted by end time, the intervals
+     * before it cannot contain t.
+     *
+     * @param t
+     *            The timestamp
+     * @return The index of the first interval that may contain t, or
+     *         {@link #size()} if there is none
+     */
+    public int firstIndexEndingAfter(long t) {
+        int low = 0;
+        int high = fSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (fEnds[mid] < t) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Add an interval, after the intervals with a smaller or equal end time
+     *
+     * @param interval
+     *            The interval to add
+     */
+    public void add(HTInterval interval) {
+        ensureCapacity(fSize + 1);
+
+        /* Find the insert position to keep the arrays sorted */
+        long end = interval.getEndTime();
+        int index = fSize;
+        while (index > 0 && end < fEnds[index - 1]) {
+            index--;
+        }
+        int moved = fSize - index;
+        if (moved > 0) {
+            System.arraycopy(fStarts, index, fStarts, index + 1, moved);
+            System.arraycopy(fEnds, index, fEnds, index + 1, moved);
+            System.arraycopy(fAttributes, index, fAttributes, index + 1, moved);
+            System.arraycopy(fTypes, index, fTypes, index + 1, moved);
+            System.arraycopy(fValues, index, fValues, index + 1, moved);
+        }
+
+        ITmfStateValue sv = interval.getStateValue();
+        byte type = HTInterval.getByteFromType(sv.getType());
+        fStarts[index] = interval.getStartTime();
+        fEnds[index] = end;
+        fAttributes[index] = interval.getAttribute();
+        fTypes[index] = type;
+        switch (type) {
+        case HTInterval.TYPE_NULL:
+            fValues[index] = 0;
+            break;
+        case HTInterval.TYPE_INTEGER:
+            fValues[index] = sv.unboxInt();
+            break;
+        case HTInterval.TYPE_LONG:
+            fValues[index] = sv.unboxLong();
+            break;
+        case HTInterval.TYPE_DOUBLE:
+            fValues[index] = Double.doubleToRawLongBits(sv.unboxDouble());
+            break;
+        default: {
+            int length = interval.getSizeOnDisk() - MIN_INTERVAL_SIZE;
+            ensurePoolCapacity(fPoolSize + length);
+            HTInterval.writeValue(sv, type, poolBuffer(fPoolSize));
+            fValues[index] = fPoolSize;
+            fPoolSize += length;
+            break;
+        }
+        }
+        fSize++;
+    }
+
+    /**
+     * Read intervals from a node buffer, without creating an object per
+     * interval. The intervals are expected to be sorted by end time, as they
+     * are when written by {@link #writeTo}.
+     *
+     * @param buffer
+     *            The buffer, positioned at the first interval
+     * @param count
+     *            The number of intervals to read
+     * @throws IOException
+     *             If the intervals are corrupt
+     */
+    public void readFrom(ByteBuffer buffer, int count) throws IOException {
+        ensureCapacity(fSize + count);
+        for (int i = 0; i < count; i++) {
+            int index = fSize;
+            long start = buffer.getLong();
+            long end = buffer.getLong();
+            if (start > end) {
+                throw new IOException(ERR_MSG, new TimeRangeException("Start:" + start + ", End:" + end)); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            fStarts[index] = start;
+            fEnds[index] = end;
+            fAttributes[index] = buffer.getInt();
+            byte type = buffer.get();
+            fTypes[index] = type;
+            switch (type) {
+            case HTInterval.TYPE_NULL:
+                fValues[index] = 0;
+                break;
+            case HTInterval.TYPE_INTEGER:
+                fValues[index] = buffer.getInt();
+                break;
+            case HTInterval.TYPE_LONG:
+            case HTInterval.TYPE_DOUBLE:
+                fValues[index] = buffer.getLong();
+                break;
+            case HTInterval.TYPE_STRING:
+            case HTInterval.TYPE_CUSTOM: {
+                int valueStart = buffer.position();
+                int length = Short.BYTES + buffer.getShort();
+                if (length < Short.BYTES) {
+                    throw new IOException(ERR_MSG);
+                }
+                if (type == HTInterval.TYPE_STRING) {
+                    /* Confirm the 0'ed byte at the end */
+                    buffer.position(valueStart + length);
+                    if (buffer.get() != 0) {
+                        throw new IOException(ERR_MSG);
+                    }
+                    length++;
+                }
+                ensurePoolCapacity(fPoolSize + length);
+                buffer.position(valueStart);
+                buffer.get(fPool, fPoolSize, length);
+                fValues[index] = fPoolSize;
+                fPoolSize += length;
+                break;
+            }
+            default:
+                /* Unknown data, better to not make anything up... */
+                throw new IOException(ERR_MSG);
+            }
+            fSize++;
+        }
+    }
+
+    /**
+     * Write all the intervals in a node buffer, in the same format as
+     * {@link HTInterval#writeInterval}
+     *
+     * @param buffer
+     *            The buffer, positioned where to write the first interval
+     */
+    public void writeTo(ByteBuffer buffer) {
+        for (int i = 0; i < fSize; i++) {
+            buffer.putLong(fStarts[i]);
+            buffer.putLong(fEnds[i]);
+            buffer.putInt(fAttributes[i]);
+            byte type = fTypes[i];
+            buffer.put(type);
+            switch (type) {
+            case HTInterval.TYPE_NULL:
+                break;
+            case HTInterval.TYPE_INTEGER:
+                buffer.putInt((int) fValues[i]);
+                break;
+            case HTInterval.TYPE_LONG:
+            case HTInterval.TYPE_DOUBLE:
+                buffer.putLong(fValues[i]);
+                break;
+            default: {
+                int offset = (int) fValues[i];
+                int length = Short.BYTES + poolBuffer(offset).getShort();
+                if (type == HTInterval.TYPE_STRING) {
+                    /* The terminating 0 */
+                    length++;
+                }
+                buffer.put(fPool, offset, length);
+                break;
+            }
+            }
+        }
+    }
+
+    /**
+     * Get the number of bytes used in memory by the intervals
+     *
+     * @return The size in bytes
+     */
+    public long getMemorySize() {
+        return (long) fStarts.length * INTERVAL_ARRAYS_SIZE + fPool.length;
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private ByteBuffer poolBuffer(int offset) {
+        ByteBuffer buffer = ByteBuffer.wrap(fPool);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(offset);
+        return buffer;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= fStarts.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, fStarts.length + (fStarts.length >> 1));
+        fStarts = Arrays.copyOf(fStarts, newCapacity);
+        fEnds = Arrays.copyOf(fEnds, newCapacity);
+        fAttributes = Arrays.copyOf(fAttributes, newCapacity);
+        fTypes = Arrays.copyOf(fTypes, newCapacity);
+        fValues = Arrays.copyOf(fValues, newCapacity);
+    }
+
+    private void ensurePoolCapacity(int capacity) {
+        if (capacity <= fPool.length) {
+            return;
+        }
+        fPool = Arrays.copyOf(fPool, Math.max(capacity, fPool.length + (fPool.length >> 1)));
+    }
+}
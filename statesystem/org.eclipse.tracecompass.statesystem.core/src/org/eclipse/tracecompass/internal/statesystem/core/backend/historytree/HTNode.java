@@ -19,17 +19,15 @@ import java.io.PrintWriter;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.TimeSampling;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
-import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
-
-import com.google.common.collect.Iterables;
 
 /**
  * The base class for all the types of nodes that go in the History Tree.
@@ -109,6 +107,12 @@ public abstract class HTNode {
             + 4 * Integer.BYTES
             + Byte.BYTES;
 
+    /*
+     * Approximate number of bytes used in memory by a node's objects, on top of
+     * its header and intervals.
+     */
+    private static final int NODE_MEMORY_OVERHEAD = 128;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -130,8 +134,8 @@ public abstract class HTNode {
     /* True if this node was read from disk (meaning its end time is now fixed) */
     private volatile boolean fIsOnDisk;
 
-    /* Vector containing all the intervals contained in this node */
-    private final List<HTInterval> fIntervals;
+    /* All the intervals contained in this node, sorted by end time */
+    private final HTIntervalArray fIntervals;
 
     /* Lock used to protect the accesses to intervals, nodeEnd and such */
     private final ReentrantReadWriteLock fRwl = new ReentrantReadWriteLock(false);
@@ -156,7 +160,7 @@ public abstract class HTNode {
 
         fSizeOfIntervalSection = 0;
         fIsOnDisk = false;
-        fIntervals = new ArrayList<>();
+        fIntervals = new HTIntervalArray();
     }
 
     /**
@@ -166,23 +170,49 @@ public abstract class HTNode {
      * @param config
      *            Configuration of the History Tree
      * @param fc
-     *            FileChannel to the history file, ALREADY SEEKED at the start
-     *            of the node.
+     *            FileChannel to the history file
+     * @param position
+     *            The position of the node in the file. The position of the
+     *            channel is not used nor modified, so several threads can read
+     *            nodes from the same channel at the same time.
      * @return The node object
      * @throws IOException
      *             If there was an error reading from the file channel
      */
-    public static final @NonNull HTNode readNode(HTConfig config, FileChannel fc)
+    public static final @NonNull HTNode readNode(HTConfig config, FileChannel fc, long position)
             throws IOException {
-        HTNode newNode = null;
-        int res, i;
-
         ByteBuffer buffer = ByteBuffer.allocate(config.getBlockSize());
         buffer.order(ByteOrder.LITTLE_ENDIAN);
         buffer.clear();
-        res = fc.read(buffer);
-        assert (res == config.getBlockSize());
+        while (buffer.hasRemaining()) {
+            if (fc.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        assert (!buffer.hasRemaining());
         buffer.flip();
+        return readNode(config, buffer);
+    }
+
+    /**
+     * Reader factory method. Build a Node object (of the right type) from a
+     * block of the file already in memory, for example a region of a
+     * memory-mapped file.
+     *
+     * @param config
+     *            Configuration of the History Tree
+     * @param buffer
+     *            The buffer containing the node, positioned at the start of
+     *            the node. Its byte order will be set to little endian.
+     * @return The node object
+     * @throws IOException
+     *             If the buffer does not contain a valid node
+     */
+    public static final @NonNull HTNode readNode(HTConfig config, ByteBuffer buffer)
+            throws IOException {
+        HTNode newNode = null;
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
 
         /* Read the common header part */
         byte typeByte = buffer.get();
@@ -217,11 +247,9 @@ public abstract class HTNode {
          * At this point, we should be done reading the header and 'buffer'
          * should only have the intervals left
          */
-        for (i = 0; i < intervalCount; i++) {
-            HTInterval interval = HTInterval.readFrom(buffer);
-            newNode.fIntervals.add(interval);
-            newNode.fSizeOfIntervalSection += interval.getSizeOnDisk();
-        }
+        int intervalsStart = buffer.position();
+        newNode.fIntervals.readFrom(buffer, intervalCount);
+        newNode.fSizeOfIntervalSection = buffer.position() - intervalsStart;
 
         /* Assign the node's other information we have read previously */
         newNode.fNodeEnd = end;
@@ -265,7 +293,7 @@ public abstract class HTNode {
             writeSpecificHeader(buffer);
 
             /* Back to us, we write the intervals */
-            fIntervals.forEach(i -> i.writeInterval(buffer));
+            fIntervals.writeTo(buffer);
 
             /*
              * Fill the rest with zeros
@@ -371,13 +399,7 @@ public abstract class HTNode {
             /* Just in case, should be checked before even calling this function */
             assert (newInterval.getSizeOnDisk() <= getNodeFreeSpace());
 
-            /* Find the insert position to keep the list sorted */
-            int index = fIntervals.size();
-            while (index > 0 && newInterval.compareTo(fIntervals.get(index - 1)) < 0) {
-                index--;
-            }
-
-            fIntervals.add(index, newInterval);
+            fIntervals.add(newInterval);
             fSizeOfIntervalSection += newInterval.getSizeOnDisk();
 
         } finally {
@@ -403,13 +425,14 @@ public abstract class HTNode {
 //                throw new IllegalArgumentException("Endtime " + endtime + " cannot be lower than start time " + fNodeStart);
 //            }
 
-            if (!fIntervals.isEmpty()) {
+            int nbIntervals = fIntervals.size();
+            if (nbIntervals > 0) {
                 /*
                  * Make sure there are no intervals in this node with their
                  * EndTime > the one requested. Only need to check the last one
                  * since they are sorted
                  */
-                if (endtime < Iterables.getLast(fIntervals).getEndTime()) {
+                if (endtime < fIntervals.getEnd(nbIntervals - 1)) {
                     throw new IllegalArgumentException("Closing end time should be greater than or equal to the end time of the intervals of this node"); //$NON-NLS-1$
                 }
             }
@@ -447,10 +470,10 @@ public abstract class HTNode {
                  * been created after stateInfo was instantiated (they would be
                  * null anyway).
                  */
-                ITmfStateInterval interval = fIntervals.get(i);
-                if (t >= interval.getStartTime() &&
-                        interval.getAttribute() < stateInfo.size()) {
-                    stateInfo.set(interval.getAttribute(), interval);
+                int attribute = fIntervals.getAttribute(i);
+                if (t >= fIntervals.getStart(i) &&
+                        attribute < stateInfo.size()) {
+                    stateInfo.set(attribute, fIntervals.getInterval(i));
                 }
             }
         } finally {
@@ -475,11 +498,10 @@ public abstract class HTNode {
         fRwl.readLock().lock();
         try {
             for (int i = getStartIndexFor(t); i < fIntervals.size(); i++) {
-                HTInterval curInterval = fIntervals.get(i);
-                if (curInterval.getAttribute() == key
-                        && curInterval.getStartTime() <= t
-                        && curInterval.getEndTime() >= t) {
-                    return curInterval;
+                if (fIntervals.getAttribute(i) == key
+                        && fIntervals.getStart(i) <= t
+                        && fIntervals.getEnd(i) >= t) {
+                    return fIntervals.getInterval(i);
                 }
             }
 
@@ -491,42 +513,40 @@ public abstract class HTNode {
         }
     }
 
-    private int getStartIndexFor(long t) throws TimeRangeException {
+    /**
+     * Get all the intervals of this node whose attribute is one of the given
+     * ones and which contain at least one of the sampled timestamps. This is
+     * used by the 2D queries, which read each node only once.
+     *
+     * @param intervals
+     *            The collection to which the matching intervals are added
+     * @param quarks
+     *            The attributes we are looking for
+     * @param sampling
+     *            The sampled timestamps
+     */
+    public void collectIntervals(Collection<@NonNull ITmfStateInterval> intervals, BitSet quarks, TimeSampling sampling) {
+        fRwl.readLock().lock();
+        try {
+            for (int i = getStartIndexFor(sampling.getStart()); i < fIntervals.size(); i++) {
+                if (quarks.get(fIntervals.getAttribute(i))
+                        && sampling.intersects(fIntervals.getStart(i), fIntervals.getEnd(i))) {
+                    intervals.add(fIntervals.getInterval(i));
+                }
+            }
+        } finally {
+            fRwl.readLock().unlock();
+        }
+    }
+
+    private int getStartIndexFor(long t) {
         /* Should only be called by methods with the readLock taken */
 
-        if (fIntervals.isEmpty()) {
-            return 0;
-        }
         /*
          * Since the intervals are sorted by end time, we can skip all the ones
-         * at the beginning whose end times are smaller than 't'. Java does
-         * provides a .binarySearch method, but its API is quite weird...
+         * at the beginning whose end times are smaller than 't'.
          */
-        HTInterval dummy = new HTInterval(0, t, 0, TmfStateValue.nullValue());
-        int index = Collections.binarySearch(fIntervals, dummy);
-
-        if (index < 0) {
-            /*
-             * .binarySearch returns a negative number if the exact value was
-             * not found. Here we just want to know where to start searching, we
-             * don't care if the value is exact or not.
-             */
-            index = -index - 1;
-
-        } else {
-            /*
-             * Another API quirkiness, the returned index is the one of the *last*
-             * element of a series of equal endtimes, which happens sometimes. We
-             * want the *first* element of such a series, to read through them
-             * again.
-             */
-            while (index > 0
-                    && fIntervals.get(index - 1).compareTo(fIntervals.get(index)) == 0) {
-                index--;
-            }
-        }
-
-        return index;
+        return fIntervals.firstIndexEndingAfter(t);
     }
 
     /**
@@ -545,6 +565,22 @@ public abstract class HTNode {
         return getTotalHeaderSize() + fSizeOfIntervalSection;
     }
 
+    /**
+     * Get an estimate of the memory used by this node, header and intervals
+     * included. This is what the node cache is bounded by.
+     *
+     * @return The estimated size of this node in memory, in bytes
+     */
+    public long getMemorySize() {
+        fRwl.readLock().lock();
+        try {
+            return NODE_MEMORY_OVERHEAD + getTotalHeaderSize()
+                    + fIntervals.getMemorySize();
+        } finally {
+            fRwl.readLock().unlock();
+        }
+    }
+
     /**
      * Returns the free space in the node, which is simply put, the
      * stringSectionOffset - dataSectionOffset
@@ -626,7 +662,7 @@ public abstract class HTNode {
         /* List of intervals in the node */
         writer.println("  Intervals contained:");
         for (int i = 0; i < fIntervals.size(); i++) {
-            writer.println(fIntervals.get(i).toString());
+            writer.println(fIntervals.getInterval(i).toString());
         }
         writer.println('\n');
     }
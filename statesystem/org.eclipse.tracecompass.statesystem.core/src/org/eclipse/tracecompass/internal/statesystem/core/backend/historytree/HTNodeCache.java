@@ -0,0 +1,489 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Cache of the history tree nodes read from disk, shared by all the open
+ * history trees.
+ * <p>
+ * The cache is bounded by the estimated memory size of the nodes it holds
+ * rather than by their number, and a single history tree cannot take more
+ * than a given share of it, so the trees of a big experiment do not evict each
+ * other's nodes. The cache is split in segments, each with its own lock and
+ * LRU order, so concurrent queries do not wait on each other, and nodes are
+ * read from disk outside of any lock.
+ * <p>
+ * The default cache can be sized with the following system properties:
+ * <ul>
+ * <li><code>org.eclipse.tracecompass.statesystem.core.nodeCache.size</code>:
+ * the maximum size of the cache, in MB. Defaults to 1/16 of the maximum heap
+ * size.</li>
+ * <li><code>org.eclipse.tracecompass.statesystem.core.nodeCache.treeQuota</code>:
+ * the maximum share of the cache a single history tree can use, in percent.
+ * Defaults to 50.</li>
+ * </ul>
+ *
+ * @author Matthew Khouzam
+ */
+public final class HTNodeCache {
+
+    private static final Logger LOGGER = TraceCompassLog.getLogger(HTNodeCache.class);
+
+    private static final String SIZE_PROPERTY = "org.eclipse.tracecompass.statesystem.core.nodeCache.size"; //$NON-NLS-1$
+    private static final String QUOTA_PROPERTY = "org.eclipse.tracecompass.statesystem.core.nodeCache.treeQuota"; //$NON-NLS-1$
+
+    private static final long MB = 1024 * 1024;
+    private static final int DEFAULT_HEAP_FRACTION = 16;
+    private static final int DEFAULT_TREE_QUOTA = 50;
+    private static final int NB_SEGMENTS = 16;
+
+    private static final HTNodeCache DEFAULT = new HTNodeCache(getConfiguredSize(), getConfiguredQuota());
+
+    /**
+     * Reads a node from the history file when it is not in the cache
+     */
+    @FunctionalInterface
+    public interface INodeReader {
+        /**
+         * Read a node from disk
+         *
+         * @param seqNumber
+         *            The sequence number of the node
+         * @return The node
+         * @throws IOException
+         *             If the node could not be read
+         */
+        @NonNull HTNode readNode(int seqNumber) throws IOException;
+    }
+
+    /**
+     * The accounting of one history tree in the cache. The nodes of a tree are
+     * identified by its account.
+     */
+    public static final class TreeAccount {
+        private final AtomicLong fSize = new AtomicLong();
+        private final Stats fStats = new Stats();
+        /* Incremented when the nodes of the tree are invalidated */
+        private final AtomicLong fGeneration = new AtomicLong();
+
+        private TreeAccount() {
+        }
+
+        /**
+         * Get the estimated memory size of the nodes of this tree currently in
+         * the cache
+         *
+         * @return The size, in bytes
+         */
+        public long getSize() {
+            return fSize.get();
+        }
+
+        /**
+         * Get the cache statistics of this tree
+         *
+         * @return A snapshot of the statistics
+         */
+        public CacheStats getStats() {
+            return fStats.snapshot();
+        }
+    }
+
+    private static final class Stats {
+        private final LongAdder fHits = new LongAdder();
+        private final LongAdder fMisses = new LongAdder();
+        private final LongAdder fLoads = new LongAdder();
+        private final LongAdder fLoadErrors = new LongAdder();
+        private final LongAdder fLoadTime = new LongAdder();
+        private final LongAdder fEvictions = new LongAdder();
+
+        public CacheStats snapshot() {
+            return new CacheStats(fHits.sum(), fMisses.sum(), fLoads.sum(),
+                    fLoadErrors.sum(), fLoadTime.sum(), fEvictions.sum());
+        }
+    }
+
+    private static final class CacheKey {
+        private final TreeAccount fAccount;
+        private final int fSeqNumber;
+
+        public CacheKey(TreeAccount account, int seqNumber) {
+            fAccount = account;
+            fSeqNumber = seqNumber;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(fAccount) + fSeqNumber;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return (fAccount == other.fAccount && fSeqNumber == other.fSeqNumber);
+        }
+    }
+
+    private static final class CacheEntry {
+        private final HTNode fNode;
+        private final long fSize;
+
+        public CacheEntry(HTNode node) {
+            fNode = node;
+            fSize = node.getMemorySize();
+        }
+    }
+
+    /**
+     * A part of the cache, with its own lock and LRU order. The limits of the
+     * cache apply to each segment proportionally.
+     */
+    private final class Segment {
+        /* Access-ordered, the eldest entry is the least recently used one */
+        private final LinkedHashMap<CacheKey, CacheEntry> fEntries = new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<TreeAccount, Long> fAccountSizes = new HashMap<>();
+        private long fSize = 0;
+
+        public synchronized @Nullable HTNode get(CacheKey key) {
+            CacheEntry entry = fEntries.get(key);
+            return (entry == null ? null : entry.fNode);
+        }
+
+        /*
+         * Insert a node. If the key is already cached and 'replace' is false,
+         * the cached node is kept and returned. The node is not inserted if
+         * the tree was invalidated since the given generation.
+         */
+        public synchronized HTNode put(CacheKey key, HTNode node, boolean replace, long generation) {
+            if (key.fAccount.fGeneration.get() != generation) {
+                return node;
+            }
+            CacheEntry previous = fEntries.get(key);
+            if (previous != null) {
+                if (!replace) {
+                    return previous.fNode;
+                }
+                remove(key, previous);
+            }
+            CacheEntry entry = new CacheEntry(node);
+            fEntries.put(key, entry);
+            addSize(key.fAccount, entry.fSize);
+
+            /* Enforce the quota of the tree, then the size of the segment */
+            while (getAccountSize(key.fAccount) > fSegmentTreeQuota && evictEldest(key.fAccount, key)) {
+                /* Keep evicting */
+            }
+            while (fSize > fSegmentSize && evictEldest(null, key)) {
+                /* Keep evicting */
+            }
+            return node;
+        }
+
+        public synchronized void invalidate(TreeAccount account) {
+            Iterator<Entry<CacheKey, CacheEntry>> iter = fEntries.entrySet().iterator();
+            while (iter.hasNext()) {
+                Entry<CacheKey, CacheEntry> entry = iter.next();
+                if (entry.getKey().fAccount == account) {
+                    iter.remove();
+                    addSize(account, -entry.getValue().fSize);
+                }
+            }
+        }
+
+        public synchronized void clear() {
+            for (Entry<CacheKey, CacheEntry> entry : fEntries.entrySet()) {
+                entry.getKey().fAccount.fSize.addAndGet(-entry.getValue().fSize);
+            }
+            fEntries.clear();
+            fAccountSizes.clear();
+            fSize = 0;
+        }
+
+        /*
+         * Evict the least recently used entry, of the given tree if it is not
+         * null, never evicting the entry that was just inserted.
+         */
+        private boolean evictEldest(@Nullable TreeAccount account, CacheKey inserted) {
+            for (Entry<CacheKey, CacheEntry> entry : fEntries.entrySet()) {
+                CacheKey key = entry.getKey();
+                if (key != inserted && (account == null || key.fAccount == account)) {
+                    remove(key, entry.getValue());
+                    key.fAccount.fStats.fEvictions.increment();
+                    fStats.fEvictions.increment();
+                    LOGGER.finest(() -> "[HtNodeCache:Eviction] seqNum=" + key.fSeqNumber); //$NON-NLS-1$
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void remove(CacheKey key, CacheEntry entry) {
+            fEntries.remove(key);
+            addSize(key.fAccount, -entry.fSize);
+        }
+
+        private long getAccountSize(TreeAccount account) {
+            Long size = fAccountSizes.get(account);
+            return (size == null ? 0 : size);
+        }
+
+        private void addSize(TreeAccount account, long size) {
+            long newSize = getAccountSize(account) + size;
+            if (newSize == 0) {
+                fAccountSizes.remove(account);
+            } else {
+                fAccountSizes.put(account, newSize);
+            }
+            account.fSize.addAndGet(size);
+            fSize += size;
+        }
+    }
+
+    private final long fMaxSize;
+    private final int fTreeQuota;
+    private final long fSegmentSize;
+    private final long fSegmentTreeQuota;
+    private final Segment[] fSegments;
+    private final Stats fStats = new Stats();
+
+    /**
+     * Constructor
+     *
+     * @param maxSize
+     *            The maximum estimated memory size of the cached nodes, in
+     *            bytes
+     * @param treeQuota
+     *            The maximum share of the cache a single history tree can use,
+     *            in percent
+     */
+    public HTNodeCache(long maxSize, int treeQuota) {
+        if (maxSize <= 0 || treeQuota <= 0 || treeQuota > 100) {
+            throw new IllegalArgumentException("Size: " + maxSize + ", Quota: " + treeQuota); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        fMaxSize = maxSize;
+        fTreeQuota = treeQuota;
+        fSegmentSize = Math.max(1, maxSize / NB_SEGMENTS);
+        fSegmentTreeQuota = Math.max(1, fSegmentSize * treeQuota / 100);
+        fSegments = new HTNodeCache.Segment[NB_SEGMENTS];
+        for (int i = 0; i < NB_SEGMENTS; i++) {
+            fSegments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Get the cache shared by the history trees that do not specify one
+     *
+     * @return The default cache
+     */
+    public static HTNodeCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Register a history tree in this cache
+     *
+     * @return The account of the tree, used to identify its nodes
+     */
+    public TreeAccount register() {
+        return new TreeAccount();
+    }
+
+    /**
+     * Get a node from the cache, reading it from disk if it is not cached.
+     *
+     * @param account
+     *            The account of the tree the node belongs to
+     * @param seqNumber
+     *            The sequence number of the node
+     * @param reader
+     *            Reads the node from disk in case of a cache miss
+     * @return The node
+     * @throws IOException
+     *             If the node had to be read and could not be
+     */
+    public @NonNull HTNode get(TreeAccount account, int seqNumber, INodeReader reader) throws IOException {
+        CacheKey key = new CacheKey(account, seqNumber);
+        Segment segment = getSegment(key);
+        HTNode node = segment.get(key);
+        if (node != null) {
+            account.fStats.fHits.increment();
+            fStats.fHits.increment();
+            return node;
+        }
+
+        account.fStats.fMisses.increment();
+        fStats.fMisses.increment();
+        LOGGER.finest(() -> "[HtNodeCache:CacheMiss] seqNum=" + seqNumber); //$NON-NLS-1$
+
+        /*
+         * Read the node without holding the segment's lock. If another thread
+         * read the same node in the meantime, keep the one already cached. If
+         * the tree is invalidated in the meantime, the node is not cached.
+         */
+        long generation = account.fGeneration.get();
+        long start = System.nanoTime();
+        try {
+            node = reader.readNode(seqNumber);
+        } catch (IOException | RuntimeException e) {
+            account.fStats.fLoadErrors.increment();
+            fStats.fLoadErrors.increment();
+            throw e;
+        }
+        long loadTime = System.nanoTime() - start;
+        account.fStats.fLoads.increment();
+        account.fStats.fLoadTime.add(loadTime);
+        fStats.fLoads.increment();
+        fStats.fLoadTime.add(loadTime);
+        return segment.put(key, node, false, generation);
+    }
+
+    /**
+     * Put a node in the cache, replacing the cached one if any. Used when a
+     * node is written to disk.
+     *
+     * @param account
+     *            The account of the tree the node belongs to
+     * @param node
+     *            The node
+     */
+    public void put(TreeAccount account, HTNode node) {
+        CacheKey key = new CacheKey(account, node.getSequenceNumber());
+        getSegment(key).put(key, node, true, account.fGeneration.get());
+    }
+
+    /**
+     * Remove all the nodes of a tree from the cache, for example when its file
+     * is closed. The nodes being read at the same time are not cached.
+     *
+     * @param account
+     *            The account of the tree
+     */
+    public void invalidate(TreeAccount account) {
+        account.fGeneration.incrementAndGet();
+        for (Segment segment : fSegments) {
+            segment.invalidate(account);
+        }
+    }
+
+    /**
+     * Remove all the nodes from the cache
+     */
+    @VisibleForTesting
+    public void clear() {
+        for (Segment segment : fSegments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Get the maximum estimated memory size of the cached nodes
+     *
+     * @return The maximum size, in bytes
+     */
+    public long getMaximumSize() {
+        return fMaxSize;
+    }
+
+    /**
+     * Get the maximum share of the cache a single history tree can use
+     *
+     * @return The quota, in percent
+     */
+    public int getTreeQuota() {
+        return fTreeQuota;
+    }
+
+    /**
+     * Get the estimated memory size of the nodes currently in the cache
+     *
+     * @return The size, in bytes
+     */
+    public long getSize() {
+        long size = 0;
+        for (Segment segment : fSegments) {
+            synchronized (segment) {
+                size += segment.fSize;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Get the statistics of the cache, for all the trees
+     *
+     * @return A snapshot of the statistics
+     */
+    public CacheStats getStats() {
+        return fStats.snapshot();
+    }
+
+    private Segment getSegment(CacheKey key) {
+        int hash = key.hashCode();
+        /* Spread the bits, consecutive nodes go to different segments */
+        hash ^= (hash >>> 16);
+        return fSegments[(hash & 0x7fffffff) % NB_SEGMENTS];
+    }
+
+    private static long getConfiguredSize() {
+        long defaultSize = Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_FRACTION;
+        String property = System.getProperty(SIZE_PROPERTY);
+        if (property != null) {
+            try {
+                long size = Long.parseLong(property.trim()) * MB;
+                if (size > 0) {
+                    return size;
+                }
+            } catch (NumberFormatException e) {
+                /* Use the default size */
+            }
+            LOGGER.warning(() -> "[HtNodeCache:InvalidSize] value=" + property); //$NON-NLS-1$
+        }
+        return defaultSize;
+    }
+
+    private static int getConfiguredQuota() {
+        String property = System.getProperty(QUOTA_PROPERTY);
+        if (property != null) {
+            try {
+                int quota = Integer.parseInt(property.trim());
+                if (quota > 0 && quota <= 100) {
+                    return quota;
+                }
+            } catch (NumberFormatException e) {
+                /* Use the default quota */
+            }
+            LOGGER.warning(() -> "[HtNodeCache:InvalidQuota] value=" + property); //$NON-NLS-1$
+        }
+        return DEFAULT_TREE_QUOTA;
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  * Copyright (c) 2010, 2011 École Polytechnique de Montréal
  * Copyright (c) 2010, 2011 Alexandre Montplaisir <alexandre.montplaisir@gmail.com>
  *
@@ -12,27 +12,26 @@
 
 package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
-import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
-
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
 import org.eclipse.jdt.annotation.NonNull;
-import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
-import java.util.Objects;
-import java.util.concurrent.ExecutionException;
-
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
 import org.eclipse.tracecompass.internal.statesystem.core.Activator;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNodeCache.TreeAccount;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.CacheStats;
 
 /**
  * This class abstracts inputs/outputs of the HistoryTree nodes.
@@ -49,63 +48,55 @@ public class HT_IO {
 
     private static final Logger LOGGER = TraceCompassLog.getLogger(HT_IO.class);
 
-    // ------------------------------------------------------------------------
-    // Global cache of nodes
-    // ------------------------------------------------------------------------
-
-    private static final class CacheKey {
-
-        public final HT_IO fStateHistory;
-        public final int fSeqNumber;
+    /**
+     * System property to disable the memory-mapped reads of finished trees.
+     * They are disabled by default on Windows, where a mapped file cannot be
+     * deleted until the mapping is garbage collected.
+     */
+    private static final String MAPPED_READS_PROPERTY = "org.eclipse.tracecompass.statesystem.core.mappedReads"; //$NON-NLS-1$
 
-        public CacheKey(HT_IO stateHistory,  int seqNumber) {
-            fStateHistory = stateHistory;
-            fSeqNumber = seqNumber;
+    private static final boolean MAPPED_READS_ENABLED;
+    static {
+        String property = System.getProperty(MAPPED_READS_PROPERTY);
+        if (property != null) {
+            MAPPED_READS_ENABLED = Boolean.parseBoolean(property);
+        } else {
+            String os = System.getProperty("os.name"); //$NON-NLS-1$
+            MAPPED_READS_ENABLED = (os == null || !os.startsWith("Windows")); //$NON-NLS-1$
         }
+    }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(fStateHistory, fSeqNumber);
+    /** Maximum size of one mapped region, a MappedByteBuffer is int-indexed */
+    private static final int MAX_MAPPED_REGION_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * Read-only mapping of the nodes of a finished tree, split in regions of
+     * whole nodes.
+     */
+    private static final class NodeMapping {
+        private final List<MappedByteBuffer> fRegions;
+        private final int fNodesPerRegion;
+        private final int fNodeCount;
+
+        public NodeMapping(List<MappedByteBuffer> regions, int nodesPerRegion, int nodeCount) {
+            fRegions = regions;
+            fNodesPerRegion = nodesPerRegion;
+            fNodeCount = nodeCount;
         }
 
-        @Override
-        public boolean equals(@Nullable Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null) {
-                return false;
+        /* Get a view of the node, the mapped buffers are not modified */
+        public @Nullable ByteBuffer getNode(int seqNumber, int blockSize) {
+            if (seqNumber < 0 || seqNumber >= fNodeCount) {
+                return null;
             }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            CacheKey other = (CacheKey) obj;
-            return (fStateHistory.equals(other.fStateHistory) &&
-                    fSeqNumber == other.fSeqNumber);
+            ByteBuffer node = fRegions.get(seqNumber / fNodesPerRegion).duplicate();
+            int offset = (seqNumber % fNodesPerRegion) * blockSize;
+            node.position(offset);
+            node.limit(offset + blockSize);
+            return node.slice();
         }
     }
 
-    private static final int CACHE_SIZE = 256;
-
-    private static final LoadingCache<CacheKey, HTNode> NODE_CACHE =
-        checkNotNull(CacheBuilder.newBuilder()
-            .maximumSize(CACHE_SIZE)
-            .build(new CacheLoader<CacheKey, HTNode>() {
-                @Override
-                public HTNode load(CacheKey key) throws IOException {
-                    HT_IO io = key.fStateHistory;
-                    int seqNb = key.fSeqNumber;
-
-                    LOGGER.finest(() -> "[HtIo:CacheMiss] seqNum=" + seqNb); //$NON-NLS-1$
-
-                    synchronized (io) {
-                        io.seekFCToNodePos(io.fFileChannelIn, seqNb);
-                        return HTNode.readNode(io.fConfig, io.fFileChannelIn);
-                    }
-                }
-            }));
-
-
     // ------------------------------------------------------------------------
     // Instance fields
     // ------------------------------------------------------------------------
@@ -119,14 +110,19 @@ public class HT_IO {
     private final FileChannel fFileChannelIn;
     private final FileChannel fFileChannelOut;
 
+    /* Cache of the nodes read from disk, and this tree's account in it */
+    private final HTNodeCache fCache;
+    private final TreeAccount fCacheAccount;
+
+    /* Mapping of the nodes, once the tree is finished */
+    private volatile @Nullable NodeMapping fNodeMapping = null;
+
     // ------------------------------------------------------------------------
     // Methods
     // ------------------------------------------------------------------------
 
-
-
     /**
-     * Standard constructor
+     * Standard constructor, using the default node cache
      *
      * @param config
      *            The configuration object for the StateHistoryTree
@@ -137,7 +133,26 @@ public class HT_IO {
      *             An exception can be thrown when file cannot be accessed
      */
     public HT_IO(HTConfig config, boolean newFile) throws IOException {
+        this(config, newFile, HTNodeCache.getDefault());
+    }
+
+    /**
+     * Constructor with a specific node cache
+     *
+     * @param config
+     *            The configuration object for the StateHistoryTree
+     * @param newFile
+     *            Flag indicating that the file must be created from scratch
+     * @param cache
+     *            The cache in which to keep the nodes read from disk
+     *
+     * @throws IOException
+     *             An exception can be thrown when file cannot be accessed
+     */
+    public HT_IO(HTConfig config, boolean newFile, HTNodeCache cache) throws IOException {
         fConfig = config;
+        fCache = cache;
+        fCacheAccount = cache.register();
 
         File historyTreeFile = config.getStateFile();
         if (newFile) {
@@ -180,16 +195,15 @@ public class HT_IO {
     public @NonNull HTNode readNode(int seqNumber) throws ClosedChannelException {
         /* Do a cache lookup. If it's not present it will be loaded from disk */
         LOGGER.finest(() -> "[HtIo:CacheLookup] seqNum=" + seqNumber); //$NON-NLS-1$
-        CacheKey key = new CacheKey(this, seqNumber);
         try {
-            return checkNotNull(NODE_CACHE.get(key));
-
-        } catch (ExecutionException e) {
-            /* Get the inner exception that was generated */
-            Throwable cause = e.getCause();
-            if (cause instanceof ClosedChannelException) {
-                throw (ClosedChannelException) cause;
-            }
+            /*
+             * Positional reads do not use the position of the channel, no need
+             * to lock it.
+             */
+            return fCache.get(fCacheAccount, seqNumber, this::readNodeFromDisk);
+        } catch (ClosedChannelException e) {
+            throw e;
+        } catch (IOException e) {
             /*
              * Other types of IOExceptions shouldn't happen at this point though.
              */
@@ -198,6 +212,70 @@ public class HT_IO {
         }
     }
 
+    private @NonNull HTNode readNodeFromDisk(int seqNumber) throws IOException {
+        NodeMapping mapping = fNodeMapping;
+        if (mapping != null) {
+            /*
+             * Decode the node straight from the mapped file. The intervals
+             * are not queried in place: string and custom values make them
+             * variable-sized, so finding one in the block means decoding all
+             * those before it anyway. The node is decoded once into its
+             * primitive arrays, and the node cache then serves all the
+             * queries that go through it.
+             */
+            ByteBuffer buffer = mapping.getNode(seqNumber, fConfig.getBlockSize());
+            if (buffer != null) {
+                return HTNode.readNode(fConfig, buffer);
+            }
+        }
+        return HTNode.readNode(fConfig, fFileChannelIn, getNodePosition(seqNumber));
+    }
+
+    /**
+     * Switch to the read-only mode of a finished tree, where nodes are read
+     * from a memory mapping of the file instead of through the file channel.
+     * The file is then read through the OS page cache, without any system
+     * call nor intermediate copy of the block to a heap buffer. The nodes are
+     * still decoded before being cached. This does nothing if the mapped
+     * reads are disabled or if the file cannot be mapped.
+     *
+     * @param nodeCount
+     *            The number of nodes in the file, none must be added
+     *            afterwards
+     */
+    public void enableMappedReads(int nodeCount) {
+        if (!MAPPED_READS_ENABLED || nodeCount <= 0 || fNodeMapping != null) {
+            return;
+        }
+        int blockSize = fConfig.getBlockSize();
+        int nodesPerRegion = Math.max(1, MAX_MAPPED_REGION_SIZE / blockSize);
+        List<MappedByteBuffer> regions = new ArrayList<>();
+        try {
+            /* Only map the nodes that are really in the file */
+            long nodesInFile = (fFileChannelIn.size() - IHistoryTree.TREE_HEADER_SIZE) / blockSize;
+            int nbNodes = (int) Math.min(nodeCount, nodesInFile);
+            for (int first = 0; first < nbNodes; first += nodesPerRegion) {
+                long size = (long) Math.min(nodesPerRegion, nbNodes - first) * blockSize;
+                regions.add(fFileChannelIn.map(MapMode.READ_ONLY, getNodePosition(first), size));
+            }
+            if (nbNodes > 0) {
+                fNodeMapping = new NodeMapping(regions, nodesPerRegion, nbNodes);
+            }
+        } catch (IOException e) {
+            /* Keep reading through the file channel */
+            Activator.getDefault().logWarning("Could not map the history file " + fConfig.getStateFile().getName(), e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Get if the nodes are read from a memory mapping of the file
+     *
+     * @return If the mapped reads are enabled for this tree
+     */
+    public boolean isMapped() {
+        return fNodeMapping != null;
+    }
+
     /**
      * Write the given node to disk.
      *
@@ -209,8 +287,7 @@ public class HT_IO {
             int seqNumber = node.getSequenceNumber();
 
             /* "Write-back" the node into the cache */
-            CacheKey key = new CacheKey(this, seqNumber);
-            NODE_CACHE.put(key, node);
+            fCache.put(fCacheAccount, node);
 
             /* Position ourselves at the start of the node and write it */
             synchronized (this) {
@@ -223,6 +300,15 @@ public class HT_IO {
         }
     }
 
+    /**
+     * Get the statistics of the node cache for this history tree
+     *
+     * @return A snapshot of the cache statistics
+     */
+    public CacheStats getCacheStats() {
+        return fCacheAccount.getStats();
+    }
+
     /**
      * Get the output file channel, used for writing.
      *
@@ -257,6 +343,9 @@ public class HT_IO {
      * Close all file channels and streams.
      */
     public synchronized void closeFile() {
+        /* The nodes of this tree cannot be read anymore */
+        fNodeMapping = null;
+        fCache.invalidate(fCacheAccount);
         try {
             fFileInputStream.close();
             fFileOutputStream.close();
@@ -291,12 +380,16 @@ public class HT_IO {
      */
     private void seekFCToNodePos(FileChannel fc, int seqNumber)
             throws IOException {
+        fc.position(getNodePosition(seqNumber));
+    }
+
+    private long getNodePosition(int seqNumber) {
         /*
          * Cast to (long) is needed to make sure the result is a long too and
          * doesn't get truncated
          */
-        fc.position(IHistoryTree.TREE_HEADER_SIZE
-                + ((long) seqNumber) * fConfig.getBlockSize());
+        return IHistoryTree.TREE_HEADER_SIZE
+                + ((long) seqNumber) * fConfig.getBlockSize();
     }
 
 }
@@ -19,12 +19,16 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.internal.statesystem.core.Activator;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.TimeSampling;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
@@ -33,6 +37,7 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheStats;
 
 /**
  * History Tree backend for storing a state history. This is the basic version
@@ -303,6 +308,74 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This walks the tree only once, reading each node intersecting the
+     * sampled timestamps only once, instead of going down from the root node
+     * for every queried timestamp.
+     */
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<@NonNull Integer> quarks,
+            long start, long end, long resolution)
+            throws TimeRangeException, StateSystemDisposedException {
+        if (!isTreeComplete()) {
+            return IStateHistoryBackend.super.query2D(quarks, start, end, resolution);
+        }
+        checkValidTime(start);
+        checkValidTime(end);
+        TimeSampling sampling = new TimeSampling(start, end, resolution);
+        BitSet quarkSet = new BitSet();
+        for (int quark : quarks) {
+            quarkSet.set(quark);
+        }
+
+        List<@NonNull ITmfStateInterval> intervals = new ArrayList<>();
+        Deque<HTNode> queue = new LinkedList<>();
+        queue.add(getSHT().getRootNode());
+        try {
+            while (!queue.isEmpty()) {
+                HTNode currentNode = queue.pop();
+                if (currentNode.getNodeType() == HTNode.NodeType.CORE) {
+                    queueSampledChildren((CoreNode) currentNode, sampling, queue);
+                }
+                currentNode.collectIntervals(intervals, quarkSet, sampling);
+            }
+        } catch (ClosedChannelException e) {
+            throw new StateSystemDisposedException(e);
+        }
+        return intervals;
+    }
+
+    /**
+     * Add to the queue the children of a core node whose time range contains
+     * at least one sampled timestamp. A child's range ends where the range of
+     * the next one starts, the latest child ends with its parent.
+     */
+    private void queueSampledChildren(CoreNode node, TimeSampling sampling, Deque<HTNode> queue)
+            throws ClosedChannelException {
+        int nbChildren = node.getNbChildren();
+        long nodeEnd = node.isOnDisk() ? node.getNodeEnd() : Long.MAX_VALUE;
+        for (int i = 0; i < nbChildren; i++) {
+            long childStart = node.getChildStart(i);
+            long childEnd = (i + 1 < nbChildren) ? node.getChildStart(i + 1) : nodeEnd;
+            if (sampling.intersects(childStart, childEnd)) {
+                queue.add(getSHT().readNode(node.getChild(i)));
+            }
+        }
+    }
+
+    /**
+     * Indicates if all the intervals inserted so far can be found in the tree.
+     * If not, the bulk queries fall back to singular queries, which know
+     * where else to look.
+     *
+     * @return If the tree holds all the inserted intervals
+     */
+    protected boolean isTreeComplete() {
+        return true;
+    }
+
     private void checkValidTime(long t) {
         long startTime = getStartTime();
         long endTime = getEndTime();
@@ -342,6 +415,16 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         return getSHT().getFileSize();
     }
 
+    /**
+     * Return the statistics of the node cache for this history tree, to see
+     * if it is big enough for the queries done on the tree
+     *
+     * @return A snapshot of the cache statistics
+     */
+    public CacheStats getCacheStats() {
+        return getSHT().getCacheStats();
+    }
+
     /**
      * Return the average node usage as a percentage (between 0 and 100)
      *
@@ -31,6 +31,7 @@ import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
 
 /**
@@ -194,6 +195,7 @@ public class HistoryTreeClassic implements IHistoryTree {
          * the SHT otherwise?
          */
         fTreeIO = new HT_IO(fConfig, false);
+        fTreeIO.enableMappedReads(fNodeCount);
 
         fLatestBranch = buildLatestBranch(rootNodeSeqNb);
         fTreeEnd = getRootNode().getNodeEnd();
@@ -281,6 +283,9 @@ public class HistoryTreeClassic implements IHistoryTree {
                 assert (res <= TREE_HEADER_SIZE);
                 /* done writing the file header */
 
+                /* The tree is finished, its nodes can be read from a mapping */
+                fTreeIO.enableMappedReads(fNodeCount);
+
             } catch (IOException e) {
                 /*
                  * If we were able to write so far, there should not be any
@@ -630,6 +635,11 @@ public class HistoryTreeClassic implements IHistoryTree {
         return fConfig.getStateFile().length();
     }
 
+    @Override
+    public CacheStats getCacheStats() {
+        return fTreeIO.getCacheStats();
+    }
+
     // ------------------------------------------------------------------------
     // Test/debugging methods
     // ------------------------------------------------------------------------
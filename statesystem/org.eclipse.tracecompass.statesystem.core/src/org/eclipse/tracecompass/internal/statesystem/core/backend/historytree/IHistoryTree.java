@@ -16,6 +16,8 @@ import java.util.Collection;
 
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 
+import com.google.common.cache.CacheStats;
+
 /**
  * Meta-container for the History Tree. This structure contains all the
  * high-level data relevant to the tree.
@@ -167,4 +169,11 @@ public interface IHistoryTree {
      */
     long getFileSize();
 
+    /**
+     * Get the statistics of the node cache for this tree.
+     *
+     * @return A snapshot of the cache statistics
+     */
+    CacheStats getCacheStats();
+
 }
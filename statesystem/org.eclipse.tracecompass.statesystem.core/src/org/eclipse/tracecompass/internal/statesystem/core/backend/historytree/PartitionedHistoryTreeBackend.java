@@ -0,0 +1,592 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.common.core.collect.BufferedBlockingQueue;
+import org.eclipse.tracecompass.internal.statesystem.core.Activator;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Iterables;
+
+/**
+ * State history backend which partitions the attribute quarks across several
+ * history trees, each one built by its own thread. Quark <i>q</i> goes to
+ * partition <i>q % n</i>. This way, the insertion of intervals, which is the
+ * bottleneck of a single history tree, is spread over several cores.
+ * <p>
+ * The first partition is stored in the given state file, which also holds the
+ * attribute tree. The other partitions are stored next to it, in files named
+ * after the state file, the partition index and the partition count (for
+ * example <code>kernel.ht.part1of4</code>), so an existing history can be
+ * reopened and validated.
+ *
+ * @author Matthew Khouzam
+ */
+public final class PartitionedHistoryTreeBackend implements IStateHistoryBackend {
+
+    private static final int CHUNK_SIZE = 127;
+
+    private static final String PARTITION_SEPARATOR = ".part"; //$NON-NLS-1$
+    private static final String COUNT_SEPARATOR = "of"; //$NON-NLS-1$
+
+    /** Attribute of the "poison pill" asking a writer to close its tree */
+    private static final int CLOSE_PILL = -1;
+    /** Attribute of the "poison pill" asking a writer to stop right away */
+    private static final int ABORT_PILL = -2;
+
+    private final @NonNull String fSsid;
+    private final List<Partition> fPartitions;
+
+    /** Indicates if the history tree construction is done */
+    private volatile boolean fFinishedBuilding = false;
+
+    /**
+     * The backend tracks its end time separately from the trees, to take into
+     * consideration intervals in the queues.
+     */
+    private volatile long fEndTime;
+
+    /**
+     * One of the history trees, with the thread and queue feeding it while it
+     * is being built.
+     */
+    private static final class Partition implements Runnable {
+
+        private final HistoryTreeBackend fBackend;
+        private final @Nullable BufferedBlockingQueue<HTInterval> fQueue;
+        private final @Nullable Thread fThread;
+
+        /* Existing partition, it will only be queried */
+        public Partition(HistoryTreeBackend backend) {
+            fBackend = backend;
+            fQueue = null;
+            fThread = null;
+        }
+
+        /* New partition, start its writer thread */
+        public Partition(HistoryTreeBackend backend, int queueSize, int index) {
+            fBackend = backend;
+            fQueue = new BufferedBlockingQueue<>(Math.max(queueSize / CHUNK_SIZE, 1), CHUNK_SIZE);
+            Thread thread = new Thread(this, "History Tree Thread " + index); //$NON-NLS-1$
+            fThread = thread;
+            thread.start();
+        }
+
+        public void insert(HTInterval interval) {
+            BufferedBlockingQueue<HTInterval> queue = fQueue;
+            if (queue == null) {
+                throw new IllegalStateException("Cannot insert in an existing history"); //$NON-NLS-1$
+            }
+            queue.put(interval);
+        }
+
+        public void stop(long endTime, boolean abort) {
+            BufferedBlockingQueue<HTInterval> queue = fQueue;
+            Thread thread = fThread;
+            if (queue == null || thread == null || !thread.isAlive()) {
+                return;
+            }
+            try {
+                queue.put(new HTInterval(-1, endTime, abort ? ABORT_PILL : CLOSE_PILL, TmfStateValue.nullValue()));
+                queue.flushInputBuffer();
+                thread.join();
+            } catch (TimeRangeException e) {
+                Activator.getDefault().logError("Error closing state system", e); //$NON-NLS-1$
+            } catch (InterruptedException e) {
+                Activator.getDefault().logError("State system interrupted", e); //$NON-NLS-1$
+            }
+        }
+
+        public @Nullable ITmfStateInterval findInQueue(long t, int quark) {
+            BufferedBlockingQueue<HTInterval> queue = fQueue;
+            if (queue == null) {
+                return null;
+            }
+            /* BufferedBlockingQueue's iterator() is thread-safe */
+            for (ITmfStateInterval interval : queue) {
+                if (interval.getAttribute() == quark && interval.intersects(t)) {
+                    return interval;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void run() {
+            BufferedBlockingQueue<HTInterval> queue = fQueue;
+            if (queue == null) {
+                return;
+            }
+            try {
+                HTInterval currentInterval = queue.blockingPeek();
+                while (currentInterval.getStartTime() != -1) {
+                    /* Send the interval to the History Tree */
+                    fBackend.getSHT().insertInterval(currentInterval);
+                    /* Actually remove the interval from the queue */
+                    queue.take();
+                    currentInterval = queue.blockingPeek();
+                }
+                if (currentInterval.getAttribute() == CLOSE_PILL) {
+                    fBackend.finishedBuilding(currentInterval.getEndTime());
+                } else if (currentInterval.getAttribute() != ABORT_PILL) {
+                    /* Make sure this is the "poison pill" we are waiting for */
+                    throw new IllegalStateException();
+                }
+            } catch (TimeRangeException e) {
+                /* This should not happen */
+                Activator.getDefault().logError("Error starting the state system", e); //$NON-NLS-1$
+            }
+        }
+    }
+
+    /**
+     * New state history constructor
+     *
+     * @param ssid
+     *            The state system's id
+     * @param newStateFile
+     *            The name of the history file that will be created. Should end
+     *            in ".ht". The other partitions are created next to it.
+     * @param providerVersion
+     *            Version of of the state provider. We will only try to reopen
+     *            existing files if this version matches the one in the
+     *            framework.
+     * @param startTime
+     *            The earliest timestamp stored in the history
+     * @param queueSize
+     *            The size of the interval insertion queue of each partition.
+     *            2000 - 10000 usually works well
+     * @param nbPartitions
+     *            The number of history trees, and writer threads, to use
+     * @param blockSize
+     *            The size of the blocks in the files
+     * @param maxChildren
+     *            The maximum number of children allowed for each core node
+     * @throws IOException
+     *             If there was a problem opening the history files for writing
+     */
+    public PartitionedHistoryTreeBackend(@NonNull String ssid,
+            File newStateFile,
+            int providerVersion,
+            long startTime,
+            int queueSize,
+            int nbPartitions,
+            int blockSize,
+            int maxChildren) throws IOException {
+        if (nbPartitions < 1) {
+            throw new IllegalArgumentException("Invalid number of partitions: " + nbPartitions); //$NON-NLS-1$
+        }
+        fSsid = ssid;
+        fEndTime = startTime;
+        /* Do not leave partitions of a previous build around */
+        deletePartitionFiles(newStateFile);
+        List<Partition> partitions = new ArrayList<>(nbPartitions);
+        try {
+            for (int i = 0; i < nbPartitions; i++) {
+                File file = getPartitionFile(newStateFile, i, nbPartitions);
+                HistoryTreeBackend backend = new HistoryTreeBackend(ssid, file, providerVersion, startTime, blockSize, maxChildren);
+                partitions.add(new Partition(backend, queueSize, i));
+            }
+        } catch (IOException e) {
+            for (Partition partition : partitions) {
+                partition.stop(Long.MAX_VALUE, true);
+                partition.fBackend.dispose();
+            }
+            throw e;
+        }
+        fPartitions = partitions;
+    }
+
+    /**
+     * New state history constructor. This version provides default values for
+     * blockSize and maxChildren.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param newStateFile
+     *            The name of the history file that will be created. Should end
+     *            in ".ht". The other partitions are created next to it.
+     * @param providerVersion
+     *            Version of of the state provider. We will only try to reopen
+     *            existing files if this version matches the one in the
+     *            framework.
+     * @param startTime
+     *            The earliest timestamp stored in the history
+     * @param queueSize
+     *            The size of the interval insertion queue of each partition.
+     *            2000 - 10000 usually works well
+     * @param nbPartitions
+     *            The number of history trees, and writer threads, to use
+     * @throws IOException
+     *             If there was a problem opening the history files for writing
+     */
+    public PartitionedHistoryTreeBackend(@NonNull String ssid,
+            File newStateFile,
+            int providerVersion,
+            long startTime,
+            int queueSize,
+            int nbPartitions) throws IOException {
+        this(ssid, newStateFile, providerVersion, startTime, queueSize, nbPartitions, 64 * 1024, 50);
+    }
+
+    /**
+     * Existing history constructor. Use this to open an existing partitioned
+     * state history.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param existingStateFile
+     *            Filename/location of the first partition of the history
+     * @param providerVersion
+     *            Expected version of of the state provider plugin.
+     * @throws IOException
+     *             If we can't read one of the partitions, if one is missing,
+     *             or if the partitions do not cover the same time range.
+     */
+    public PartitionedHistoryTreeBackend(@NonNull String ssid, @NonNull File existingStateFile, int providerVersion)
+            throws IOException {
+        fSsid = ssid;
+        int nbPartitions = getPartitionCount(existingStateFile);
+        List<Partition> partitions = new ArrayList<>(nbPartitions);
+        HistoryTreeBackend first;
+        try {
+            for (int i = 0; i < nbPartitions; i++) {
+                File file = getPartitionFile(existingStateFile, i, nbPartitions);
+                if (!file.exists()) {
+                    throw new IOException("Missing partition " + file); //$NON-NLS-1$
+                }
+                partitions.add(new Partition(new HistoryTreeBackend(ssid, file, providerVersion)));
+            }
+            first = partitions.get(0).fBackend;
+            for (Partition partition : partitions) {
+                /* All the partitions were closed with the same end time */
+                if (partition.fBackend.getStartTime() != first.getStartTime() ||
+                        partition.fBackend.getEndTime() != first.getEndTime()) {
+                    throw new IOException("Partitions of " + existingStateFile + " do not match"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            }
+        } catch (IOException e) {
+            /* Close the partitions opened so far */
+            for (Partition partition : partitions) {
+                partition.fBackend.dispose();
+            }
+            throw e;
+        }
+        fPartitions = partitions;
+        fEndTime = first.getEndTime();
+        fFinishedBuilding = true;
+    }
+
+    // ------------------------------------------------------------------------
+    // Partition files
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the file of a partition.
+     *
+     * @param stateFile
+     *            The state file, which holds the first partition
+     * @param index
+     *            The index of the partition
+     * @param nbPartitions
+     *            The number of partitions
+     * @return The file of the partition
+     */
+    @VisibleForTesting
+    static File getPartitionFile(File stateFile, int index, int nbPartitions) {
+        if (index == 0) {
+            return stateFile;
+        }
+        return new File(stateFile.getPath() + PARTITION_SEPARATOR + index + COUNT_SEPARATOR + nbPartitions);
+    }
+
+    /**
+     * Get the number of partitions of the history stored in a state file, by
+     * looking at the partition files next to it.
+     *
+     * @param stateFile
+     *            The state file, which holds the first partition
+     * @return The number of partitions, 1 if the history is not partitioned
+     */
+    public static int getPartitionCount(File stateFile) {
+        File[] files = getOtherPartitionFiles(stateFile);
+        int count = 1;
+        for (File file : files) {
+            Matcher matcher = getPartitionPattern(stateFile).matcher(file.getName());
+            if (matcher.matches()) {
+                count = Math.max(count, Integer.parseInt(matcher.group(2)));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Delete the files of all but the first partition of a state history.
+     *
+     * @param stateFile
+     *            The state file, which holds the first partition
+     */
+    public static void deletePartitionFiles(File stateFile) {
+        for (File file : getOtherPartitionFiles(stateFile)) {
+            if (!file.delete()) {
+                Activator.getDefault().logWarning("Could not delete history partition " + file); //$NON-NLS-1$
+            }
+        }
+    }
+
+    private static File[] getOtherPartitionFiles(File stateFile) {
+        File dir = stateFile.getAbsoluteFile().getParentFile();
+        if (dir == null) {
+            return new File[0];
+        }
+        Pattern pattern = getPartitionPattern(stateFile);
+        File[] files = dir.listFiles((parent, name) -> pattern.matcher(name).matches());
+        return (files == null ? new File[0] : files);
+    }
+
+    private static Pattern getPartitionPattern(File stateFile) {
+        return Pattern.compile(Pattern.quote(stateFile.getName() + PARTITION_SEPARATOR) + "(\\d+)" + COUNT_SEPARATOR + "(\\d+)"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private Partition getPartition(int quark) {
+        return fPartitions.get(quark % fPartitions.size());
+    }
+
+    /**
+     * Get the number of partitions of this history
+     *
+     * @return The number of partitions
+     */
+    public int getNbPartitions() {
+        return fPartitions.size();
+    }
+
+    // ------------------------------------------------------------------------
+    // IStateHistoryBackend
+    // ------------------------------------------------------------------------
+
+    @Override
+    public String getSSID() {
+        return fSsid;
+    }
+
+    @Override
+    public long getStartTime() {
+        return fPartitions.get(0).fBackend.getStartTime();
+    }
+
+    @Override
+    public long getEndTime() {
+        return fEndTime;
+    }
+
+    @Override
+    public void insertPastState(long stateStartTime, long stateEndTime,
+            int quark, ITmfStateValue value) throws TimeRangeException {
+        HTInterval interval = new HTInterval(stateStartTime, stateEndTime,
+                quark, (TmfStateValue) value);
+        getPartition(quark).insert(interval);
+        fEndTime = Math.max(fEndTime, stateEndTime);
+    }
+
+    @Override
+    public void finishedBuilding(long endTime) throws TimeRangeException {
+        /*
+         * Close all the trees before returning, the state system will then
+         * write the attribute tree at the end of the first partition.
+         */
+        for (Partition partition : fPartitions) {
+            partition.stop(endTime, false);
+        }
+        fEndTime = endTime;
+        fFinishedBuilding = true;
+    }
+
+    @Override
+    public FileInputStream supplyAttributeTreeReader() {
+        return fPartitions.get(0).fBackend.supplyAttributeTreeReader();
+    }
+
+    @Override
+    public File supplyAttributeTreeWriterFile() {
+        return fPartitions.get(0).fBackend.supplyAttributeTreeWriterFile();
+    }
+
+    @Override
+    public long supplyAttributeTreeWriterFilePosition() {
+        return fPartitions.get(0).fBackend.supplyAttributeTreeWriterFilePosition();
+    }
+
+    @Override
+    public void removeFiles() {
+        for (Partition partition : fPartitions) {
+            partition.fBackend.removeFiles();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        for (Partition partition : fPartitions) {
+            if (!fFinishedBuilding) {
+                /*
+                 * The partition will then delete its partially built file,
+                 * since it won't be complete.
+                 */
+                partition.stop(Long.MAX_VALUE, true);
+            }
+            partition.fBackend.dispose();
+        }
+    }
+
+    @Override
+    public void doQuery(List<@Nullable ITmfStateInterval> currentStateInfo, long t)
+            throws TimeRangeException, StateSystemDisposedException {
+        checkValidTime(t);
+        for (Partition partition : fPartitions) {
+            /*
+             * While building, a partition's tree may not reach t yet, its
+             * intervals are then in its queue.
+             */
+            HistoryTreeBackend backend = partition.fBackend;
+            if (t <= backend.getEndTime()) {
+                backend.doQuery(currentStateInfo, t);
+            }
+        }
+
+        if (fFinishedBuilding) {
+            return;
+        }
+
+        /*
+         * Some intervals may have been in the queues while the query was
+         * ongoing, look for the missing ones.
+         */
+        for (int i = 0; i < currentStateInfo.size(); i++) {
+            if (currentStateInfo.get(i) == null) {
+                currentStateInfo.set(i, doSingularQuery(t, i));
+            }
+        }
+    }
+
+    @Override
+    public @Nullable ITmfStateInterval doSingularQuery(long t, int attributeQuark)
+            throws TimeRangeException, StateSystemDisposedException {
+        checkValidTime(t);
+        Partition partition = getPartition(attributeQuark);
+        HistoryTreeBackend backend = partition.fBackend;
+        if (t <= backend.getEndTime()) {
+            ITmfStateInterval ret = backend.doSingularQuery(t, attributeQuark);
+            if (ret != null || fFinishedBuilding) {
+                return ret;
+            }
+        }
+
+        /* Not in the tree yet, it may be in the partition's queue */
+        ITmfStateInterval ret = partition.findInQueue(t, attributeQuark);
+        if (ret != null) {
+            return ret;
+        }
+
+        /*
+         * If we missed it again, it's because it got inserted in the tree
+         * while we were iterating on the queue. One last pass in the tree
+         * should find it.
+         */
+        if (t <= backend.getEndTime()) {
+            return backend.doSingularQuery(t, attributeQuark);
+        }
+        return null;
+    }
+
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<@NonNull Integer> quarks,
+            long start, long end, long resolution)
+            throws TimeRangeException, StateSystemDisposedException {
+        if (!fFinishedBuilding) {
+            /* Some intervals may still be in the queues */
+            return IStateHistoryBackend.super.query2D(quarks, start, end, resolution);
+        }
+        checkValidTime(start);
+        checkValidTime(end);
+
+        /* Send each partition the quarks it holds */
+        List<List<@NonNull Integer>> quarksPerPartition = new ArrayList<>();
+        for (int i = 0; i < fPartitions.size(); i++) {
+            quarksPerPartition.add(new ArrayList<>());
+        }
+        for (Integer quark : quarks) {
+            quarksPerPartition.get(quark % fPartitions.size()).add(quark);
+        }
+        List<@NonNull ITmfStateInterval> intervals = new ArrayList<>();
+        for (int i = 0; i < fPartitions.size(); i++) {
+            List<@NonNull Integer> partitionQuarks = quarksPerPartition.get(i);
+            if (!partitionQuarks.isEmpty()) {
+                Iterables.addAll(intervals, fPartitions.get(i).fBackend.query2D(partitionQuarks, start, end, resolution));
+            }
+        }
+        return intervals;
+    }
+
+    private void checkValidTime(long t) {
+        long startTime = getStartTime();
+        long endTime = getEndTime();
+        if (t < startTime || t > endTime) {
+            throw new TimeRangeException(String.format("%s Time:%d, Start:%d, End:%d", //$NON-NLS-1$
+                    fSsid, t, startTime, endTime));
+        }
+    }
+
+    /**
+     * Return the statistics of the node cache for all the partitions
+     *
+     * @return A snapshot of the cache statistics
+     */
+    public CacheStats getCacheStats() {
+        CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+        for (Partition partition : fPartitions) {
+            stats = stats.plus(partition.fBackend.getCacheStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Return the total size of the history files
+     *
+     * @return The current size of the history files in bytes
+     */
+    public long getFileSize() {
+        long size = 0;
+        for (Partition partition : fPartitions) {
+            size += partition.fBackend.getFileSize();
+        }
+        return size;
+    }
+}
@@ -256,6 +256,12 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         }
     }
 
+    @Override
+    protected boolean isTreeComplete() {
+        /* Until then, some intervals may still be in the queue */
+        return isFinishedBuilding();
+    }
+
     @Override
     public ITmfStateInterval doSingularQuery(long t, int attributeQuark)
             throws TimeRangeException, StateSystemDisposedException {
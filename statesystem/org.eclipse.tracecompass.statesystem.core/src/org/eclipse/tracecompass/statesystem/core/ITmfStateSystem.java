@@ -12,6 +12,7 @@
 
 package org.eclipse.tracecompass.statesystem.core;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -433,4 +434,63 @@ public interface ITmfStateSystem {
      */
     @NonNull ITmfStateInterval querySingleState(long t, int attributeQuark)
             throws StateSystemDisposedException;
+
+    /**
+     * Bulk query method. Get all the intervals of the given attributes that
+     * intersect a time range. This is much faster than doing singular queries
+     * in a loop, since the history is only walked once for the whole request.
+     *
+     * The time range is clamped to the range of the state system.
+     *
+     * @param quarks
+     *            The attributes for which we want the state intervals
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @return The intervals intersecting the time range, in no particular
+     *         order
+     * @throws TimeRangeException
+     *             If end is smaller than start
+     * @throws IndexOutOfBoundsException
+     *             If one of the attribute quarks is out of range
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     * @since 2.1
+     */
+    default @NonNull Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<@NonNull Integer> quarks,
+            long start, long end) throws StateSystemDisposedException {
+        return query2D(quarks, start, end, 1);
+    }
+
+    /**
+     * Bulk query method with a resolution. Get all the intervals of the given
+     * attributes that contain at least one of the sampled timestamps of a time
+     * range, that is <code>start + k * resolution</code> (for every k that
+     * stays within the range) and <code>end</code>. Views can use it to get at
+     * most one interval per pixel and per attribute, in one pass over the
+     * history.
+     *
+     * The time range is clamped to the range of the state system.
+     *
+     * @param quarks
+     *            The attributes for which we want the state intervals
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @param resolution
+     *            The step between two sampled timestamps
+     * @return The matching intervals, in no particular order
+     * @throws TimeRangeException
+     *             If end is smaller than start or if the resolution is not
+     *             greater than zero
+     * @throws IndexOutOfBoundsException
+     *             If one of the attribute quarks is out of range
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     * @since 2.1
+     */
+    @NonNull Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<@NonNull Integer> quarks,
+            long start, long end, long resolution) throws StateSystemDisposedException;
 }
\ No newline at end of file
@@ -15,7 +15,8 @@
 package org.eclipse.tracecompass.statesystem.core;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -29,6 +30,8 @@ import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 
+import com.google.common.collect.Lists;
+
 /**
  * Provide utility methods for the state system
  *
@@ -37,6 +40,12 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 @NonNullByDefault
 public final class StateSystemUtils {
 
+    /**
+     * Number of sampled timestamps queried at once by the resolution-based
+     * range query, between two checks of the progress monitor
+     */
+    private static final long SAMPLES_PER_QUERY = 256;
+
     private StateSystemUtils() {
     }
 
@@ -121,9 +130,7 @@ public final class StateSystemUtils {
             int attributeQuark, long t1, long t2)
             throws AttributeNotFoundException, StateSystemDisposedException {
 
-        List<ITmfStateInterval> intervals;
-        ITmfStateInterval currentInterval;
-        long ts, tEnd;
+        long tEnd;
 
         /* Make sure the time range makes sense */
         if (t2 < t1) {
@@ -136,21 +143,10 @@ public final class StateSystemUtils {
         } else {
             tEnd = t2;
         }
+        checkRangeStart(ss, t1, tEnd);
 
-        /* Get the initial state at time T1 */
-        intervals = new ArrayList<>();
-        currentInterval = ss.querySingleState(t1, attributeQuark);
-        intervals.add(currentInterval);
-
-        /* Get the following state changes */
-        ts = currentInterval.getEndTime();
-        while (ts != -1 && ts < tEnd) {
-            ts++; /* To "jump over" to the next state in the history */
-            currentInterval = ss.querySingleState(ts, attributeQuark);
-            intervals.add(currentInterval);
-            ts = currentInterval.getEndTime();
-        }
-        return intervals;
+        /* Get all the states of the range in one pass over the history */
+        return sortByStartTime(ss.query2D(Collections.singleton(attributeQuark), t1, tEnd));
     }
 
     /**
@@ -188,9 +184,7 @@ public final class StateSystemUtils {
             int attributeQuark, long t1, long t2, long resolution,
             @Nullable IProgressMonitor monitor)
             throws AttributeNotFoundException, StateSystemDisposedException {
-        List<ITmfStateInterval> intervals = new LinkedList<>();
-        ITmfStateInterval currentInterval = null;
-        long ts, tEnd;
+        long tEnd;
 
         /* Make sure the time range makes sense */
         if (t2 < t1 || resolution <= 0) {
@@ -203,6 +197,7 @@ public final class StateSystemUtils {
         } else {
             tEnd = t2;
         }
+        checkRangeStart(ss, t1, tEnd);
 
         IProgressMonitor mon = monitor;
         if (mon == null) {
@@ -210,23 +205,40 @@ public final class StateSystemUtils {
         }
 
         /*
-         * Iterate over the "resolution points". We skip unneeded queries in the
-         * case the current interval is longer than the resolution.
+         * Get the states at the "resolution points", a few hundred of them per
+         * pass over the history, checking the monitor between the passes.
+         * Intervals longer than the resolution are only returned once.
          */
-        for (ts = t1; ts <= tEnd; ts += ((currentInterval.getEndTime() - ts) / resolution + 1) * resolution) {
-            if (mon.isCanceled()) {
-                return intervals;
+        List<ITmfStateInterval> intervals = new ArrayList<>();
+        long lastEnd = Long.MIN_VALUE;
+        long start = t1;
+        while (!mon.isCanceled()) {
+            long end = ((tEnd - start) / resolution < SAMPLES_PER_QUERY) ? tEnd : start + (SAMPLES_PER_QUERY - 1) * resolution;
+            for (ITmfStateInterval interval : sortByStartTime(ss.query2D(Collections.singleton(attributeQuark), start, end, resolution))) {
+                /* The intervals over the end of a pass are returned again */
+                if (interval.getStartTime() > lastEnd) {
+                    intervals.add(interval);
+                    lastEnd = interval.getEndTime();
+                }
+            }
+            if (end >= tEnd) {
+                break;
             }
-            currentInterval = ss.querySingleState(ts, attributeQuark);
-            intervals.add(currentInterval);
+            start = end + resolution;
         }
+        return intervals;
+    }
 
-        /* Add the interval at t2, if it wasn't included already. */
-        if (currentInterval != null && currentInterval.getEndTime() < tEnd) {
-            currentInterval = ss.querySingleState(tEnd, attributeQuark);
-            intervals.add(currentInterval);
+    private static void checkRangeStart(ITmfStateSystem ss, long t1, long tEnd) {
+        if (t1 < ss.getStartTime() || t1 > tEnd) {
+            throw new TimeRangeException(ss.getSSID() + " Time:" + t1 + ", Start:" + ss.getStartTime() + ", End:" + tEnd); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
         }
-        return intervals;
+    }
+
+    private static List<ITmfStateInterval> sortByStartTime(Iterable<ITmfStateInterval> intervals) {
+        List<ITmfStateInterval> list = Lists.newArrayList(intervals);
+        list.sort(Comparator.comparingLong(ITmfStateInterval::getStartTime));
+        return list;
     }
 
     /**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  * Copyright (c) 2010, 2011 École Polytechnique de Montréal
  * Copyright (c) 2010, 2011 Alexandre Montplaisir <alexandre.montplaisir@gmail.com>
  *
@@ -14,6 +14,8 @@ package org.eclipse.tracecompass.statesystem.core.backend;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -181,4 +183,61 @@ public interface IStateHistoryBackend {
     ITmfStateInterval doSingularQuery(long t, int attributeQuark)
             throws TimeRangeException, StateSystemDisposedException;
 
+    /**
+     * Bulk query method. Get all the intervals of the given attributes that
+     * contain at least one of the sampled timestamps of a time range, that is
+     * <code>start + k * resolution</code> (for every k that stays within the
+     * range) and <code>end</code>. With a resolution of 1, every interval
+     * intersecting the time range is returned.
+     * <p>
+     * Backends should override this to get all the intervals in one pass over
+     * their storage. The default implementation walks each attribute with
+     * {@link #doSingularQuery}.
+     *
+     * @param quarks
+     *            The attributes for which we want the state intervals
+     * @param start
+     *            The start of the time range, within the range of the history
+     * @param end
+     *            The end of the time range, within the range of the history
+     * @param resolution
+     *            The step between two sampled timestamps
+     * @return The matching intervals, in no particular order
+     * @throws TimeRangeException
+     *             If the time range was invalid or if the resolution is not
+     *             greater than zero
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed while a request is ongoing.
+     * @since 2.1
+     */
+    default Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<@NonNull Integer> quarks,
+            long start, long end, long resolution)
+            throws TimeRangeException, StateSystemDisposedException {
+        if (end < start || resolution <= 0) {
+            throw new TimeRangeException("Start:" + start + ", End:" + end + ", Resolution:" + resolution); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        long maxSteps = (end - start) / resolution;
+        List<@NonNull ITmfStateInterval> intervals = new ArrayList<>();
+        for (int quark : quarks) {
+            long t = start;
+            while (t <= end) {
+                ITmfStateInterval interval = doSingularQuery(t, quark);
+                if (interval == null) {
+                    break;
+                }
+                intervals.add(interval);
+                if (interval.getEndTime() >= end) {
+                    break;
+                }
+                /*
+                 * Jump to the first sampled timestamp after this interval, the
+                 * end of the range is also sampled
+                 */
+                long steps = (interval.getEndTime() - start) / resolution + 1;
+                t = (steps > maxSteps) ? end : start + steps * resolution;
+            }
+        }
+        return intervals;
+    }
+
 }
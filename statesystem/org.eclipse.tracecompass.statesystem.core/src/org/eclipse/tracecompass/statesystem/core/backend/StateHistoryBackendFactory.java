@@ -19,6 +19,7 @@ import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.InMemoryBackend;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.NullBackend;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.PartitionedHistoryTreeBackend;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.ThreadedHistoryTreeBackend;
 
 /**
@@ -88,17 +89,64 @@ public final class StateHistoryBackendFactory {
      */
     public static IStateHistoryBackend createHistoryTreeBackendNewFile(String ssid,
             File stateFile, int providerVersion, long startTime, int queueSize) throws IOException {
+        /* Do not leave partitions of a previous build around */
+        PartitionedHistoryTreeBackend.deletePartitionFiles(stateFile);
         if (queueSize > 0) {
             return new ThreadedHistoryTreeBackend(ssid, stateFile, providerVersion, startTime, queueSize);
         }
         return new HistoryTreeBackend(ssid, stateFile, providerVersion, startTime);
     }
 
+    /**
+     * Create a new backend using several History Trees, each one built by its
+     * own thread. The attribute quarks are partitioned across the trees, so the
+     * insertion of the intervals is spread over several cores. The history is
+     * still queried as a whole through the returned backend.
+     *
+     * The first partition is stored in the given file, the others are stored
+     * next to it. Such a history can be reopened with
+     * {@link #createHistoryTreeBackendExistingFile}.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param stateFile
+     *            The filename/location where to store the state history (Should
+     *            end in .ht)
+     * @param providerVersion
+     *            Version of of the state provider. We will only try to reopen
+     *            existing files if this version matches the one in the
+     *            framework.
+     * @param startTime
+     *            The earliest time stamp that will be stored in the history
+     * @param queueSize
+     *            The size of the interval insertion queue of each partition.
+     *            2000 - 10000 usually works well.
+     * @param nbPartitions
+     *            The number of History Trees to build in parallel. If 1 or less
+     *            is specified, this is the same as
+     *            {@link #createHistoryTreeBackendNewFile}.
+     * @return The state system backend
+     * @throws IOException
+     *             Thrown if we can't create the files for some reason
+     * @since 2.1
+     */
+    public static IStateHistoryBackend createPartitionedHistoryTreeBackendNewFile(String ssid,
+            File stateFile, int providerVersion, long startTime, int queueSize, int nbPartitions) throws IOException {
+        if (nbPartitions <= 1) {
+            return createHistoryTreeBackendNewFile(ssid, stateFile, providerVersion, startTime, queueSize);
+        }
+        return new PartitionedHistoryTreeBackend(ssid, stateFile, providerVersion, startTime, queueSize, nbPartitions);
+    }
+
     /**
      * Create a new History Tree backend, but attempt to open an existing file
      * on disk. If the file cannot be found or recognized, an IOException will
      * be thrown.
      *
+     * If the history was built with several partitions, using
+     * {@link #createPartitionedHistoryTreeBackendNewFile}, all the partitions
+     * are opened.
+     *
      * @param ssid
      *            The state system's id
      * @param stateFile
@@ -113,6 +161,9 @@ public final class StateHistoryBackendFactory {
      */
     public static IStateHistoryBackend createHistoryTreeBackendExistingFile(String ssid, File stateFile,
             int providerVersion) throws IOException {
+        if (PartitionedHistoryTreeBackend.getPartitionCount(stateFile) > 1) {
+            return new PartitionedHistoryTreeBackend(ssid, stateFile, providerVersion);
+        }
         return new HistoryTreeBackend(ssid, stateFile, providerVersion);
     }
 }
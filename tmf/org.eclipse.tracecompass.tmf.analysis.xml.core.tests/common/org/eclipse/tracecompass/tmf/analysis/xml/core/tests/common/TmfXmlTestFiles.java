@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 École Polytechnique de Montréal
+ * Copyright (c) 2014, 2016 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -53,7 +53,13 @@ public enum TmfXmlTestFiles {
     /** A valid pattern file to test the initialState element */
     INITIAL_STATE_ELEMENT_TEST_FILE_1("test_xml_files/test_valid/test_initialState_element1.xml"),
     /** A valid pattern file to test the initialState element */
-    INITIAL_STATE_ELEMENT_TEST_FILE_2("test_xml_files/test_valid/test_initialState_element2.xml");
+    INITIAL_STATE_ELEMENT_TEST_FILE_2("test_xml_files/test_valid/test_initialState_element2.xml"),
+    /** A valid pattern file with fsm indexing their scenarios by key */
+    FSM_KEY_TEST("test_xml_files/test_valid/test_fsm_key.xml"),
+    /** The same pattern as {@link #FSM_KEY_TEST}, without keys */
+    FSM_NO_KEY_TEST("test_xml_files/test_valid/test_fsm_no_key.xml"),
+    /** A valid file with exact and wildcard event handlers on the same events */
+    EVENT_HANDLERS_FILE("test_xml_files/test_valid/test_event_handlers.xml");
 
     private final String fPath;
 
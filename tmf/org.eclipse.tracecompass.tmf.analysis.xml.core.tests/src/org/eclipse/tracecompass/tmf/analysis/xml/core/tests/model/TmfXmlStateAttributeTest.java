@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.analysis.xml.core.tests.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Collections;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.model.ITmfXmlStateAttribute;
+import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.model.TmfXmlLocation;
+import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.model.readwrite.TmfXmlReadWriteModelFactory;
+import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.module.IXmlStateSystemContainer;
+import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.stateprovider.TmfXmlStrings;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+/**
+ * Test the resolution of constant state attributes, whose last quark is kept
+ * for the next events.
+ *
+ * @author Matthew Khouzam
+ */
+public class TmfXmlStateAttributeTest {
+
+    private static final String ATTRIBUTE_NAME = "status";
+
+    /**
+     * State system container whose state system can be changed
+     */
+    private static class TestContainer implements IXmlStateSystemContainer {
+
+        private ITmfStateSystem fStateSystem;
+
+        public TestContainer(ITmfStateSystem stateSystem) {
+            fStateSystem = stateSystem;
+        }
+
+        public void setStateSystem(ITmfStateSystem stateSystem) {
+            fStateSystem = stateSystem;
+        }
+
+        @Override
+        public String getAttributeValue(String name) {
+            return name;
+        }
+
+        @Override
+        public ITmfStateSystem getStateSystem() {
+            return fStateSystem;
+        }
+
+        @Override
+        public @NonNull Iterable<@NonNull TmfXmlLocation> getLocations() {
+            return Collections.emptySet();
+        }
+    }
+
+    private static ITmfXmlStateAttribute createConstantAttribute(IXmlStateSystemContainer container) throws ParserConfigurationException {
+        Element element = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument().createElement(TmfXmlStrings.STATE_ATTRIBUTE);
+        element.setAttribute(TmfXmlStrings.TYPE, TmfXmlStrings.TYPE_CONSTANT);
+        element.setAttribute(TmfXmlStrings.VALUE, ATTRIBUTE_NAME);
+        return TmfXmlReadWriteModelFactory.getInstance().createStateAttribute(element, container);
+    }
+
+    private static ITmfStateSystemBuilder createStateSystem(String id) {
+        return StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend(id, 0));
+    }
+
+    /**
+     * Test resolving the same constant attribute under two parents in
+     * alternation, then from the root, and in another state system where the
+     * same parents have other quarks
+     *
+     * @throws ParserConfigurationException
+     *             If the XML element cannot be created
+     */
+    @Test
+    public void testStartQuarksAndStateSystems() throws ParserConfigurationException {
+        ITmfStateSystemBuilder ss = createStateSystem("test1");
+        int cpu0 = ss.getQuarkAbsoluteAndAdd("CPUs", "0");
+        int cpu1 = ss.getQuarkAbsoluteAndAdd("CPUs", "1");
+        TestContainer container = new TestContainer(ss);
+        ITmfXmlStateAttribute attribute = createConstantAttribute(container);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(ss.getQuarkRelativeAndAdd(cpu0, ATTRIBUTE_NAME), attribute.getAttributeQuark(cpu0, null));
+            assertEquals(ss.getQuarkRelativeAndAdd(cpu1, ATTRIBUTE_NAME), attribute.getAttributeQuark(cpu1, null));
+        }
+        int root = attribute.getAttributeQuark(IXmlStateSystemContainer.ROOT_QUARK, null);
+        assertEquals(ss.getQuarkAbsoluteAndAdd(ATTRIBUTE_NAME), root);
+
+        /*
+         * The parents are added in the other order in this state system, so
+         * that the same start quarks are other parents
+         */
+        ITmfStateSystemBuilder other = createStateSystem("test2");
+        int otherCpu1 = other.getQuarkAbsoluteAndAdd("CPUs", "1");
+        int otherCpu0 = other.getQuarkAbsoluteAndAdd("CPUs", "0");
+        assertEquals(cpu0, otherCpu1);
+        container.setStateSystem(other);
+
+        int otherRoot = attribute.getAttributeQuark(IXmlStateSystemContainer.ROOT_QUARK, null);
+        assertEquals(other.getQuarkAbsoluteAndAdd(ATTRIBUTE_NAME), otherRoot);
+        assertNotEquals(root, otherRoot);
+        int otherQuark = attribute.getAttributeQuark(otherCpu1, null);
+        assertEquals(other.getQuarkRelativeAndAdd(otherCpu1, ATTRIBUTE_NAME), otherQuark);
+        assertEquals(other.getQuarkRelativeAndAdd(otherCpu0, ATTRIBUTE_NAME), attribute.getAttributeQuark(otherCpu0, null));
+
+        /* Same start quark as the last one, in the first state system */
+        container.setStateSystem(ss);
+        int quark = attribute.getAttributeQuark(cpu1, null);
+        assertEquals(ss.getQuarkRelativeAndAdd(cpu1, ATTRIBUTE_NAME), quark);
+        assertEquals(ss.getQuarkRelativeAndAdd(cpu0, ATTRIBUTE_NAME), attribute.getAttributeQuark(cpu0, null));
+        assertEquals(root, attribute.getAttributeQuark(IXmlStateSystemContainer.ROOT_QUARK, null));
+
+        ss.dispose();
+        other.dispose();
+    }
+}
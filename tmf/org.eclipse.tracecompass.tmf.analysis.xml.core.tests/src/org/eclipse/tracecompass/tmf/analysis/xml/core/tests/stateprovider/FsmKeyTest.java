@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.analysis.xml.core.tests.stateprovider;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.pattern.stateprovider.XmlPatternAnalysis;
+import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.segment.TmfXmlPatternSegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.tmf.analysis.xml.core.tests.common.TmfXmlTestFiles;
+import org.eclipse.tracecompass.tmf.analysis.xml.core.tests.module.XmlUtilsTest;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the fsm whose active scenarios are indexed by key. The same pattern is
+ * run with and without keys, and both must give the same results. The pattern
+ * has a "syscall" fsm whose scenarios end on an exit event of their own
+ * thread, and a consuming "order" fsm whose end events are taken by the first
+ * scenario started, whether or not it was started by an event with a key.
+ *
+ * @author Matthew Khouzam
+ */
+public class FsmKeyTest {
+
+    private static final @NonNull String TEST_TRACE = "test_traces/testTrace6.xml";
+    private static final @NonNull String KEYLESS_TEST_TRACE = "test_traces/testTrace8.xml";
+
+    private static final String[] EXPECTED_SEGMENTS = {
+            "seg_syscall [1, 5]",
+            "seg_syscall [2, 4]",
+            "seg_syscall [3, 7]",
+            "seg_syscall [6, 9]",
+            "seg_order [10, 13]",
+            "seg_order [11, 14]",
+            "seg_order [12, 15]"
+    };
+
+    private ITmfTrace fTrace;
+    private XmlPatternAnalysis fKeyModule;
+    private XmlPatternAnalysis fNoKeyModule;
+
+    /**
+     * Initializes the trace and run the pattern with and without keys
+     *
+     * @throws TmfAnalysisException
+     *             Any exception thrown during module initialization
+     */
+    @Before
+    public void setUp() throws TmfAnalysisException {
+        ITmfTrace trace = XmlUtilsTest.initializeTrace(TEST_TRACE);
+        fTrace = trace;
+        fKeyModule = runModule(trace, TmfXmlTestFiles.FSM_KEY_TEST);
+        fNoKeyModule = runModule(trace, TmfXmlTestFiles.FSM_NO_KEY_TEST);
+    }
+
+    private static XmlPatternAnalysis runModule(ITmfTrace trace, TmfXmlTestFiles file) throws TmfAnalysisException {
+        XmlPatternAnalysis module = XmlUtilsTest.initializePatternModule(file);
+        module.setTrace(trace);
+        module.schedule();
+        module.waitForCompletion();
+        return module;
+    }
+
+    /**
+     * Dispose the modules and the trace, and delete the supplementary files so
+     * that the next test runs the patterns again
+     */
+    @After
+    public void cleanUp() {
+        dispose(fTrace, fKeyModule, fNoKeyModule);
+    }
+
+    private static void dispose(ITmfTrace trace, XmlPatternAnalysis keyModule, XmlPatternAnalysis noKeyModule) {
+        String directory = TmfTraceManager.getSupplementaryFileDir(trace);
+        try {
+            keyModule.dispose();
+            noKeyModule.dispose();
+            trace.dispose();
+        } finally {
+            File dir = new File(directory);
+            if (dir.exists()) {
+                for (File file : dir.listFiles()) {
+                    file.delete();
+                }
+                dir.delete();
+            }
+        }
+    }
+
+    private static String[] getSegments(XmlPatternAnalysis module) {
+        ISegmentStore<@NonNull ISegment> segmentStore = module.getSegmentStore();
+        assertNotNull(segmentStore);
+        return StreamSupport.stream(segmentStore.spliterator(), false)
+                .sorted(Comparator.comparing((ISegment segment) -> ((TmfXmlPatternSegment) segment).getName())
+                        .reversed()
+                        .thenComparingLong(ISegment::getStart)
+                        .thenComparingLong(ISegment::getEnd))
+                .map(segment -> ((TmfXmlPatternSegment) segment).getName() + " [" + segment.getStart() + ", " + segment.getEnd() + "]")
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Test the segments of the pattern with and without keys. The segments of
+     * the "order" fsm show that the end events are consumed by the scenarios
+     * in the order they were started, even if one of them was started by an
+     * event without key.
+     */
+    @Test
+    public void testSegments() {
+        assertArrayEquals("without key", EXPECTED_SEGMENTS, getSegments(fNoKeyModule));
+        assertArrayEquals("with key", EXPECTED_SEGMENTS, getSegments(fKeyModule));
+    }
+
+    /**
+     * Test that the scenarios have the same attributes and states with and
+     * without keys
+     *
+     * @throws AttributeNotFoundException
+     *             Exceptions thrown during state system verification
+     * @throws StateSystemDisposedException
+     *             Exceptions thrown during state system verification
+     */
+    @Test
+    public void testScenarioStates() throws AttributeNotFoundException, StateSystemDisposedException {
+        ITmfStateSystem expected = fNoKeyModule.getStateSystem(fNoKeyModule.getId());
+        ITmfStateSystem actual = fKeyModule.getStateSystem(fKeyModule.getId());
+        assertNotNull(expected);
+        assertNotNull(actual);
+        assertEquals("getNbAttributes", expected.getNbAttributes(), actual.getNbAttributes());
+        assertEquals("getStartTime", expected.getStartTime(), actual.getStartTime());
+        assertEquals("getCurrentEndTime", expected.getCurrentEndTime(), actual.getCurrentEndTime());
+        for (int quark = 0; quark < expected.getNbAttributes(); quark++) {
+            String[] path = expected.getFullAttributePathArray(quark);
+            String name = Arrays.toString(path);
+            int actualQuark = actual.getQuarkAbsolute(path);
+            List<ITmfStateInterval> expectedIntervals = StateSystemUtils.queryHistoryRange(expected, quark, expected.getStartTime(), expected.getCurrentEndTime());
+            List<ITmfStateInterval> actualIntervals = StateSystemUtils.queryHistoryRange(actual, actualQuark, actual.getStartTime(), actual.getCurrentEndTime());
+            assertEquals(name, expectedIntervals.size(), actualIntervals.size());
+            for (int i = 0; i < expectedIntervals.size(); i++) {
+                ITmfStateInterval expectedInterval = expectedIntervals.get(i);
+                ITmfStateInterval actualInterval = actualIntervals.get(i);
+                assertEquals(name, expectedInterval.getStartTime(), actualInterval.getStartTime());
+                assertEquals(name, expectedInterval.getEndTime(), actualInterval.getEndTime());
+                assertEquals(name, expectedInterval.getStateValue(), actualInterval.getStateValue());
+            }
+        }
+    }
+
+    /**
+     * Test the statistics of the fsm reported in the properties of the
+     * analyses. With keys, the active scenarios of the other threads are not
+     * evaluated.
+     */
+    @Test
+    public void testStatistics() {
+        Map<String, String> properties = fNoKeyModule.getProperties().entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith("FSM"))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        assertEquals(2, properties.size());
+        assertEquals("5 scenarios, 0 still active, 9 events, 10 scenario evaluations", properties.get("FSM syscall"));
+        assertEquals("4 scenarios, 0 still active, 6 events, 6 scenario evaluations", properties.get("FSM order"));
+
+        properties = fKeyModule.getProperties();
+        assertEquals("5 scenarios, 0 still active, 9 events, 5 scenario evaluations", properties.get("FSM syscall"));
+        assertEquals("4 scenarios, 0 still active, 6 events, 5 scenario evaluations", properties.get("FSM order"));
+    }
+
+    /**
+     * Test that an event without the key field is only given to the
+     * scenarios started without key. The "end" event without thread ID ends
+     * the scenario of thread 1 when there are no keys, but with keys it never
+     * reaches that scenario, which ends with the "end" event of thread 1.
+     *
+     * @throws TmfAnalysisException
+     *             Any exception thrown during module initialization
+     */
+    @Test
+    public void testKeylessEvent() throws TmfAnalysisException {
+        ITmfTrace trace = XmlUtilsTest.initializeTrace(KEYLESS_TEST_TRACE);
+        XmlPatternAnalysis keyModule = runModule(trace, TmfXmlTestFiles.FSM_KEY_TEST);
+        XmlPatternAnalysis noKeyModule = runModule(trace, TmfXmlTestFiles.FSM_NO_KEY_TEST);
+        try {
+            String[] expected = { "seg_order [1, 2]", "seg_order [3, 4]" };
+            assertArrayEquals("without key", expected, getSegments(noKeyModule));
+            expected = new String[] { "seg_order [1, 5]", "seg_order [3, 4]" };
+            assertArrayEquals("with key", expected, getSegments(keyModule));
+        } finally {
+            dispose(trace, keyModule, noKeyModule);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.analysis.xml.core.tests.stateprovider;
+
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.stateprovider.XmlStateSystemModule;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.eclipse.tracecompass.tmf.analysis.xml.core.tests.common.TmfXmlTestFiles;
+import org.eclipse.tracecompass.tmf.analysis.xml.core.tests.module.XmlUtilsTest;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the dispatching of the events to the event handlers of an XML state
+ * provider, with exact and wildcard event names applying to the same events.
+ *
+ * @author Matthew Khouzam
+ */
+public class TmfXmlEventHandlerTest {
+
+    private static final @NonNull String TEST_TRACE = "test_traces/testTrace7.xml";
+
+    private ITmfTrace fTrace;
+    private XmlStateSystemModule fModule;
+
+    /**
+     * Initializes the trace and the module for the tests
+     *
+     * @throws TmfAnalysisException
+     *             Any exception thrown during module initialization
+     */
+    @Before
+    public void setUp() throws TmfAnalysisException {
+        ITmfTrace trace = XmlUtilsTest.initializeTrace(TEST_TRACE);
+        XmlStateSystemModule module = XmlUtilsTest.initializeModule(TmfXmlTestFiles.EVENT_HANDLERS_FILE);
+
+        module.setTrace(trace);
+
+        module.schedule();
+        module.waitForCompletion();
+
+        fTrace = trace;
+        fModule = module;
+    }
+
+    /**
+     * Dispose the module and the trace, and delete the supplementary files so
+     * that the next test runs the state provider again
+     */
+    @After
+    public void cleanUp() {
+        String directory = TmfTraceManager.getSupplementaryFileDir(fTrace);
+        try {
+            fModule.dispose();
+            fTrace.dispose();
+        } finally {
+            File dir = new File(directory);
+            if (dir.exists()) {
+                for (File file : dir.listFiles()) {
+                    file.delete();
+                }
+                dir.delete();
+            }
+        }
+    }
+
+    /**
+     * Test that all the handlers whose exact name or wildcard matches an event
+     * are applied, in the order of their definition. The last one wins as
+     * they all modify the same attribute at the same time.
+     *
+     * @throws StateSystemDisposedException
+     *             Exceptions thrown during state system verification
+     * @throws AttributeNotFoundException
+     *             Exceptions thrown during state system verification
+     */
+    @Test
+    public void testHandlerOrder() throws AttributeNotFoundException, StateSystemDisposedException {
+        ITmfStateSystem ss = fModule.getStateSystem();
+        assertNotNull(ss);
+
+        int quark = ss.getQuarkAbsolute("last");
+
+        final int[] expectedStarts = { 1, 2, 3, 5, 6, 6 };
+        ITmfStateValue[] expectedValues = {
+                TmfStateValue.newValueString("sched_switch"),
+                TmfStateValue.newValueString("sched_w*"),
+                TmfStateValue.newValueString("sched_switch"),
+                TmfStateValue.newValueString("sched*"),
+                TmfStateValue.newValueString("sched_switch") };
+        XmlUtilsTest.verifyStateIntervals("testHandlerOrder", ss, quark, expectedStarts, expectedValues);
+    }
+
+    /**
+     * Test that a constant attribute resolved under the CPU of each event is
+     * set under that CPU, when the CPUs of consecutive events alternate
+     *
+     * @throws StateSystemDisposedException
+     *             Exceptions thrown during state system verification
+     * @throws AttributeNotFoundException
+     *             Exceptions thrown during state system verification
+     */
+    @Test
+    public void testAlternatingParents() throws AttributeNotFoundException, StateSystemDisposedException {
+        ITmfStateSystem ss = fModule.getStateSystem();
+        assertNotNull(ss);
+
+        int quark = ss.getQuarkAbsolute("CPUs", "0", "tid");
+        int[] expectedStarts = { 1, 5, 6, 6 };
+        ITmfStateValue[] expectedValues = {
+                TmfStateValue.newValueLong(10),
+                TmfStateValue.newValueLong(14),
+                TmfStateValue.newValueLong(15) };
+        XmlUtilsTest.verifyStateIntervals("testAlternatingParents CPU 0", ss, quark, expectedStarts, expectedValues);
+
+        quark = ss.getQuarkAbsolute("CPUs", "1", "tid");
+        expectedStarts = new int[] { 1, 2, 3, 6 };
+        expectedValues = new ITmfStateValue[] {
+                TmfStateValue.nullValue(),
+                TmfStateValue.newValueLong(11),
+                TmfStateValue.newValueLong(12) };
+        XmlUtilsTest.verifyStateIntervals("testAlternatingParents CPU 1", ss, quark, expectedStarts, expectedValues);
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ecole Polytechnique de Montreal
+ * Copyright (c) 2014, 2016 Ecole Polytechnique de Montreal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.module.IXmlStateSystemContainer;
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.module.XmlUtils;
@@ -48,6 +49,8 @@ public class TmfXmlEventHandler {
     /* list of states changes */
     private final List<TmfXmlStateChange> fStateChangeList = new ArrayList<>();
     private final String fName;
+    /* The prefix of the event names, if the name ends with a wildcard */
+    private final @Nullable String fPrefix;
     private final IXmlStateSystemContainer fParent;
 
     /**
@@ -64,6 +67,7 @@ public class TmfXmlEventHandler {
         fParent = parent;
         String name = node.getAttribute(TmfXmlStrings.HANDLER_EVENT_NAME);
         fName = name;
+        fPrefix = name.endsWith(TmfXmlStrings.WILDCARD) ? name.replace(TmfXmlStrings.WILDCARD, TmfXmlStrings.NULL) : null;
 
         List<@NonNull Element> childElements = XmlUtils.getChildElements(node, TmfXmlStrings.STATE_CHANGE);
         /* load state changes */
@@ -73,19 +77,23 @@ public class TmfXmlEventHandler {
         }
     }
 
-    private boolean appliesToEvent(ITmfEvent event) {
-        String eventName = event.getName();
-
+    /**
+     * Check if this event handler handles the events of a name. The result
+     * only depends on the name, so callers can dispatch the events by name.
+     *
+     * @param eventName
+     *            The name of the event
+     * @return true if the events of this name are handled by this handler
+     */
+    public boolean appliesToEvent(String eventName) {
         /* test for full name */
         if (eventName.equals(fName)) {
             return true;
         }
 
         /* test for the wildcard at the end */
-        if ((fName.endsWith(TmfXmlStrings.WILDCARD) && eventName.startsWith(fName.replace(TmfXmlStrings.WILDCARD, TmfXmlStrings.NULL)))) {
-            return true;
-        }
-        return false;
+        String prefix = fPrefix;
+        return (prefix != null && eventName.startsWith(prefix));
     }
 
     /**
@@ -96,10 +104,21 @@ public class TmfXmlEventHandler {
      *            The trace event to handle
      */
     public void handleEvent(ITmfEvent event) {
-        if (!appliesToEvent(event)) {
+        if (!appliesToEvent(event.getName())) {
             return;
         }
+        applyStateChanges(event);
+    }
 
+    /**
+     * Apply all state changes of this handler for an event, without checking
+     * its name. The caller already knows that this handler applies to the
+     * event, see {@link #appliesToEvent(String)}.
+     *
+     * @param event
+     *            The trace event to handle
+     */
+    public void applyStateChanges(ITmfEvent event) {
         /* Process all state changes */
         for (TmfXmlStateChange stateChange : fStateChangeList) {
             try {
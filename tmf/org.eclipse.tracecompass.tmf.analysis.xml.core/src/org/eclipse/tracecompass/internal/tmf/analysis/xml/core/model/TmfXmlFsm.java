@@ -23,6 +23,7 @@ import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.module.IXmlStateSystemContainer;
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.stateprovider.TmfXmlStrings;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
@@ -38,7 +39,10 @@ import com.google.common.collect.ImmutableMap;
 public class TmfXmlFsm {
 
     private final Map<String, TmfXmlState> fStatesMap;
-    private final List<TmfXmlScenario> fActiveScenariosList;
+    /* The active scenarios without a key, in the order of their activation */
+    private final List<ActiveScenario> fActiveScenariosList;
+    /* The active scenarios with a key, in the order of their activation */
+    private final Map<Object, List<ActiveScenario>> fKeyedScenarios = new HashMap<>();
     private final List<TmfXmlBasicTransition> fPreconditions;
     private final String fId;
     private final ITmfXmlModelFactory fModelFactory;
@@ -48,10 +52,28 @@ public class TmfXmlFsm {
     private final boolean fInstanceMultipleEnabled;
     private final String fInitialStateId;
     private final boolean fConsuming;
+    private final @Nullable String fKey;
     private boolean fEventConsumed;
     private int fTotalScenarios;
+    private long fNbEvents;
+    private long fNbEvaluations;
+    private long fNbActivations;
     private @Nullable TmfXmlScenario fPendingScenario;
 
+    /**
+     * An active scenario with its activation rank, to handle the scenarios in
+     * the order of their activation whether they have a key or not
+     */
+    private static final class ActiveScenario {
+        private final TmfXmlScenario fScenario;
+        private final long fRank;
+
+        public ActiveScenario(TmfXmlScenario scenario, long rank) {
+            fScenario = scenario;
+            fRank = rank;
+        }
+    }
+
     /**
      * Factory to create a {@link TmfXmlFsm}
      *
@@ -67,6 +89,7 @@ public class TmfXmlFsm {
         String id = node.getAttribute(TmfXmlStrings.ID);
         boolean consuming = node.getAttribute(TmfXmlStrings.CONSUMING).isEmpty() ? true : Boolean.parseBoolean(node.getAttribute(TmfXmlStrings.CONSUMING));
         boolean instanceMultipleEnabled = node.getAttribute(TmfXmlStrings.MULTIPLE).isEmpty() ? true : Boolean.parseBoolean(node.getAttribute(TmfXmlStrings.MULTIPLE));
+        String key = node.getAttribute(TmfXmlStrings.KEY).isEmpty() ? null : node.getAttribute(TmfXmlStrings.KEY);
         final List<@NonNull TmfXmlBasicTransition> preconditions = new ArrayList<>();
 
         // Get the preconditions
@@ -142,17 +165,18 @@ public class TmfXmlFsm {
                 statesMap.put(abandonState.getId(), abandonState);
             }
         }
-        return new TmfXmlFsm(modelFactory, container, id, consuming, instanceMultipleEnabled, initialState, finalStateId, abandonStateId, preconditions, statesMap);
+        return new TmfXmlFsm(modelFactory, container, id, consuming, instanceMultipleEnabled, key, initialState, finalStateId, abandonStateId, preconditions, statesMap);
     }
 
     private TmfXmlFsm(ITmfXmlModelFactory modelFactory, IXmlStateSystemContainer container, String id, boolean consuming,
-            boolean multiple, String initialState, String finalState, String abandonState, List<TmfXmlBasicTransition> preconditions,
+            boolean multiple, @Nullable String key, String initialState, String finalState, String abandonState, List<TmfXmlBasicTransition> preconditions,
             Map<String, TmfXmlState> states) {
         fModelFactory = modelFactory;
         fTotalScenarios = 0;
         fContainer = container;
         fId = id;
         fConsuming = consuming;
+        fKey = key;
         fInstanceMultipleEnabled = multiple;
         fInitialStateId = initialState;
         fFinalStateId = finalState;
@@ -207,6 +231,58 @@ public class TmfXmlFsm {
         return Collections.unmodifiableMap(fStatesMap);
     }
 
+    /**
+     * Get the name of the event field that correlates the events of a scenario
+     *
+     * @return The name of the key field, or null if every active scenario
+     *         receives every event
+     */
+    public @Nullable String getKey() {
+        return fKey;
+    }
+
+    /**
+     * Get the number of scenarios created by this fsm
+     *
+     * @return The number of scenarios
+     */
+    public int getScenarioCount() {
+        return fTotalScenarios;
+    }
+
+    /**
+     * Get the number of ongoing scenarios of this fsm
+     *
+     * @return The number of active scenarios
+     */
+    public int getActiveScenarioCount() {
+        int count = fActiveScenariosList.size();
+        for (List<ActiveScenario> scenarios : fKeyedScenarios.values()) {
+            count += scenarios.size();
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of events that validated the preconditions of this fsm
+     *
+     * @return The number of events
+     */
+    public long getEventCount() {
+        return fNbEvents;
+    }
+
+    /**
+     * Get the number of times an active scenario was tested against an event.
+     * Divided by {@link #getEventCount()}, it gives the average number of
+     * scenarios tested for each event.
+     *
+     * @return The number of scenario evaluations
+     */
+    public long getEvaluationCount() {
+        return fNbEvaluations;
+    }
+
     /**
      * Set whether the ongoing was consumed by a scenario or not
      *
@@ -300,22 +376,116 @@ public class TmfXmlFsm {
         if (!validatePreconditions(event, testMap)) {
             return false;
         }
+        fNbEvents++;
+
+        // The event is valid, we can handle the active scenarios. Only the
+        // scenarios with the key of the event, if any, can use it.
+        Object key = getKey(event);
+        List<ActiveScenario> keyedScenarios = (key == null) ? null : fKeyedScenarios.get(key);
+        if (keyedScenarios == null) {
+            handleScenarios(fActiveScenariosList, Collections.emptyList(), event);
+        } else {
+            handleScenarios(fActiveScenariosList, keyedScenarios, event);
+            if (keyedScenarios.isEmpty()) {
+                fKeyedScenarios.remove(key);
+            }
+        }
+        // The event is valid but may not have been consumed. We return true.
+        return true;
+    }
 
-        // The event is valid, we can handle the active scenario
-        for (Iterator<TmfXmlScenario> currentItr = fActiveScenariosList.iterator(); currentItr.hasNext();) {
-            TmfXmlScenario scenario = currentItr.next();
-            // Remove inactive scenarios or handle the active ones.
-            if (!scenario.isActive()) {
-                currentItr.remove();
+    /**
+     * Process two lists of active scenarios with the ongoing event, in the
+     * order of their activation across both lists, until a consuming fsm
+     * consumes the event
+     *
+     * @param scenarios
+     *            The scenarios without a key, the ones that end are removed
+     * @param keyedScenarios
+     *            The scenarios with the key of the event, the ones that end
+     *            are removed
+     * @param event
+     *            The ongoing event
+     */
+    private void handleScenarios(List<ActiveScenario> scenarios, List<ActiveScenario> keyedScenarios, ITmfEvent event) {
+        Iterator<ActiveScenario> itr = scenarios.iterator();
+        Iterator<ActiveScenario> keyedItr = keyedScenarios.iterator();
+        ActiveScenario next = itr.hasNext() ? itr.next() : null;
+        ActiveScenario nextKeyed = keyedItr.hasNext() ? keyedItr.next() : null;
+        while (true) {
+            // Take the scenario activated first
+            ActiveScenario current;
+            Iterator<ActiveScenario> currentItr;
+            if (next != null && (nextKeyed == null || next.fRank < nextKeyed.fRank)) {
+                current = next;
+                currentItr = itr;
+            } else if (nextKeyed != null) {
+                current = nextKeyed;
+                currentItr = keyedItr;
+            } else {
+                return;
+            }
+            if (handleScenario(current.fScenario, currentItr, event)) {
+                return;
+            }
+            if (currentItr == itr) {
+                next = itr.hasNext() ? itr.next() : null;
             } else {
-                handleScenario(scenario, event);
-                if (fConsuming && isEventConsumed()) {
-                    return true;
-                }
+                nextKeyed = keyedItr.hasNext() ? keyedItr.next() : null;
             }
         }
-        // The event is valid but hasn't been consumed. We return true.
-        return true;
+    }
+
+    /**
+     * Process an active scenario with the ongoing event
+     *
+     * @param scenario
+     *            The scenario
+     * @param itr
+     *            The iterator of the list of the scenario, positioned on it,
+     *            to remove it if it ends
+     * @param event
+     *            The ongoing event
+     * @return True if the ongoing event was consumed, false otherwise
+     */
+    private boolean handleScenario(TmfXmlScenario scenario, Iterator<ActiveScenario> itr, ITmfEvent event) {
+        // Remove inactive scenarios or handle the active ones.
+        if (!scenario.isActive()) {
+            itr.remove();
+            return false;
+        }
+        handleScenario(scenario, event);
+        fNbEvaluations++;
+        if (!scenario.isActive()) {
+            // Remove it now, its key may never come back
+            itr.remove();
+        }
+        return fConsuming && isEventConsumed();
+    }
+
+    /**
+     * Get the key of an event, the value of its key field
+     *
+     * @param event
+     *            The event
+     * @return The key, or null if the fsm has no key or the event has no key
+     *         field
+     */
+    private @Nullable Object getKey(ITmfEvent event) {
+        String keyField = fKey;
+        if (keyField == null) {
+            return null;
+        }
+        ITmfEventField field = event.getContent().getField(keyField);
+        if (field == null) {
+            return null;
+        }
+        Object value = field.getValue();
+        if (value instanceof Integer) {
+            /* The same key, whether the field is an int or a long */
+            return Long.valueOf(((Integer) value).longValue());
+        }
+        return value;
     }
 
     /**
@@ -335,7 +505,7 @@ public class TmfXmlFsm {
         if ((fInitialStateId.equals(TmfXmlState.INITIAL_STATE_ID) || isInputValid) && scenario != null) {
             handleScenario(scenario, event);
             if (!scenario.isPending()) {
-                addActiveScenario(scenario);
+                addActiveScenario(scenario, event);
                 fPendingScenario = null;
             }
         }
@@ -345,9 +515,13 @@ public class TmfXmlFsm {
      * Abandon all ongoing scenarios
      */
     public void dispose() {
-        for (TmfXmlScenario scenario : fActiveScenariosList) {
-            if (scenario.isActive()) {
-                scenario.cancel();
+        List<ActiveScenario> scenarios = new ArrayList<>(fActiveScenariosList);
+        for (List<ActiveScenario> keyedScenarios : fKeyedScenarios.values()) {
+            scenarios.addAll(keyedScenarios);
+        }
+        for (ActiveScenario scenario : scenarios) {
+            if (scenario.fScenario.isActive()) {
+                scenario.fScenario.cancel();
             }
         }
     }
@@ -376,13 +550,31 @@ public class TmfXmlFsm {
     }
 
     /**
-     * Add a scenario to the active scenario list
+     * Add a scenario to the active scenarios. If the fsm has a key, the
+     * scenario is indexed by the key of the event that started it. The
+     * scenarios keep the order of their activation, with or without a key.
      *
      * @param scenario
      *            The scenario
+     * @param event
+     *            The event that started the scenario
      */
-    private void addActiveScenario(TmfXmlScenario scenario) {
-        fActiveScenariosList.add(scenario);
+    private void addActiveScenario(TmfXmlScenario scenario, ITmfEvent event) {
+        if (!scenario.isActive()) {
+            return;
+        }
+        ActiveScenario activeScenario = new ActiveScenario(scenario, fNbActivations++);
+        Object key = getKey(event);
+        if (key == null) {
+            fActiveScenariosList.add(activeScenario);
+            return;
+        }
+        List<ActiveScenario> scenarios = fKeyedScenarios.get(key);
+        if (scenarios == null) {
+            scenarios = new ArrayList<>();
+            fKeyedScenarios.put(key, scenarios);
+        }
+        scenarios.add(activeScenario);
     }
 
     /**
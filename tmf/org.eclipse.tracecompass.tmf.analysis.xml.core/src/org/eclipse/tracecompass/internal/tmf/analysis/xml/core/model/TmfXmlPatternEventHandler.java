@@ -10,6 +10,7 @@ package org.eclipse.tracecompass.internal.tmf.analysis.xml.core.model;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -200,4 +201,13 @@ public class TmfXmlPatternEventHandler {
     public @Nullable TmfXmlFsm getFsm(String fsmId) {
         return fFsmMap.get(fsmId);
     }
+
+    /**
+     * Get all the fsm of this pattern, in the order of their definition
+     *
+     * @return The fsm
+     */
+    public Collection<TmfXmlFsm> getFsms() {
+        return Collections.unmodifiableCollection(fFsmMap.values());
+    }
 }
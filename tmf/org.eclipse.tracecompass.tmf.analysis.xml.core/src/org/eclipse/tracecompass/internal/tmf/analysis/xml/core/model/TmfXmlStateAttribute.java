@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014, 2015 Ecole Polytechnique de Montreal
+ * Copyright (c) 2014, 2016 Ecole Polytechnique de Montreal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -78,6 +78,28 @@ public abstract class TmfXmlStateAttribute implements ITmfXmlStateAttribute {
 
     private final IXmlStateSystemContainer fContainer;
 
+    /** The last quark of a constant attribute, see {@link ResolvedQuark} */
+    private @Nullable ResolvedQuark fResolvedQuark = null;
+
+    /**
+     * The quark of a constant attribute from a start quark in a state system.
+     * Quarks are never removed from a state system, so the same constant from
+     * the same start quark is always the same quark. Attributes from the root
+     * or from the same parent for consecutive events are then resolved once.
+     * The fields are final, so it can be read by any thread.
+     */
+    private static final class ResolvedQuark {
+        private final ITmfStateSystem fStateSystem;
+        private final int fStartQuark;
+        private final int fQuark;
+
+        public ResolvedQuark(ITmfStateSystem stateSystem, int startQuark, int quark) {
+            fStateSystem = stateSystem;
+            fStartQuark = startQuark;
+            fQuark = quark;
+        }
+    }
+
     /**
      * Constructor
      *
@@ -207,11 +229,20 @@ public abstract class TmfXmlStateAttribute implements ITmfXmlStateAttribute {
                 if (name.equals(CURRENT_SCENARIO)) {
                     return checkNotNull(scenarioInfo).getQuark();
                 }
+                /* The current state of a scenario is not a constant */
+                boolean constantName = !CURRENT_STATE.equals(fName);
+                ResolvedQuark resolved = fResolvedQuark;
+                if (constantName && resolved != null && resolved.fStateSystem == ss && resolved.fStartQuark == startQuark) {
+                    return resolved.fQuark;
+                }
                 if (startQuark == IXmlStateSystemContainer.ROOT_QUARK) {
                     quark = getQuarkAbsoluteAndAdd(name);
                 } else {
                     quark = getQuarkRelativeAndAdd(startQuark, name);
                 }
+                if (constantName) {
+                    fResolvedQuark = new ResolvedQuark(ss, startQuark, quark);
+                }
                 return quark;
             }
             case EVENTFIELD: {
@@ -33,6 +33,14 @@ public class Messages extends NLS {
      * The string name
      */
     public static String PatternSegmentNameAspect_Name;
+    /**
+     * The name of the property of an fsm
+     */
+    public static String XmlPatternStateSystemModule_PropertiesFsm;
+    /**
+     * The statistics of an fsm
+     */
+    public static String XmlPatternStateSystemModule_PropertiesFsmStatistics;
     static {
         // initialize resource bundle
         NLS.initializeMessages(BUNDLE_NAME, Messages.class);
@@ -13,6 +13,7 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 import java.io.File;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
 
@@ -164,6 +165,13 @@ public class XmlPatternAnalysis extends TmfAbstractAnalysisModule implements ITm
         fSegmentStoreModule.dispose();
     }
 
+    @Override
+    public @NonNull Map<@NonNull String, @NonNull String> getProperties() {
+        Map<@NonNull String, @NonNull String> properties = super.getProperties();
+        properties.putAll(fStateSystemModule.getProperties());
+        return properties;
+    }
+
     @Override
     public void setId(@NonNull String id) {
         super.setId(id);
@@ -8,6 +8,7 @@
  ******************************************************************************/
 package org.eclipse.tracecompass.internal.tmf.analysis.xml.core.pattern.stateprovider;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -20,6 +21,7 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.model.ITmfXmlModelFactory;
+import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.model.TmfXmlFsm;
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.model.TmfXmlMapEntry;
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.model.TmfXmlLocation;
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.model.TmfXmlPatternEventHandler;
@@ -29,6 +31,7 @@ import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.module.IXmlStateS
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.module.XmlUtils;
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.stateprovider.TmfXmlStrings;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
@@ -64,6 +67,9 @@ public class XmlPatternStateProvider extends AbstractTmfStateProvider implements
 
     private final @NonNull TmfXmlScenarioHistoryBuilder fHistoryBuilder;
 
+    /* Whether the pattern was executed, and not loaded from a history */
+    private volatile boolean fExecuted;
+
     /**
      * @param trace
      *            The active trace
@@ -208,11 +214,31 @@ public class XmlPatternStateProvider extends AbstractTmfStateProvider implements
         return fLocations;
     }
 
+    @Override
+    public void assignTargetStateSystem(@NonNull ITmfStateSystemBuilder ssb) {
+        super.assignTargetStateSystem(ssb);
+        fExecuted = true;
+    }
+
     @Override
     protected void eventHandle(@NonNull ITmfEvent event) {
         fHandler.handleEvent(event);
     }
 
+    /**
+     * Get the fsm of the pattern, to get their statistics
+     *
+     * @return The fsm, in the order of their definition, or an empty
+     *         collection if this provider was not executed
+     */
+    public Collection<TmfXmlFsm> getFsms() {
+        TmfXmlPatternEventHandler handler = fHandler;
+        if (handler == null || !fExecuted) {
+            return Collections.emptyList();
+        }
+        return handler.getFsms();
+    }
+
     /**
      * Get the listerner for segments creation
      *
@@ -10,9 +10,13 @@ package org.eclipse.tracecompass.internal.tmf.analysis.xml.core.pattern.statepro
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.Map;
+
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.model.TmfXmlFsm;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 
@@ -27,6 +31,7 @@ public class XmlPatternStateSystemModule extends TmfStateSystemAnalysisModule {
 
     private @Nullable IPath fXmlFile;
     private final ISegmentListener fListener;
+    private volatile @Nullable XmlPatternStateProvider fStateProvider;
 
     /**
      * Constructor
@@ -42,7 +47,24 @@ public class XmlPatternStateSystemModule extends TmfStateSystemAnalysisModule {
     @Override
     protected @NonNull ITmfStateProvider createStateProvider() {
         String id = getId();
-        return new XmlPatternStateProvider(checkNotNull(getTrace()), id, fXmlFile, fListener);
+        XmlPatternStateProvider stateProvider = new XmlPatternStateProvider(checkNotNull(getTrace()), id, fXmlFile, fListener);
+        fStateProvider = stateProvider;
+        return stateProvider;
+    }
+
+    @Override
+    public @NonNull Map<@NonNull String, @NonNull String> getProperties() {
+        Map<@NonNull String, @NonNull String> properties = super.getProperties();
+        /* The statistics of the fsm, if the pattern was run in this session */
+        XmlPatternStateProvider stateProvider = fStateProvider;
+        if (stateProvider != null) {
+            for (TmfXmlFsm fsm : stateProvider.getFsms()) {
+                properties.put(checkNotNull(NLS.bind(Messages.XmlPatternStateSystemModule_PropertiesFsm, fsm.getId())),
+                        checkNotNull(NLS.bind(Messages.XmlPatternStateSystemModule_PropertiesFsmStatistics,
+                                new Object[] { fsm.getScenarioCount(), fsm.getActiveScenarioCount(), fsm.getEventCount(), fsm.getEvaluationCount() })));
+            }
+        }
+        return properties;
     }
 
     /**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ecole Polytechnique
+ * Copyright (c) 2014, 2016 Ecole Polytechnique
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -166,6 +166,7 @@ public interface TmfXmlStrings {
     String ALIAS = "alias";
     String ABANDON = "abandon";
     String CONSUMING = "consuming";
+    String KEY = "key";
     String MAPPING_GROUP = "mappingGroup";
     String ENTRY = "entry";
     String INITIAL_STATE = "initialState";
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014, 2015 École Polytechnique de Montréal
+ * Copyright (c) 2014, 2016 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -51,6 +51,12 @@ public class XmlStateProvider extends AbstractTmfStateProvider implements IXmlSt
     /** List of all Event Handlers */
     private final List<TmfXmlEventHandler> fEventHandlers = new ArrayList<>();
 
+    /**
+     * The event handlers that apply to each event name seen so far, in the
+     * order of their definition
+     */
+    private final Map<String, List<TmfXmlEventHandler>> fEventHandlersByName = new HashMap<>();
+
     /** List of all Locations */
     private final @NonNull Set<@NonNull TmfXmlLocation> fLocations;
 
@@ -175,8 +181,20 @@ public class XmlStateProvider extends AbstractTmfStateProvider implements IXmlSt
 
     @Override
     protected void eventHandle(ITmfEvent event) {
-        for (TmfXmlEventHandler eventHandler : fEventHandlers) {
-            eventHandler.handleEvent(event);
+        String eventName = event.getName();
+        List<TmfXmlEventHandler> eventHandlers = fEventHandlersByName.get(eventName);
+        if (eventHandlers == null) {
+            /* First event of this name, match the names and wildcards once */
+            eventHandlers = new ArrayList<>();
+            for (TmfXmlEventHandler eventHandler : fEventHandlers) {
+                if (eventHandler.appliesToEvent(eventName)) {
+                    eventHandlers.add(eventHandler);
+                }
+            }
+            fEventHandlersByName.put(eventName, eventHandlers);
+        }
+        for (TmfXmlEventHandler eventHandler : eventHandlers) {
+            eventHandler.applyStateChanges(event);
         }
     }
 
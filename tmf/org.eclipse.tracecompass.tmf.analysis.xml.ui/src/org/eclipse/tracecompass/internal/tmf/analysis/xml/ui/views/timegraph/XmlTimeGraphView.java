@@ -483,6 +483,11 @@ public class XmlTimeGraphView extends AbstractTimeGraphView {
         }
     }
 
+    @Override
+    protected boolean isZoomCacheEnabled() {
+        return true;
+    }
+
     @Override
     protected List<ITimeEvent> getEventList(TimeGraphEntry entry, long startTime, long endTime, long resolution, IProgressMonitor monitor) {
         if (!(entry instanceof XmlEntry)) {
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.tracecompass.internal.tmf.core.analysis.TmfAnalysisSession;
+import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.tests.stubs.analysis.TestAnalysis;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Test the {@link TmfAnalysisSession} class
+ *
+ * @author Matthew Khouzam
+ */
+public class AnalysisSessionTest {
+
+    private static final int NB_EVENTS = 10000;
+
+    private ITmfTrace fTrace;
+    private IAnalysisModule fModule1;
+    private IAnalysisModule fModule2;
+
+    private static class CountingRequest extends TmfEventRequest {
+        public CountingRequest() {
+            super(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND);
+        }
+    }
+
+    /**
+     * Setup the trace and the modules
+     */
+    @Before
+    public void setUp() {
+        fTrace = TmfTestTrace.A_TEST_10K.getTrace();
+        fModule1 = new TestAnalysis();
+        fModule2 = new TestAnalysis();
+    }
+
+    /**
+     * Dispose of the trace and modules
+     */
+    @After
+    public void tearDown() {
+        fModule1.dispose();
+        fModule2.dispose();
+        TmfTestTrace.A_TEST_10K.dispose();
+    }
+
+    /**
+     * Test that the requests of the modules of a session are executed once
+     * all the modules joined
+     *
+     * @throws InterruptedException
+     *             If the test is interrupted
+     */
+    @Test
+    public void testJoin() throws InterruptedException {
+        TmfAnalysisSession.open(fTrace, ImmutableList.of(fModule1, fModule2));
+
+        CountingRequest request1 = new CountingRequest();
+        CountingRequest request2 = new CountingRequest();
+        assertTrue(TmfAnalysisSession.join(fTrace, fModule1, request1));
+        assertFalse(request1.isRunning() || request1.isCompleted());
+
+        /* A module can only join once */
+        assertFalse(TmfAnalysisSession.join(fTrace, fModule1, new CountingRequest()));
+
+        assertTrue(TmfAnalysisSession.join(fTrace, fModule2, request2));
+        request1.waitForCompletion();
+        request2.waitForCompletion();
+        assertEquals(NB_EVENTS, request1.getNbRead());
+        assertEquals(NB_EVENTS, request2.getNbRead());
+
+        /* The session is over */
+        assertFalse(TmfAnalysisSession.join(fTrace, fModule1, new CountingRequest()));
+    }
+
+    /**
+     * Test that the session starts when the modules that will not read the
+     * trace withdraw from it
+     *
+     * @throws InterruptedException
+     *             If the test is interrupted
+     */
+    @Test
+    public void testWithdraw() throws InterruptedException {
+        TmfAnalysisSession.open(fTrace, ImmutableList.of(fModule1, fModule2));
+
+        CountingRequest request = new CountingRequest();
+        assertTrue(TmfAnalysisSession.join(fTrace, fModule1, request));
+        TmfAnalysisSession.withdraw(fTrace, fModule2);
+        request.waitForCompletion();
+        assertEquals(NB_EVENTS, request.getNbRead());
+        assertFalse(TmfAnalysisSession.join(fTrace, fModule2, new CountingRequest()));
+    }
+
+    /**
+     * Test that a module cancelled before joining the session does not make
+     * the other modules wait, and that a request cancelled while waiting for
+     * the session is not sent
+     *
+     * @throws InterruptedException
+     *             If the test is interrupted
+     * @throws TmfAnalysisException
+     *             If the trace cannot be set to the module
+     */
+    @Test
+    public void testCancel() throws InterruptedException, TmfAnalysisException {
+        IAnalysisModule module3 = new TestAnalysis();
+        try {
+            TmfAnalysisSession.open(fTrace, ImmutableList.of(fModule1, fModule2, module3));
+            assertTrue(fModule2.setTrace(fTrace));
+
+            CountingRequest cancelled = new CountingRequest();
+            CountingRequest request = new CountingRequest();
+            assertTrue(TmfAnalysisSession.join(fTrace, module3, cancelled));
+            cancelled.cancel();
+            assertTrue(TmfAnalysisSession.join(fTrace, fModule1, request));
+
+            /* The session starts when the last module is cancelled */
+            fModule2.cancel();
+            assertFalse(TmfAnalysisSession.join(fTrace, fModule2, new CountingRequest()));
+            request.waitForCompletion();
+            assertEquals(NB_EVENTS, request.getNbRead());
+            assertEquals(0, cancelled.getNbRead());
+        } finally {
+            module3.dispose();
+        }
+    }
+
+    /**
+     * Test that a module whose execution fails before joining the session does
+     * not make the other modules wait
+     *
+     * @throws InterruptedException
+     *             If the test is interrupted
+     * @throws TmfAnalysisException
+     *             If the trace cannot be set to the module
+     */
+    @Test
+    public void testFailure() throws InterruptedException, TmfAnalysisException {
+        TmfAnalysisSession.open(fTrace, ImmutableList.of(fModule1, fModule2));
+
+        CountingRequest request = new CountingRequest();
+        assertTrue(TmfAnalysisSession.join(fTrace, fModule1, request));
+
+        /* The test analysis fails when its parameter is not set */
+        assertTrue(fModule2.setTrace(fTrace));
+        fModule2.schedule();
+        fModule2.waitForCompletion();
+        assertFalse(TmfAnalysisSession.join(fTrace, fModule2, new CountingRequest()));
+        request.waitForCompletion();
+        assertEquals(NB_EVENTS, request.getNbRead());
+    }
+
+    /**
+     * Test that no session is opened for a single module, and that modules not
+     * expected by a session cannot join it
+     */
+    @Test
+    public void testNotExpected() {
+        TmfAnalysisSession.open(fTrace, ImmutableList.of(fModule1));
+        assertFalse(TmfAnalysisSession.join(fTrace, fModule1, new CountingRequest()));
+
+        TmfAnalysisSession.open(fTrace, ImmutableList.of(fModule1, fModule2));
+        assertFalse(TmfAnalysisSession.join(fTrace, new TestAnalysis(), new CountingRequest()));
+        TmfAnalysisSession.withdraw(fTrace, fModule1);
+        TmfAnalysisSession.withdraw(fTrace, fModule2);
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -103,16 +103,30 @@ public class TmfEventTest {
         assertNotNull("getTrace", fEvent1.getTrace());
         assertEquals("getRank", 0, fEvent1.getRank());
         assertEquals("getTimestamp", fTimestamp1, fEvent1.getTimestamp());
+        assertEquals("getTimestampNanos", fTimestamp1.toNanos(), fEvent1.getTimestampNanos());
         assertEquals("getType", fType, fEvent1.getType());
         assertEquals("getContent", fContent1, fEvent1.getContent());
 
         assertNotNull("getTrace", fEvent2.getTrace());
         assertEquals("getRank", 1, fEvent2.getRank());
         assertEquals("getTimestamp", fTimestamp2, fEvent2.getTimestamp());
+        assertEquals("getTimestampNanos", fTimestamp2.toNanos(), fEvent2.getTimestampNanos());
         assertEquals("getType", fType, fEvent2.getType());
         assertEquals("getContent", fContent2, fEvent2.getContent());
     }
 
+    @Test
+    public void testNanosConstructor() {
+        final ITmfEvent event = new TmfEvent(fTrace, 0, fTimestamp1.toNanos(), fType, fContent1);
+        assertNotNull("getTrace", event.getTrace());
+        assertEquals("getRank", 0, event.getRank());
+        assertEquals("getTimestampNanos", fTimestamp1.toNanos(), event.getTimestampNanos());
+        assertEquals("getTimestamp", TmfTimestamp.fromNanos(fTimestamp1.toNanos()), event.getTimestamp());
+        assertEquals("getTimestamp", 0, fTimestamp1.compareTo(event.getTimestamp()));
+        assertEquals("getType", fType, event.getType());
+        assertEquals("getContent", fContent1, event.getContent());
+    }
+
     @Test
     public void testNoRankConstructor() {
         final ITmfEvent event = new TmfEvent(fTrace, ITmfContext.UNKNOWN_RANK, fTimestamp1, fType, fContent1);
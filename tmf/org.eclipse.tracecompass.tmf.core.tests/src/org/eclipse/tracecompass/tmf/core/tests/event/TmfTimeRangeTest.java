@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -214,6 +214,30 @@ public class TmfTimeRangeTest {
         assertFalse("contains (high value)", range.contains(TmfTimestamp.fromSeconds(12351)));
     }
 
+    @Test
+    public void testContainsNanos() {
+        final TmfTimeRange range = new TmfTimeRange(TmfTimestamp.fromNanos(100), TmfTimestamp.fromNanos(200));
+        final TmfTimeRange openStart = new TmfTimeRange(TmfTimestamp.BIG_BANG, TmfTimestamp.fromNanos(200));
+        final TmfTimeRange openEnd = new TmfTimeRange(TmfTimestamp.fromNanos(100), TmfTimestamp.BIG_CRUNCH);
+        final TmfTimeRange seconds = new TmfTimeRange(TmfTimestamp.fromSeconds(1), TmfTimestamp.fromSeconds(2));
+        final long[] values = { Long.MIN_VALUE, 0, 99, 100, 150, 200, 201, 1000000000, 1500000000, 2000000000, 2000000001, Long.MAX_VALUE };
+
+        for (TmfTimeRange r : new TmfTimeRange[] { range, openStart, openEnd, seconds, TmfTimeRange.NULL_RANGE, TmfTimeRange.ETERNITY }) {
+            for (long value : values) {
+                /* Same answers as the timestamp comparisons */
+                ITmfTimestamp ts = TmfTimestamp.fromNanos(value);
+                boolean expected = r.getStartTime().compareTo(ts) <= 0 && r.getEndTime().compareTo(ts) >= 0;
+                if (r == TmfTimeRange.ETERNITY) {
+                    expected = true;
+                }
+                assertEquals(r + " contains " + value, expected, r.contains(ts));
+                assertEquals(r + " contains " + value, expected, r.contains(value));
+            }
+        }
+        assertTrue(range.contains(TmfTimestamp.create(1500, -10)));
+        assertFalse(range.contains(TmfTimestamp.create(2001, -10)));
+    }
+
     @Test
     public void testContainsRange() {
         final ITmfTimestamp ts1 = TmfTimestamp.fromSeconds(10);
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.event.matching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.event.matching.IEventMatchingKey;
+import org.eclipse.tracecompass.tmf.core.event.matching.ITmfMatchEventDefinition;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventDependency;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventMatches;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventMatching;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventMatching.Direction;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link TmfEventMatching} class with send and receive events of two
+ * traces
+ *
+ * @author Matthew Khouzam
+ */
+public class TmfEventMatchingTest {
+
+    private static final String SEND = "send";
+    private static final String RECEIVE = "receive";
+    private static final String ID = "id";
+
+    private static final ITmfTrace TRACE1 = new TmfTraceStub();
+    private static final ITmfTrace TRACE2 = new TmfTraceStub();
+
+    private final List<TmfEventDependency> fMatches = new ArrayList<>();
+    private final TmfEventMatches fProcessingUnit = new TmfEventMatches() {
+        @Override
+        public void addMatch(TmfEventDependency match) {
+            super.addMatch(match);
+            fMatches.add(match);
+        }
+    };
+    private TestMatching fMatching;
+    private long fRank = 0;
+
+    private static class TestKey implements IEventMatchingKey {
+        private final long fId;
+
+        public TestKey(long id) {
+            fId = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(fId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof TestKey) && ((TestKey) obj).fId == fId;
+        }
+    }
+
+    /**
+     * Definition of the send and receive events of the test traces
+     */
+    private static class TestDefinition implements ITmfMatchEventDefinition {
+        @Override
+        public IEventMatchingKey getEventKey(ITmfEvent event) {
+            return new TestKey((Long) event.getContent().getField(ID).getValue());
+        }
+
+        @Override
+        public boolean canMatchTrace(ITmfTrace trace) {
+            return trace == TRACE1 || trace == TRACE2;
+        }
+
+        @Override
+        public Direction getDirection(ITmfEvent event) {
+            switch (event.getName()) {
+            case SEND:
+                return Direction.CAUSE;
+            case RECEIVE:
+                return Direction.EFFECT;
+            default:
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Matching with its own event definition, which is not registered so that
+     * it does not leak into the matchings of the other tests
+     */
+    private static class TestMatching extends TmfEventMatching {
+        private final Collection<ITmfMatchEventDefinition> fDefinitions = Collections.singleton(new TestDefinition());
+
+        public TestMatching(TmfEventMatches processingUnit) {
+            super(Arrays.asList(TRACE1, TRACE2), processingUnit);
+        }
+
+        @Override
+        protected Collection<ITmfMatchEventDefinition> getEventDefinitions(ITmfTrace trace) {
+            return fDefinitions;
+        }
+
+        public void end() {
+            finalizeMatching();
+        }
+    }
+
+    /**
+     * Create the matching
+     */
+    @Before
+    public void createMatching() {
+        fMatching = new TestMatching(fProcessingUnit);
+        fMatching.initMatching();
+    }
+
+    private ITmfEvent match(ITmfTrace trace, long time, String type, long id) {
+        ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null,
+                new ITmfEventField[] { new TmfEventField(ID, id, null) });
+        ITmfEvent event = new TmfEvent(trace, fRank++, TmfTimestamp.fromNanos(time), new TmfEventType(type, null), content);
+        fMatching.matchEvent(event, trace, new NullProgressMonitor());
+        return event;
+    }
+
+    /**
+     * Test matching events in both directions, with duplicate and unmatched
+     * events
+     */
+    @Test
+    public void testMatches() {
+        ITmfEvent send1 = match(TRACE1, 10, SEND, 1);
+        /* Only the first event with a key is kept */
+        match(TRACE1, 11, SEND, 1);
+        ITmfEvent receive2 = match(TRACE1, 12, RECEIVE, 2);
+        match(TRACE2, 13, SEND, 3);
+        ITmfEvent receive1 = match(TRACE2, 15, RECEIVE, 1);
+        ITmfEvent send2 = match(TRACE2, 16, SEND, 2);
+        match(TRACE2, 17, RECEIVE, 4);
+        fMatching.end();
+
+        assertEquals(2, fProcessingUnit.countMatches());
+        assertSame(send1, fMatches.get(0).getSourceEvent());
+        assertSame(receive1, fMatches.get(0).getDestinationEvent());
+        assertSame(send2, fMatches.get(1).getSourceEvent());
+        assertSame(receive2, fMatches.get(1).getDestinationEvent());
+        assertEquals(3, fProcessingUnit.getMaxUnmatched());
+        assertTrue(fProcessingUnit.getThroughput() > 0);
+    }
+
+    /**
+     * Test that the unmatched events out of the matching window are dropped
+     */
+    @Test
+    public void testWindow() {
+        fMatching.setMatchingWindow(100);
+        for (long i = 0; i < 10000; i++) {
+            /* The even sends are received in time, the odd ones too late */
+            match(TRACE1, i * 10, SEND, i);
+            if (i >= 5 && i % 2 == 1) {
+                match(TRACE2, i * 10 + 5, RECEIVE, i - 5);
+            }
+            if (i >= 20 && i % 2 == 0) {
+                match(TRACE2, i * 10 + 5, RECEIVE, i - 19);
+            }
+        }
+        fMatching.end();
+
+        assertEquals(4998, fProcessingUnit.countMatches());
+        /* Only the events of the last 100 ns are kept */
+        assertTrue(fProcessingUnit.getMaxUnmatched() <= 20);
+    }
+}
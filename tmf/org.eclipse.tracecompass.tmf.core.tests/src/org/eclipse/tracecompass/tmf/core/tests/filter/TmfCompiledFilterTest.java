@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfContentFieldAspect;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.TmfCompiledFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterTraceTypeNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub2;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfCompiledFilter} class.
+ *
+ * @author Matthew Khouzam
+ */
+@SuppressWarnings("javadoc")
+public class TmfCompiledFilterTest extends TmfFilterTreeNodeTestBase {
+
+    private static final String OTHER_FIELD = "other";
+    private static final ITmfEventType TYPE_A = new TmfEventType("A", TmfEventField.makeRoot(new String[] { FIELD, OTHER_FIELD }));
+    private static final ITmfEventType TYPE_B = new TmfEventType("B", TmfEventField.makeRoot(new String[] { FIELD, OTHER_FIELD }));
+
+    private final List<ITmfEvent> fEvents = new ArrayList<>();
+
+    @Before
+    public void createEvents() {
+        fFilterNode = new TmfFilterRootNode();
+        String[] values = { "1", "5", "11", "0x10", "abc", "ABCD", "2.5" };
+        long rank = 0;
+        for (ITmfEventType type : new ITmfEventType[] { TYPE_A, TYPE_B }) {
+            for (String value : values) {
+                for (String other : values) {
+                    ITmfEventField[] fields = new ITmfEventField[] {
+                            new TmfEventField(FIELD, value, null),
+                            new TmfEventField(OTHER_FIELD, other, null) };
+                    ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, fields);
+                    fEvents.add(new TmfEvent(TRACE, rank, TmfTimestamp.fromNanos(rank), type, content));
+                    rank++;
+                }
+            }
+        }
+    }
+
+    private void assertSameMatches(ITmfFilter filter) {
+        ITmfFilter compiled = TmfCompiledFilter.compile(filter);
+        int nbMatches = 0;
+        for (ITmfEvent event : fEvents) {
+            boolean matches = filter.matches(event);
+            assertEquals(filter.toString() + " on " + event.getContent(), matches, compiled.matches(event));
+            nbMatches += matches ? 1 : 0;
+        }
+        /* The filters of these tests are neither always true nor always false */
+        assertTrue(filter.toString(), nbMatches > 0 && nbMatches < fEvents.size());
+    }
+
+    private static TmfFilterEqualsNode createTypeEquals(ITmfFilterTreeNode parent, String type, boolean not) {
+        TmfFilterEqualsNode node = new TmfFilterEqualsNode(parent);
+        node.setEventAspect(TmfBaseAspects.getEventTypeAspect());
+        node.setValue(type);
+        node.setNot(not);
+        return node;
+    }
+
+    private static TmfFilterCompareNode createCompare(ITmfFilterTreeNode parent, String field, Type type, int result, String value) {
+        TmfFilterCompareNode node = new TmfFilterCompareNode(parent);
+        node.setEventAspect(new TmfContentFieldAspect(field, field));
+        node.setType(type);
+        node.setResult(result);
+        node.setValue(value);
+        return node;
+    }
+
+    @Test
+    public void testCompile() {
+        TmfCompiledFilter compiled = TmfCompiledFilter.compile(fFilterNode);
+        assertSame(fFilterNode, compiled.getFilter());
+        assertSame(compiled, TmfCompiledFilter.compile(compiled));
+    }
+
+    @Test
+    public void testMatchesLeaves() {
+        for (int result = -1; result <= 1; result++) {
+            assertSameMatches(createCompare(null, FIELD, Type.NUM, result, "5"));
+            assertSameMatches(createCompare(null, FIELD, Type.NUM, result, "2.5"));
+            assertSameMatches(createCompare(null, FIELD, Type.ALPHA, result, "ABCD"));
+        }
+
+        TmfFilterContainsNode contains = new TmfFilterContainsNode(null);
+        contains.setEventAspect(new TmfContentFieldAspect(FIELD, FIELD));
+        contains.setValue("bc");
+        assertSameMatches(contains);
+        contains.setIgnoreCase(true);
+        contains.setValue("BC");
+        assertSameMatches(contains);
+        contains.setNot(true);
+        assertSameMatches(contains);
+
+        TmfFilterMatchesNode matches = new TmfFilterMatchesNode(null);
+        matches.setEventAspect(new TmfContentFieldAspect(OTHER_FIELD, OTHER_FIELD));
+        matches.setRegex("^[0-9]+$");
+        assertSameMatches(matches);
+        matches.setNot(true);
+        assertSameMatches(matches);
+
+        TmfFilterEqualsNode equals = new TmfFilterEqualsNode(null);
+        equals.setEventAspect(TmfBaseAspects.getContentsAspect());
+        equals.setValue("field=abc, other=ABCD");
+        assertSameMatches(equals);
+        equals.setIgnoreCase(true);
+        equals.setValue("FIELD=abc, other=abcd");
+        assertSameMatches(equals);
+    }
+
+    @Test
+    public void testMatchesTree() {
+        TmfFilterOrNode or = new TmfFilterOrNode(fFilterNode);
+        TmfFilterAndNode and = new TmfFilterAndNode(or);
+        createTypeEquals(and, "A", false);
+        createCompare(and, FIELD, Type.NUM, 1, "1");
+        TmfFilterAndNode nestedAnd = new TmfFilterAndNode(and);
+        TmfFilterMatchesNode matches = new TmfFilterMatchesNode(nestedAnd);
+        matches.setEventAspect(new TmfContentFieldAspect(OTHER_FIELD, OTHER_FIELD));
+        matches.setRegex("b");
+        createCompare(or, OTHER_FIELD, Type.NUM, 0, "16");
+        assertSameMatches(fFilterNode);
+
+        and.setNot(true);
+        assertSameMatches(fFilterNode);
+
+        /* A negated OR never matches, see TmfFilterOrNode#matches() */
+        TmfFilterOrNode negatedOr = new TmfFilterOrNode(null);
+        negatedOr.setNot(true);
+        createTypeEquals(negatedOr, "A", false);
+        for (ITmfEvent event : fEvents) {
+            assertFalse(TmfCompiledFilter.compile(negatedOr).matches(event));
+        }
+
+        /* Subclasses of the nodes are evaluated by themselves */
+        TmfFilterAndNode withSubclass = new TmfFilterAndNode(null);
+        withSubclass.addChild(TRUE_NODE);
+        createTypeEquals(withSubclass, "B", false);
+        assertSameMatches(withSubclass);
+        withSubclass.addChild(FALSE_NODE);
+        for (ITmfEvent event : fEvents) {
+            assertFalse(TmfCompiledFilter.compile(withSubclass).matches(event));
+        }
+    }
+
+    @Test
+    public void testMatchesTraceType() {
+        TmfFilterOrNode or = new TmfFilterOrNode(fFilterNode);
+        TmfFilterTraceTypeNode traceType = new TmfFilterTraceTypeNode(or);
+        traceType.setTraceClass(TmfTraceStub.class);
+        createCompare(traceType, FIELD, Type.NUM, -1, "5");
+        createTypeEquals(or, "B", false);
+        assertSameMatches(fFilterNode);
+
+        traceType.setTraceClass(TmfTraceStub2.class);
+        assertSameMatches(fFilterNode);
+    }
+
+    @Test
+    public void testCanMatchEventType() {
+        TmfCompiledFilter compiled = TmfCompiledFilter.compile(createCompare(null, FIELD, Type.NUM, 0, "5"));
+        assertTrue(compiled.canMatchEventType("A"));
+        assertTrue(compiled.canMatchEventType("B"));
+
+        TmfFilterAndNode and = new TmfFilterAndNode(fFilterNode);
+        createTypeEquals(and, "A", false);
+        createCompare(and, FIELD, Type.NUM, 0, "5");
+        compiled = TmfCompiledFilter.compile(fFilterNode);
+        assertTrue(compiled.canMatchEventType("A"));
+        assertFalse(compiled.canMatchEventType("B"));
+        assertSameMatches(fFilterNode);
+
+        and.setNot(true);
+        compiled = TmfCompiledFilter.compile(fFilterNode);
+        assertTrue(compiled.canMatchEventType("A"));
+        assertTrue(compiled.canMatchEventType("B"));
+        assertSameMatches(fFilterNode);
+
+        TmfFilterOrNode or = new TmfFilterOrNode(null);
+        createTypeEquals(or, "A", false);
+        TmfFilterContainsNode contains = new TmfFilterContainsNode(or);
+        contains.setEventAspect(TmfBaseAspects.getEventTypeAspect());
+        contains.setValue("C");
+        compiled = TmfCompiledFilter.compile(or);
+        assertTrue(compiled.canMatchEventType("A"));
+        assertFalse(compiled.canMatchEventType("B"));
+        assertTrue(compiled.canMatchEventType("C"));
+
+        createTypeEquals(fFilterNode, "B", true);
+        createTypeEquals(fFilterNode, "C", true);
+        compiled = TmfCompiledFilter.compile(fFilterNode);
+        assertTrue(compiled.canMatchEventType("A"));
+        assertFalse(compiled.canMatchEventType("B"));
+        assertFalse(compiled.canMatchEventType("C"));
+    }
+}
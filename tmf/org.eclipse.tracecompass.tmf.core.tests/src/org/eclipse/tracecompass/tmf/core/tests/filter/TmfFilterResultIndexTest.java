@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterResultIndex;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterObjectNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link TmfFilterResultIndex} class against the matching events
+ * themselves
+ *
+ * @author Matthew Khouzam
+ */
+public class TmfFilterResultIndexTest {
+
+    private static final String FILTER = "root [Event type equals \"A\"]";
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /*
+     * Blocks with many matching events, few matching events, none at all, and
+     * a last partial block
+     */
+    private static final double[] DENSITIES = { 0.5, 0.01, 0, 0.9, 0.0001, 0.2 };
+
+    private final boolean[] fMatches = new boolean[(DENSITIES.length - 1) * BLOCK_SIZE + 12345];
+
+    /**
+     * Pick the matching events
+     */
+    @Before
+    public void createMatches() {
+        Random random = new Random(42);
+        for (int rank = 0; rank < fMatches.length; rank++) {
+            fMatches[rank] = random.nextDouble() < DENSITIES[rank / BLOCK_SIZE];
+        }
+    }
+
+    private TmfFilterResultIndex build() {
+        TmfFilterResultIndex.Builder builder = new TmfFilterResultIndex.Builder(FILTER);
+        for (int rank = 0; rank < fMatches.length; rank++) {
+            if (fMatches[rank]) {
+                builder.add(rank);
+            }
+        }
+        return builder.build(fMatches.length);
+    }
+
+    private void assertSameMatches(TmfFilterResultIndex index) {
+        assertEquals(FILTER, index.getFilter());
+        assertEquals(fMatches.length, index.getNbEvents());
+        long count = 0;
+        for (int rank = 0; rank < fMatches.length; rank++) {
+            assertEquals(count, index.getIndex(rank));
+            assertEquals(fMatches[rank], index.matches(rank));
+            if (fMatches[rank]) {
+                assertEquals(rank, index.getRank(count));
+                count++;
+            }
+        }
+        assertEquals(count, index.size());
+        assertEquals(count, index.getIndex(fMatches.length));
+        assertEquals(-1, index.getRank(count));
+        assertEquals(-1, index.getRank(-1));
+    }
+
+    /**
+     * Test the lookups of an index
+     */
+    @Test
+    public void testLookups() {
+        assertSameMatches(build());
+    }
+
+    /**
+     * Test the lookups of an index written and read back
+     *
+     * @throws IOException
+     *             if the file can't be written or read
+     */
+    @Test
+    public void testReadWrite() throws IOException {
+        File file = File.createTempFile("filter", ".idx");
+        try {
+            build().write(file);
+            TmfFilterResultIndex index = TmfFilterResultIndex.read(file);
+            assertNotNull(index);
+            assertSameMatches(index);
+        } finally {
+            file.delete();
+        }
+        assertNull(TmfFilterResultIndex.read(file));
+    }
+
+    /**
+     * Test building an index before all the events are added
+     */
+    @Test
+    public void testPartial() {
+        TmfFilterResultIndex.Builder builder = new TmfFilterResultIndex.Builder(FILTER);
+        int half = fMatches.length / 2;
+        long count = 0;
+        for (int rank = 0; rank < half; rank++) {
+            if (fMatches[rank]) {
+                builder.add(rank);
+                count++;
+            }
+        }
+        TmfFilterResultIndex partial = builder.build(half);
+        assertEquals(half, partial.getNbEvents());
+        assertEquals(count, partial.size());
+        assertEquals(count, partial.getIndex(fMatches.length));
+
+        for (int rank = half; rank < fMatches.length; rank++) {
+            if (fMatches[rank]) {
+                builder.add(rank);
+            }
+        }
+        assertSameMatches(builder.build(fMatches.length));
+        /* The first index did not change */
+        assertEquals(half, partial.getNbEvents());
+        assertEquals(count, partial.size());
+    }
+
+    /**
+     * Test adding events out of order
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutOfOrder() {
+        TmfFilterResultIndex.Builder builder = new TmfFilterResultIndex.Builder(FILTER);
+        builder.add(10);
+        builder.add(5);
+    }
+
+    /**
+     * Test an index without matching events
+     */
+    @Test
+    public void testEmpty() {
+        TmfFilterResultIndex index = new TmfFilterResultIndex.Builder(FILTER).build(100);
+        assertEquals(0, index.size());
+        assertEquals(0, index.getIndex(50));
+        assertEquals(-1, index.getRank(0));
+        index = new TmfFilterResultIndex.Builder(FILTER).build(0);
+        assertEquals(0, index.size());
+        assertEquals(0, index.getIndex(0));
+    }
+
+    /**
+     * Test the canonical form of filters
+     */
+    @Test
+    public void testCanonicalForm() {
+        TmfFilterRootNode root = new TmfFilterRootNode();
+        TmfFilterEqualsNode equals = new TmfFilterEqualsNode(root);
+        equals.setEventAspect(TmfBaseAspects.getEventTypeAspect());
+        equals.setValue("A");
+        TmfFilterRootNode other = (TmfFilterRootNode) root.clone();
+        String form = TmfFilterResultIndex.getCanonicalForm(root);
+        assertNotNull(form);
+        assertEquals(form, TmfFilterResultIndex.getCanonicalForm(other));
+
+        new TmfFilterObjectNode(root, event -> true);
+        assertNull(TmfFilterResultIndex.getCanonicalForm(root));
+    }
+
+    /**
+     * Test that only the most recently used index files are kept
+     *
+     * @throws IOException
+     *             if the files can't be written
+     */
+    @Test
+    public void testDeleteOldFiles() throws IOException {
+        File directory = Files.createTempDirectory("filters").toFile();
+        int nbFiles = TmfFilterResultIndex.MAX_FILES + 4;
+        File[] files = new File[nbFiles];
+        TmfFilterResultIndex index = new TmfFilterResultIndex.Builder(FILTER).build(100);
+        long now = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < nbFiles; i++) {
+                files[i] = new File(directory, "filter-" + i + ".idx");
+                index.write(files[i]);
+                /* Whole seconds, for the file systems with a coarse time */
+                assertTrue(files[i].setLastModified(now - (nbFiles - i) * 1000L));
+            }
+            File other = new File(directory, "other.idx");
+            assertTrue(other.createNewFile());
+            assertTrue(other.setLastModified(0));
+
+            TmfFilterResultIndex.deleteOldFiles(directory, TmfFilterResultIndex.MAX_FILES);
+            for (int i = 0; i < nbFiles; i++) {
+                assertEquals(i >= nbFiles - TmfFilterResultIndex.MAX_FILES, files[i].exists());
+            }
+            assertTrue(other.exists());
+
+            /* A recently used file is kept over a more recent one */
+            assertTrue(files[nbFiles - TmfFilterResultIndex.MAX_FILES].setLastModified(now));
+            TmfFilterResultIndex.deleteOldFiles(directory, TmfFilterResultIndex.MAX_FILES - 1);
+            assertTrue(files[nbFiles - TmfFilterResultIndex.MAX_FILES].exists());
+            assertFalse(files[nbFiles - TmfFilterResultIndex.MAX_FILES + 1].exists());
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.parsers.custom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.TmfParallelIndexBuilder;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTrace;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceDefinition;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfParallelIndexable.ChunkReader;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpointIndex;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpointIndexer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the parallel indexing of a custom txt trace whose events span two
+ * lines that both match the first line of an event. A chunk can then be
+ * resynchronized on the second line of an event, and has to be counted again
+ * from the end of the previous chunk.
+ *
+ * @author Matthew Khouzam
+ */
+public class CustomTxtParallelIndexTest {
+
+    private static final String TRACE_DIRECTORY = TmfTraceManager.getTemporaryDirPath() + File.separator + "dummyTxtPairTrace";
+    private static final String TRACE_PATH = TRACE_DIRECTORY + File.separator + "test.txt";
+    private static final String DEFINITION_PATH = "testfiles" + File.separator + "txt" + File.separator + "testTxtPairDefinition.xml";
+    private static final int NB_EVENTS = 10000;
+    private static final int INTERVAL = 100;
+
+    private TestTrace fTrace;
+
+    private static class TestIndexer extends TmfCheckpointIndexer {
+        public TestIndexer(ITmfTrace trace, int interval) {
+            super(trace, interval);
+        }
+
+        public ITmfCheckpointIndex getCheckpoints() {
+            return fTraceIndex;
+        }
+    }
+
+    private static class TestTrace extends CustomTxtTrace {
+        public TestTrace(String path, CustomTxtTraceDefinition definition) throws TmfTraceException {
+            super(null, definition, path, INTERVAL);
+        }
+
+        @Override
+        protected ITmfTraceIndexer createIndexer(int interval) {
+            return new TestIndexer(this, interval);
+        }
+
+        @Override
+        public TestIndexer getIndexer() {
+            return (TestIndexer) super.getIndexer();
+        }
+    }
+
+    /**
+     * Create the trace, with events of different lengths, and index it
+     * sequentially
+     *
+     * @throws Exception
+     *             if the trace can't be created
+     */
+    @Before
+    public void setUp() throws Exception {
+        new File(TRACE_DIRECTORY).mkdir();
+        File file = new File(TRACE_PATH);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file));) {
+            for (int i = 0; i < NB_EVENTS; i++) {
+                writer.write(i * 10 + " event " + i + "\n");
+                writer.write(i * 10 + 5 + " payload" + (i % 7 == 0 ? " with a longer content" : "") + "\n");
+            }
+        }
+        CustomTxtTraceDefinition definition = CustomTxtTraceDefinition.loadAll(new File(DEFINITION_PATH).toString())[0];
+        fTrace = new TestTrace(file.toString(), definition);
+        fTrace.indexTrace(true);
+        assertEquals("getNbEvents", NB_EVENTS, fTrace.getNbEvents());
+    }
+
+    /**
+     * Delete the trace
+     */
+    @After
+    public void tearDown() {
+        fTrace.dispose();
+        new File(TRACE_PATH).delete();
+        new File(TRACE_DIRECTORY).delete();
+    }
+
+    /**
+     * Test that a reader created on the second line of an event is
+     * resynchronized on it, so that the stitching has to fix it
+     *
+     * @throws IOException
+     *             if the trace can't be read
+     */
+    @Test
+    public void testResync() throws IOException {
+        long secondLine = (Long) fTrace.seekEvent(0).getLocation().getLocationInfo() + "0 event 0\n".length();
+        try (ChunkReader reader = fTrace.createChunkReader(secondLine)) {
+            assertEquals("getPosition", secondLine, reader.getPosition());
+            assertNotEquals("getLocation", fTrace.seekEvent(1).getLocation(), reader.getLocation());
+        }
+    }
+
+    /**
+     * Test that the checkpoints, the number of events and the time range of a
+     * parallel indexing are the same as those of the sequential indexing, for
+     * various numbers of chunks, and that the chunks are reported in order
+     *
+     * @throws IOException
+     *             if the trace can't be read
+     */
+    @Test
+    public void testParallelIndexing() throws IOException {
+        assertTrue("isParallelIndexable", fTrace.isParallelIndexable());
+        ITmfCheckpointIndex expected = fTrace.getIndexer().getCheckpoints();
+        assertEquals("checkpoints", NB_EVENTS / INTERVAL, expected.size());
+        for (int nbChunks = 1; nbChunks <= 16; nbChunks++) {
+            List<ITmfCheckpoint> reported = new ArrayList<>();
+            List<Long> reportedNbEvents = new ArrayList<>();
+            TmfParallelIndexBuilder.Result result = TmfParallelIndexBuilder.build(fTrace, INTERVAL, nbChunks, (checkpoints, nbEvents, range) -> {
+                reported.addAll(checkpoints);
+                reportedNbEvents.add(nbEvents);
+            }, new NullProgressMonitor());
+            assertNotNull(result);
+            assertEquals("reported checkpoints", result.getCheckpoints(), reported);
+            assertEquals("reported nbEvents", NB_EVENTS, (long) reportedNbEvents.get(reportedNbEvents.size() - 1));
+            assertEquals("getNbEvents", NB_EVENTS, result.getNbEvents());
+            assertEquals("getTimeRange", fTrace.getTimeRange(), result.getTimeRange());
+            List<ITmfCheckpoint> checkpoints = result.getCheckpoints();
+            assertEquals("checkpoints", expected.size(), checkpoints.size());
+            for (int i = 0; i < checkpoints.size(); i++) {
+                ITmfCheckpoint checkpoint = checkpoints.get(i);
+                assertEquals("getCheckpointRank", expected.get(i).getCheckpointRank(), checkpoint.getCheckpointRank());
+                assertEquals("getLocation", expected.get(i).getLocation(), checkpoint.getLocation());
+                assertEquals("getTimestamp", expected.get(i).getTimestamp(), checkpoint.getTimestamp());
+            }
+        }
+    }
+}
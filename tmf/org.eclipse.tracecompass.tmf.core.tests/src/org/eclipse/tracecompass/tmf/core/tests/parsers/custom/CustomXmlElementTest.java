@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.parsers.custom;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomXmlElement;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlTrace;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Test the {@link CustomXmlElement} class against the DOM of the same
+ * elements
+ *
+ * @author Matthew Khouzam
+ */
+public class CustomXmlElementTest {
+
+    private static final String[] ELEMENTS = {
+            "<rec t=\"1\">hello</rec>",
+            "<rec/>",
+            "<rec t=\"2\" ns:kind=\"k1\"><a x=\"X1\">one</a><a>two<b>three</b></a>tail</rec>",
+            "<rec t='3'><a/>  text &amp; more &lt;x&gt; &#65;</rec>",
+            "<rec t=\"5\" kind='q\"uote'>\n   <a x=\"y\">  spaced  </a>\n   <type>T5</type>\n</rec>",
+            "<rec><a>x<!-- comment -->y</a><empty></empty><c><![CDATA[z]]></c><d><e/></d></rec>",
+            "<rec>caf&#233; é<a> </a></rec>",
+    };
+
+    private final XMLInputFactory fFactory = CustomXmlElement.createInputFactory();
+
+    private static Element parseDom(String text) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))).getDocumentElement();
+    }
+
+    private static void assertSameElement(Element expected, CustomXmlElement actual) {
+        assertEquals(expected.getNodeName(), actual.getName());
+        assertEquals(CustomXmlTrace.parseElement(expected, new StringBuffer()).toString(), actual.summarize(new StringBuffer()).toString());
+        for (int i = 0; i < expected.getAttributes().getLength(); i++) {
+            String name = expected.getAttributes().item(i).getNodeName();
+            assertEquals(expected.getAttribute(name), actual.getAttribute(name));
+        }
+        assertEquals("", actual.getAttribute("missing"));
+        NodeList nodes = expected.getChildNodes();
+        List<CustomXmlElement> children = actual.getChildElements();
+        int index = 0;
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node instanceof Element) {
+                assertSameElement((Element) node, children.get(index++));
+            }
+        }
+        assertEquals(index, children.size());
+    }
+
+    /**
+     * Test that the elements read with the pull parser give the same summary,
+     * attributes and children as their DOM
+     *
+     * @throws Exception
+     *             if the DOM can't be built
+     */
+    @Test
+    public void testSameAsDom() throws Exception {
+        for (String text : ELEMENTS) {
+            assertSameElement(parseDom(text), CustomXmlElement.parse(fFactory, text));
+        }
+    }
+
+    /**
+     * Test reading an element that is not well-formed
+     *
+     * @throws XMLStreamException
+     *             expected
+     */
+    @Test(expected = XMLStreamException.class)
+    public void testMalformed() throws XMLStreamException {
+        CustomXmlElement.parse(fFactory, "<rec><a></rec>");
+    }
+
+    /**
+     * Test reading an unclosed element
+     *
+     * @throws XMLStreamException
+     *             expected
+     */
+    @Test(expected = XMLStreamException.class)
+    public void testUnclosed() throws XMLStreamException {
+        CustomXmlElement.parse(fFactory, "<rec><a/>");
+    }
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
+import org.eclipse.tracecompass.internal.tmf.core.request.TmfRequestExecutor;
+import org.eclipse.tracecompass.tmf.core.component.TmfEventProvider;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the TmfRequestExecutor class.
+ *
+ * @author Matthew Khouzam
+ */
+public class TmfRequestExecutorTest {
+
+    private static final int NB_EVENTS = 100;
+    private static final long TIMEOUT = 10;
+
+    private TmfEventProvider fProvider;
+
+    /**
+     * Provider of an endless stream of events
+     */
+    private static class EventProvider extends TmfEventProvider {
+        private final AtomicInteger fRank = new AtomicInteger();
+
+        @Override
+        public ITmfContext armRequest(ITmfEventRequest request) {
+            return new TmfContext();
+        }
+
+        @Override
+        public ITmfEvent getNext(ITmfContext context) {
+            int rank = fRank.getAndIncrement();
+            return new TmfEvent(null, rank, TmfTimestamp.fromNanos(rank), null, null);
+        }
+    }
+
+    /**
+     * Initialization
+     */
+    @Before
+    public void setUp() {
+        fProvider = new EventProvider();
+    }
+
+    /**
+     * Clean-up
+     */
+    @After
+    public void tearDown() {
+        fProvider.dispose();
+    }
+
+    /**
+     * Test that requests are executed at the same time when there are enough
+     * slots
+     *
+     * @throws InterruptedException
+     *             If the test is interrupted
+     */
+    @Test
+    public void testConcurrentRequests() throws InterruptedException {
+        TmfRequestExecutor executor = new TmfRequestExecutor(2);
+        executor.init();
+        assertEquals(2, executor.getMaxActiveTasks());
+
+        /* Each request waits for the other one to be running */
+        CountDownLatch started = new CountDownLatch(2);
+        AtomicBoolean concurrent = new AtomicBoolean(true);
+        TmfEventRequest[] requests = new TmfEventRequest[2];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = new TmfEventRequest(ITmfEvent.class, 0, NB_EVENTS, ExecutionType.BACKGROUND) {
+                private boolean fFirst = true;
+
+                @Override
+                public void handleData(ITmfEvent event) {
+                    super.handleData(event);
+                    if (fFirst) {
+                        fFirst = false;
+                        started.countDown();
+                        try {
+                            if (!started.await(TIMEOUT, TimeUnit.SECONDS)) {
+                                concurrent.set(false);
+                            }
+                        } catch (InterruptedException e) {
+                            concurrent.set(false);
+                        }
+                    }
+                }
+            };
+            executor.execute(new TmfEventThread(fProvider, requests[i]));
+        }
+        for (TmfEventRequest request : requests) {
+            request.waitForCompletion();
+            assertFalse(request.isFailed());
+            assertEquals(NB_EVENTS, request.getNbRead());
+        }
+        assertTrue(concurrent.get());
+        executor.stop();
+    }
+
+    /**
+     * Test that all the requests complete when there are more requests than
+     * slots
+     *
+     * @throws InterruptedException
+     *             If the test is interrupted
+     */
+    @Test
+    public void testMoreRequestsThanSlots() throws InterruptedException {
+        TmfRequestExecutor executor = new TmfRequestExecutor(1);
+        executor.init();
+
+        TmfEventRequest[] requests = new TmfEventRequest[4];
+        for (int i = 0; i < requests.length; i++) {
+            ExecutionType type = (i % 2 == 0) ? ExecutionType.FOREGROUND : ExecutionType.BACKGROUND;
+            requests[i] = new TmfEventRequest(ITmfEvent.class, 0, NB_EVENTS, type) {
+            };
+            executor.execute(new TmfEventThread(fProvider, requests[i]));
+        }
+        for (TmfEventRequest request : requests) {
+            request.waitForCompletion();
+            assertFalse(request.isFailed());
+            assertEquals(NB_EVENTS, request.getNbRead());
+        }
+        executor.stop();
+        assertTrue(executor.isShutdown());
+    }
+
+    /**
+     * Test that the requests of a provider are executed serially by default
+     */
+    @Test
+    public void testSerialByDefault() {
+        TmfRequestExecutor executor = new TmfRequestExecutor();
+        assertEquals(1, executor.getMaxActiveTasks());
+        executor.stop();
+    }
+
+    /**
+     * Test that the requests executed by all the executors together are
+     * bounded, and that they all complete
+     *
+     * @throws InterruptedException
+     *             If the test is interrupted
+     */
+    @Test
+    public void testGlobalBound() throws InterruptedException {
+        int maxActive = TmfRequestExecutor.getMaxActiveRequests();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        TmfRequestExecutor[] executors = new TmfRequestExecutor[maxActive + 2];
+        TmfEventRequest[] requests = new TmfEventRequest[executors.length];
+        for (int i = 0; i < executors.length; i++) {
+            executors[i] = new TmfRequestExecutor();
+            executors[i].init();
+            requests[i] = new TmfEventRequest(ITmfEvent.class, 0, NB_EVENTS, ExecutionType.BACKGROUND) {
+                @Override
+                public void handleData(ITmfEvent event) {
+                    super.handleData(event);
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                }
+            };
+            executors[i].execute(new TmfEventThread(fProvider, requests[i]));
+        }
+        for (TmfEventRequest request : requests) {
+            request.waitForCompletion();
+            assertFalse(request.isFailed());
+            assertEquals(NB_EVENTS, request.getNbRead());
+        }
+        /* A suspended request still finishes handling its current event */
+        assertTrue(maxRunning.get() <= maxActive + 1);
+        for (TmfRequestExecutor executor : executors) {
+            executor.stop();
+        }
+    }
+
+    /**
+     * Test that the executor refuses an invalid number of slots
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxActiveTasks() {
+        new TmfRequestExecutor(0);
+    }
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.tracecompass.internal.tmf.core.statistics.TmfEventCountPyramid;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link TmfEventCountPyramid} class against the counts of the
+ * events themselves
+ *
+ * @author Matthew Khouzam
+ */
+public class TmfEventCountPyramidTest {
+
+    private static final String[] TYPES = { "A", "B", "C" };
+    private static final String LOST = "Lost event";
+    private static final long ORIGIN = 1000;
+
+    private final long[] fTimes = new long[20000];
+    private final String[] fTypes = new String[fTimes.length];
+    private final long[] fNbLost = new long[fTimes.length];
+
+    /**
+     * Create bursts of events spread over a long time range, with a few lost
+     * events
+     */
+    @Before
+    public void createEvents() {
+        Random random = new Random(42);
+        long time = ORIGIN;
+        for (int i = 0; i < fTimes.length; i++) {
+            time += (i % 1000 == 999) ? random.nextInt(1 << 30) : random.nextInt(3);
+            fTimes[i] = time;
+            if (i % 777 == 0) {
+                fTypes[i] = LOST;
+                fNbLost[i] = 1 + random.nextInt(10);
+            } else {
+                fTypes[i] = TYPES[random.nextInt(TYPES.length)];
+            }
+        }
+    }
+
+    private TmfEventCountPyramid build() {
+        TmfEventCountPyramid.Builder builder = new TmfEventCountPyramid.Builder();
+        for (int i = 0; i < fTimes.length; i++) {
+            boolean lost = fTypes[i] == LOST;
+            builder.addEvent(fTimes[i], fTypes[i], lost ? fNbLost[i] : 1, !lost);
+        }
+        TmfEventCountPyramid pyramid = builder.build();
+        assertNotNull(pyramid);
+        return pyramid;
+    }
+
+    private long countAt(long time) {
+        long count = 0;
+        for (int i = 0; i < fTimes.length && fTimes[i] <= time; i++) {
+            count += fTypes[i] == LOST ? 0 : 1;
+        }
+        return count;
+    }
+
+    private Map<String, Long> typesCountAt(long time) {
+        Map<String, Long> map = new HashMap<>();
+        for (int i = 0; i < fTimes.length; i++) {
+            long count = fTimes[i] > time ? 0 : (fTypes[i] == LOST ? fNbLost[i] : 1);
+            Long previous = map.get(fTypes[i]);
+            map.put(fTypes[i], (previous == null ? 0 : previous) + count);
+        }
+        return map;
+    }
+
+    private void assertSameCounts(TmfEventCountPyramid pyramid) {
+        long start = fTimes[0];
+        long end = fTimes[fTimes.length - 1];
+        long resolution = pyramid.getResolution();
+        assertEquals(end, pyramid.getEndTime());
+        assertEquals(countAt(end), pyramid.getEventsTotal());
+        assertEquals(typesCountAt(end), pyramid.getEventTypesTotal());
+
+        /* The buckets start at the first event, their last nanosecond is exact */
+        for (long time = start - 1; time < end + resolution; time += resolution * 97) {
+            assertEquals(countAt(time), pyramid.getEventCountAt(time));
+        }
+        long typesResolution = resolution << 8;
+        for (long time = start - 1; time < end + typesResolution; time += typesResolution * 3) {
+            assertEquals(typesCountAt(time), pyramid.getEventTypesCountAt(time));
+        }
+
+        /* Other times are either exact or unknown */
+        Random random = new Random(7);
+        int nbKnown = 0;
+        for (int i = 0; i < 1000; i++) {
+            long time = start + (long) (random.nextDouble() * (end - start));
+            long count = pyramid.getEventCountAt(time);
+            if (count != TmfEventCountPyramid.UNKNOWN) {
+                assertEquals(countAt(time), count);
+                nbKnown++;
+            }
+            Map<String, Long> typesCount = pyramid.getEventTypesCountAt(time);
+            if (typesCount != null) {
+                assertEquals(typesCountAt(time), typesCount);
+            }
+        }
+        /* The events are in short bursts, most times are between them */
+        assertTrue(nbKnown > 900);
+    }
+
+    /**
+     * Test the counts of a pyramid
+     */
+    @Test
+    public void testCounts() {
+        TmfEventCountPyramid pyramid = build();
+        /* The range did not fit in nanosecond buckets */
+        assertTrue(pyramid.getResolution() > 1);
+        assertSameCounts(pyramid);
+    }
+
+    /**
+     * Test the counts of a pyramid written and read back
+     *
+     * @throws IOException
+     *             if the file can't be written or read
+     */
+    @Test
+    public void testReadWrite() throws IOException {
+        File file = File.createTempFile("pyramid", ".dat");
+        try {
+            build().write(file, 3);
+            TmfEventCountPyramid pyramid = TmfEventCountPyramid.read(file, 3);
+            assertNotNull(pyramid);
+            assertSameCounts(pyramid);
+            /* The counts of another provider version are not read */
+            assertNull(TmfEventCountPyramid.read(file, 4));
+        } finally {
+            file.delete();
+        }
+        assertNull(TmfEventCountPyramid.read(file, 3));
+    }
+
+    /**
+     * Test building a pyramid with events out of order
+     */
+    @Test
+    public void testOutOfOrder() {
+        TmfEventCountPyramid.Builder builder = new TmfEventCountPyramid.Builder();
+        builder.addEvent(10, TYPES[0], 1, true);
+        builder.addEvent(5, TYPES[0], 1, true);
+        assertNull(builder.build());
+    }
+
+    /**
+     * Test a pyramid without events
+     */
+    @Test
+    public void testEmpty() {
+        TmfEventCountPyramid pyramid = new TmfEventCountPyramid.Builder().build();
+        assertNotNull(pyramid);
+        assertEquals(0, pyramid.getEventsTotal());
+        assertEquals(0, pyramid.getEventCountAt(100));
+        assertEquals(new HashMap<>(), pyramid.getEventTypesTotal());
+        assertEquals(0, pyramid.getEventCountAt(-100));
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -896,6 +896,41 @@ public class TmfExperimentTest {
         assertNull("Event", event);
     }
 
+    /**
+     * Read the whole experiment with prefetching enabled, past the threshold
+     * after which the traces are read ahead. The events must come in the same
+     * order, and a location saved while reading ahead must seek back to the
+     * event that follows it.
+     */
+    @Test
+    public void testGetNextWithPrefetching() {
+        final int MIDDLE = NB_EVENTS / 2;
+
+        fExperiment.setPrefetching(true);
+        try {
+            ITmfContext context = fExperiment.seekEvent(0);
+            ITmfLocation location = null;
+            for (int i = 0; i < NB_EVENTS; i++) {
+                ITmfEvent event = fExperiment.getNext(context);
+                assertEquals("Event timestamp", i + 1, event.getTimestamp().getValue());
+                assertEquals("Context rank", i + 1, context.getRank());
+                if (i + 1 == MIDDLE) {
+                    location = context.getLocation();
+                }
+            }
+            assertNull("Event", fExperiment.getNext(context));
+            context.dispose();
+
+            // The locations read ahead are those of the events returned
+            context = fExperiment.seekEvent(location);
+            ITmfEvent event = fExperiment.getNext(context);
+            assertEquals("Event timestamp", MIDDLE + 1, event.getTimestamp().getValue());
+            context.dispose();
+        } finally {
+            fExperiment.setPrefetching(false);
+        }
+    }
+
     // ------------------------------------------------------------------------
     // processRequest
     // ------------------------------------------------------------------------
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014, 2015 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -23,16 +23,19 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.List;
 import java.util.Locale;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.TmfParallelIndexBuilder;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
@@ -44,6 +47,8 @@ import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestampFormat;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfParallelIndexable.ChunkReader;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.text.TextTraceEventContent;
 import org.eclipse.tracecompass.tmf.tests.stubs.trace.text.SyslogEvent;
 import org.eclipse.tracecompass.tmf.tests.stubs.trace.text.SyslogTrace;
@@ -181,6 +186,39 @@ public class TextTraceTest {
         assertEquals("getInitialRangeOffset", initRange, fTrace.getInitialRangeOffset());
     }
 
+    /**
+     * Test that the parallel indexing of the syslog trace gives the same
+     * checkpoints as a sequential reading, for more chunks than events. The
+     * resynchronization of chunks in multi-line events is tested by
+     * CustomTxtParallelIndexTest.
+     *
+     * @throws IOException
+     *             if the trace can't be read
+     */
+    @Test
+    public void testParallelIndexing() throws IOException {
+        assertFalse("isParallelIndexable", fTrace.isParallelIndexable());
+        try (ChunkReader reader = fTrace.createChunkReader(1)) {
+            assertEquals("getLocation", fTrace.seekEvent(1).getLocation(), reader.getLocation());
+        }
+        for (int nbChunks = 1; nbChunks <= 8; nbChunks++) {
+            TmfParallelIndexBuilder.Result result = TmfParallelIndexBuilder.build(fTrace, 2, nbChunks, (checkpoints, nbEvents, range) -> { }, new NullProgressMonitor());
+            assertNotNull(result);
+            assertEquals("getNbEvents", 6, result.getNbEvents());
+            assertEquals("getTimeRange", fTrace.getTimeRange(), result.getTimeRange());
+            List<ITmfCheckpoint> checkpoints = result.getCheckpoints();
+            assertEquals("checkpoints", 3, checkpoints.size());
+            for (ITmfCheckpoint checkpoint : checkpoints) {
+                ITmfContext context = fTrace.seekEvent(checkpoint.getCheckpointRank() * 2);
+                assertEquals("getLocation", context.getLocation(), checkpoint.getLocation());
+                SyslogEvent event = fTrace.getNext(context);
+                assertNotNull(event);
+                assertEquals("getCheckpointRank", checkpoints.indexOf(checkpoint), checkpoint.getCheckpointRank());
+                assertEquals("getTimestamp", event.getTimestamp(), checkpoint.getTimestamp());
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Parsing
     // ------------------------------------------------------------------------
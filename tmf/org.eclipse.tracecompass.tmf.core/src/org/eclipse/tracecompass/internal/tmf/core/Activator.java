@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -16,6 +16,8 @@ package org.eclipse.tracecompass.internal.tmf.core;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Plugin;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfTracePrefetcher;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.TmfParallelIndexBuilder;
 import org.eclipse.tracecompass.tmf.core.analysis.TmfAnalysisManager;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalManager;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
@@ -92,6 +94,8 @@ public class Activator extends Plugin {
     public void stop(BundleContext context) throws Exception {
         TmfCoreTracer.stop();
         TmfSignalManager.dispose();
+        TmfParallelIndexBuilder.dispose();
+        TmfTracePrefetcher.dispose();
         setDefault(null);
         super.stop(context);
     }
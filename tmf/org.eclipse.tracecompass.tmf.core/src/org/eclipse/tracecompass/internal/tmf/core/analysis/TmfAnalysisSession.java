@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.analysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+
+import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
+import org.eclipse.tracecompass.internal.tmf.core.request.TmfCoalescedEventRequest;
+import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * An analysis session reads a trace once for all the analysis modules that are
+ * scheduled together on it, typically the automatic analyses when the trace is
+ * opened.
+ * <p>
+ * The modules expected in the session either join it with the request they
+ * would otherwise send to the trace, or withdraw from it if they do not need
+ * to read the trace, for instance when their state system is already on disk.
+ * A module that completes, fails or is cancelled without having joined also
+ * withdraws from it.
+ * Once every expected module has joined or withdrawn, the requests are sent to
+ * the trace as one coalesced request per dependency level, so each event is
+ * decoded once and handed to every module. Each state provider processes the
+ * events on its own thread.
+ * <p>
+ * If some modules are late, the session starts anyway after
+ * {@link #JOIN_TIMEOUT} milliseconds, and the late modules send their own
+ * request. The requests cancelled while waiting for the session are not
+ * sent.
+ *
+ * @author Matthew Khouzam
+ */
+public final class TmfAnalysisSession {
+
+    /** Time to wait for all the modules to join, in milliseconds */
+    public static final long JOIN_TIMEOUT = 5000;
+
+    private static final String SESSION_ID = "session"; //$NON-NLS-1$
+    private static final Map<ITmfTrace, TmfAnalysisSession> SESSIONS = new HashMap<>();
+    private static final Timer TIMER = new Timer("Analysis session timer", true); //$NON-NLS-1$
+
+    private final ITmfTrace fTrace;
+    private final TimerTask fTimeoutTask;
+
+    /* Fields guarded by SESSIONS */
+    private final Set<IAnalysisModule> fExpected;
+    private final List<ITmfEventRequest> fRequests = new ArrayList<>();
+
+    private TmfAnalysisSession(ITmfTrace trace, Set<IAnalysisModule> expected) {
+        fTrace = trace;
+        fExpected = expected;
+        fTimeoutTask = new TimerTask() {
+            @Override
+            public void run() {
+                timeout();
+            }
+        };
+    }
+
+    // ------------------------------------------------------------------------
+    // Operations
+    // ------------------------------------------------------------------------
+
+    /**
+     * Open a session on a trace. It replaces any session on this trace that
+     * has not started yet.
+     *
+     * @param trace
+     *            The trace
+     * @param modules
+     *            The modules expected to join or withdraw from the session
+     */
+    public static void open(ITmfTrace trace, Iterable<? extends IAnalysisModule> modules) {
+        Set<IAnalysisModule> expected = new HashSet<>();
+        modules.forEach(expected::add);
+        if (expected.size() < 2) {
+            /* Nothing to share */
+            return;
+        }
+        TmfAnalysisSession session = new TmfAnalysisSession(trace, expected);
+        TIMER.schedule(session.fTimeoutTask, JOIN_TIMEOUT);
+        TmfAnalysisSession previous;
+        synchronized (SESSIONS) {
+            previous = SESSIONS.put(trace, session);
+        }
+        if (previous != null) {
+            previous.timeout();
+        }
+        TmfCoreTracer.traceAnalysis(SESSION_ID, trace, "opened for " + expected.size() + " modules"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Join the session of a trace, if there is one expecting this module. The
+     * request will be executed with the ones of the other modules of the
+     * session.
+     *
+     * @param trace
+     *            The trace
+     * @param module
+     *            The module joining the session
+     * @param request
+     *            The request the module would send to the trace
+     * @return True if the module joined the session, false if the module should
+     *         send its request to the trace itself
+     */
+    public static boolean join(ITmfTrace trace, IAnalysisModule module, ITmfEventRequest request) {
+        TmfAnalysisSession session;
+        synchronized (SESSIONS) {
+            session = SESSIONS.get(trace);
+            if (session == null || !session.fExpected.remove(module)) {
+                return false;
+            }
+            session.fRequests.add(request);
+            if (!session.fExpected.isEmpty()) {
+                return true;
+            }
+            SESSIONS.remove(trace);
+        }
+        session.start();
+        return true;
+    }
+
+    /**
+     * Withdraw a module from the session of a trace, so that the other modules
+     * do not wait for it. This does nothing if the module already joined the
+     * session or if it is not expected by it.
+     *
+     * @param trace
+     *            The trace
+     * @param module
+     *            The module that will not join the session
+     */
+    public static void withdraw(ITmfTrace trace, IAnalysisModule module) {
+        TmfAnalysisSession session;
+        synchronized (SESSIONS) {
+            session = SESSIONS.get(trace);
+            if (session == null || !session.fExpected.remove(module) || !session.fExpected.isEmpty()) {
+                return;
+            }
+            SESSIONS.remove(trace);
+        }
+        session.start();
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private void timeout() {
+        synchronized (SESSIONS) {
+            SESSIONS.remove(fTrace, this);
+            fExpected.clear();
+        }
+        start();
+    }
+
+    private void start() {
+        fTimeoutTask.cancel();
+        List<ITmfEventRequest> requests = new ArrayList<>();
+        synchronized (SESSIONS) {
+            for (ITmfEventRequest request : fRequests) {
+                if (!request.isCancelled()) {
+                    requests.add(request);
+                }
+            }
+            fRequests.clear();
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+        TmfCoreTracer.traceAnalysis(SESSION_ID, fTrace, "started with " + requests.size() + " requests"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        /* The requests of different dependency levels cannot be mixed */
+        Map<Integer, TmfCoalescedEventRequest> levels = new TreeMap<>();
+        for (ITmfEventRequest request : requests) {
+            if (request.getProviderFilter() == null && fTrace instanceof ITmfFilter) {
+                request.setProviderFilter((ITmfFilter) fTrace);
+            }
+            TmfCoalescedEventRequest coalesced = levels.get(request.getDependencyLevel());
+            if (coalesced == null) {
+                coalesced = new TmfCoalescedEventRequest(ITmfEvent.class, request.getRange(), request.getIndex(),
+                        request.getNbRequested(), request.getExecType(), request.getDependencyLevel());
+                levels.put(request.getDependencyLevel(), coalesced);
+            }
+            coalesced.addRequest(request);
+        }
+        for (TmfCoalescedEventRequest coalesced : levels.values()) {
+            fTrace.sendRequest(coalesced);
+        }
+    }
+}
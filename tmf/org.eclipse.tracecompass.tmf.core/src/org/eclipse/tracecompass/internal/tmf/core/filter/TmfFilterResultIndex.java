@@ -0,0 +1,549 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.filter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterObjectNode;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+
+/**
+ * The ranks of the events of a trace that match a filter, so the position of
+ * an event in the filtered events and the event at a position of the filtered
+ * events are found without reading the trace.
+ * <p>
+ * The ranks are cut in blocks of {@link #BLOCK_SIZE} consecutive ranks. A
+ * block with few matching events keeps their sorted offsets in the block, a
+ * block with many matching events keeps a bitmap of the block. The number of
+ * matching events before each block is kept as a checkpoint, so both lookups
+ * are a binary search on the checkpoints and a search in one block.
+ * <p>
+ * The index is identified by the canonical form of its filter, and can be
+ * saved with the supplementary files of the trace to be reused the next time
+ * the same filter is applied. Only the {@link #MAX_FILES} most recently used
+ * indexes of a trace are kept.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class TmfFilterResultIndex {
+
+    /** Number of ranks of a block, as a power of two */
+    private static final int BLOCK_BITS = 16;
+
+    /** Number of ranks of a block */
+    static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+
+    /** Maximum number of offsets of a block before it is kept as a bitmap */
+    static final int MAX_OFFSETS = BLOCK_SIZE / 16;
+
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final int BITMAP_LENGTH = BLOCK_SIZE / Long.SIZE;
+
+    /** Maximum number of index files kept in the supplementary files of a trace */
+    public static final int MAX_FILES = 16;
+
+    private static final String FILE_PREFIX = "filter-"; //$NON-NLS-1$
+    private static final String FILE_SUFFIX = ".idx"; //$NON-NLS-1$
+    private static final int MAGIC = 0x54464958; // "TFIX"
+    private static final int FORMAT_VERSION = 1;
+
+    private final String fFilter;
+    private final long fNbEvents;
+    /* The offsets of each block, or null if it is a bitmap or empty */
+    private final char[] @Nullable [] fOffsets;
+    /* The bitmap of each block, or null if it has offsets or is empty */
+    private final long[] @Nullable [] fBitmaps;
+    /* The number of matching events before each block, and the total */
+    private final long[] fCounts;
+
+    private TmfFilterResultIndex(String filter, long nbEvents, char[] @Nullable [] offsets, long[] @Nullable [] bitmaps) {
+        fFilter = filter;
+        fNbEvents = nbEvents;
+        fOffsets = offsets;
+        fBitmaps = bitmaps;
+        fCounts = new long[offsets.length + 1];
+        for (int block = 0; block < offsets.length; block++) {
+            fCounts[block + 1] = fCounts[block] + getBlockCount(block);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Filters
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the canonical form of a filter, which identifies the events it
+     * matches
+     *
+     * @param filter
+     *            the filter
+     * @return the canonical form, or null if the filter has a node whose
+     *         matches can't be identified by its text
+     */
+    public static @Nullable String getCanonicalForm(ITmfFilterTreeNode filter) {
+        if (!isCanonical(filter)) {
+            return null;
+        }
+        return filter.toString(true);
+    }
+
+    private static boolean isCanonical(ITmfFilterTreeNode node) {
+        if (node instanceof TmfFilterObjectNode) {
+            ITmfFilter filter = ((TmfFilterObjectNode) node).getFilter();
+            if (!(filter instanceof ITmfFilterTreeNode) || !isCanonical((ITmfFilterTreeNode) filter)) {
+                return false;
+            }
+        }
+        for (ITmfFilterTreeNode child : node.getChildren()) {
+            if (!isCanonical(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the file of the index of a filter, in the supplementary files of a
+     * trace. Filters with the same hash share the file, the canonical form
+     * saved in the file tells which one it is.
+     *
+     * @param trace
+     *            the trace
+     * @param canonicalForm
+     *            the canonical form of the filter
+     * @return the file
+     */
+    public static File getFile(ITmfTrace trace, String canonicalForm) {
+        return new File(TmfTraceManager.getSupplementaryFileDir(trace) + FILE_PREFIX + Integer.toHexString(canonicalForm.hashCode()) + FILE_SUFFIX);
+    }
+
+    // ------------------------------------------------------------------------
+    // Queries
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the canonical form of the filter of this index
+     *
+     * @return the canonical form of the filter
+     */
+    public String getFilter() {
+        return fFilter;
+    }
+
+    /**
+     * Get the number of events covered by this index, the ranks from 0 to
+     * this number (excluded) were checked against the filter
+     *
+     * @return the number of events
+     */
+    public long getNbEvents() {
+        return fNbEvents;
+    }
+
+    /**
+     * Get the number of matching events
+     *
+     * @return the number of matching events
+     */
+    public long size() {
+        return fCounts[fCounts.length - 1];
+    }
+
+    /**
+     * Check if an event matches the filter
+     *
+     * @param rank
+     *            the rank of the event
+     * @return true if the event matches, false if it doesn't or is not
+     *         covered by this index
+     */
+    public boolean matches(long rank) {
+        if (rank < 0 || rank >= fNbEvents) {
+            return false;
+        }
+        int block = (int) (rank >>> BLOCK_BITS);
+        int offset = (int) (rank & BLOCK_MASK);
+        char[] offsets = fOffsets[block];
+        if (offsets != null) {
+            return Arrays.binarySearch(offsets, (char) offset) >= 0;
+        }
+        long[] bitmap = fBitmaps[block];
+        return bitmap != null && (bitmap[offset >>> 6] & (1L << offset)) != 0;
+    }
+
+    /**
+     * Get the position in the matching events of the first matching event at
+     * or after a rank, which is the number of matching events before it
+     *
+     * @param rank
+     *            the rank of the event
+     * @return the position in the matching events
+     */
+    public long getIndex(long rank) {
+        if (rank <= 0) {
+            return 0;
+        }
+        if (rank >= fNbEvents) {
+            return size();
+        }
+        int block = (int) (rank >>> BLOCK_BITS);
+        int offset = (int) (rank & BLOCK_MASK);
+        char[] offsets = fOffsets[block];
+        if (offsets != null) {
+            int pos = Arrays.binarySearch(offsets, (char) offset);
+            return fCounts[block] + (pos >= 0 ? pos : -pos - 1);
+        }
+        long[] bitmap = fBitmaps[block];
+        if (bitmap == null) {
+            return fCounts[block];
+        }
+        long count = fCounts[block];
+        int word = offset >>> 6;
+        for (int i = 0; i < word; i++) {
+            count += Long.bitCount(bitmap[i]);
+        }
+        return count + Long.bitCount(bitmap[word] & ((1L << offset) - 1));
+    }
+
+    /**
+     * Get the rank of a matching event from its position in the matching
+     * events
+     *
+     * @param index
+     *            the position in the matching events
+     * @return the rank of the event, or -1 if there are not that many
+     *         matching events
+     */
+    public long getRank(long index) {
+        if (index < 0 || index >= size()) {
+            return -1;
+        }
+        /* Find the last block with fewer matching events before it */
+        int low = 0;
+        int high = fCounts.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (fCounts[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int block = low;
+        int remaining = (int) (index - fCounts[block]);
+        long blockStart = (long) block << BLOCK_BITS;
+        char[] offsets = fOffsets[block];
+        if (offsets != null) {
+            return blockStart + offsets[remaining];
+        }
+        long[] bitmap = fBitmaps[block];
+        if (bitmap == null) {
+            /* Not possible, the block has matching events */
+            return -1;
+        }
+        for (int i = 0; i < BITMAP_LENGTH; i++) {
+            int bits = Long.bitCount(bitmap[i]);
+            if (remaining < bits) {
+                long word = bitmap[i];
+                for (int j = 0; j < remaining; j++) {
+                    word &= word - 1;
+                }
+                return blockStart + (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+            remaining -= bits;
+        }
+        return -1;
+    }
+
+    private int getBlockCount(int block) {
+        char[] offsets = fOffsets[block];
+        if (offsets != null) {
+            return offsets.length;
+        }
+        long[] bitmap = fBitmaps[block];
+        if (bitmap == null) {
+            return 0;
+        }
+        int count = 0;
+        for (long word : bitmap) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    // ------------------------------------------------------------------------
+    // Persistence
+    // ------------------------------------------------------------------------
+
+    /**
+     * Write this index to a file
+     *
+     * @param file
+     *            the file to write, replaced if it exists
+     * @throws IOException
+     *             if the file can't be written
+     */
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            byte[] filter = fFilter.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(filter.length);
+            out.write(filter);
+            out.writeLong(fNbEvents);
+            out.writeInt(fOffsets.length);
+            for (int block = 0; block < fOffsets.length; block++) {
+                out.writeInt((int) (fCounts[block + 1] - fCounts[block]));
+                char[] offsets = fOffsets[block];
+                long[] bitmap = fBitmaps[block];
+                if (offsets != null) {
+                    for (char offset : offsets) {
+                        out.writeChar(offset);
+                    }
+                } else if (bitmap != null) {
+                    for (long word : bitmap) {
+                        out.writeLong(word);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Save this index with the supplementary files of a trace, delete the
+     * least recently used indexes of the trace beyond {@link #MAX_FILES}, and
+     * refresh the supplementary files so the index is deleted with them.
+     *
+     * @param trace
+     *            the trace
+     * @throws IOException
+     *             if the file can't be written
+     */
+    public void save(ITmfTrace trace) throws IOException {
+        File file = getFile(trace, fFilter);
+        write(file);
+        deleteOldFiles(file.getParentFile(), MAX_FILES);
+        TmfTraceManager.refreshSupplementaryFiles(trace);
+    }
+
+    /**
+     * Delete the least recently modified index files of a directory, keeping
+     * a maximum number of them. The other files of the directory are kept.
+     *
+     * @param directory
+     *            the directory
+     * @param maxFiles
+     *            the number of index files to keep
+     */
+    public static void deleteOldFiles(@Nullable File directory, int maxFiles) {
+        if (directory == null) {
+            return;
+        }
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files == null || files.length <= maxFiles) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+        for (int i = maxFiles; i < files.length; i++) {
+            files[i].delete();
+        }
+    }
+
+    /**
+     * Read an index from a file written by {@link #write(File)}
+     *
+     * @param file
+     *            the file to read
+     * @return the index, or null if the file does not exist or is not an
+     *         index of this version
+     * @throws IOException
+     *             if the file can't be read
+     */
+    public static @Nullable TmfFilterResultIndex read(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            int length = in.readInt();
+            if (length < 0 || length > file.length()) {
+                throw new IOException("Invalid filter length: " + length); //$NON-NLS-1$
+            }
+            byte[] filter = new byte[length];
+            in.readFully(filter);
+            long nbEvents = in.readLong();
+            int nbBlocks = in.readInt();
+            if (nbEvents < 0 || nbBlocks != getNbBlocks(nbEvents)) {
+                throw new IOException("Invalid number of blocks: " + nbBlocks); //$NON-NLS-1$
+            }
+            char[][] offsets = new char[nbBlocks][];
+            long[][] bitmaps = new long[nbBlocks][];
+            for (int block = 0; block < nbBlocks; block++) {
+                int count = in.readInt();
+                if (count < 0 || count > BLOCK_SIZE) {
+                    throw new IOException("Invalid number of matching events: " + count); //$NON-NLS-1$
+                }
+                if (count > MAX_OFFSETS) {
+                    long[] bitmap = new long[BITMAP_LENGTH];
+                    for (int i = 0; i < BITMAP_LENGTH; i++) {
+                        bitmap[i] = in.readLong();
+                    }
+                    bitmaps[block] = bitmap;
+                } else if (count > 0) {
+                    char[] blockOffsets = new char[count];
+                    for (int i = 0; i < count; i++) {
+                        blockOffsets[i] = in.readChar();
+                    }
+                    offsets[block] = blockOffsets;
+                }
+            }
+            return new TmfFilterResultIndex(new String(filter, StandardCharsets.UTF_8), nbEvents, offsets, bitmaps);
+        }
+    }
+
+    private static int getNbBlocks(long nbEvents) {
+        return (int) ((nbEvents + BLOCK_MASK) >>> BLOCK_BITS);
+    }
+
+    // ------------------------------------------------------------------------
+    // Builder
+    // ------------------------------------------------------------------------
+
+    /**
+     * Builder of the index of a filter, given the ranks of the matching
+     * events in increasing order
+     */
+    public static class Builder {
+
+        private final String fBuilderFilter;
+        private final List<char @Nullable []> fBlockOffsets = new ArrayList<>();
+        private final List<long @Nullable []> fBlockBitmaps = new ArrayList<>();
+
+        /* The block being filled, kept as offsets until it has too many */
+        private int fBlock = 0;
+        private char[] fBuffer = new char[16];
+        private long @Nullable [] fBitmap = null;
+        private int fCount = 0;
+        private long fLastRank = -1;
+
+        /**
+         * Constructor
+         *
+         * @param filter
+         *            the canonical form of the filter
+         */
+        public Builder(String filter) {
+            fBuilderFilter = filter;
+        }
+
+        /**
+         * Add a matching event
+         *
+         * @param rank
+         *            the rank of the event, higher than the previous one
+         */
+        public void add(long rank) {
+            if (rank <= fLastRank) {
+                throw new IllegalArgumentException("Rank " + rank + " is not after " + fLastRank); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            fLastRank = rank;
+            int block = (int) (rank >>> BLOCK_BITS);
+            while (fBlock < block) {
+                closeBlock();
+            }
+            int offset = (int) (rank & BLOCK_MASK);
+            long[] bitmap = fBitmap;
+            if (bitmap == null && fCount == MAX_OFFSETS) {
+                bitmap = toBitmap(fBuffer, fCount);
+                fBitmap = bitmap;
+            }
+            if (bitmap != null) {
+                bitmap[offset >>> 6] |= 1L << offset;
+            } else {
+                if (fCount == fBuffer.length) {
+                    fBuffer = Arrays.copyOf(fBuffer, fCount * 2);
+                }
+                fBuffer[fCount] = (char) offset;
+            }
+            fCount++;
+        }
+
+        private void closeBlock() {
+            long[] bitmap = fBitmap;
+            fBlockBitmaps.add(bitmap);
+            fBlockOffsets.add(bitmap == null && fCount > 0 ? Arrays.copyOf(fBuffer, fCount) : null);
+            fBitmap = null;
+            fCount = 0;
+            fBlock++;
+        }
+
+        private static long[] toBitmap(char[] offsets, int count) {
+            long[] bitmap = new long[BITMAP_LENGTH];
+            for (int i = 0; i < count; i++) {
+                bitmap[offsets[i] >>> 6] |= 1L << offsets[i];
+            }
+            return bitmap;
+        }
+
+        /**
+         * Build the index of the events added so far. More events can be added
+         * afterwards, for a later index.
+         *
+         * @param nbEvents
+         *            the number of events checked against the filter, higher
+         *            than the rank of the last added event
+         * @return the index
+         */
+        public TmfFilterResultIndex build(long nbEvents) {
+            if (nbEvents <= fLastRank) {
+                throw new IllegalArgumentException("Rank " + fLastRank + " is not before " + nbEvents); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            int nbBlocks = getNbBlocks(nbEvents);
+            char[][] offsets = new char[nbBlocks][];
+            long[][] bitmaps = new long[nbBlocks][];
+            for (int block = 0; block < fBlock && block < nbBlocks; block++) {
+                offsets[block] = fBlockOffsets.get(block);
+                bitmaps[block] = fBlockBitmaps.get(block);
+            }
+            if (fBlock < nbBlocks) {
+                long[] bitmap = fBitmap;
+                if (bitmap != null) {
+                    bitmaps[fBlock] = Arrays.copyOf(bitmap, BITMAP_LENGTH);
+                } else if (fCount > 0) {
+                    offsets[fBlock] = Arrays.copyOf(fBuffer, fCount);
+                }
+            }
+            return new TmfFilterResultIndex(fBuilderFilter, nbEvents, offsets, bitmaps);
+        }
+    }
+}
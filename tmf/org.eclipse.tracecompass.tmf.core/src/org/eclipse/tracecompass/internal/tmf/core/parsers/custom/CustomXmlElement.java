@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.parsers.custom;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A lightweight XML element read with a pull parser, for the record elements
+ * of custom XML traces. It only keeps what the custom XML parsers use: the
+ * element names, their attributes and their child nodes, with the same node
+ * boundaries as a DOM built from the same element.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class CustomXmlElement {
+
+    /** Property of the JDK parser to report CDATA sections separately */
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event"; //$NON-NLS-1$
+
+    /** A child node that is neither an element nor text (comment, CDATA...) */
+    private static final Object OTHER_NODE = new Object();
+
+    private final String fName;
+    private final List<String> fAttributes;
+    private final List<Object> fChildNodes = new ArrayList<>();
+    private final List<CustomXmlElement> fChildElements = new ArrayList<>();
+
+    private CustomXmlElement(String name, List<String> attributes) {
+        fName = name;
+        fAttributes = attributes;
+    }
+
+    /**
+     * Create the factory of the pull parsers reading the elements. The
+     * parsers are not namespace aware, so the prefixes are part of the names,
+     * and they do not read DTDs.
+     *
+     * @return the factory
+     */
+    public static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        if (factory.isPropertySupported(REPORT_CDATA)) {
+            factory.setProperty(REPORT_CDATA, Boolean.TRUE);
+        }
+        return factory;
+    }
+
+    /**
+     * Read an element from its text
+     *
+     * @param factory
+     *            the factory of the pull parsers, see
+     *            {@link #createInputFactory()}
+     * @param text
+     *            the text of the element
+     * @return the element
+     * @throws XMLStreamException
+     *             if the text is not a well-formed element
+     */
+    public static CustomXmlElement parse(XMLInputFactory factory, String text) throws XMLStreamException {
+        XMLStreamReader reader = factory.createXMLStreamReader(new StringReader(text));
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return readElement(reader);
+                }
+            }
+            throw new XMLStreamException("No element found"); //$NON-NLS-1$
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static CustomXmlElement readElement(XMLStreamReader reader) throws XMLStreamException {
+        int nbAttributes = reader.getAttributeCount();
+        List<String> attributes = Collections.emptyList();
+        if (nbAttributes > 0) {
+            attributes = new ArrayList<>(nbAttributes * 2);
+            for (int i = 0; i < nbAttributes; i++) {
+                attributes.add(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)));
+                attributes.add(reader.getAttributeValue(i));
+            }
+        }
+        CustomXmlElement element = new CustomXmlElement(qualifiedName(reader.getPrefix(), reader.getLocalName()), attributes);
+        /* Consecutive character events make a single text node, as in a DOM */
+        StringBuilder text = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE) {
+                if (text == null) {
+                    text = new StringBuilder();
+                }
+                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                continue;
+            }
+            if (text != null) {
+                element.fChildNodes.add(text.toString());
+                text = null;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                CustomXmlElement child = readElement(reader);
+                element.fChildNodes.add(child);
+                element.fChildElements.add(child);
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return element;
+            } else if (event == XMLStreamConstants.CDATA || event == XMLStreamConstants.COMMENT || event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+                element.fChildNodes.add(OTHER_NODE);
+            }
+        }
+        throw new XMLStreamException("Unclosed element " + element.fName); //$NON-NLS-1$
+    }
+
+    private static String qualifiedName(@Nullable String prefix, String localName) {
+        return (prefix == null || prefix.isEmpty()) ? localName : prefix + ':' + localName;
+    }
+
+    /**
+     * Get the name of the element
+     *
+     * @return the name, with its prefix if any
+     */
+    public String getName() {
+        return fName;
+    }
+
+    /**
+     * Get the value of an attribute
+     *
+     * @param name
+     *            the name of the attribute, with its prefix if any
+     * @return the value, or an empty string if the element has no such
+     *         attribute
+     */
+    public String getAttribute(String name) {
+        for (int i = 0; i < fAttributes.size(); i += 2) {
+            if (fAttributes.get(i).equals(name)) {
+                return fAttributes.get(i + 1);
+            }
+        }
+        return ""; //$NON-NLS-1$
+    }
+
+    /**
+     * Get the child elements of this element
+     *
+     * @return the child elements, in document order
+     */
+    public List<CustomXmlElement> getChildElements() {
+        return fChildElements;
+    }
+
+    /**
+     * Append the text summary of the content of this element, in the same
+     * format as {@link org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlTrace#parseElement}
+     *
+     * @param buffer
+     *            the buffer to append to
+     * @return the buffer
+     */
+    public StringBuffer summarize(StringBuffer buffer) {
+        String separator = null;
+        for (Object node : fChildNodes) {
+            if (node instanceof CustomXmlElement) {
+                if (separator == null) {
+                    separator = " | "; //$NON-NLS-1$
+                } else {
+                    buffer.append(separator);
+                }
+                CustomXmlElement element = (CustomXmlElement) node;
+                List<Object> childNodes = element.fChildNodes;
+                if (childNodes.isEmpty()) {
+                    buffer.append(element.fName);
+                } else if (childNodes.size() == 1 && childNodes.get(0) instanceof String) {
+                    buffer.append(element.fName);
+                    buffer.append(':');
+                    buffer.append(((String) childNodes.get(0)).trim());
+                } else {
+                    buffer.append(element.fName);
+                    buffer.append(" [ "); //$NON-NLS-1$
+                    element.summarize(buffer);
+                    buffer.append(" ]"); //$NON-NLS-1$
+                }
+            } else if (node instanceof String) {
+                String text = ((String) node).trim();
+                if (!text.isEmpty()) {
+                    buffer.append(text);
+                }
+            }
+        }
+        return buffer;
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
@@ -105,6 +106,23 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         return fRange;
     }
 
+    /**
+     * The union of the event types of the sub-requests, or null as soon as one
+     * of them needs the content of all the events
+     */
+    @Override
+    public @Nullable Set<String> getEventTypes() {
+        Set<String> eventTypes = new HashSet<>();
+        for (ITmfEventRequest request : fRequests) {
+            Set<String> requestTypes = request.getEventTypes();
+            if (requestTypes == null) {
+                return null;
+            }
+            eventTypes.addAll(requestTypes);
+        }
+        return eventTypes;
+    }
+
     // ------------------------------------------------------------------------
     // Management
     // ------------------------------------------------------------------------
@@ -233,8 +251,7 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         for (ITmfEventRequest request : requests) {
             long start = request.getIndex();
             if (!request.isCompleted() && index >= start && request.getNbRead() < request.getNbRequested()) {
-                ITmfTimestamp ts = data.getTimestamp();
-                if (request.getRange().contains(ts)) {
+                if (request.getRange().contains(data.getTimestampNanos())) {
                     if (request.getDataType().isInstance(data)) {
                         request.handleData(data);
                     }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -10,12 +10,18 @@
  *   Francois Chouinard - Initial API and implementation
  *   Francois Chouinard - Added support for pre-emption
  *   Simon Delisle - Added scheduler for requests
+ *   Matthew Khouzam - Run several requests at the same time
  *******************************************************************************/
 
 package org.eclipse.tracecompass.internal.tmf.core.request;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -36,6 +42,16 @@ import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
  * Example: if we have one foreground and one background request, the foreground
  * request will be executed four times more often than the background request.
  *
+ * Up to {@link #getMaxActiveTasks()} requests are executed at the same time,
+ * each one picked following the slots above, one by default so the requests
+ * of a provider are executed serially. When more requests are waiting, the
+ * active ones are suspended in turn to let them run.
+ *
+ * The requests executed by all the executors together are bounded by
+ * {@link #getMaxActiveRequests()}. The executors waiting for a free slot get
+ * it in turn, and the executors running requests give up one of them every
+ * time slice while others are waiting.
+ *
  * @author Francois Chouinard
  * @author Simon Delisle
  * @version 1.1
@@ -49,6 +65,18 @@ public class TmfRequestExecutor implements Executor {
     private static final long REQUEST_TIME = 100;
     private static final int FOREGROUND_SLOT = 4;
 
+    /**
+     * System property to set the maximum number of requests executed at the
+     * same time by all the executors. It defaults to the number of processors.
+     */
+    private static final String MAX_ACTIVE_PROPERTY = "org.eclipse.tracecompass.tmf.core.request.maxActiveRequests"; //$NON-NLS-1$
+    private static final int MAX_ACTIVE_REQUESTS = Math.max(1, Integer.getInteger(MAX_ACTIVE_PROPERTY, Runtime.getRuntime().availableProcessors()));
+
+    // The slots shared by all the executors, guarded by SLOTS_LOCK
+    private static final Object SLOTS_LOCK = new Object();
+    private static final Deque<TmfRequestExecutor> WAITING_EXECUTORS = new ArrayDeque<>();
+    private static int sFreeSlots = MAX_ACTIVE_REQUESTS;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -61,8 +89,9 @@ public class TmfRequestExecutor implements Executor {
     private final Queue<TmfEventThread> fForegroundTasks = new ArrayBlockingQueue<>(10);
     private final Queue<TmfEventThread> fBackgroundTasks = new ArrayBlockingQueue<>(10);
 
-    // The tasks
-    private TmfEventThread fActiveTask;
+    // The tasks being executed, in the order they were scheduled
+    private final List<TmfEventThread> fActiveTasks = new ArrayList<>();
+    private final int fMaxActiveTasks;
 
     private Timer fTimer;
     private TimerTask fTimerTask;
@@ -74,9 +103,23 @@ public class TmfRequestExecutor implements Executor {
     // ------------------------------------------------------------------------
 
     /**
-     * Default constructor
+     * Default constructor, the requests are executed one at a time
      */
     public TmfRequestExecutor() {
+        this(1);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxActiveTasks
+     *            The maximum number of requests executed at the same time
+     */
+    public TmfRequestExecutor(int maxActiveTasks) {
+        if (maxActiveTasks < 1) {
+            throw new IllegalArgumentException("Invalid number of active requests: " + maxActiveTasks); //$NON-NLS-1$
+        }
+        fMaxActiveTasks = maxActiveTasks;
         // We know the canonical name is not null because we use ExecutorService only
         String canonicalName = checkNotNull(fExecutor.getClass().getCanonicalName());
         fExecutorName = canonicalName.substring(canonicalName.lastIndexOf('.') + 1);
@@ -103,6 +146,21 @@ public class TmfRequestExecutor implements Executor {
         return fExecutor.isTerminated();
     }
 
+    /**
+     * @return the maximum number of requests executed at the same time
+     */
+    public int getMaxActiveTasks() {
+        return fMaxActiveTasks;
+    }
+
+    /**
+     * @return the maximum number of requests executed at the same time by all
+     *         the executors
+     */
+    public static int getMaxActiveRequests() {
+        return MAX_ACTIVE_REQUESTS;
+    }
+
     // ------------------------------------------------------------------------
     // Operations
     // ------------------------------------------------------------------------
@@ -137,7 +195,7 @@ public class TmfRequestExecutor implements Executor {
                 try {
                     command.run();
                 } finally {
-                    scheduleNext();
+                    taskCompleted();
                 }
             }
         };
@@ -171,43 +229,45 @@ public class TmfRequestExecutor implements Executor {
     }
 
     /**
-     * Executes the next pending request, if applicable.
+     * Executes the next pending requests, if applicable. If requests are still
+     * waiting once all the slots are taken, the longest running active
+     * requests are suspended and put back in their queue to let them run. If
+     * other executors are waiting for a slot, the longest running active
+     * request is suspended to give them its slot.
      */
     protected synchronized void scheduleNext() {
-        if (!isShutdown()) {
-            if (fActiveTask == null) {
-                schedule();
-            } else if (fActiveTask.getExecType() == ExecutionType.FOREGROUND) {
-                if (fActiveTask.getThread().isCompleted()) {
-                    fActiveTask = null;
-                    schedule();
-                } else {
-                    if (hasTasks()) {
-                        fActiveTask.getThread().suspend();
-                        if (!fForegroundTasks.offer(fActiveTask)) {
-                            fActiveTask.cancel();
-                            fActiveTask = null;
-                        }
-                        schedule();
-                    }
-                }
-
-            } else if (fActiveTask.getExecType() == ExecutionType.BACKGROUND) {
-                if (fActiveTask.getThread().isCompleted()) {
-                    fActiveTask = null;
-                    schedule();
-                } else {
-                    if (hasTasks()) {
-                        fActiveTask.getThread().suspend();
-                        if (!fBackgroundTasks.offer(fActiveTask)) {
-                            fActiveTask.cancel();
-                            fActiveTask = null;
-                        }
-                        schedule();
-                    }
-                }
+        if (isShutdown()) {
+            return;
+        }
+        removeCompletedTasks();
+        /* Only the requests that already had a time slice are suspended */
+        int nbRunning = fActiveTasks.size();
+        fillSlots();
+
+        int nbPreempted = Math.min(nbRunning, fForegroundTasks.size() + fBackgroundTasks.size());
+        if (nbPreempted == 0 && nbRunning > 0 && areOthersWaiting()) {
+            nbPreempted = 1;
+        }
+        for (int i = 0; i < nbPreempted; i++) {
+            TmfEventThread task = fActiveTasks.remove(0);
+            releaseSlot();
+            task.getThread().suspend();
+            Queue<TmfEventThread> queue = (task.getExecType() == ExecutionType.FOREGROUND) ? fForegroundTasks : fBackgroundTasks;
+            if (!queue.offer(task)) {
+                task.cancel();
             }
         }
+        fillSlots();
+    }
+
+    /**
+     * A task is done, give its slot to the next pending request
+     */
+    private synchronized void taskCompleted() {
+        if (!isShutdown()) {
+            removeCompletedTasks();
+            fillSlots();
+        }
     }
 
     /**
@@ -222,15 +282,21 @@ public class TmfRequestExecutor implements Executor {
             fTimer.cancel();
         }
 
-        if (fActiveTask != null) {
-            fActiveTask.cancel();
+        for (TmfEventThread task : fActiveTasks) {
+            task.cancel();
+            releaseSlot();
+        }
+        fActiveTasks.clear();
+        synchronized (SLOTS_LOCK) {
+            WAITING_EXECUTORS.remove(this);
         }
 
-        while ((fActiveTask = fForegroundTasks.poll()) != null) {
-            fActiveTask.cancel();
+        TmfEventThread task;
+        while ((task = fForegroundTasks.poll()) != null) {
+            task.cancel();
         }
-        while ((fActiveTask = fBackgroundTasks.poll()) != null) {
-            fActiveTask.cancel();
+        while ((task = fBackgroundTasks.poll()) != null) {
+            task.cancel();
         }
 
         fExecutor.shutdown();
@@ -243,6 +309,78 @@ public class TmfRequestExecutor implements Executor {
     // Helper methods
     // ------------------------------------------------------------------------
 
+    /**
+     * Forget the tasks that are done
+     */
+    private void removeCompletedTasks() {
+        Iterator<TmfEventThread> iter = fActiveTasks.iterator();
+        while (iter.hasNext()) {
+            if (iter.next().getThread().isCompleted()) {
+                iter.remove();
+                releaseSlot();
+            }
+        }
+    }
+
+    /**
+     * Schedule pending requests until all the slots are taken
+     */
+    private void fillSlots() {
+        while (fActiveTasks.size() < fMaxActiveTasks && hasTasks() && acquireSlot()) {
+            schedule();
+        }
+        if (!hasTasks()) {
+            synchronized (SLOTS_LOCK) {
+                WAITING_EXECUTORS.remove(this);
+            }
+        }
+    }
+
+    /**
+     * Take one of the slots shared by all the executors. The executors
+     * waiting for a slot get them in turn.
+     *
+     * @return true if a slot was taken, false if this executor has to wait
+     */
+    private boolean acquireSlot() {
+        synchronized (SLOTS_LOCK) {
+            TmfRequestExecutor first = WAITING_EXECUTORS.peekFirst();
+            if (sFreeSlots > 0 && (first == null || first == this)) {
+                WAITING_EXECUTORS.remove(this);
+                sFreeSlots--;
+                return true;
+            }
+            if (!WAITING_EXECUTORS.contains(this)) {
+                WAITING_EXECUTORS.addLast(this);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Give back a slot taken by {@link #acquireSlot()}. The waiting executors
+     * take it on their next time slice.
+     */
+    private static void releaseSlot() {
+        synchronized (SLOTS_LOCK) {
+            sFreeSlots++;
+        }
+    }
+
+    /**
+     * Check if other executors are waiting for a slot
+     */
+    private boolean areOthersWaiting() {
+        synchronized (SLOTS_LOCK) {
+            for (TmfRequestExecutor executor : WAITING_EXECUTORS) {
+                if (executor != this) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     /**
      * Determine which type of request (foreground or background) we schedule
      * next
@@ -261,10 +399,8 @@ public class TmfRequestExecutor implements Executor {
     private void scheduleNextForeground() {
         if (fForegroundCycle < FOREGROUND_SLOT || fBackgroundTasks.isEmpty()) {
             ++fForegroundCycle;
-            fActiveTask = fForegroundTasks.poll();
-            executefActiveTask();
+            executeTask(checkNotNull(fForegroundTasks.poll()));
         } else {
-            fActiveTask = null;
             scheduleNextBackground();
         }
     }
@@ -275,19 +411,19 @@ public class TmfRequestExecutor implements Executor {
     private void scheduleNextBackground() {
         fForegroundCycle = 0;
         if (!fBackgroundTasks.isEmpty()) {
-            fActiveTask = fBackgroundTasks.poll();
-            executefActiveTask();
+            executeTask(checkNotNull(fBackgroundTasks.poll()));
         }
     }
 
     /**
-     * Execute or resume the active task
+     * Execute or resume a task
      */
-    private void executefActiveTask() {
-        if (fActiveTask.getThread().isPaused()) {
-            fActiveTask.getThread().resume();
+    private void executeTask(TmfEventThread task) {
+        fActiveTasks.add(task);
+        if (task.getThread().isPaused()) {
+            task.getThread().resume();
         } else {
-            fExecutor.execute(fActiveTask);
+            fExecutor.execute(task);
         }
     }
 
@@ -0,0 +1,383 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.statistics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Pre-aggregated event counts of a trace, in time buckets whose width is a
+ * power of two nanoseconds. The counts are cumulative, so the number of events
+ * before any bucket boundary is a single array read, and any coarser power of
+ * two resolution of the pyramid is read by striding the finest one.
+ * <p>
+ * The total counts are kept at the finest resolution. The counts per event
+ * type are kept a few levels higher, to bound the memory used by traces with
+ * many event types.
+ * <p>
+ * The counts are only exact at the bucket boundaries, or anywhere in a bucket
+ * without events. Queries at other times return a "not known" value, and the
+ * caller has to look at the events themselves.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class TmfEventCountPyramid {
+
+    /** Value returned by the queries when the count can't be known exactly */
+    public static final long UNKNOWN = -1;
+
+    /** Maximum number of buckets of the total counts */
+    static final int MAX_BUCKETS = 1 << 18;
+
+    /** Number of levels between the total counts and the per-type counts */
+    static final int TYPE_LEVELS = 8;
+
+    private static final int MAGIC = 0x54434550; // "TCEP"
+    private static final int FORMAT_VERSION = 2;
+
+    private final long fOrigin;
+    private final int fShift;
+    private final long fEndTime;
+    private final long[] fTotals;
+    private final Map<String, long[]> fTypes;
+
+    private TmfEventCountPyramid(long origin, int shift, long endTime, long[] totals, Map<String, long[]> types) {
+        fOrigin = origin;
+        fShift = shift;
+        fEndTime = endTime;
+        fTotals = totals;
+        fTypes = types;
+    }
+
+    // ------------------------------------------------------------------------
+    // Queries
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the timestamp of the last event counted in this pyramid
+     *
+     * @return the end time, in nanoseconds
+     */
+    public long getEndTime() {
+        return fEndTime;
+    }
+
+    /**
+     * Get the width of the finest buckets of this pyramid
+     *
+     * @return the width, in nanoseconds
+     */
+    public long getResolution() {
+        return 1L << fShift;
+    }
+
+    /**
+     * Get the total number of events, lost events excluded
+     *
+     * @return the number of events
+     */
+    public long getEventsTotal() {
+        return fTotals.length == 0 ? 0 : fTotals[fTotals.length - 1];
+    }
+
+    /**
+     * Get the number of events with a timestamp at or before a time, lost
+     * events excluded
+     *
+     * @param time
+     *            the time, in nanoseconds
+     * @return the number of events, or {@link #UNKNOWN} if it can't be known
+     *         exactly at this time
+     */
+    public long getEventCountAt(long time) {
+        return getCountAt(fTotals, fShift, time);
+    }
+
+    /**
+     * Get the number of events of each type with a timestamp at or before a
+     * time, lost events included
+     *
+     * @param time
+     *            the time, in nanoseconds
+     * @return the number of events per event type, or null if it can't be
+     *         known exactly at this time
+     */
+    public @Nullable Map<String, Long> getEventTypesCountAt(long time) {
+        Map<String, Long> map = new HashMap<>();
+        for (Entry<String, long[]> entry : fTypes.entrySet()) {
+            long count = getCountAt(entry.getValue(), fShift + TYPE_LEVELS, time);
+            if (count == UNKNOWN) {
+                return null;
+            }
+            map.put(entry.getKey(), count);
+        }
+        return map;
+    }
+
+    /**
+     * Get the number of events of each type in the whole trace, lost events
+     * included
+     *
+     * @return the number of events per event type
+     */
+    public Map<String, Long> getEventTypesTotal() {
+        Map<String, Long> map = new HashMap<>();
+        for (Entry<String, long[]> entry : fTypes.entrySet()) {
+            long[] counts = entry.getValue();
+            map.put(entry.getKey(), counts.length == 0 ? 0 : counts[counts.length - 1]);
+        }
+        return map;
+    }
+
+    private long getCountAt(long[] cumulative, int shift, long time) {
+        if (time < fOrigin) {
+            return 0;
+        }
+        if (cumulative.length == 0) {
+            return 0;
+        }
+        long offset = time - fOrigin;
+        long bucket = offset >>> shift;
+        if (time >= fEndTime || bucket >= cumulative.length) {
+            return cumulative[cumulative.length - 1];
+        }
+        int index = (int) bucket;
+        if (((offset + 1) & ((1L << shift) - 1)) == 0) {
+            /* The time is the last nanosecond of its bucket */
+            return cumulative[index];
+        }
+        long before = index == 0 ? 0 : cumulative[index - 1];
+        if (cumulative[index] == before) {
+            /* The bucket is empty */
+            return before;
+        }
+        return UNKNOWN;
+    }
+
+    // ------------------------------------------------------------------------
+    // Persistence
+    // ------------------------------------------------------------------------
+
+    /**
+     * Write this pyramid to a file
+     *
+     * @param file
+     *            the file to write, replaced if it exists
+     * @param providerVersion
+     *            the version of the state provider that counted the events
+     * @throws IOException
+     *             if the file can't be written
+     */
+    public void write(File file, int providerVersion) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(providerVersion);
+            out.writeLong(fOrigin);
+            out.writeInt(fShift);
+            out.writeLong(fEndTime);
+            writeCounts(out, fTotals);
+            out.writeInt(fTypes.size());
+            for (Entry<String, long[]> entry : fTypes.entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeCounts(out, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Read a pyramid from a file written by {@link #write(File, int)}
+     *
+     * @param file
+     *            the file to read
+     * @param providerVersion
+     *            the version of the state provider, the files written by other
+     *            versions are not read
+     * @return the pyramid, or null if the file does not exist or is not a
+     *         pyramid of this version
+     * @throws IOException
+     *             if the file can't be read
+     */
+    public static @Nullable TmfEventCountPyramid read(File file, int providerVersion) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != providerVersion) {
+                return null;
+            }
+            long origin = in.readLong();
+            int shift = in.readInt();
+            long endTime = in.readLong();
+            long[] totals = readCounts(in);
+            int nbTypes = in.readInt();
+            Map<String, long[]> types = new LinkedHashMap<>();
+            for (int i = 0; i < nbTypes; i++) {
+                types.put(in.readUTF(), readCounts(in));
+            }
+            return new TmfEventCountPyramid(origin, shift, endTime, totals, Collections.unmodifiableMap(types));
+        }
+    }
+
+    private static void writeCounts(DataOutputStream out, long[] counts) throws IOException {
+        out.writeInt(counts.length);
+        for (long count : counts) {
+            out.writeLong(count);
+        }
+    }
+
+    private static long[] readCounts(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_BUCKETS) {
+            throw new IOException("Invalid number of buckets: " + length); //$NON-NLS-1$
+        }
+        long[] counts = new long[length];
+        for (int i = 0; i < length; i++) {
+            counts[i] = in.readLong();
+        }
+        return counts;
+    }
+
+    // ------------------------------------------------------------------------
+    // Builder
+    // ------------------------------------------------------------------------
+
+    /**
+     * Builder of a pyramid, fed with the events in timestamp order. The
+     * buckets start at one nanosecond and are merged two by two when the trace
+     * gets too long for them.
+     */
+    public static final class Builder {
+
+        private long fBuilderOrigin;
+        private long fLastTime;
+        private int fBuilderShift = 0;
+        private boolean fStarted = false;
+        private boolean fValid = true;
+        private long[] fBuckets = new long[1024];
+        private int fNbBuckets = 0;
+        private final Map<String, long[]> fTypeBuckets = new LinkedHashMap<>();
+
+        /**
+         * Count an event
+         *
+         * @param time
+         *            the timestamp of the event, in nanoseconds
+         * @param type
+         *            the event type name
+         * @param nbEvents
+         *            the number of events of this type to count, more than 1
+         *            for lost events
+         * @param countInTotal
+         *            whether the events count in the totals, false for lost
+         *            events
+         */
+        public void addEvent(long time, String type, long nbEvents, boolean countInTotal) {
+            if (!fStarted) {
+                fStarted = true;
+                fBuilderOrigin = time;
+                fLastTime = time;
+            }
+            if (time < fLastTime) {
+                /* The state system rejects these, so the counts would differ */
+                fValid = false;
+                return;
+            }
+            fLastTime = time;
+            long offset = time - fBuilderOrigin;
+            while ((offset >>> fBuilderShift) >= MAX_BUCKETS) {
+                coarsen();
+            }
+            int bucket = (int) (offset >>> fBuilderShift);
+            if (bucket >= fNbBuckets) {
+                if (bucket >= fBuckets.length) {
+                    fBuckets = Arrays.copyOf(fBuckets, Math.min(MAX_BUCKETS, Math.max(bucket + 1, fBuckets.length * 2)));
+                }
+                fNbBuckets = bucket + 1;
+            }
+            if (countInTotal) {
+                fBuckets[bucket] += 1;
+            }
+            int typeBucket = bucket >>> TYPE_LEVELS;
+            long[] typeBuckets = fTypeBuckets.get(type);
+            if (typeBuckets == null || typeBucket >= typeBuckets.length) {
+                typeBuckets = typeBuckets == null ? new long[typeBucket + 1] : Arrays.copyOf(typeBuckets, Math.max(typeBucket + 1, typeBuckets.length * 2));
+                fTypeBuckets.put(type, typeBuckets);
+            }
+            typeBuckets[typeBucket] += nbEvents;
+        }
+
+        private void coarsen() {
+            fBuckets = mergePairs(fBuckets, fNbBuckets);
+            fNbBuckets = (fNbBuckets + 1) / 2;
+            for (Entry<String, long[]> entry : fTypeBuckets.entrySet()) {
+                long[] counts = entry.getValue();
+                entry.setValue(mergePairs(counts, counts.length));
+            }
+            fBuilderShift++;
+        }
+
+        private static long[] mergePairs(long[] counts, int length) {
+            long[] merged = new long[Math.max(1, counts.length / 2 + 1)];
+            for (int i = 0; i < length; i++) {
+                merged[i / 2] += counts[i];
+            }
+            return merged;
+        }
+
+        /**
+         * Build the pyramid of the events counted so far
+         *
+         * @return the pyramid, or null if the events were not in timestamp
+         *         order
+         */
+        public @Nullable TmfEventCountPyramid build() {
+            if (!fValid) {
+                return null;
+            }
+            long[] totals = cumulate(fBuckets, fNbBuckets);
+            int nbTypeBuckets = fNbBuckets == 0 ? 0 : ((fNbBuckets - 1) >>> TYPE_LEVELS) + 1;
+            Map<String, long[]> types = new LinkedHashMap<>();
+            for (Entry<String, long[]> entry : fTypeBuckets.entrySet()) {
+                types.put(entry.getKey(), cumulate(entry.getValue(), nbTypeBuckets));
+            }
+            return new TmfEventCountPyramid(fBuilderOrigin, fBuilderShift, fLastTime, totals, Collections.unmodifiableMap(types));
+        }
+
+        private static long[] cumulate(long[] counts, int length) {
+            long[] cumulative = new long[length];
+            long sum = 0;
+            for (int i = 0; i < length; i++) {
+                sum += i < counts.length ? counts[i] : 0;
+                cumulative[i] = sum;
+            }
+            return cumulative;
+        }
+    }
+}
@@ -33,6 +33,10 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
  * <p>
  * The last trace refers to the trace from which the last event was "consumed"
  * at the experiment level.
+ * <p>
+ * The traces with a next event are kept in a min-heap ordered by the
+ * timestamps of their next events, in nanoseconds, so that picking the next
+ * trace is done in logarithmic time of the number of traces.
  */
 public final class TmfExperimentContext extends TmfContext {
 
@@ -53,6 +57,15 @@ public final class TmfExperimentContext extends TmfContext {
     private final List<ITmfEvent> fEvents;
     private int fLastTraceRead;
 
+    /* Heap of the traces with a next event, by timestamp then trace index */
+    private final int[] fHeap;
+    private final int[] fHeapPositions;
+    private final long[] fTimestamps;
+    private int fHeapSize = 0;
+
+    private final @Nullable TmfTracePrefetcher[] fPrefetchers;
+    private int fSequentialReads = 0;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -68,17 +81,26 @@ public final class TmfExperimentContext extends TmfContext {
         fLastTraceRead = NO_TRACE;
         fContexts = new ArrayList<>(nbTraces);
         fEvents = new ArrayList<>(nbTraces);
-
+        fHeap = new int[nbTraces];
+        fHeapPositions = new int[nbTraces];
+        fTimestamps = new long[nbTraces];
+        fPrefetchers = new TmfTracePrefetcher[nbTraces];
 
         /* Initialize the arrays to the requested size */
         for (int i = 0; i < nbTraces; i++) {
             fContexts.add(null);
             fEvents.add(null);
+            fHeapPositions[i] = -1;
         }
     }
 
     @Override
     public void dispose() {
+        for (TmfTracePrefetcher prefetcher : fPrefetchers) {
+            if (prefetcher != null) {
+                prefetcher.cancel();
+            }
+        }
         for (ITmfContext context : fContexts) {
             context.dispose();
         }
@@ -146,6 +168,69 @@ public final class TmfExperimentContext extends TmfContext {
      */
     public void setEvent(int traceIndex, ITmfEvent event) {
         fEvents.set(traceIndex, event);
+        int position = fHeapPositions[traceIndex];
+        if (event == null) {
+            if (position >= 0) {
+                removeFromHeap(position);
+            }
+            return;
+        }
+        fTimestamps[traceIndex] = event.getTimestampNanos();
+        if (position < 0) {
+            position = fHeapSize++;
+            place(traceIndex, position);
+            siftUp(position);
+        } else {
+            siftUp(position);
+            siftDown(fHeapPositions[traceIndex]);
+        }
+    }
+
+    /**
+     * Get the index of the trace whose next event comes first, the trace with
+     * the lowest index first when several events have the same timestamp.
+     *
+     * @return The index of the trace, or {@link #NO_TRACE} if no trace has a
+     *         next event
+     */
+    public int getNextTrace() {
+        return (fHeapSize == 0) ? NO_TRACE : fHeap[0];
+    }
+
+    /**
+     * Get the prefetcher reading a trace ahead of this context, if any
+     *
+     * @param traceIndex
+     *            The index of the trace in the experiment
+     * @return The prefetcher, or null if the trace is read synchronously
+     */
+    public @Nullable TmfTracePrefetcher getPrefetcher(int traceIndex) {
+        return fPrefetchers[traceIndex];
+    }
+
+    /**
+     * Set the prefetcher reading a trace ahead of this context. The context of
+     * that trace then belongs to the prefetcher.
+     *
+     * @param traceIndex
+     *            The index of the trace in the experiment
+     * @param prefetcher
+     *            The prefetcher
+     */
+    public void setPrefetcher(int traceIndex, TmfTracePrefetcher prefetcher) {
+        fPrefetchers[traceIndex] = prefetcher;
+    }
+
+    /**
+     * Count one more event read sequentially with this context
+     *
+     * @return The number of events read with this context
+     */
+    public int increaseSequentialReads() {
+        if (fSequentialReads < Integer.MAX_VALUE) {
+            fSequentialReads++;
+        }
+        return fSequentialReads;
     }
 
     /**
@@ -168,6 +253,73 @@ public final class TmfExperimentContext extends TmfContext {
         fLastTraceRead = newIndex;
     }
 
+    // ------------------------------------------------------------------------
+    // Heap
+    // ------------------------------------------------------------------------
+
+    private boolean isBefore(int trace, int other) {
+        long timestamp = fTimestamps[trace];
+        long otherTimestamp = fTimestamps[other];
+        if (timestamp != otherTimestamp) {
+            return timestamp < otherTimestamp;
+        }
+        /* Equal in nanoseconds, the timestamps may still differ at a finer scale */
+        int cmp = fEvents.get(trace).getTimestamp().compareTo(fEvents.get(other).getTimestamp());
+        return (cmp != 0) ? cmp < 0 : trace < other;
+    }
+
+    private void place(int trace, int position) {
+        fHeap[position] = trace;
+        fHeapPositions[trace] = position;
+    }
+
+    private void siftUp(int position) {
+        int trace = fHeap[position];
+        int pos = position;
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!isBefore(trace, fHeap[parent])) {
+                break;
+            }
+            place(fHeap[parent], pos);
+            pos = parent;
+        }
+        place(trace, pos);
+    }
+
+    private void siftDown(int position) {
+        int trace = fHeap[position];
+        int pos = position;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= fHeapSize) {
+                break;
+            }
+            if (child + 1 < fHeapSize && isBefore(fHeap[child + 1], fHeap[child])) {
+                child++;
+            }
+            if (!isBefore(fHeap[child], trace)) {
+                break;
+            }
+            place(fHeap[child], pos);
+            pos = child;
+        }
+        place(trace, pos);
+    }
+
+    private void removeFromHeap(int position) {
+        int removed = fHeap[position];
+        fHeapPositions[removed] = -1;
+        fHeapSize--;
+        if (position == fHeapSize) {
+            return;
+        }
+        int moved = fHeap[fHeapSize];
+        place(moved, position);
+        siftUp(position);
+        siftDown(fHeapPositions[moved]);
+    }
+
     // ------------------------------------------------------------------------
     // Object
     // ------------------------------------------------------------------------
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.trace.experiment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+
+/**
+ * Reads the events of one trace of an experiment ahead of the experiment, in
+ * bounded batches, on a pool of reading threads shared by all the experiments.
+ * <p>
+ * A reading task never blocks: it reads one batch, publishes it and
+ * reschedules itself only while there is room for another batch. The consumer
+ * reschedules it when it takes a batch. This way a small pool can serve any
+ * number of traces without one trace starving the others.
+ * <p>
+ * Along with each event, the location and rank of the trace context right
+ * after reading it are kept, since the context itself is ahead of the
+ * consumer.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class TmfTracePrefetcher {
+
+    /** Number of events read by a task before it gives its thread back */
+    private static final int BATCH_SIZE = 64;
+
+    /** Maximum number of batches waiting to be consumed */
+    private static final int MAX_BATCHES = 2;
+
+    private static final ExecutorService READERS = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        private final AtomicInteger fCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nullable Runnable r) {
+            Thread thread = new Thread(r, "Experiment Trace Reader " + fCount.incrementAndGet()); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final ITmfTrace fTrace;
+    private final ITmfContext fContext;
+
+    private final Object fLock = new Object();
+
+    /* Fields guarded by fLock */
+    private final Deque<Batch> fBatches = new ArrayDeque<>();
+    private @Nullable Future<?> fTask = null;
+    private boolean fFinished = false;
+    private volatile boolean fCancelled = false;
+
+    /* Fields only accessed by the consumer */
+    private @Nullable Batch fCurrentBatch = null;
+    private int fPosition = 0;
+    private @Nullable ITmfLocation fLocation = null;
+    private long fRank = 0;
+
+    private static final class Batch {
+        private final List<ITmfEvent> fEvents;
+        private final List<@Nullable ITmfLocation> fLocations;
+        private final long[] fRanks;
+        private final boolean fLast;
+        private final @Nullable RuntimeException fError;
+
+        public Batch(List<ITmfEvent> events, List<@Nullable ITmfLocation> locations, long[] ranks, boolean last, @Nullable RuntimeException error) {
+            fEvents = events;
+            fLocations = locations;
+            fRanks = ranks;
+            fLast = last;
+            fError = error;
+        }
+    }
+
+    /**
+     * Constructor, starts reading right away
+     *
+     * @param trace
+     *            the trace to read
+     * @param context
+     *            the context of the trace, which must not be used by anyone
+     *            else until this prefetcher is cancelled
+     */
+    public TmfTracePrefetcher(ITmfTrace trace, ITmfContext context) {
+        fTrace = trace;
+        fContext = context;
+        synchronized (fLock) {
+            schedule();
+        }
+    }
+
+    /**
+     * Stop the reading threads. Prefetchers created afterwards fail to read
+     * anything.
+     */
+    public static void dispose() {
+        READERS.shutdown();
+    }
+
+    /**
+     * Get the next event, waiting for it to be read if needed.
+     *
+     * @return the next event, or null if the trace has no more events
+     */
+    public @Nullable ITmfEvent next() {
+        while (true) {
+            Batch batch = fCurrentBatch;
+            if (batch != null) {
+                if (fPosition < batch.fEvents.size()) {
+                    fLocation = batch.fLocations.get(fPosition);
+                    fRank = batch.fRanks[fPosition];
+                    return batch.fEvents.get(fPosition++);
+                }
+                if (batch.fLast) {
+                    RuntimeException error = batch.fError;
+                    if (error != null) {
+                        throw error;
+                    }
+                    return null;
+                }
+            }
+            fCurrentBatch = take();
+            fPosition = 0;
+        }
+    }
+
+    /**
+     * Get the location of the trace context right after the last event
+     * returned by {@link #next()}
+     *
+     * @return the location
+     */
+    public @Nullable ITmfLocation getLocation() {
+        return fLocation;
+    }
+
+    /**
+     * Get the rank of the trace context right after the last event returned
+     * by {@link #next()}
+     *
+     * @return the rank
+     */
+    public long getRank() {
+        return fRank;
+    }
+
+    /**
+     * Stop reading and wait for the running task, if any, to return. The
+     * context is then positioned after the last event read, which is usually
+     * further than the last event returned by {@link #next()}.
+     */
+    public void cancel() {
+        boolean interrupted = false;
+        synchronized (fLock) {
+            fCancelled = true;
+            Future<?> task = fTask;
+            if (task != null && task.cancel(false)) {
+                fTask = null;
+            }
+            while (fTask != null) {
+                try {
+                    fLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            fBatches.clear();
+        }
+        fCurrentBatch = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Batch take() {
+        synchronized (fLock) {
+            while (fBatches.isEmpty()) {
+                if (fCancelled) {
+                    return new Batch(Collections.emptyList(), Collections.emptyList(), new long[0], true, null);
+                }
+                try {
+                    fLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the events of " + fTrace.getName(), e); //$NON-NLS-1$
+                }
+            }
+            Batch batch = fBatches.removeFirst();
+            schedule();
+            return batch;
+        }
+    }
+
+    /* Must be called while holding fLock */
+    private void schedule() {
+        if (fTask == null && !fFinished && !fCancelled && fBatches.size() < MAX_BATCHES) {
+            try {
+                fTask = READERS.submit(this::readBatch);
+            } catch (RejectedExecutionException e) {
+                fFinished = true;
+                fBatches.addLast(new Batch(Collections.emptyList(), Collections.emptyList(), new long[0], true, new IllegalStateException("The reading threads are stopped", e))); //$NON-NLS-1$
+                fLock.notifyAll();
+            }
+        }
+    }
+
+    private void readBatch() {
+        List<ITmfEvent> events = new ArrayList<>(BATCH_SIZE);
+        List<@Nullable ITmfLocation> locations = new ArrayList<>(BATCH_SIZE);
+        long[] ranks = new long[BATCH_SIZE];
+        boolean last = false;
+        RuntimeException error = null;
+        try {
+            while (events.size() < BATCH_SIZE && !fCancelled) {
+                ITmfEvent event = fTrace.getNext(fContext);
+                if (event == null) {
+                    last = true;
+                    break;
+                }
+                ranks[events.size()] = fContext.getRank();
+                events.add(event);
+                locations.add(fContext.getLocation());
+            }
+        } catch (RuntimeException e) {
+            last = true;
+            error = e;
+        }
+        synchronized (fLock) {
+            fTask = null;
+            if (!fCancelled) {
+                fBatches.addLast(new Batch(events, locations, ranks, last, error));
+                fFinished = last;
+                schedule();
+            }
+            fLock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.trace.indexer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfLostEvent;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfParallelIndexable;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfParallelIndexable.ChunkReader;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+
+/**
+ * Builds the checkpoints of a trace by reading byte ranges of it in parallel.
+ * <p>
+ * The trace data is split in chunks, and a reader is created at the start of
+ * each chunk, which resynchronizes on the first event found there. The ranks
+ * of the checkpoints are only known once the events of the previous chunks
+ * are counted, so the chunks are read twice:
+ * <ol>
+ * <li>the events of each chunk are counted, without building them when the
+ * trace allows it. The end of each chunk is then compared to where the next
+ * chunk was resynchronized, and a chunk whose resynchronization does not
+ * match is counted again from the real boundary;</li>
+ * <li>the events of each chunk are read from its first rank, keeping the
+ * checkpoints and the time range.</li>
+ * </ol>
+ * The checkpoints are the same as the ones of a sequential indexing with the
+ * same interval. The chunks are reported in order as soon as they and all the
+ * chunks before them are read, so that the trace can be used before the end
+ * of the indexing.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class TmfParallelIndexBuilder {
+
+    /** Minimum size of a chunk, smaller traces are read by a single reader */
+    private static final long MIN_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /** Number of events read between checks of the cancellation */
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    private static final ExecutorService INDEXERS = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        private final AtomicInteger fCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nullable Runnable r) {
+            Thread thread = new Thread(r, "Trace Indexer " + fCount.incrementAndGet()); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Stop the indexing threads. The indexings started afterwards fail, and
+     * the traces are then indexed sequentially.
+     */
+    public static void dispose() {
+        INDEXERS.shutdown();
+    }
+
+    /**
+     * The result of a parallel indexing
+     */
+    public static final class Result {
+        private final List<ITmfCheckpoint> fCheckpoints;
+        private final long fNbEvents;
+        private final @Nullable TmfTimeRange fTimeRange;
+
+        private Result(List<ITmfCheckpoint> checkpoints, long nbEvents, @Nullable TmfTimeRange timeRange) {
+            fCheckpoints = checkpoints;
+            fNbEvents = nbEvents;
+            fTimeRange = timeRange;
+        }
+
+        /**
+         * @return the checkpoints, in rank order
+         */
+        public List<ITmfCheckpoint> getCheckpoints() {
+            return fCheckpoints;
+        }
+
+        /**
+         * @return the number of events of the trace
+         */
+        public long getNbEvents() {
+            return fNbEvents;
+        }
+
+        /**
+         * @return the time range of the events, or null if there are none
+         */
+        public @Nullable TmfTimeRange getTimeRange() {
+            return fTimeRange;
+        }
+    }
+
+    /**
+     * Listener of the chunks read by a parallel indexing
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * A chunk was read, and all the chunks before it as well
+         *
+         * @param checkpoints
+         *            the checkpoints of the chunk, in rank order
+         * @param nbEvents
+         *            the number of events of the trace up to the end of the
+         *            chunk
+         * @param range
+         *            the time range of the events up to the end of the chunk
+         */
+        void chunkIndexed(List<ITmfCheckpoint> checkpoints, long nbEvents, TmfTimeRange range);
+    }
+
+    private static final class Chunk {
+        /* Position of the first event, -1 if none */
+        private long fStart;
+        /* Events at or after this position belong to the next chunks */
+        private final long fBound;
+        private long fRank;
+        private long fNbEvents;
+        /* Position of the first event after the chunk, -1 if none */
+        private long fEnd = -1;
+        /* Whether the trace ends at an invalid event in this chunk */
+        private boolean fTruncated;
+        private final List<ITmfCheckpoint> fCheckpoints = new ArrayList<>();
+        private @Nullable ITmfTimestamp fStartTime;
+        private @Nullable ITmfTimestamp fEndTime;
+
+        public Chunk(long start, long bound) {
+            fStart = start;
+            fBound = bound;
+        }
+    }
+
+    private TmfParallelIndexBuilder() {
+    }
+
+    /**
+     * Get the number of chunks to split a trace into
+     *
+     * @param size
+     *            the size of the trace data, in bytes
+     * @return the number of chunks, 1 or less if the trace should be indexed
+     *         sequentially
+     */
+    public static int getNbChunks(long size) {
+        return (int) Math.min(Runtime.getRuntime().availableProcessors(), size / MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Index a trace in parallel
+     *
+     * @param trace
+     *            the trace to index
+     * @param interval
+     *            the number of events between checkpoints
+     * @param nbChunks
+     *            the number of chunks to split the trace into
+     * @param listener
+     *            the listener notified of the chunks read, in order
+     * @param monitor
+     *            the progress monitor
+     * @return the result, or null if the indexing was cancelled
+     * @throws IOException
+     *             if the trace could not be read
+     */
+    public static @Nullable Result build(ITmfParallelIndexable trace, int interval, int nbChunks, Listener listener, IProgressMonitor monitor) throws IOException {
+        SubMonitor subMonitor = SubMonitor.convert(monitor, 2 * nbChunks);
+        long size = trace.getDataSize();
+
+        /* Resynchronize a reader at the start of each chunk */
+        List<ChunkReader> readers = new ArrayList<>(nbChunks);
+        List<Chunk> chunks = new ArrayList<>(nbChunks);
+        try {
+            long[] starts = new long[nbChunks];
+            for (int i = 0; i < nbChunks; i++) {
+                ChunkReader reader = trace.createChunkReader(size / nbChunks * i);
+                readers.add(reader);
+                starts[i] = reader.getPosition();
+            }
+            for (int i = 0; i < nbChunks; i++) {
+                long bound = (i + 1 < nbChunks && starts[i + 1] != -1) ? starts[i + 1] : Long.MAX_VALUE;
+                chunks.add(new Chunk(starts[i], bound));
+            }
+
+            /* Count the events of the chunks */
+            List<Future<@Nullable Void>> counts = new ArrayList<>(nbChunks);
+            for (int i = 0; i < nbChunks; i++) {
+                Chunk chunk = chunks.get(i);
+                ChunkReader reader = readers.get(i);
+                counts.add(INDEXERS.submit(() -> {
+                    count(chunk, reader, subMonitor);
+                    return null;
+                }));
+            }
+            waitForAll(counts, subMonitor);
+        } finally {
+            for (ChunkReader reader : readers) {
+                reader.close();
+            }
+        }
+        if (subMonitor.isCanceled()) {
+            return null;
+        }
+
+        /* Stitch the chunks, counting again the ones that were misaligned */
+        List<Chunk> validChunks = new ArrayList<>(nbChunks);
+        long expected = chunks.get(0).fStart;
+        long rank = 0;
+        for (Chunk chunk : chunks) {
+            if (expected == -1) {
+                break;
+            }
+            if (chunk.fStart != expected) {
+                chunk.fStart = expected;
+                try (ChunkReader reader = trace.createChunkReader(expected)) {
+                    count(chunk, reader, subMonitor);
+                }
+            }
+            chunk.fRank = rank;
+            rank += chunk.fNbEvents;
+            validChunks.add(chunk);
+            if (chunk.fTruncated) {
+                break;
+            }
+            expected = chunk.fEnd;
+        }
+        if (subMonitor.isCanceled()) {
+            return null;
+        }
+
+        /* Read the events of the chunks from their first rank */
+        List<Future<@Nullable Void>> reads = new ArrayList<>(validChunks.size());
+        for (Chunk chunk : validChunks) {
+            reads.add(INDEXERS.submit(() -> {
+                read(trace, chunk, interval, subMonitor);
+                return null;
+            }));
+        }
+
+        /* Report the chunks in order as they complete */
+        List<ITmfCheckpoint> checkpoints = new ArrayList<>();
+        ITmfTimestamp startTime = null;
+        ITmfTimestamp endTime = null;
+        Throwable error = null;
+        for (int i = 0; i < reads.size(); i++) {
+            error = waitFor(reads.get(i), error, subMonitor);
+            if (error != null || subMonitor.isCanceled()) {
+                continue;
+            }
+            Chunk chunk = validChunks.get(i);
+            checkpoints.addAll(chunk.fCheckpoints);
+            ITmfTimestamp chunkStart = chunk.fStartTime;
+            ITmfTimestamp chunkEnd = chunk.fEndTime;
+            if (chunkStart != null && (startTime == null || startTime.compareTo(chunkStart) > 0)) {
+                startTime = chunkStart;
+            }
+            if (chunkEnd != null && (endTime == null || endTime.compareTo(chunkEnd) < 0)) {
+                endTime = chunkEnd;
+            }
+            if (startTime != null && endTime != null) {
+                listener.chunkIndexed(chunk.fCheckpoints, chunk.fRank + chunk.fNbEvents, new TmfTimeRange(startTime, endTime));
+            }
+        }
+        throwError(error);
+        if (subMonitor.isCanceled()) {
+            return null;
+        }
+
+        TmfTimeRange range = (startTime != null && endTime != null) ? new TmfTimeRange(startTime, endTime) : null;
+        return new Result(checkpoints, rank, range);
+    }
+
+    private static void count(Chunk chunk, ChunkReader reader, IProgressMonitor monitor) {
+        long nbEvents = 0;
+        long position = reader.getPosition();
+        while (position != -1 && position < chunk.fBound) {
+            if (nbEvents % CANCEL_CHECK_INTERVAL == 0 && monitor.isCanceled()) {
+                break;
+            }
+            if (!reader.skipEvent()) {
+                chunk.fTruncated = true;
+                break;
+            }
+            nbEvents++;
+            position = reader.getPosition();
+        }
+        chunk.fNbEvents = nbEvents;
+        chunk.fEnd = position;
+    }
+
+    private static void read(ITmfParallelIndexable trace, Chunk chunk, int interval, IProgressMonitor monitor) throws IOException {
+        if (chunk.fNbEvents == 0) {
+            return;
+        }
+        try (ChunkReader reader = trace.createChunkReader(chunk.fStart)) {
+            for (long rank = chunk.fRank; rank < chunk.fRank + chunk.fNbEvents; rank++) {
+                if (rank % CANCEL_CHECK_INTERVAL == 0 && monitor.isCanceled()) {
+                    return;
+                }
+                ITmfLocation location = reader.getLocation();
+                ITmfEvent event = reader.readEvent();
+                if (event == null) {
+                    throw new IOException("Event at rank " + rank + " could not be read again"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                ITmfTimestamp timestamp = event.getTimestamp();
+                ITmfTimestamp endTime = timestamp;
+                if (event instanceof ITmfLostEvent) {
+                    endTime = ((ITmfLostEvent) event).getTimeRange().getEndTime();
+                }
+                ITmfTimestamp chunkStart = chunk.fStartTime;
+                ITmfTimestamp chunkEnd = chunk.fEndTime;
+                if (chunkStart == null || chunkStart.compareTo(timestamp) > 0) {
+                    chunk.fStartTime = timestamp;
+                }
+                if (chunkEnd == null || chunkEnd.compareTo(endTime) < 0) {
+                    chunk.fEndTime = endTime;
+                }
+                if (rank % interval == 0) {
+                    chunk.fCheckpoints.add(new TmfCheckpoint(timestamp, location, rank / interval));
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for all the tasks, so that none is still using the readers when an
+     * error is reported, then throw the first error if any
+     */
+    private static void waitForAll(List<Future<@Nullable Void>> futures, SubMonitor monitor) throws IOException {
+        Throwable error = null;
+        for (Future<@Nullable Void> future : futures) {
+            error = waitFor(future, error, monitor);
+        }
+        throwError(error);
+    }
+
+    /**
+     * Wait for a task
+     *
+     * @return the error of a previous task if any, otherwise the error of
+     *         this task, or null if it succeeded
+     */
+    private static @Nullable Throwable waitFor(Future<@Nullable Void> future, @Nullable Throwable previousError, SubMonitor monitor) {
+        Throwable error = previousError;
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (error == null) {
+                error = e;
+            }
+        } catch (ExecutionException e) {
+            if (error == null) {
+                error = e.getCause();
+            }
+        }
+        monitor.worked(1);
+        return error;
+    }
+
+    private static void throwError(@Nullable Throwable error) throws IOException {
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error != null) {
+            throw new IOException(error);
+        }
+    }
+}
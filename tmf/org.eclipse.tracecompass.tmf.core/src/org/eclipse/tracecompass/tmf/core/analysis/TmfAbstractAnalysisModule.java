@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 École Polytechnique de Montréal
+ * Copyright (c) 2013, 2016 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -36,6 +36,7 @@ import org.eclipse.osgi.util.NLS;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
+import org.eclipse.tracecompass.internal.tmf.core.analysis.TmfAnalysisSession;
 import org.eclipse.tracecompass.tmf.core.analysis.requirements.TmfAbstractAnalysisRequirement;
 import org.eclipse.tracecompass.tmf.core.component.TmfComponent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
@@ -272,6 +273,7 @@ public abstract class TmfAbstractAnalysisModule extends TmfComponent
             }
             fStarted = false;
         }
+        withdrawFromSession();
     }
 
     @Override
@@ -310,6 +312,7 @@ public abstract class TmfAbstractAnalysisModule extends TmfComponent
         /* Do not execute if analysis has already run */
         if (fFinishedLatch.getCount() == 0) {
             TmfCoreTracer.traceAnalysis(getId(), getTrace(), "already executed"); //$NON-NLS-1$
+            withdrawFromSession();
             return;
         }
 
@@ -356,6 +359,7 @@ public abstract class TmfAbstractAnalysisModule extends TmfComponent
                 } catch (TmfAnalysisException e) {
                     Activator.logError("Error executing analysis with trace " + trace.getName(), e); //$NON-NLS-1$
                 } finally {
+                    withdrawFromSession();
                     synchronized (syncObj) {
                         mon.done();
                         setAnalysisCompleted();
@@ -380,6 +384,19 @@ public abstract class TmfAbstractAnalysisModule extends TmfComponent
         fJob.schedule();
     }
 
+    /**
+     * Withdraw from the analysis session of the trace, if this module was
+     * expected by it, so that the other modules of the session do not wait for
+     * this one when it completes, fails or is cancelled without having joined
+     * the session.
+     */
+    private void withdrawFromSession() {
+        ITmfTrace trace = getTrace();
+        if (trace != null) {
+            TmfAnalysisSession.withdraw(trace, this);
+        }
+    }
+
     @Override
     public IStatus schedule() {
         synchronized (syncObj) {
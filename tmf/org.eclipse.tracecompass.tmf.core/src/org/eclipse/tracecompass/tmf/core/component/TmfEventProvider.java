@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -443,7 +443,7 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
         boolean requestCompleted = isCompleted2(request, nbRead);
         if (!requestCompleted) {
             ITmfTimestamp endTime = request.getRange().getEndTime();
-            return event.getTimestamp().compareTo(endTime) > 0;
+            return event.getTimestampNanos() > endTime.toNanos();
         }
         return requestCompleted;
     }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -55,6 +55,18 @@ public interface ITmfEvent extends IAdaptable {
      */
     @NonNull ITmfTimestamp getTimestamp();
 
+    /**
+     * Gets the timestamp of the event in nanoseconds. Events that keep their
+     * time as a long can override this to avoid going through the timestamp
+     * object.
+     *
+     * @return the event timestamp, in nanoseconds
+     * @since 2.1
+     */
+    default long getTimestampNanos() {
+        return getTimestamp().toNanos();
+    }
+
     /**
      * @return the event type
      */
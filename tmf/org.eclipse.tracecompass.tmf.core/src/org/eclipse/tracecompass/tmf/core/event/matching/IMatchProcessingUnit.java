@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 École Polytechnique de Montréal
+ * Copyright (c) 2013, 2016 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -56,4 +56,22 @@ public interface IMatchProcessingUnit {
      */
     int countMatches();
 
+    /**
+     * Function called before {@link #matchingEnded()}, with statistics on the
+     * matching itself
+     *
+     * @param maxUnmatched
+     *            the largest number of unmatched events kept at once, the
+     *            memory high-water mark of the matching
+     * @param nbEvents
+     *            the number of events that went through the matching
+     * @param duration
+     *            the time spent matching, in nanoseconds, so the throughput
+     *            is nbEvents / duration
+     * @since 2.1
+     */
+    default void matchingStatistics(long maxUnmatched, long nbEvents, long duration) {
+        // Do nothing by default
+    }
+
 }
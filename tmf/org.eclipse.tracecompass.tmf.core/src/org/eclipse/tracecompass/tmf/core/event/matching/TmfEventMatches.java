@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 École Polytechnique de Montréal
+ * Copyright (c) 2013, 2016 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -26,6 +26,8 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 public class TmfEventMatches implements IMatchProcessingUnit {
 
     private int fMatchCount;
+    private long fMaxUnmatched;
+    private double fThroughput;
 
     /**
      * Constructor
@@ -40,6 +42,8 @@ public class TmfEventMatches implements IMatchProcessingUnit {
     @Override
     public void init(Collection<ITmfTrace> fTraces) {
         fMatchCount = 0;
+        fMaxUnmatched = 0;
+        fThroughput = 0;
     }
 
     @Override
@@ -47,6 +51,15 @@ public class TmfEventMatches implements IMatchProcessingUnit {
         fMatchCount++;
     }
 
+    /**
+     * @since 2.1
+     */
+    @Override
+    public void matchingStatistics(long maxUnmatched, long nbEvents, long duration) {
+        fMaxUnmatched = maxUnmatched;
+        fThroughput = (duration > 0) ? nbEvents * 1e9 / duration : 0;
+    }
+
     @Override
     public void matchingEnded() {
 
@@ -57,6 +70,28 @@ public class TmfEventMatches implements IMatchProcessingUnit {
         return fMatchCount;
     }
 
+    /**
+     * Returns the largest number of unmatched events kept at once by the
+     * matching
+     *
+     * @return the number of unmatched events
+     * @since 2.1
+     */
+    public long getMaxUnmatched() {
+        return fMaxUnmatched;
+    }
+
+    /**
+     * Returns the number of events that went through the matching per second,
+     * whether they were matched or not
+     *
+     * @return the throughput of the matching, or 0 if it is not known
+     * @since 2.1
+     */
+    public double getThroughput() {
+        return fThroughput;
+    }
+
     /**
      * Returns the match at the specified index
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2015 École Polytechnique de Montréal
+ * Copyright (c) 2013, 2016 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -14,8 +14,13 @@ package org.eclipse.tracecompass.tmf.core.event.matching;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -24,6 +29,7 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -34,11 +40,8 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultimap;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Table;
 
 /**
  * Abstract class to extend to match certain type of events in a trace
@@ -62,14 +65,48 @@ public class TmfEventMatching implements ITmfEventMatching {
     private final Multimap<ITmfTrace, ITmfMatchEventDefinition> fMatchMap = HashMultimap.create();
 
     /**
-     * Hashtables for unmatches incoming events
+     * Unmatched incoming events, by key. Events of different traces with the
+     * same key are chained.
      */
-    private final Table<ITmfTrace, IEventMatchingKey, ITmfEvent> fUnmatchedIn = HashBasedTable.create();
+    private final Map<IEventMatchingKey, UnmatchedEvent> fUnmatchedIn = new HashMap<>();
 
     /**
-     * Hashtables for unmatches outgoing events
+     * Unmatched outgoing events, by key
      */
-    private final Table<ITmfTrace, IEventMatchingKey, ITmfEvent> fUnmatchedOut = HashBasedTable.create();
+    private final Map<IEventMatchingKey, UnmatchedEvent> fUnmatchedOut = new HashMap<>();
+
+    /**
+     * The unmatched events in the order they were added, to expire them when
+     * they get out of the matching window
+     */
+    private final Deque<UnmatchedEvent> fUnmatchedQueue = new ArrayDeque<>();
+
+    private long fWindow = Long.MAX_VALUE;
+    private long fNbUnmatched;
+    private long fMaxUnmatched;
+    private long fNbExpired;
+    private long fNbEvents;
+    private long fStartTime;
+
+    /**
+     * An event waiting for its match
+     */
+    private static final class UnmatchedEvent {
+        private final IEventMatchingKey fKey;
+        private final ITmfTrace fTrace;
+        private final long fTime;
+        private final boolean fIncoming;
+        private @Nullable ITmfEvent fEvent;
+        private @Nullable UnmatchedEvent fNext = null;
+
+        public UnmatchedEvent(IEventMatchingKey key, ITmfEvent event, boolean incoming) {
+            fKey = key;
+            fTrace = event.getTrace();
+            fTime = event.getTimestamp().toNanos();
+            fIncoming = incoming;
+            fEvent = event;
+        }
+    }
 
     /**
      * Enum for cause and effect types of event
@@ -157,7 +194,26 @@ public class TmfEventMatching implements ITmfEventMatching {
      * @return The match event definition object
      */
     protected Collection<ITmfMatchEventDefinition> getEventDefinitions(ITmfTrace trace) {
-        return ImmutableList.copyOf(fMatchMap.get(trace));
+        return Collections.unmodifiableCollection(fMatchMap.get(trace));
+    }
+
+    /**
+     * Set the time window of the matching. An event that is not matched by
+     * the time the events being matched are later than its own timestamp plus
+     * this window is dropped, so the memory used by the unmatched events is
+     * bounded by the event rate in the window. The window has to cover the
+     * clock offsets between the traces, as well as the latency of the
+     * matches. By default, unmatched events are kept until the end.
+     *
+     * @param window
+     *            the window, in nanoseconds
+     * @since 2.1
+     */
+    public void setMatchingWindow(long window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException();
+        }
+        fWindow = window;
     }
 
     /**
@@ -171,6 +227,12 @@ public class TmfEventMatching implements ITmfEventMatching {
         // Initialize the matching infrastructure (unmatched event lists)
         fUnmatchedIn.clear();
         fUnmatchedOut.clear();
+        fUnmatchedQueue.clear();
+        fNbUnmatched = 0;
+        fMaxUnmatched = 0;
+        fNbExpired = 0;
+        fNbEvents = 0;
+        fStartTime = System.nanoTime();
 
         fMatches.init(fTraces);
         for (ITmfTrace trace : getIndividualTraces()) {
@@ -186,6 +248,7 @@ public class TmfEventMatching implements ITmfEventMatching {
      * Calls any post matching methods of the processing class
      */
     protected void finalizeMatching() {
+        fMatches.matchingStatistics(fMaxUnmatched, fNbEvents, System.nanoTime() - fStartTime);
         fMatches.matchingEnded();
     }
 
@@ -202,13 +265,28 @@ public class TmfEventMatching implements ITmfEventMatching {
         int i = 0;
         for (ITmfTrace trace : getIndividualTraces()) {
             b.append("Trace " + i++ + ":" + cr + //$NON-NLS-1$ //$NON-NLS-2$
-                    "  " + fUnmatchedIn.row(trace).size() + " unmatched incoming events" + cr + //$NON-NLS-1$ //$NON-NLS-2$
-                    "  " + fUnmatchedOut.row(trace).size() + " unmatched outgoing events" + cr); //$NON-NLS-1$ //$NON-NLS-2$
+                    "  " + countUnmatched(fUnmatchedIn, trace) + " unmatched incoming events" + cr + //$NON-NLS-1$ //$NON-NLS-2$
+                    "  " + countUnmatched(fUnmatchedOut, trace) + " unmatched outgoing events" + cr); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (fWindow != Long.MAX_VALUE) {
+            b.append(fNbExpired + " unmatched events expired" + cr); //$NON-NLS-1$
         }
 
         return b.toString();
     }
 
+    private static int countUnmatched(Map<IEventMatchingKey, UnmatchedEvent> unmatchedTbl, ITmfTrace trace) {
+        int count = 0;
+        for (UnmatchedEvent unmatched : unmatchedTbl.values()) {
+            for (UnmatchedEvent entry = unmatched; entry != null; entry = entry.fNext) {
+                if (entry.fTrace == trace) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
     /**
      * Matches one event
      *
@@ -242,7 +320,10 @@ public class TmfEventMatching implements ITmfEventMatching {
         if (eventKey == null) {
             return;
         }
-        Table<ITmfTrace, IEventMatchingKey, ITmfEvent> unmatchedTbl, companionTbl;
+        fNbEvents++;
+        expireUnmatched(event.getTimestamp().toNanos());
+
+        Map<IEventMatchingKey, UnmatchedEvent> unmatchedTbl, companionTbl;
 
         /* Point to the appropriate table */
         switch (evType) {
@@ -258,38 +339,25 @@ public class TmfEventMatching implements ITmfEventMatching {
             return;
         }
 
-        boolean found = false;
-        TmfEventDependency dep = null;
-        /* Search for the event in the companion table */
-        for (ITmfTrace mTrace : getIndividualTraces()) {
-            if (companionTbl.contains(mTrace, eventKey)) {
-                found = true;
-                ITmfEvent companionEvent = companionTbl.get(mTrace, eventKey);
-
-                /* Remove the element from the companion table */
-                companionTbl.remove(mTrace, eventKey);
-
-                /* Create the dependency object */
-                switch (evType) {
-                case EFFECT:
-                    dep = new TmfEventDependency(companionEvent, event);
-                    break;
-                case CAUSE:
-                    dep = new TmfEventDependency(event, companionEvent);
-                    break;
-                default:
-                    break;
-
-                }
-            }
-        }
+        /* Search for the event in the companion table, and remove it */
+        UnmatchedEvent companion = companionTbl.remove(eventKey);
 
         /*
          * If no companion was found, add the event to the appropriate unMatched
          * lists
          */
-        if (found) {
-            getProcessingUnit().addMatch(checkNotNull(dep));
+        if (companion != null) {
+            ITmfEvent companionEvent = checkNotNull(companion.fEvent);
+            for (UnmatchedEvent entry = companion; entry != null; entry = entry.fNext) {
+                entry.fEvent = null;
+                fNbUnmatched--;
+            }
+
+            /* Create the dependency object */
+            TmfEventDependency dep = (evType == Direction.EFFECT) ?
+                    new TmfEventDependency(companionEvent, event) :
+                    new TmfEventDependency(event, companionEvent);
+            getProcessingUnit().addMatch(dep);
             monitor.subTask(NLS.bind(Messages.TmfEventMatching_MatchesFound, getProcessingUnit().countMatches()));
         } else {
             /*
@@ -303,9 +371,61 @@ public class TmfEventMatching implements ITmfEventMatching {
              * events as value for the unmatched table. Not necessary right now
              * though
              */
-            if (!unmatchedTbl.contains(event.getTrace(), eventKey)) {
-                unmatchedTbl.put(event.getTrace(), eventKey, event);
+            UnmatchedEvent last = null;
+            boolean present = false;
+            for (UnmatchedEvent entry = unmatchedTbl.get(eventKey); entry != null; entry = entry.fNext) {
+                present |= (entry.fTrace == event.getTrace());
+                last = entry;
+            }
+            if (!present) {
+                UnmatchedEvent entry = new UnmatchedEvent(eventKey, event, evType == Direction.EFFECT);
+                if (last == null) {
+                    unmatchedTbl.put(eventKey, entry);
+                } else {
+                    last.fNext = entry;
+                }
+                fNbUnmatched++;
+                fMaxUnmatched = Math.max(fMaxUnmatched, fNbUnmatched);
+                if (fWindow != Long.MAX_VALUE) {
+                    fUnmatchedQueue.addLast(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop the unmatched events that are out of the matching window
+     *
+     * @param time
+     *            the timestamp of the event being matched, in nanoseconds
+     */
+    private void expireUnmatched(long time) {
+        UnmatchedEvent oldest = fUnmatchedQueue.peekFirst();
+        while (oldest != null && time - oldest.fTime > fWindow) {
+            fUnmatchedQueue.removeFirst();
+            if (oldest.fEvent != null) {
+                /* Still unmatched, unlink it from its chain */
+                Map<IEventMatchingKey, UnmatchedEvent> unmatchedTbl = oldest.fIncoming ? fUnmatchedIn : fUnmatchedOut;
+                UnmatchedEvent head = checkNotNull(unmatchedTbl.get(oldest.fKey));
+                if (head == oldest) {
+                    UnmatchedEvent next = oldest.fNext;
+                    if (next == null) {
+                        unmatchedTbl.remove(oldest.fKey);
+                    } else {
+                        unmatchedTbl.put(oldest.fKey, next);
+                    }
+                } else {
+                    UnmatchedEvent previous = head;
+                    while (previous.fNext != oldest) {
+                        previous = checkNotNull(previous.fNext);
+                    }
+                    previous.fNext = oldest.fNext;
+                }
+                oldest.fEvent = null;
+                fNbUnmatched--;
+                fNbExpired++;
             }
+            oldest = fUnmatchedQueue.peekFirst();
         }
     }
 
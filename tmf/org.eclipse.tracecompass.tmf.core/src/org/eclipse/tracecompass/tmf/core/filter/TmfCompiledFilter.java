@@ -0,0 +1,703 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.filter;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterObjectNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterTraceTypeNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestampFormat;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * A filter tree compiled into a flat predicate, to evaluate it on many events.
+ * <p>
+ * The compiled filter gives the same result as the filter tree, but:
+ * <ul>
+ * <li>each event aspect used by the filter is resolved at most once per event,
+ * and its string and number values are computed at most once,</li>
+ * <li>the constant values of the nodes are parsed once,</li>
+ * <li>nested nodes of the same kind are merged, constant nodes are folded, and
+ * the children of each node are evaluated from the cheapest to the most
+ * expensive,</li>
+ * <li>when the filter depends on the event type, the event types that can
+ * never match are found once, and their events are rejected without
+ * evaluating the filter.</li>
+ * </ul>
+ * Nodes of other types than the filter tree nodes of this package, including
+ * subclasses, are evaluated by calling their own
+ * {@link ITmfFilter#matches(ITmfEvent)}.
+ * <p>
+ * The filter tree must not be modified after it is compiled.
+ *
+ * @author Matthew Khouzam
+ * @since 2.1
+ */
+public final class TmfCompiledFilter implements ITmfFilter {
+
+    private static final ITmfEventAspect<String> EVENT_TYPE_ASPECT = TmfBaseAspects.getEventTypeAspect();
+
+    private final ITmfFilter fFilter;
+    private final Predicate fPredicate;
+    private final int fNbAspects;
+    private final int fEventTypeSlot;
+
+    /* Cache of the results of canMatchEventType() */
+    private final Map<String, Boolean> fEventTypes = new ConcurrentHashMap<>();
+
+    private TmfCompiledFilter(ITmfFilter filter) {
+        fFilter = filter;
+        Compiler compiler = new Compiler();
+        fPredicate = compiler.compile(filter);
+        fNbAspects = compiler.fAspects.size();
+        fEventTypeSlot = compiler.fAspects.indexOf(EVENT_TYPE_ASPECT);
+    }
+
+    /**
+     * Compile a filter. A filter that is already compiled is returned as is.
+     *
+     * @param filter
+     *            The filter, usually a filter tree
+     * @return The compiled filter
+     */
+    public static TmfCompiledFilter compile(ITmfFilter filter) {
+        if (filter instanceof TmfCompiledFilter) {
+            return (TmfCompiledFilter) filter;
+        }
+        return new TmfCompiledFilter(filter);
+    }
+
+    /**
+     * Get the filter that was compiled
+     *
+     * @return The original filter
+     */
+    public ITmfFilter getFilter() {
+        return fFilter;
+    }
+
+    @Override
+    public boolean matches(@Nullable ITmfEvent event) {
+        if (event == null) {
+            return fFilter.matches(event);
+        }
+        if (fEventTypeSlot >= 0) {
+            ITmfEventType type = event.getType();
+            if (type != null && !canMatchEventType(type.getName())) {
+                return false;
+            }
+        }
+        return fPredicate.test(new EventValues(event, fNbAspects));
+    }
+
+    /**
+     * Check if events of a given type can match this filter. When this method
+     * returns false, no event of this type matches the filter, whatever its
+     * other values. When it returns true, some events of this type may match.
+     *
+     * @param eventType
+     *            The name of the event type
+     * @return false if no event of this type can match the filter
+     */
+    public boolean canMatchEventType(String eventType) {
+        if (fEventTypeSlot < 0) {
+            return true;
+        }
+        Boolean canMatch = fEventTypes.get(eventType);
+        if (canMatch == null) {
+            EventValues values = new EventValues(null, fNbAspects);
+            values.set(fEventTypeSlot, eventType);
+            canMatch = !Boolean.FALSE.equals(fPredicate.evaluate(values));
+            fEventTypes.put(eventType, canMatch);
+        }
+        return canMatch;
+    }
+
+    @Override
+    public String toString() {
+        return fFilter.toString();
+    }
+
+    // ------------------------------------------------------------------------
+    // Event values
+    // ------------------------------------------------------------------------
+
+    /**
+     * The values of the aspects of one event, resolved on first use. Without
+     * an event, only the values that were set are known.
+     */
+    private static final class EventValues {
+
+        private static final Object UNRESOLVED = new Object();
+
+        private final @Nullable ITmfEvent fEvent;
+        private final Object[] fValues;
+        private final @Nullable String[] fStrings;
+        private final Object[] fNumbers;
+
+        public EventValues(@Nullable ITmfEvent event, int nbAspects) {
+            fEvent = event;
+            fValues = new Object[nbAspects];
+            fStrings = new String[nbAspects];
+            fNumbers = new Object[nbAspects];
+            for (int i = 0; i < nbAspects; i++) {
+                fValues[i] = UNRESOLVED;
+                fNumbers[i] = UNRESOLVED;
+            }
+        }
+
+        public @Nullable ITmfEvent getEvent() {
+            return fEvent;
+        }
+
+        public boolean isKnown(int slot) {
+            return fEvent != null || fValues[slot] != UNRESOLVED;
+        }
+
+        public void set(int slot, Object value) {
+            fValues[slot] = value;
+        }
+
+        public @Nullable Object getValue(int slot, ITmfEventAspect<?> aspect) {
+            Object value = fValues[slot];
+            if (value == UNRESOLVED) {
+                ITmfEvent event = fEvent;
+                value = (event == null) ? null : aspect.resolve(event);
+                fValues[slot] = value;
+            }
+            return value;
+        }
+
+        /* Must be called after getValue() returned a non-null value */
+        public String getString(int slot) {
+            String string = fStrings[slot];
+            if (string == null) {
+                string = fValues[slot].toString();
+                fStrings[slot] = string;
+            }
+            return string;
+        }
+
+        /* Must be called after getValue() returned a non-null value */
+        public @Nullable Number getNumber(int slot) {
+            Object number = fNumbers[slot];
+            if (number == UNRESOLVED) {
+                number = toNumber(fValues[slot]);
+                fNumbers[slot] = number;
+            }
+            return (Number) number;
+        }
+    }
+
+    /* Same conversion as TmfFilterCompareNode */
+    private static @Nullable Number toNumber(Object value) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        try {
+            return Long.decode(value.toString());
+        } catch (NumberFormatException e) {
+        }
+        try {
+            return NumberFormat.getInstance().parse(value.toString());
+        } catch (ParseException e) {
+        }
+        return null;
+    }
+
+    // ------------------------------------------------------------------------
+    // Predicates
+    // ------------------------------------------------------------------------
+
+    private abstract static class Predicate {
+
+        /** Test an event */
+        public abstract boolean test(EventValues values);
+
+        /**
+         * Evaluate the predicate on partially known values
+         *
+         * @return the result, or null if it depends on unknown values
+         */
+        public abstract @Nullable Boolean evaluate(EventValues values);
+
+        /** Relative cost of a test, to order the children of a node */
+        public abstract int getCost();
+    }
+
+    private static final class Constant extends Predicate {
+        private static final Constant TRUE = new Constant(true);
+        private static final Constant FALSE = new Constant(false);
+
+        private final boolean fValue;
+
+        private Constant(boolean value) {
+            fValue = value;
+        }
+
+        public static Constant of(boolean value) {
+            return value ? TRUE : FALSE;
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            return fValue;
+        }
+
+        @Override
+        public Boolean evaluate(EventValues values) {
+            return fValue;
+        }
+
+        @Override
+        public int getCost() {
+            return 0;
+        }
+    }
+
+    /** Any filter, evaluated by itself */
+    private static final class Opaque extends Predicate {
+        private final ITmfFilter fFilter;
+
+        public Opaque(ITmfFilter filter) {
+            fFilter = filter;
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            return fFilter.matches(values.getEvent());
+        }
+
+        @Override
+        public @Nullable Boolean evaluate(EventValues values) {
+            ITmfEvent event = values.getEvent();
+            return (event == null) ? null : fFilter.matches(event);
+        }
+
+        @Override
+        public int getCost() {
+            return 10;
+        }
+    }
+
+    /** AND of the children, or OR of the children, optionally negated */
+    private static final class Composite extends Predicate {
+        private final Predicate[] fChildren;
+        private final boolean fAnd;
+        private final boolean fNot;
+        private final int fCost;
+
+        public Composite(List<Predicate> children, boolean and, boolean not) {
+            fChildren = children.toArray(new Predicate[children.size()]);
+            fAnd = and;
+            fNot = not;
+            int cost = 0;
+            for (Predicate child : fChildren) {
+                cost += child.getCost();
+            }
+            fCost = cost;
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            for (Predicate child : fChildren) {
+                if (child.test(values) != fAnd) {
+                    return fAnd ? fNot : !fNot;
+                }
+            }
+            return result();
+        }
+
+        @Override
+        public @Nullable Boolean evaluate(EventValues values) {
+            boolean unknown = false;
+            for (Predicate child : fChildren) {
+                Boolean result = child.evaluate(values);
+                if (result == null) {
+                    unknown = true;
+                } else if (result != fAnd) {
+                    return fAnd ? fNot : !fNot;
+                }
+            }
+            return unknown ? null : result();
+        }
+
+        /* Result when no child decided, see TmfFilterAndNode and TmfFilterOrNode */
+        private boolean result() {
+            return fAnd ? !fNot : false;
+        }
+
+        @Override
+        public int getCost() {
+            return fCost;
+        }
+    }
+
+    private static final class TraceType extends Predicate {
+        private final @Nullable Class<? extends ITmfTrace> fTraceClass;
+        private final @Nullable String fTraceTypeId;
+        private final Predicate fChild;
+
+        public TraceType(TmfFilterTraceTypeNode node, Predicate child) {
+            fTraceClass = node.getTraceClass();
+            fTraceTypeId = node.getTraceTypeId();
+            fChild = child;
+        }
+
+        private boolean matchesTrace(ITmfTrace trace) {
+            String traceTypeId = fTraceTypeId;
+            return trace.getClass().equals(fTraceClass) &&
+                    (traceTypeId == null || traceTypeId.equals(trace.getTraceTypeId()));
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            ITmfEvent event = values.getEvent();
+            return event != null && matchesTrace(event.getTrace()) && fChild.test(values);
+        }
+
+        @Override
+        public @Nullable Boolean evaluate(EventValues values) {
+            ITmfEvent event = values.getEvent();
+            if (event != null) {
+                return test(values);
+            }
+            return Boolean.FALSE.equals(fChild.evaluate(values)) ? Boolean.FALSE : null;
+        }
+
+        @Override
+        public int getCost() {
+            return 1 + fChild.getCost();
+        }
+    }
+
+    /** Test of the value of an event aspect */
+    private abstract static class AspectTest extends Predicate {
+        private final int fSlot;
+        private final ITmfEventAspect<?> fAspect;
+        private final boolean fNullResult;
+
+        protected AspectTest(int slot, ITmfEventAspect<?> aspect, boolean nullResult) {
+            fSlot = slot;
+            fAspect = aspect;
+            fNullResult = nullResult;
+        }
+
+        @Override
+        public final boolean test(EventValues values) {
+            Object value = values.getValue(fSlot, fAspect);
+            if (value == null) {
+                return fNullResult;
+            }
+            return testValue(values, fSlot, value);
+        }
+
+        @Override
+        public final @Nullable Boolean evaluate(EventValues values) {
+            if (!values.isKnown(fSlot)) {
+                return null;
+            }
+            return test(values);
+        }
+
+        protected abstract boolean testValue(EventValues values, int slot, Object value);
+    }
+
+    private static final class EqualsTest extends AspectTest {
+        private final String fValue;
+        private final boolean fIgnoreCase;
+        private final boolean fNot;
+
+        public EqualsTest(int slot, TmfFilterEqualsNode node) {
+            super(slot, node.getEventAspect(), node.isNot());
+            fValue = node.getValue();
+            fIgnoreCase = node.isIgnoreCase();
+            fNot = node.isNot();
+        }
+
+        @Override
+        protected boolean testValue(EventValues values, int slot, Object value) {
+            String string = values.getString(slot);
+            return (fIgnoreCase ? string.equalsIgnoreCase(fValue) : string.equals(fValue)) ^ fNot;
+        }
+
+        @Override
+        public int getCost() {
+            return 2;
+        }
+    }
+
+    private static final class ContainsTest extends AspectTest {
+        private final String fValue;
+        private final boolean fIgnoreCase;
+        private final boolean fNot;
+
+        public ContainsTest(int slot, TmfFilterContainsNode node) {
+            super(slot, node.getEventAspect(), node.isNot());
+            fIgnoreCase = node.isIgnoreCase();
+            fValue = fIgnoreCase ? node.getValue().toUpperCase() : node.getValue();
+            fNot = node.isNot();
+        }
+
+        @Override
+        protected boolean testValue(EventValues values, int slot, Object value) {
+            String string = values.getString(slot);
+            return (fIgnoreCase ? string.toUpperCase().contains(fValue) : string.contains(fValue)) ^ fNot;
+        }
+
+        @Override
+        public int getCost() {
+            return fIgnoreCase ? 4 : 3;
+        }
+    }
+
+    private static final class MatchesTest extends AspectTest {
+        private final Pattern fPattern;
+        private final boolean fNot;
+
+        public MatchesTest(int slot, TmfFilterMatchesNode node, Pattern pattern) {
+            super(slot, node.getEventAspect(), node.isNot());
+            fPattern = pattern;
+            fNot = node.isNot();
+        }
+
+        @Override
+        protected boolean testValue(EventValues values, int slot, Object value) {
+            return fPattern.matcher(values.getString(slot)).find() ^ fNot;
+        }
+
+        @Override
+        public int getCost() {
+            return 6;
+        }
+    }
+
+    private static final class CompareTest extends AspectTest {
+        private final TmfFilterCompareNode.Type fType;
+        private final int fResult;
+        private final boolean fNot;
+        private final String fValue;
+        private final @Nullable Number fValueNumber;
+        private final @Nullable ITmfTimestamp fValueTimestamp;
+        private final TmfTimestampFormat fTimestampFormat;
+
+        public CompareTest(int slot, TmfFilterCompareNode node, TmfTimestampFormat timestampFormat, @Nullable Number valueNumber, @Nullable ITmfTimestamp valueTimestamp) {
+            super(slot, node.getEventAspect(), false);
+            fType = node.getType();
+            fResult = node.getResult();
+            fNot = node.isNot();
+            fValue = node.getValue();
+            fValueNumber = valueNumber;
+            fValueTimestamp = valueTimestamp;
+            fTimestampFormat = timestampFormat;
+        }
+
+        @Override
+        protected boolean testValue(EventValues values, int slot, Object value) {
+            switch (fType) {
+            case NUM:
+                Number reference = fValueNumber;
+                Number number = values.getNumber(slot);
+                if (reference == null || number == null) {
+                    return false;
+                }
+                if (reference instanceof Double || number instanceof Double || number instanceof Float) {
+                    return (Double.compare(number.doubleValue(), reference.doubleValue()) == fResult) ^ fNot;
+                }
+                return (Long.compare(number.longValue(), reference.longValue()) == fResult) ^ fNot;
+            case ALPHA:
+                return ((int) Math.signum(values.getString(slot).compareTo(fValue)) == fResult) ^ fNot;
+            case TIMESTAMP:
+                ITmfTimestamp timestamp = toTimestamp(values, slot, value);
+                if (fValueTimestamp == null || timestamp == null) {
+                    return false;
+                }
+                return ((int) Math.signum(timestamp.compareTo(fValueTimestamp)) == fResult) ^ fNot;
+            default:
+                return false;
+            }
+        }
+
+        private @Nullable ITmfTimestamp toTimestamp(EventValues values, int slot, Object value) {
+            if (value instanceof ITmfTimestamp) {
+                return (ITmfTimestamp) value;
+            }
+            try {
+                return TmfTimestamp.fromNanos(fTimestampFormat.parseValue(values.getString(slot)));
+            } catch (ParseException e) {
+            }
+            return null;
+        }
+
+        @Override
+        public int getCost() {
+            return (fType == TmfFilterCompareNode.Type.TIMESTAMP) ? 3 : 2;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Compiler
+    // ------------------------------------------------------------------------
+
+    private static final class Compiler {
+
+        private final List<ITmfEventAspect<?>> fAspects = new ArrayList<>();
+
+        public Predicate compile(ITmfFilter filter) {
+            /* Only the exact classes are known, subclasses may change matches() */
+            Class<?> nodeClass = filter.getClass();
+            if (nodeClass == TmfFilterRootNode.class) {
+                return compileComposite((ITmfFilterTreeNode) filter, true, false);
+            } else if (nodeClass == TmfFilterAndNode.class) {
+                TmfFilterAndNode node = (TmfFilterAndNode) filter;
+                return compileComposite(node, true, node.isNot());
+            } else if (nodeClass == TmfFilterOrNode.class) {
+                TmfFilterOrNode node = (TmfFilterOrNode) filter;
+                return compileComposite(node, false, node.isNot());
+            } else if (nodeClass == TmfFilterNode.class || nodeClass == TmfFilterObjectNode.class) {
+                return compileComposite((ITmfFilterTreeNode) filter, false, false);
+            } else if (nodeClass == TmfFilterTraceTypeNode.class) {
+                TmfFilterTraceTypeNode node = (TmfFilterTraceTypeNode) filter;
+                return new TraceType(node, compileComposite(node, true, false));
+            } else if (nodeClass == TmfFilterEqualsNode.class) {
+                return compileEquals((TmfFilterEqualsNode) filter);
+            } else if (nodeClass == TmfFilterContainsNode.class) {
+                return compileContains((TmfFilterContainsNode) filter);
+            } else if (nodeClass == TmfFilterMatchesNode.class) {
+                return compileMatches((TmfFilterMatchesNode) filter);
+            } else if (nodeClass == TmfFilterCompareNode.class) {
+                return compileCompare((TmfFilterCompareNode) filter);
+            }
+            return new Opaque(filter);
+        }
+
+        private Predicate compileComposite(ITmfFilterTreeNode node, boolean and, boolean not) {
+            List<Predicate> children = new ArrayList<>();
+            for (ITmfFilterTreeNode child : node.getChildren()) {
+                Predicate predicate = compile(child);
+                if (predicate instanceof Composite && ((Composite) predicate).fAnd == and && !((Composite) predicate).fNot) {
+                    /* Merge a nested node of the same kind */
+                    for (Predicate grandChild : ((Composite) predicate).fChildren) {
+                        children.add(grandChild);
+                    }
+                } else if (predicate instanceof Constant) {
+                    if (((Constant) predicate).fValue != and) {
+                        /* This child decides for all the others */
+                        return Constant.of(and ? not : !not);
+                    }
+                    /* A child that never decides can be dropped */
+                } else {
+                    children.add(predicate);
+                }
+            }
+            if (children.isEmpty()) {
+                return Constant.of(and ? !not : false);
+            }
+            if (children.size() == 1 && !not) {
+                return children.get(0);
+            }
+            children.sort(Comparator.comparingInt(Predicate::getCost));
+            return new Composite(children, and, not);
+        }
+
+        private int getSlot(ITmfEventAspect<?> aspect) {
+            int slot = fAspects.indexOf(aspect);
+            if (slot < 0) {
+                slot = fAspects.size();
+                fAspects.add(aspect);
+            }
+            return slot;
+        }
+
+        private Predicate compileEquals(TmfFilterEqualsNode node) {
+            ITmfEventAspect<?> aspect = node.getEventAspect();
+            if (aspect == null) {
+                return Constant.of(node.isNot());
+            }
+            return new EqualsTest(getSlot(aspect), node);
+        }
+
+        private Predicate compileContains(TmfFilterContainsNode node) {
+            ITmfEventAspect<?> aspect = node.getEventAspect();
+            if (aspect == null) {
+                return Constant.of(node.isNot());
+            }
+            if (node.getValue() == null) {
+                return new Opaque(node);
+            }
+            return new ContainsTest(getSlot(aspect), node);
+        }
+
+        private Predicate compileMatches(TmfFilterMatchesNode node) {
+            ITmfEventAspect<?> aspect = node.getEventAspect();
+            String regex = node.getRegex();
+            Pattern pattern = null;
+            if (regex != null) {
+                try {
+                    pattern = Pattern.compile(regex, Pattern.DOTALL);
+                } catch (PatternSyntaxException e) {
+                }
+            }
+            if (aspect == null || pattern == null) {
+                return Constant.of(node.isNot());
+            }
+            return new MatchesTest(getSlot(aspect), node, pattern);
+        }
+
+        private Predicate compileCompare(TmfFilterCompareNode node) {
+            ITmfEventAspect<?> aspect = node.getEventAspect();
+            String value = node.getValue();
+            if (aspect == null || !node.hasValidValue()) {
+                return Constant.FALSE;
+            }
+            /* Parse the value once, like TmfFilterCompareNode#setValue() */
+            TmfTimestampFormat timestampFormat = new TmfTimestampFormat("T.SSSSSSSSS"); //$NON-NLS-1$
+            Number valueNumber = null;
+            ITmfTimestamp valueTimestamp = null;
+            if (node.getType() == TmfFilterCompareNode.Type.NUM) {
+                valueNumber = toNumber(value);
+            } else if (node.getType() == TmfFilterCompareNode.Type.TIMESTAMP) {
+                try {
+                    valueTimestamp = TmfTimestamp.fromNanos(timestampFormat.parseValue(value));
+                } catch (ParseException e) {
+                    return Constant.FALSE;
+                }
+            }
+            return new CompareTest(getSlot(aspect), node, timestampFormat, valueNumber, valueTimestamp);
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomEventAspects;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -40,12 +41,15 @@ import org.eclipse.tracecompass.tmf.core.io.BufferedRandomAccessFile;
 import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceDefinition.InputLine;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTraceRangeUpdatedSignal;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfParallelIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndexer;
@@ -59,7 +63,7 @@ import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
  *
  * @author Patrick Tassé
  */
-public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexable {
+public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITmfParallelIndexable {
 
     private static final TmfLongLocation NULL_LOCATION = new TmfLongLocation(-1L);
     private static final int DEFAULT_CACHE_SIZE = 100;
@@ -165,23 +169,7 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
             } else if (location.getLocationInfo() instanceof Long) {
                 fFile.seek((Long) location.getLocationInfo());
             }
-            long rawPos = fFile.getFilePointer();
-            String line = fFile.getNextLine();
-            while (line != null) {
-                for (final InputLine input : getFirstLines()) {
-                    final Matcher matcher = input.getPattern().matcher(line);
-                    if (matcher.matches()) {
-                        context.setLocation(new TmfLongLocation(rawPos));
-                        context.firstLineMatcher = matcher;
-                        context.firstLine = line;
-                        context.nextLineLocation = fFile.getFilePointer();
-                        context.inputLine = input;
-                        return context;
-                    }
-                }
-                rawPos = fFile.getFilePointer();
-                line = fFile.getNextLine();
-            }
+            findFirstLine(fFile, context);
             return context;
         } catch (final FileNotFoundException e) {
             Activator.logError("Error seeking event. File not found: " + getPath(), e); //$NON-NLS-1$
@@ -193,6 +181,31 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
 
     }
 
+    /**
+     * Set up the context at the first line matching one of the first lines of
+     * the definition, starting from the current position of the file.
+     */
+    private void findFirstLine(final BufferedRandomAccessFile file, final CustomTxtTraceContext context) throws IOException {
+        long rawPos = file.getFilePointer();
+        String line = file.getNextLine();
+        while (line != null) {
+            for (final InputLine input : getFirstLines()) {
+                final Matcher matcher = input.getPattern().matcher(line);
+                if (matcher.matches()) {
+                    context.setLocation(new TmfLongLocation(rawPos));
+                    context.firstLineMatcher = matcher;
+                    context.firstLine = line;
+                    context.nextLineLocation = file.getFilePointer();
+                    context.inputLine = input;
+                    return;
+                }
+            }
+            rawPos = file.getFilePointer();
+            line = file.getNextLine();
+        }
+        context.setLocation(NULL_LOCATION);
+    }
+
     @Override
     public synchronized TmfContext seekEvent(final double ratio) {
         if (fFile == null) {
@@ -262,8 +275,10 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         if (!(tmfContext instanceof CustomTxtTraceContext)) {
             return null;
         }
+        return parse((CustomTxtTraceContext) tmfContext, fFile);
+    }
 
-        final CustomTxtTraceContext context = (CustomTxtTraceContext) tmfContext;
+    private CustomTxtEvent parse(final CustomTxtTraceContext context, final BufferedRandomAccessFile file) {
         if (context.getLocation() == null || !(context.getLocation().getLocationInfo() instanceof Long) || NULL_LOCATION.equals(context.getLocation())) {
             return null;
         }
@@ -278,11 +293,11 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         }
 
         try {
-            if (fFile.getFilePointer() != context.nextLineLocation) {
-                fFile.seek(context.nextLineLocation);
+            if (file.getFilePointer() != context.nextLineLocation) {
+                file.seek(context.nextLineLocation);
             }
-            long rawPos = fFile.getFilePointer();
-            String line = fFile.getNextLine();
+            long rawPos = file.getFilePointer();
+            String line = file.getNextLine();
             while (line != null) {
                 boolean processed = false;
                 if (currentInput == null) {
@@ -292,7 +307,7 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                             context.setLocation(new TmfLongLocation(rawPos));
                             context.firstLineMatcher = matcher;
                             context.firstLine = line;
-                            context.nextLineLocation = fFile.getFilePointer();
+                            context.nextLineLocation = file.getFilePointer();
                             context.inputLine = input;
                             return event;
                         }
@@ -307,7 +322,7 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                                     context.setLocation(new TmfLongLocation(rawPos));
                                     context.firstLineMatcher = matcher;
                                     context.firstLine = line;
-                                    context.nextLineLocation = fFile.getFilePointer();
+                                    context.nextLineLocation = file.getFilePointer();
                                     context.inputLine = input;
                                     return event;
                                 }
@@ -384,8 +399,8 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                         ((StringBuffer) event.getContentValue()).append("\n").append(line); //$NON-NLS-1$
                     }
                 }
-                rawPos = fFile.getFilePointer();
-                line = fFile.getNextLine();
+                rawPos = file.getFilePointer();
+                line = file.getNextLine();
             }
         } catch (final IOException e) {
             Activator.logError("Error seeking event. File: " + getPath(), e); //$NON-NLS-1$
@@ -500,6 +515,105 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         return new TmfBTreeTraceIndexer(this, interval);
     }
 
+    /**
+     * The events are parsed with the definition only, which is not modified,
+     * so they can be parsed concurrently.
+     *
+     * @since 2.1
+     */
+    @Override
+    public boolean isParallelIndexable() {
+        return true;
+    }
+
+    /**
+     * @since 2.1
+     */
+    @Override
+    public long getDataSize() {
+        return new File(getPath()).length();
+    }
+
+    /**
+     * @since 2.1
+     */
+    @Override
+    public ChunkReader createChunkReader(long position) throws IOException {
+        return new CustomTxtChunkReader(position);
+    }
+
+    /**
+     * @since 2.1
+     */
+    @Override
+    public synchronized void updateIndexedRange(long nbEvents, TmfTimeRange range) {
+        if (getNbEvents() < nbEvents) {
+            setNbEvents(nbEvents);
+        }
+        ITmfTimestamp startTime = getStartTime();
+        if (startTime.equals(TmfTimestamp.BIG_BANG) || startTime.compareTo(range.getStartTime()) > 0) {
+            setStartTime(range.getStartTime());
+        }
+        ITmfTimestamp endTime = getEndTime();
+        if (endTime.equals(TmfTimestamp.BIG_CRUNCH) || endTime.compareTo(range.getEndTime()) < 0) {
+            setEndTime(range.getEndTime());
+        }
+    }
+
+    /**
+     * Reader of the events from a position with its own file, so that it does
+     * not lock the trace. The event boundaries depend on the state of the
+     * parser, so skipping an event parses it.
+     */
+    private class CustomTxtChunkReader implements ChunkReader {
+
+        private final BufferedRandomAccessFile fChunkFile;
+        private final CustomTxtTraceContext fContext = new CustomTxtTraceContext(NULL_LOCATION, ITmfContext.UNKNOWN_RANK);
+
+        public CustomTxtChunkReader(long position) throws IOException {
+            fChunkFile = new BufferedRandomAccessFile(getPath(), "r"); //$NON-NLS-1$
+            try {
+                if (position > 0) {
+                    // Skip to the first line starting at or after the position
+                    fChunkFile.seek(position - 1);
+                    fChunkFile.getNextLine();
+                }
+                findFirstLine(fChunkFile, fContext);
+            } catch (IOException e) {
+                fChunkFile.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public long getPosition() {
+            if (NULL_LOCATION.equals(fContext.getLocation())) {
+                return -1;
+            }
+            return (Long) fContext.getLocation().getLocationInfo();
+        }
+
+        @Override
+        public ITmfLocation getLocation() {
+            return fContext.getLocation();
+        }
+
+        @Override
+        public boolean skipEvent() {
+            return readEvent() != null;
+        }
+
+        @Override
+        public @Nullable ITmfEvent readEvent() {
+            return parse(fContext, fChunkFile);
+        }
+
+        @Override
+        public void close() throws IOException {
+            fChunkFile.close();
+        }
+    }
+
     @Override
     public String getTraceTypeId() {
         return fTraceTypeId;
@@ -15,15 +15,13 @@ package org.eclipse.tracecompass.tmf.core.parsers.custom;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -32,6 +30,7 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomEventAspects;
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomXmlElement;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
@@ -53,15 +52,9 @@ import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.EntityResolver;
-import org.xml.sax.ErrorHandler;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.xml.sax.SAXParseException;
 
 /**
  * Trace object for custom XML trace parsers.
@@ -79,6 +72,7 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
     private final ITmfEventField fRootField;
     private final CustomXmlInputElement fRecordInputElement;
     private BufferedRandomAccessFile fFile;
+    private final XMLInputFactory fInputFactory = CustomXmlElement.createInputFactory();
     private final @NonNull String fTraceTypeId;
 
     private static final char SEPARATOR = ':';
@@ -278,9 +272,12 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
             }
             final StringBuffer elementBuffer = new StringBuffer("<"); //$NON-NLS-1$
             readElement(elementBuffer, fFile);
-            final Element element = parseElementBuffer(elementBuffer);
+            final CustomXmlElement element = parseElementBuffer(elementBuffer);
 
-            event = extractEvent(element, fRecordInputElement);
+            event = createEvent();
+            if (element != null) {
+                parseElement(element, event, fRecordInputElement);
+            }
             ((StringBuffer) event.getContentValue()).append(elementBuffer);
 
             long rawPos = fFile.getFilePointer();
@@ -302,45 +299,10 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         return event;
     }
 
-    private Element parseElementBuffer(final StringBuffer elementBuffer) {
+    private CustomXmlElement parseElementBuffer(final StringBuffer elementBuffer) {
         try {
-            final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            final DocumentBuilder db = dbf.newDocumentBuilder();
-
-            // The following allows xml parsing without access to the dtd
-            final EntityResolver resolver = new EntityResolver() {
-                @Override
-                public InputSource resolveEntity(final String publicId, final String systemId) {
-                    final String empty = ""; //$NON-NLS-1$
-                    final ByteArrayInputStream bais = new ByteArrayInputStream(empty.getBytes());
-                    return new InputSource(bais);
-                }
-            };
-            db.setEntityResolver(resolver);
-
-            // The following catches xml parsing exceptions
-            db.setErrorHandler(new ErrorHandler() {
-                @Override
-                public void error(final SAXParseException saxparseexception) throws SAXException {
-                }
-
-                @Override
-                public void warning(final SAXParseException saxparseexception) throws SAXException {
-                }
-
-                @Override
-                public void fatalError(final SAXParseException saxparseexception) throws SAXException {
-                    throw saxparseexception;
-                }
-            });
-
-            final Document doc = db.parse(new ByteArrayInputStream(elementBuffer.toString().getBytes()));
-            return doc.getDocumentElement();
-        } catch (final ParserConfigurationException e) {
-            Activator.logError("Error parsing element buffer. File:" + getPath(), e); //$NON-NLS-1$
-        } catch (final SAXException e) {
-            Activator.logError("Error parsing element buffer. File:" + getPath(), e); //$NON-NLS-1$
-        } catch (final IOException e) {
+            return CustomXmlElement.parse(fInputFactory, elementBuffer.toString());
+        } catch (final XMLStreamException e) {
             Activator.logError("Error parsing element buffer. File: " + getPath(), e); //$NON-NLS-1$
         }
         return null;
@@ -510,10 +472,15 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
      * @return The extracted event
      */
     public CustomXmlEvent extractEvent(final Element element, final CustomXmlInputElement inputElement) {
+        final CustomXmlEvent event = createEvent();
+        parseElement(element, event, inputElement);
+        return event;
+    }
+
+    private CustomXmlEvent createEvent() {
         CustomXmlEventType eventType = new CustomXmlEventType(checkNotNull(fDefinition.definitionName), fRootField);
         final CustomXmlEvent event = new CustomXmlEvent(fDefinition, this, TmfTimestamp.ZERO, eventType);
         event.setContent(new CustomEventContent(event, new StringBuffer()));
-        parseElement(element, event, inputElement);
         return event;
     }
 
@@ -547,6 +514,31 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         return;
     }
 
+    private static void parseElement(final CustomXmlElement element, final CustomXmlEvent event, final CustomXmlInputElement inputElement) {
+        String eventType = inputElement.getEventType();
+        if (eventType != null && event.getType() instanceof CustomEventType) {
+            ((CustomEventType) event.getType()).setName(eventType);
+        }
+        if (!inputElement.getInputTag().equals(Tag.IGNORE)) {
+            event.parseInput(element.summarize(new StringBuffer()).toString(), inputElement.getInputTag(), inputElement.getInputName(), inputElement.getInputAction(), inputElement.getInputFormat());
+        }
+        if (inputElement.getAttributes() != null) {
+            for (final CustomXmlInputAttribute attribute : inputElement.getAttributes()) {
+                event.parseInput(element.getAttribute(attribute.getAttributeName()), attribute.getInputTag(), attribute.getInputName(), attribute.getInputAction(), attribute.getInputFormat());
+            }
+        }
+        if (inputElement.getChildElements() != null) {
+            for (final CustomXmlElement childElement : element.getChildElements()) {
+                for (final CustomXmlInputElement child : inputElement.getChildElements()) {
+                    if (childElement.getName().equals(child.getElementName())) {
+                        parseElement(childElement, event, child);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Retrieve the trace definition.
      *
@@ -587,7 +579,7 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                     rafile.seek(rawPos + idx + 1); // +1 is for the <
                     final StringBuffer elementBuffer = new StringBuffer("<"); //$NON-NLS-1$
                     readElement(elementBuffer, rafile);
-                    final Element element = parseElementBuffer(elementBuffer);
+                    final CustomXmlElement element = parseElementBuffer(elementBuffer);
                     if (element != null) {
                         rafile.close();
                         return new TraceValidationStatus(CONFIDENCE, Activator.PLUGIN_ID);
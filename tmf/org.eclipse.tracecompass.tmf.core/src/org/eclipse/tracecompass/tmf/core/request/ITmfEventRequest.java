@@ -13,6 +13,8 @@
 
 package org.eclipse.tracecompass.tmf.core.request;
 
+import java.util.Set;
+
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -79,6 +81,20 @@ public interface ITmfEventRequest {
         return 0;
     }
 
+    /**
+     * Gets the names of the event types whose content is needed by this
+     * request. The events of the other types are still handled, in order, but
+     * the event provider may deliver them with only their timestamp and type,
+     * without decoding their content.
+     *
+     * @return the names of the event types, or null if the content of all the
+     *         events is needed
+     * @since 2.1
+     */
+    default @Nullable Set<String> getEventTypes() {
+        return null;
+    }
+
     /**
      * @return the index of the first event requested
      */
@@ -13,6 +13,7 @@
 
 package org.eclipse.tracecompass.tmf.core.request;
 
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -104,6 +105,8 @@ public abstract class TmfEventRequest implements ITmfEventRequest {
 
     private int fDependencyLevel;
 
+    private volatile @Nullable Set<String> fEventTypes = null;
+
     private @Nullable Throwable fFailureCause;
 
     // ------------------------------------------------------------------------
@@ -294,6 +297,14 @@ public abstract class TmfEventRequest implements ITmfEventRequest {
         return fDependencyLevel;
     }
 
+    /**
+     * @since 2.1
+     */
+    @Override
+    public @Nullable Set<String> getEventTypes() {
+        return fEventTypes;
+    }
+
     /**
      * @since 2.0
      */
@@ -322,6 +333,20 @@ public abstract class TmfEventRequest implements ITmfEventRequest {
         setIndex(index);
     }
 
+    /**
+     * Set the names of the event types whose content is needed by this
+     * request, see {@link #getEventTypes()}. This must be called before the
+     * request is sent.
+     *
+     * @param eventTypes
+     *            the names of the event types, or null if the content of all
+     *            the events is needed
+     * @since 2.1
+     */
+    public void setEventTypes(@Nullable Set<String> eventTypes) {
+        fEventTypes = eventTypes;
+    }
+
     // ------------------------------------------------------------------------
     // Operators
     // ------------------------------------------------------------------------
@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.tmf.core.statesystem;
 
+import java.util.Set;
+
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
@@ -98,6 +100,20 @@ public interface ITmfStateProvider {
      */
     void processEvent(ITmfEvent event);
 
+    /**
+     * Get the names of the event types this state provider handles. The
+     * content of the other events may not be decoded when building the state
+     * system, they are still passed to {@link #processEvent} with their
+     * timestamp and type.
+     *
+     * @return the names of the handled event types, or null if the state
+     *         provider may need the content of any event
+     * @since 2.1
+     */
+    default @Nullable Set<String> getEventTypes() {
+        return null;
+    }
+
     /**
      * Provide a non-initialized copy of this state input plugin. You will need
      * to call {@link #assignTargetStateSystem} on it to assign its target.
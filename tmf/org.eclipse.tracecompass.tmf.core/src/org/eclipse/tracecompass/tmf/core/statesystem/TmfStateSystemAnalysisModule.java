@@ -26,6 +26,7 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
+import org.eclipse.tracecompass.internal.tmf.core.analysis.TmfAnalysisSession;
 import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialHistoryBackend;
 import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
@@ -139,6 +140,21 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         return StateSystemBackendType.FULL;
     }
 
+    /**
+     * Get the number of history trees to build in parallel for a
+     * {@link StateSystemBackendType#FULL} history. The attributes are then
+     * partitioned across the trees, each one written by its own thread, which
+     * helps analyses that insert a lot of intervals.
+     *
+     * @return The number of partitions of the history, 1 to use a single
+     *         history tree
+     * @since 2.1
+     */
+    protected int getNbHistoryPartitions() {
+        /* Using a single history tree by default, sub-classes can override */
+        return 1;
+    }
+
     /**
      * Get the supplementary file name where to save this state system. The
      * default is the ID of the analysis followed by the extension.
@@ -207,17 +223,18 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
 
         String id = getId();
 
+        ITmfTrace trace = getTrace();
+        if (trace == null) {
+            // Analysis was cancelled in the meantime
+            analysisReady(false);
+            return false;
+        }
+
         /* FIXME: State systems should make use of the monitor, to be cancelled */
         try {
             /* Get the state system according to backend */
             StateSystemBackendType backend = getBackendType();
 
-            ITmfTrace trace = getTrace();
-            if (trace == null) {
-                // Analysis was cancelled in the meantime
-                analysisReady(false);
-                return false;
-            }
             switch (backend) {
             case FULL: {
                 File htFile = getSsFile();
@@ -247,6 +264,9 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         } catch (TmfTraceException e) {
             analysisReady(false);
             return false;
+        } finally {
+            /* Do not make the other modules of the session wait for this one */
+            TmfAnalysisSession.withdraw(trace, this);
         }
         return !mon.isCanceled();
     }
@@ -318,8 +338,8 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         final int QUEUE_SIZE = 10000;
 
         try {
-            IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(
-                    id, htFile, provider.getVersion(), provider.getStartTime(), QUEUE_SIZE);
+            IStateHistoryBackend backend = StateHistoryBackendFactory.createPartitionedHistoryTreeBackendNewFile(
+                    id, htFile, provider.getVersion(), provider.getStartTime(), QUEUE_SIZE, getNbHistoryPartitions());
             fHtBackend = backend;
             fStateSystem = StateSystemFactory.newStateSystem(backend);
             provider.assignTargetStateSystem(fStateSystem);
@@ -497,7 +517,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
                     TmfStateSystemAnalysisModule.this.getDependencyLevel());
             this.sci = sp;
             trace = sci.getTrace();
-
+            setEventTypes(sci.getEventTypes());
         }
 
         @Override
@@ -597,8 +617,11 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
             return;
         }
         ITmfEventRequest request = new StateSystemEventRequest(stateProvider, timeRange, fNbRead);
-        stateProvider.getTrace().sendRequest(request);
         fRequest = request;
+        ITmfTrace trace = stateProvider.getTrace();
+        if (fNbRead > 0 || !TmfAnalysisSession.join(trace, this, request)) {
+            trace.sendRequest(request);
+        }
     }
 
     private static boolean isCompleteTrace(ITmfTrace trace) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -13,12 +13,18 @@
 
 package org.eclipse.tracecompass.tmf.core.statistics;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.statistics.TmfEventCountPyramid;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
@@ -35,6 +41,11 @@ import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
  * Queries are O(log n) wrt the size of the trace, and O(1) wrt to the size of
  * the time interval selected.
  *
+ * Once the histories are complete, the queries are answered from
+ * pre-aggregated event counts where they are exact, and only go to the
+ * histories for the times that fall inside a time bucket that has events. The
+ * histogram queries get the counts at all these times with one 2D query.
+ *
  * @author Alexandre Montplaisir
  */
 public class TmfStateStatistics implements ITmfStatistics {
@@ -49,6 +60,9 @@ public class TmfStateStatistics implements ITmfStatistics {
     /** The state system for event types */
     private final ITmfStateSystem typesStats;
 
+    /** The pre-aggregated event counts, once the state systems are complete */
+    private volatile @Nullable TmfEventCountPyramid fPyramid = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -84,6 +98,16 @@ public class TmfStateStatistics implements ITmfStatistics {
         return typesStats;
     }
 
+    /**
+     * Set the pre-aggregated event counts of the complete state systems
+     *
+     * @param pyramid
+     *            the event counts, or null to only use the state systems
+     */
+    void setEventCountPyramid(@Nullable TmfEventCountPyramid pyramid) {
+        fPyramid = pyramid;
+    }
+
     // ------------------------------------------------------------------------
     // ITmfStatistics
     // ------------------------------------------------------------------------
@@ -104,35 +128,32 @@ public class TmfStateStatistics implements ITmfStatistics {
         }
 
         /*
-         * We will do one state system query per "border", and save the
-         * differences between each border.
+         * We will get the event count at each "border", and save the
+         * differences between each border. For the last bucket, we'll stretch
+         * its end time to the end time of the requested range, in case it got
+         * truncated down.
          */
-        long prevTotal = (start == totalsStats.getStartTime()) ? 0 : getEventCountAt(start);
-        long curTime = start + increment;
-
-        long curTotal, count;
-        for (int i = 0; i < nb - 1; i++) {
-            curTotal = getEventCountAt(curTime);
-            count = curTotal - prevTotal;
-            list.add(count);
-
-            curTime += increment;
-            prevTotal = curTotal;
+        long[] borders = new long[nb + 1];
+        for (int i = 0; i < nb; i++) {
+            borders[i] = start + i * increment;
+        }
+        borders[nb] = end;
+        long[] totals = getEventCountsAt(borders, increment);
+        if (start == totalsStats.getStartTime()) {
+            totals[0] = 0;
+        }
+        for (int i = 0; i < nb; i++) {
+            list.add(totals[i + 1] - totals[i]);
         }
-
-        /*
-         * For the last bucket, we'll stretch its end time to the end time of
-         * the requested range, in case it got truncated down.
-         */
-        curTotal = getEventCountAt(end);
-        count = curTotal - prevTotal;
-        list.add(count);
-
         return list;
     }
 
     @Override
     public long getEventsTotal() {
+        TmfEventCountPyramid pyramid = fPyramid;
+        if (pyramid != null) {
+            return pyramid.getEventsTotal();
+        }
         long endTime = totalsStats.getCurrentEndTime();
         int count = 0;
 
@@ -153,6 +174,11 @@ public class TmfStateStatistics implements ITmfStatistics {
     @Override
     public Map<@NonNull String, @NonNull Long> getEventTypesTotal() {
         final Map<@NonNull String, @NonNull Long> map = new HashMap<>();
+        TmfEventCountPyramid pyramid = fPyramid;
+        if (pyramid != null) {
+            map.putAll(pyramid.getEventTypesTotal());
+            return map;
+        }
         long endTime = typesStats.getCurrentEndTime();
 
         try {
@@ -212,6 +238,20 @@ public class TmfStateStatistics implements ITmfStatistics {
             return map;
         }
 
+        TmfEventCountPyramid pyramid = fPyramid;
+        if (pyramid != null) {
+            Map<String, Long> endCounts = pyramid.getEventTypesCountAt(endTime);
+            Map<String, Long> startCounts = (startTime == typesStats.getStartTime()) ?
+                    Collections.emptyMap() : pyramid.getEventTypesCountAt(startTime - 1);
+            if (endCounts != null && startCounts != null) {
+                for (Entry<String, Long> entry : endCounts.entrySet()) {
+                    Long countAtStart = startCounts.get(entry.getKey());
+                    map.put(entry.getKey(), entry.getValue() - (countAtStart == null ? 0 : countAtStart));
+                }
+                return map;
+            }
+        }
+
         try {
             /* Get the list of quarks, one for each even type in the database */
             int quark = typesStats.getQuarkAbsolute(Attributes.EVENT_TYPES);
@@ -275,6 +315,18 @@ public class TmfStateStatistics implements ITmfStatistics {
         long ts = checkStartTime(timestamp, totalsStats);
         ts = checkEndTime(ts, totalsStats);
 
+        TmfEventCountPyramid pyramid = fPyramid;
+        if (pyramid != null) {
+            /*
+             * Before the first event, the state system has no value yet, let
+             * it answer as it always did.
+             */
+            long count = pyramid.getEventCountAt(ts);
+            if (count > 0) {
+                return count;
+            }
+        }
+
         try {
             final int quark = totalsStats.getQuarkAbsolute(Attributes.TOTAL);
             long count = totalsStats.querySingleState(ts, quark).getStateValue().unboxInt();
@@ -289,6 +341,74 @@ public class TmfStateStatistics implements ITmfStatistics {
         return 0;
     }
 
+    /**
+     * Get the event counts at ascending times, spaced by a resolution except
+     * maybe the last one. The counts that the pre-aggregated event counts
+     * don't know exactly are read with one 2D query of the totals history.
+     */
+    private long[] getEventCountsAt(long[] times, long resolution) {
+        long[] counts = new long[times.length];
+        List<Integer> unknown = new ArrayList<>();
+        TmfEventCountPyramid pyramid = fPyramid;
+        for (int i = 0; i < times.length; i++) {
+            long ts = checkEndTime(checkStartTime(times[i], totalsStats), totalsStats);
+            long count = (pyramid == null ? TmfEventCountPyramid.UNKNOWN : pyramid.getEventCountAt(ts));
+            /* Before the first event, let the state system answer */
+            if (count > 0) {
+                counts[i] = count;
+            } else {
+                unknown.add(i);
+            }
+        }
+        if (unknown.size() <= 1 || resolution <= 0) {
+            for (int i : unknown) {
+                counts[i] = getEventCountAt(times[i]);
+            }
+            return counts;
+        }
+
+        List<ITmfStateInterval> intervals = new ArrayList<>();
+        try {
+            final int quark = totalsStats.getQuarkAbsolute(Attributes.TOTAL);
+            long first = checkEndTime(checkStartTime(times[unknown.get(0)], totalsStats), totalsStats);
+            long last = checkEndTime(checkStartTime(times[unknown.get(unknown.size() - 1)], totalsStats), totalsStats);
+            for (ITmfStateInterval interval : totalsStats.query2D(Collections.singleton(quark), first, last, resolution)) {
+                intervals.add(interval);
+            }
+        } catch (StateSystemDisposedException e) {
+            /* Assume there is no (more) events */
+            return counts;
+        } catch (AttributeNotFoundException e) {
+            e.printStackTrace();
+            return counts;
+        }
+        intervals.sort(Comparator.comparingLong(ITmfStateInterval::getStartTime));
+        for (int i : unknown) {
+            long ts = checkEndTime(checkStartTime(times[i], totalsStats), totalsStats);
+            ITmfStateInterval interval = findInterval(intervals, ts);
+            /* Times clamped to the history may not be sampled, query them */
+            counts[i] = (interval == null ? getEventCountAt(times[i]) : interval.getStateValue().unboxInt());
+        }
+        return counts;
+    }
+
+    private static @Nullable ITmfStateInterval findInterval(List<ITmfStateInterval> intervals, long time) {
+        int low = 0;
+        int high = intervals.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            ITmfStateInterval interval = intervals.get(mid);
+            if (interval.getEndTime() < time) {
+                low = mid + 1;
+            } else if (interval.getStartTime() > time) {
+                high = mid - 1;
+            } else {
+                return interval;
+            }
+        }
+        return null;
+    }
+
     private static long checkStartTime(long initialStart, ITmfStateSystem ss) {
         long start = initialStart;
         if (start < ss.getStartTime()) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2015 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -15,7 +15,14 @@ package org.eclipse.tracecompass.tmf.core.statistics;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.io.File;
+import java.io.IOException;
+
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.statistics.TmfEventCountPyramid;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.StateSystemBuilderUtils;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
@@ -30,6 +37,7 @@ import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.statistics.TmfStateStatistics.Attributes;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 
 /**
  * The analysis module building the "event types" statistics state system.
@@ -48,6 +56,10 @@ public class TmfStatisticsEventTypesModule extends TmfStateSystemAnalysisModule
 
     private static final @NonNull String NAME = "TMF Statistics, events per type"; //$NON-NLS-1$
 
+    private static final @NonNull String PYRAMID_FILE_NAME = "statistics-counts.dat"; //$NON-NLS-1$
+
+    private volatile @Nullable TmfEventCountPyramid fPyramid = null;
+
     /**
      * Constructor
      */
@@ -67,6 +79,46 @@ public class TmfStatisticsEventTypesModule extends TmfStateSystemAnalysisModule
         return "statistics-types.ht"; //$NON-NLS-1$
     }
 
+    /**
+     * Get the pre-aggregated event counts of the trace. They are built along
+     * with the state system, and saved next to it. Only available once the
+     * state system is complete.
+     *
+     * @return the event counts, or null if they are not available
+     */
+    @Nullable TmfEventCountPyramid getEventCountPyramid() {
+        TmfEventCountPyramid pyramid = fPyramid;
+        ITmfStateSystem ss = getStateSystem();
+        if (pyramid != null || ss == null || !ss.waitUntilBuilt(0)) {
+            return pyramid;
+        }
+        /* The state system was read from disk, read the counts saved with it */
+        File file = getPyramidFile();
+        if (file == null) {
+            return null;
+        }
+        try {
+            pyramid = TmfEventCountPyramid.read(file, StatsProviderEventTypes.VERSION);
+        } catch (IOException e) {
+            Activator.logError("Error reading the event counts " + file, e); //$NON-NLS-1$
+            return null;
+        }
+        if (pyramid == null || pyramid.getEndTime() != ss.getCurrentEndTime()) {
+            /* Not saved with this state system */
+            return null;
+        }
+        fPyramid = pyramid;
+        return pyramid;
+    }
+
+    private @Nullable File getPyramidFile() {
+        ITmfTrace trace = getTrace();
+        if (trace == null) {
+            return null;
+        }
+        return new File(TmfTraceManager.getSupplementaryFileDir(trace) + PYRAMID_FILE_NAME);
+    }
+
 
     /**
      * The state provider for traces statistics that use TmfStateStatistics. It
@@ -100,9 +152,12 @@ public class TmfStatisticsEventTypesModule extends TmfStateSystemAnalysisModule
 
         /**
          * Version number of this input handler. Please bump this if you modify the
-         * contents of the generated state history in some way.
+         * contents of the generated state history in some way. It is also
+         * recorded in the file of the event counts.
          */
-        private static final int VERSION = 3;
+        static final int VERSION = 3;
+
+        private final TmfEventCountPyramid.Builder fPyramidBuilder = new TmfEventCountPyramid.Builder();
 
         /**
          * Constructor
@@ -148,6 +203,7 @@ public class TmfStatisticsEventTypesModule extends TmfStateSystemAnalysisModule
 
                     ITmfStateValue value1 = TmfStateValue.newValueInt((int) (curVal + le.getNbLostEvents()));
                     ss.modifyAttribute(ts, value1, quark);
+                    fPyramidBuilder.addEvent(ts, eventName, le.getNbLostEvents(), false);
 
                     long lostEventsStartTime = le.getTimeRange().getStartTime().toNanos();
                     long lostEventsEndTime = le.getTimeRange().getEndTime().toNanos();
@@ -164,6 +220,7 @@ public class TmfStatisticsEventTypesModule extends TmfStateSystemAnalysisModule
                 /* Number of events of each type, globally */
                 quark = ss.getQuarkAbsoluteAndAdd(Attributes.EVENT_TYPES, eventName);
                 StateSystemBuilderUtils.incrementAttributeInt(ss, ts, quark, 1);
+                fPyramidBuilder.addEvent(ts, eventName, 1, true);
 
 //                /* Number of events per CPU */
 //                quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.STATISTICS, Attributes.EVENT_TYPES, eventName);
@@ -177,5 +234,20 @@ public class TmfStatisticsEventTypesModule extends TmfStateSystemAnalysisModule
                 e.printStackTrace();
             }
         }
+
+        @Override
+        public void done() {
+            TmfEventCountPyramid pyramid = fPyramidBuilder.build();
+            File file = getPyramidFile();
+            if (pyramid == null || file == null) {
+                return;
+            }
+            try {
+                pyramid.write(file, VERSION);
+            } catch (IOException e) {
+                Activator.logError("Error writing the event counts " + file, e); //$NON-NLS-1$
+            }
+            fPyramid = pyramid;
+        }
     }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -43,7 +43,7 @@ public class TmfStatisticsModule extends TmfAbstractAnalysisModule
     private boolean fInitializationSucceeded;
 
     private final TmfStateSystemAnalysisModule totalsModule = new TmfStatisticsTotalsModule();
-    private final TmfStateSystemAnalysisModule eventTypesModule = new TmfStatisticsEventTypesModule();
+    private final TmfStatisticsEventTypesModule eventTypesModule = new TmfStatisticsEventTypesModule();
 
     private final CountDownLatch fInitialized = new CountDownLatch(1);
 
@@ -145,7 +145,8 @@ public class TmfStatisticsModule extends TmfAbstractAnalysisModule
             throw new IllegalStateException("TmfStatisticsModule : Sub-modules initialization succeeded but there is a null state system."); //$NON-NLS-1$
         }
 
-        fStatistics = new TmfStateStatistics(totalsSS, eventTypesSS);
+        TmfStateStatistics statistics = new TmfStateStatistics(totalsSS, eventTypesSS);
+        fStatistics = statistics;
 
         /* fStatistics is now set, consider this module initialized */
         analysisReady(true);
@@ -158,6 +159,9 @@ public class TmfStatisticsModule extends TmfAbstractAnalysisModule
                 eventTypesModule.waitForCompletion(monitor))) {
             return false;
         }
+
+        /* Now that the state systems are complete, answer from the counts */
+        statistics.setEventCountPyramid(eventTypesModule.getEventCountPyramid());
         return true;
     }
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -48,6 +48,14 @@ public class TmfTimeRange {
     private final ITmfTimestamp fStartTime;
     private final ITmfTimestamp fEndTime;
 
+    /**
+     * The bounds in nanoseconds, only valid if fNanos is set, when both bounds
+     * are nanosecond timestamps or the big bang and big crunch
+     */
+    private final long fStartNanos;
+    private final long fEndNanos;
+    private final boolean fNanos;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -61,6 +69,10 @@ public class TmfTimeRange {
     public TmfTimeRange(final ITmfTimestamp startTime, final ITmfTimestamp endTime) {
         fStartTime = startTime;
         fEndTime = endTime;
+        fNanos = (startTime == TmfTimestamp.BIG_BANG || startTime.getScale() == ITmfTimestamp.NANOSECOND_SCALE) &&
+                (endTime == TmfTimestamp.BIG_CRUNCH || endTime.getScale() == ITmfTimestamp.NANOSECOND_SCALE);
+        fStartNanos = (startTime == TmfTimestamp.BIG_BANG) ? Long.MIN_VALUE : startTime.getValue();
+        fEndNanos = (endTime == TmfTimestamp.BIG_CRUNCH) ? Long.MAX_VALUE : endTime.getValue();
     }
 
     // ------------------------------------------------------------------------
@@ -93,9 +105,29 @@ public class TmfTimeRange {
      * @return True if [startTime] <= [ts] <= [endTime]
      */
     public boolean contains(final ITmfTimestamp ts) {
+        if (fNanos && ts.getScale() == ITmfTimestamp.NANOSECOND_SCALE) {
+            return contains(ts.getValue());
+        }
         return (fStartTime.compareTo(ts) <= 0) && (fEndTime.compareTo(ts) >= 0);
     }
 
+    /**
+     * Check if a time in nanoseconds is within the time range. For ranges in
+     * nanoseconds, this compares the values directly, without creating any
+     * timestamp.
+     *
+     * @param nanos
+     *            The time to check, in nanoseconds
+     * @return True if [startTime] <= [nanos] <= [endTime]
+     * @since 2.1
+     */
+    public boolean contains(long nanos) {
+        if (fNanos) {
+            return (fStartNanos <= nanos) && (nanos <= fEndNanos);
+        }
+        return contains(TmfTimestamp.fromNanos(nanos));
+    }
+
     /**
      * Check if the time range is within the time range
      *
@@ -190,6 +222,11 @@ public class TmfTimeRange {
             return true;
         }
 
+        @Override
+        public boolean contains(long nanos) {
+            return true;
+        }
+
         @Override
         public boolean contains(TmfTimeRange range) {
             return true;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson, École Polytechnique de Montréal
+ * Copyright (c) 2009, 2016 Ericsson, École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -376,6 +376,13 @@ public abstract class TmfTimestamp implements ITmfTimestamp {
     public int compareTo(final ITmfTimestamp ts) {
         long value = getValue();
         int scale = getScale();
+        if (scale == ts.getScale() && scale != Integer.MAX_VALUE) {
+            /*
+             * Same scale, and neither is the big bang nor the big crunch: the
+             * values compare directly, without normalizing
+             */
+            return Long.compare(value, ts.getValue());
+        }
         // Check the corner cases (we can't use equals() because it uses
         // compareTo()...)
         if (BIG_BANG.equals(ts)) {
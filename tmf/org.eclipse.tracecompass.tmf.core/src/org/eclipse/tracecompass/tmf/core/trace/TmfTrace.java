@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson, École Polytechnique de Montréal
+ * Copyright (c) 2009, 2016 Ericsson, École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -32,6 +32,7 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.analysis.TmfAnalysisSession;
 import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModuleHelper;
 import org.eclipse.tracecompass.tmf.core.analysis.TmfAnalysisManager;
@@ -49,6 +50,7 @@ import org.eclipse.tracecompass.tmf.core.signal.TmfSignalManager;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTraceRangeUpdatedSignal;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTraceUpdatedSignal;
+import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.synchronization.ITmfTimestampTransform;
 import org.eclipse.tracecompass.tmf.core.synchronization.TimestampTransformFactory;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
@@ -59,6 +61,7 @@ import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpointI
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 
 /**
  * Abstract implementation of ITmfTrace.
@@ -298,7 +301,12 @@ public abstract class TmfTrace extends TmfEventProvider implements ITmfTrace, IT
             }
         }
 
-        /* Once all modules are initialized, automatic modules are executed */
+        /*
+         * Once all modules are initialized, automatic modules are executed. The
+         * state system analyses among them read the trace together.
+         */
+        Iterable<IAnalysisModule> automaticModules = Iterables.filter(getAnalysisModules(), IAnalysisModule::isAutomatic);
+        TmfAnalysisSession.open(this, Iterables.filter(automaticModules, TmfStateSystemAnalysisModule.class));
         for (IAnalysisModule module : getAnalysisModules()) {
             if (module.isAutomatic()) {
                 status.add(module.schedule());
@@ -584,10 +592,10 @@ public abstract class TmfTrace extends TmfEventProvider implements ITmfTrace, IT
         if (event instanceof ITmfLostEvent) {
             endTime = ((ITmfLostEvent) event).getTimeRange().getEndTime();
         }
-        if (fStartTime.equals(TmfTimestamp.BIG_BANG) || (fStartTime.compareTo(timestamp) > 0)) {
+        if (fStartTime == TmfTimestamp.BIG_BANG || (fStartTime.compareTo(timestamp) > 0)) {
             fStartTime = timestamp;
         }
-        if (fEndTime.equals(TmfTimestamp.BIG_CRUNCH) || (fEndTime.compareTo(endTime) < 0)) {
+        if (fEndTime == TmfTimestamp.BIG_CRUNCH || (fEndTime.compareTo(endTime) < 0)) {
             fEndTime = endTime;
         }
         if (context.hasValidRank()) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson, École Polytechnique de Montréal
+ * Copyright (c) 2009, 2016 Ericsson, École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -37,6 +37,7 @@ import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentContext;
 import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentLocation;
 import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfLocationArray;
+import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfTracePrefetcher;
 import org.eclipse.tracecompass.tmf.core.TmfCommonConstants;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
@@ -96,6 +97,13 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
      */
     public static final int DEFAULT_INDEX_PAGE_SIZE = 5000;
 
+    /**
+     * Number of events to read sequentially with a context before its traces
+     * are read ahead, when prefetching is enabled. Random accesses then stay
+     * on the caller's thread.
+     */
+    private static final int PREFETCH_THRESHOLD = 1024;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -105,6 +113,12 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
      */
     private boolean fInitialized = false;
 
+    /**
+     * Whether the traces are read ahead by reading threads. Off by default,
+     * see {@link #setPrefetching(boolean)}.
+     */
+    private volatile boolean fPrefetching = false;
+
     /**
      * Lock for synchronization methods. These methods cannot be 'synchronized'
      * since it makes it impossible to use an event request on the experiment
@@ -285,6 +299,43 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
         return seekEvent(request.getIndex());
     }
 
+    /**
+     * Set whether the traces of the experiment are read ahead.
+     * <p>
+     * When enabled, once a context has been used to read a number of events
+     * sequentially, each of its traces is read ahead, in batches, by a pool of
+     * reading threads. Picking the next event of the experiment then only
+     * merges events already read, so reading an experiment of many traces
+     * scales with the number of cores. Contexts used for random accesses are
+     * not affected.
+     * <p>
+     * The contexts of the traces of a prefetched experiment context are
+     * positioned ahead of it, and must not be used directly.
+     * <p>
+     * Prefetching is disabled by default. The events of each trace are then
+     * read on the reading threads instead of the caller's thread, and not all
+     * trace types have been checked for that: for example, the contexts of a
+     * text trace share the file of the trace. Callers that know their traces
+     * can enable it, typically for experiments of more than one trace.
+     *
+     * @param prefetching
+     *            Whether the traces should be read ahead
+     * @since 2.1
+     */
+    public void setPrefetching(boolean prefetching) {
+        fPrefetching = prefetching;
+    }
+
+    /**
+     * Return whether the traces of the experiment are read ahead
+     *
+     * @return true if the traces are read ahead by reading threads
+     * @since 2.1
+     */
+    public boolean isPrefetching() {
+        return fPrefetching;
+    }
+
     // ------------------------------------------------------------------------
     // ITmfTrace trace positioning
     // ------------------------------------------------------------------------
@@ -391,25 +442,13 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
         // trace
         final int lastTrace = expContext.getLastTrace();
         if (lastTrace != TmfExperimentContext.NO_TRACE) {
-            final ITmfContext traceContext = expContext.getContext(lastTrace);
-            expContext.setEvent(lastTrace, ((ITmfTrace) getChild(lastTrace)).getNext(traceContext));
+            readNextEvent(expContext, lastTrace);
             expContext.setLastTrace(TmfExperimentContext.NO_TRACE);
         }
 
-        // Scan the candidate events and identify the "next" trace to read from
-        int trace = TmfExperimentContext.NO_TRACE;
-        ITmfTimestamp timestamp = TmfTimestamp.BIG_CRUNCH;
-        for (int i = 0; i < length; i++) {
-            final ITmfEvent event = expContext.getEvent(i);
-
-            if (event != null) {
-                final ITmfTimestamp otherTS = event.getTimestamp();
-                if (otherTS.compareTo(timestamp) < 0) {
-                    trace = i;
-                    timestamp = otherTS;
-                }
-            }
-        }
+        // The trace with the earliest candidate event is the "next" trace to
+        // read from
+        int trace = expContext.getNextTrace();
 
         ITmfEvent event = null;
         if (trace != TmfExperimentContext.NO_TRACE) {
@@ -423,10 +462,14 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
                     throw new IllegalStateException();
                 }
 
-                // Update the experiment location
+                // Update the experiment location, with the location of the
+                // trace context right after reading this event
+                TmfTracePrefetcher prefetcher = expContext.getPrefetcher(trace);
+                ITmfLocation traceLocation = (prefetcher != null) ? prefetcher.getLocation() : traceContext.getLocation();
+                long traceRank = (prefetcher != null) ? prefetcher.getRank() : traceContext.getRank();
                 TmfLocationArray locationArray = new TmfLocationArray(
                         ((TmfExperimentLocation) expContext.getLocation()).getLocationInfo(),
-                        trace, traceContext.getLocation(), traceContext.getRank());
+                        trace, traceLocation, traceRank);
                 expContext.setLocation(new TmfExperimentLocation(locationArray));
             }
         }
@@ -434,6 +477,27 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
         return event;
     }
 
+    /**
+     * Read the next candidate event of a trace. Once a context has been read
+     * sequentially for a while, and if prefetching is enabled, the traces are
+     * read ahead by their own prefetcher.
+     */
+    private void readNextEvent(TmfExperimentContext expContext, int trace) {
+        final ITmfTrace child = (ITmfTrace) getChild(trace);
+        final ITmfContext traceContext = expContext.getContext(trace);
+        TmfTracePrefetcher prefetcher = expContext.getPrefetcher(trace);
+        if (prefetcher == null && fPrefetching && traceContext != null &&
+                expContext.increaseSequentialReads() >= PREFETCH_THRESHOLD) {
+            prefetcher = new TmfTracePrefetcher(child, traceContext);
+            expContext.setPrefetcher(trace, prefetcher);
+        }
+        if (prefetcher != null) {
+            expContext.setEvent(trace, prefetcher.next());
+        } else {
+            expContext.setEvent(trace, child.getNext(traceContext));
+        }
+    }
+
     @Override
     public ITmfTimestamp getInitialRangeOffset() {
 
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.trace.indexer;
+
+import java.io.IOException;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+
+/**
+ * A trace implementing this interface can be indexed in parallel. Its data is
+ * split in byte ranges, and each range is read by its own {@link ChunkReader}
+ * starting at the first event found in the range. The checkpoints of the
+ * ranges are then stitched together.
+ * <p>
+ * The readers are used concurrently, so they must not share any state with
+ * the trace's own reading context.
+ *
+ * @author Matthew Khouzam
+ * @since 2.1
+ */
+public interface ITmfParallelIndexable {
+
+    /**
+     * Reader of the events of a trace starting from a byte position. The
+     * positions of successive events must be increasing.
+     */
+    interface ChunkReader extends AutoCloseable {
+
+        /**
+         * Get the byte position of the next event
+         *
+         * @return the position, or -1 if there are no more events
+         */
+        long getPosition();
+
+        /**
+         * Get the location of the next event
+         *
+         * @return the location, only valid if there is a next event
+         */
+        ITmfLocation getLocation();
+
+        /**
+         * Move to the event after the next event, without necessarily
+         * building it.
+         *
+         * @return false if the next event is not valid, in which case the
+         *         trace ends before it
+         */
+        boolean skipEvent();
+
+        /**
+         * Read the next event and move to the event after it
+         *
+         * @return the event, or null if it is not valid, in which case the
+         *         trace ends before it
+         */
+        @Nullable ITmfEvent readEvent();
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * Check if the trace can be indexed in parallel. It must only return true
+     * if its events can be parsed by several readers at the same time.
+     *
+     * @return true if the trace can be indexed in parallel
+     */
+    boolean isParallelIndexable();
+
+    /**
+     * Get the size of the trace data that can be split
+     *
+     * @return the size, in bytes
+     */
+    long getDataSize();
+
+    /**
+     * Create a reader of the events starting at or after a position. The
+     * position does not have to be at the start of an event, the reader
+     * resynchronizes on the first event found after it.
+     *
+     * @param position
+     *            the byte position
+     * @return the reader, which must be closed by the caller
+     * @throws IOException
+     *             if the trace data can't be opened
+     */
+    ChunkReader createChunkReader(long position) throws IOException;
+
+    /**
+     * Update the number of events and the time range of the trace with those
+     * found by a parallel indexing. Values already known by the trace that
+     * cover a larger range are kept.
+     *
+     * @param nbEvents
+     *            the number of events
+     * @param range
+     *            the time range of the events
+     */
+    void updateIndexedRange(long nbEvents, @NonNull TmfTimeRange range);
+}
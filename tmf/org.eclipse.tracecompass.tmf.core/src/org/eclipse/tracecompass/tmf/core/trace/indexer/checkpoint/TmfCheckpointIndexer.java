@@ -13,6 +13,8 @@
 
 package org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint;
 
+import java.io.IOException;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -23,6 +25,7 @@ import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.Messages;
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.TmfMemoryIndex;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.TmfParallelIndexBuilder;
 import org.eclipse.tracecompass.tmf.core.component.TmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
@@ -34,6 +37,7 @@ import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceKnownSize;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfParallelIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 
@@ -81,6 +85,11 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
      */
     private ITmfEventRequest fIndexingRequest = null;
 
+    /**
+     * The parallel indexing job, for traces that are indexed in parallel
+     */
+    private Job fParallelIndexingJob = null;
+
     /** Whether or not the index was built once */
     private boolean fBuiltOnce;
 
@@ -131,6 +140,14 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
         if ((fIndexingRequest != null) && !fIndexingRequest.isCompleted()) {
             fIndexingRequest.cancel();
         }
+        if (fParallelIndexingJob != null) {
+            fParallelIndexingJob.cancel();
+            try {
+                fParallelIndexingJob.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
         fTraceIndex.dispose();
     }
@@ -174,6 +191,32 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
 
         TmfCoreTracer.traceIndexer("buildIndex. offset: " + indexingOffset + " (requested " + offset + ")" + " time range: " + range); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
 
+        // Large traces that can be split are indexed in parallel from scratch
+        if (indexingOffset == 0 && fTraceIndex.isEmpty() && TmfTimeRange.ETERNITY.equals(indexingTimeRange) && fTrace instanceof ITmfParallelIndexable
+                && ((ITmfParallelIndexable) fTrace).isParallelIndexable()) {
+            ITmfParallelIndexable trace = (ITmfParallelIndexable) fTrace;
+            int nbChunks = TmfParallelIndexBuilder.getNbChunks(trace.getDataSize());
+            if (nbChunks > 1) {
+                buildIndexInParallel(trace, nbChunks, waitForCompletion);
+                return;
+            }
+        }
+
+        buildIndexSequentially(indexingOffset, indexingTimeRange, waitForCompletion);
+    }
+
+    /**
+     * Build the index with a background request reading the trace data from
+     * an offset
+     *
+     * @param offset
+     *            the rank of the first event to read
+     * @param range
+     *            the time range of the events to read
+     * @param waitForCompletion
+     *            whether to wait for the end of the indexing
+     */
+    private void buildIndexSequentially(final long offset, final TmfTimeRange range, final boolean waitForCompletion) {
         // The monitoring job
         TmfIndexingJob job = new TmfIndexingJob("Indexing " + fTrace.getName() + "..."); //$NON-NLS-1$ //$NON-NLS-2$
         job.setSystem(fBuiltOnce);
@@ -183,7 +226,7 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
         // Build a background request for all the trace data. The index is
         // updated as we go by readNextEvent().
         fIndexingRequest = new TmfEventRequest(ITmfEvent.class,
-                indexingTimeRange, indexingOffset, ITmfEventRequest.ALL_DATA,
+                range, offset, ITmfEventRequest.ALL_DATA,
                 ITmfEventRequest.ExecutionType.BACKGROUND) {
             @Override
             public void handleData(final ITmfEvent event) {
@@ -232,6 +275,75 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
         }
     }
 
+    /**
+     * Build the index by reading chunks of the trace in parallel. The
+     * checkpoints and the trace attributes are updated as the chunks are
+     * read. If the parallel indexing fails, the trace is indexed sequentially
+     * instead.
+     *
+     * @param trace
+     *            the trace to index
+     * @param nbChunks
+     *            the number of chunks to split the trace into
+     * @param waitForCompletion
+     *            whether to wait for the end of the indexing
+     */
+    private void buildIndexInParallel(final ITmfParallelIndexable trace, final int nbChunks, final boolean waitForCompletion) {
+        TmfCoreTracer.traceIndexer("Building index in parallel. chunks: " + nbChunks); //$NON-NLS-1$
+        Job job = new Job(Messages.TmfCheckpointIndexer_Indexing + ' ' + fTrace.getName()) {
+            @Override
+            protected IStatus run(final IProgressMonitor monitor) {
+                boolean fallback = false;
+                try {
+                    TmfParallelIndexBuilder.Result result = TmfParallelIndexBuilder.build(trace, fCheckpointInterval, nbChunks, (checkpoints, nbEvents, range) -> {
+                        synchronized (TmfCheckpointIndexer.this) {
+                            for (ITmfCheckpoint checkpoint : checkpoints) {
+                                // Skip the checkpoints inserted by other requests meanwhile
+                                if (fTraceIndex.size() == checkpoint.getCheckpointRank()) {
+                                    fTraceIndex.insert(checkpoint);
+                                }
+                            }
+                        }
+                        trace.updateIndexedRange(nbEvents, range);
+                        signalNewTimeRange(fTrace.getStartTime(), fTrace.getEndTime());
+                    }, monitor);
+                    if (result == null) {
+                        return Status.CANCEL_STATUS;
+                    }
+                    fTraceIndex.setTimeRange(fTrace.getTimeRange());
+                    fTraceIndex.setNbEvents(fTrace.getNbEvents());
+                    TmfCoreTracer.traceIndexer("Parallel index completed. nbEvents: " + fTraceIndex.getNbEvents() + " time range: " + fTraceIndex.getTimeRange()); //$NON-NLS-1$ //$NON-NLS-2$
+                    return Status.OK_STATUS;
+                } catch (IOException | RuntimeException e) {
+                    Activator.logWarning("Parallel indexing of " + fTrace.getName() + " failed, indexing it sequentially", e); //$NON-NLS-1$ //$NON-NLS-2$
+                    // The checkpoints already inserted are kept, they are the same
+                    fallback = true;
+                    buildIndexSequentially(0, TmfTimeRange.ETERNITY, false);
+                    return Status.OK_STATUS;
+                } finally {
+                    // The sequential indexing resets it when it completes
+                    if (!fallback) {
+                        fIsIndexing = false;
+                    }
+                }
+            }
+        };
+        job.setSystem(fBuiltOnce);
+        fBuiltOnce = true;
+        fParallelIndexingJob = job;
+        job.schedule();
+        if (waitForCompletion) {
+            try {
+                job.join();
+                ITmfEventRequest request = fIndexingRequest;
+                if (request != null) {
+                    request.waitForCompletion();
+                }
+            } catch (final InterruptedException e) {
+            }
+        }
+    }
+
     /**
      * Notify the interested parties that the trace time range has changed
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -33,11 +33,14 @@ import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.io.BufferedRandomAccessFile;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTraceRangeUpdatedSignal;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfParallelIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndexer;
@@ -51,11 +54,17 @@ import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
  * regular expressions. Each line that matches the first line pattern indicates
  * the start of a new event. The subsequent lines can contain additional
  * information that is added to the current event.
+ * <p>
+ * Large traces are indexed in parallel only if {@link #isParallelIndexable()}
+ * is overridden to return true. {@link #preProcessLine}, {@link #parseFirstLine}
+ * and {@link #parseNextLine} are then called concurrently by the indexing
+ * threads, each with its own file, so they must not use any shared mutable
+ * state, like a shared date format.
  *
  * @param <T>
  *            TmfEvent class returned by this trace
  */
-public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace implements ITmfPersistentlyIndexable {
+public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace implements ITmfPersistentlyIndexable, ITmfParallelIndexable {
 
     private static final TmfLongLocation NULL_LOCATION = new TmfLongLocation(-1L);
     private static final int MAX_LINES = 100;
@@ -169,18 +178,7 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
             } else if (location.getLocationInfo() instanceof Long) {
                 fFile.seek((Long) location.getLocationInfo());
             }
-            long rawPos = fFile.getFilePointer();
-            String line = fFile.getNextLine();
-            while (line != null) {
-                line = preProcessLine(line);
-                Matcher matcher = getFirstLinePattern().matcher(line);
-                if (matcher.matches()) {
-                    setupContext(context, rawPos, line, matcher);
-                    return context;
-                }
-                rawPos = fFile.getFilePointer();
-                line = fFile.getNextLine();
-            }
+            findFirstLine(fFile, context);
             return context;
         } catch (IOException e) {
             Activator.logError("Error seeking file: " + getPath(), e); //$NON-NLS-1$
@@ -188,11 +186,31 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
         }
     }
 
-    private void setupContext(TextTraceContext context, long rawPos, String line, Matcher matcher) throws IOException {
+    /**
+     * Set up the context at the first line matching the first line pattern,
+     * starting from the current position of the file.
+     */
+    private void findFirstLine(BufferedRandomAccessFile file, TextTraceContext context) throws IOException {
+        long rawPos = file.getFilePointer();
+        String line = file.getNextLine();
+        while (line != null) {
+            line = preProcessLine(line);
+            Matcher matcher = getFirstLinePattern().matcher(line);
+            if (matcher.matches()) {
+                setupContext(file, context, rawPos, line, matcher);
+                return;
+            }
+            rawPos = file.getFilePointer();
+            line = file.getNextLine();
+        }
+        context.setLocation(NULL_LOCATION);
+    }
+
+    private static void setupContext(BufferedRandomAccessFile file, TextTraceContext context, long rawPos, String line, Matcher matcher) throws IOException {
         context.setLocation(new TmfLongLocation(rawPos));
         context.firstLineMatcher = matcher;
         context.firstLine = line;
-        context.nextLineLocation = fFile.getFilePointer();
+        context.nextLineLocation = file.getFilePointer();
     }
 
     @Override
@@ -274,7 +292,10 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
         if (fFile == null) {
             return null;
         }
-        TextTraceContext context = tmfContext;
+        return parse(tmfContext, fFile);
+    }
+
+    private @Nullable T parse(TextTraceContext context, BufferedRandomAccessFile file) {
         if (context.getLocation() == null || !(context.getLocation().getLocationInfo() instanceof Long) || NULL_LOCATION.equals(context.getLocation())) {
             return null;
         }
@@ -282,21 +303,21 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
         T event = parseFirstLine(context.firstLineMatcher, context.firstLine);
 
         try {
-            if (fFile.getFilePointer() != context.nextLineLocation) {
-                fFile.seek(context.nextLineLocation);
+            if (file.getFilePointer() != context.nextLineLocation) {
+                file.seek(context.nextLineLocation);
             }
-            long rawPos = fFile.getFilePointer();
-            String line = fFile.getNextLine();
+            long rawPos = file.getFilePointer();
+            String line = file.getNextLine();
             while (line != null) {
                 line = preProcessLine(line);
                 Matcher matcher = getFirstLinePattern().matcher(line);
                 if (matcher.matches()) {
-                    setupContext(context, rawPos, line, matcher);
+                    setupContext(file, context, rawPos, line, matcher);
                     return event;
                 }
                 parseNextLine(event, line);
-                rawPos = fFile.getFilePointer();
-                line = fFile.getNextLine();
+                rawPos = file.getFilePointer();
+                line = file.getNextLine();
             }
         } catch (IOException e) {
             Activator.logError("Error reading file: " + getPath(), e); //$NON-NLS-1$
@@ -414,6 +435,117 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
         return new TmfLongLocation(bufferIn);
     }
 
+    // ------------------------------------------------------------------------
+    // ITmfParallelIndexable
+    // ------------------------------------------------------------------------
+
+    /**
+     * Parallel indexing is disabled by default, since the parse methods of
+     * the subclasses are not known to be safe to call concurrently.
+     *
+     * @since 2.1
+     */
+    @Override
+    public boolean isParallelIndexable() {
+        return false;
+    }
+
+    /**
+     * @since 2.1
+     */
+    @Override
+    public long getDataSize() {
+        return new File(getPath()).length();
+    }
+
+    /**
+     * @since 2.1
+     */
+    @Override
+    public ChunkReader createChunkReader(long position) throws IOException {
+        return new TextTraceChunkReader(position);
+    }
+
+    /**
+     * @since 2.1
+     */
+    @Override
+    public synchronized void updateIndexedRange(long nbEvents, TmfTimeRange range) {
+        if (getNbEvents() < nbEvents) {
+            setNbEvents(nbEvents);
+        }
+        ITmfTimestamp startTime = getStartTime();
+        if (startTime.equals(TmfTimestamp.BIG_BANG) || startTime.compareTo(range.getStartTime()) > 0) {
+            setStartTime(range.getStartTime());
+        }
+        ITmfTimestamp endTime = getEndTime();
+        if (endTime.equals(TmfTimestamp.BIG_CRUNCH) || endTime.compareTo(range.getEndTime()) < 0) {
+            setEndTime(range.getEndTime());
+        }
+    }
+
+    /**
+     * Reader of the events from a position with its own file, so that it does
+     * not lock the trace.
+     */
+    private class TextTraceChunkReader implements ChunkReader {
+
+        private final BufferedRandomAccessFile fChunkFile;
+        private final TextTraceContext fContext = new TextTraceContext(NULL_LOCATION, ITmfContext.UNKNOWN_RANK);
+
+        public TextTraceChunkReader(long position) throws IOException {
+            fChunkFile = new BufferedRandomAccessFile(getPath(), "r"); //$NON-NLS-1$
+            try {
+                if (position > 0) {
+                    // Skip to the first line starting at or after the position
+                    fChunkFile.seek(position - 1);
+                    fChunkFile.getNextLine();
+                }
+                findFirstLine(fChunkFile, fContext);
+            } catch (IOException e) {
+                fChunkFile.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public long getPosition() {
+            if (NULL_LOCATION.equals(fContext.getLocation())) {
+                return -1;
+            }
+            return (Long) fContext.getLocation().getLocationInfo();
+        }
+
+        @Override
+        public ITmfLocation getLocation() {
+            return fContext.getLocation();
+        }
+
+        @Override
+        public boolean skipEvent() {
+            try {
+                if (fChunkFile.getFilePointer() != fContext.nextLineLocation) {
+                    fChunkFile.seek(fContext.nextLineLocation);
+                }
+                findFirstLine(fChunkFile, fContext);
+            } catch (IOException e) {
+                Activator.logError("Error reading file: " + getPath(), e); //$NON-NLS-1$
+                fContext.setLocation(NULL_LOCATION);
+            }
+            return true;
+        }
+
+        @Override
+        public @Nullable ITmfEvent readEvent() {
+            return parse(fContext, fChunkFile);
+        }
+
+        @Override
+        public void close() throws IOException {
+            fChunkFile.close();
+        }
+    }
+
     @TmfSignalHandler
     @Override
     public void traceRangeUpdated(TmfTraceRangeUpdatedSignal signal) {
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.ui.views.timegraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.ui.views.timegraph.TimeGraphTileCache.ITileLoader;
+import org.eclipse.tracecompass.tmf.ui.widgets.timegraph.model.ITimeEvent;
+import org.eclipse.tracecompass.tmf.ui.widgets.timegraph.model.TimeEvent;
+import org.eclipse.tracecompass.tmf.ui.widgets.timegraph.model.TimeGraphEntry;
+import org.junit.Test;
+
+/**
+ * Test the {@link TimeGraphTileCache}
+ *
+ * @author Matthew Khouzam
+ */
+public class TimeGraphTileCacheTest {
+
+    private static final long MAX_SIZE = 1L << 24;
+
+    /** The states of the synthetic entry change at every multiple of this */
+    private static final long STATE_DURATION = 1000;
+
+    private final @NonNull TimeGraphEntry fEntry = new TimeGraphEntry("entry", Long.MIN_VALUE, Long.MAX_VALUE);
+    private final @NonNull IProgressMonitor fMonitor = new NullProgressMonitor();
+
+    /**
+     * Loader of the synthetic entry that counts the computed tiles
+     */
+    private static class SyntheticLoader implements ITileLoader {
+
+        private int fNbLoads = 0;
+
+        @Override
+        public @Nullable List<ITimeEvent> load(@NonNull TimeGraphEntry entry, long startTime, long endTime, long resolution, @NonNull IProgressMonitor monitor) {
+            fNbLoads++;
+            return compute(entry, startTime, endTime, resolution);
+        }
+
+        public int getNbLoads() {
+            return fNbLoads;
+        }
+    }
+
+    /**
+     * Sample the states of the synthetic entry from the start time to the end
+     * time, both included, at the resolution. The states change at every
+     * multiple of {@link #STATE_DURATION}.
+     */
+    private static List<ITimeEvent> compute(TimeGraphEntry entry, long startTime, long endTime, long resolution) {
+        List<ITimeEvent> events = new ArrayList<>();
+        long lastStart = 0;
+        for (long time = startTime; time <= endTime && time >= startTime; time += resolution) {
+            long start = Math.floorDiv(time, STATE_DURATION) * STATE_DURATION;
+            if (events.isEmpty() || start != lastStart) {
+                events.add(new TimeEvent(entry, start, STATE_DURATION, (int) Math.floorMod(start / STATE_DURATION, 5)));
+                lastStart = start;
+            }
+        }
+        return events;
+    }
+
+    private static void assertSameEvents(List<ITimeEvent> expected, @Nullable List<ITimeEvent> actual) {
+        assertNotNull(actual);
+        assertEquals("size", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            TimeEvent expectedEvent = (TimeEvent) expected.get(i);
+            TimeEvent actualEvent = (TimeEvent) actual.get(i);
+            assertEquals("getTime " + i, expectedEvent.getTime(), actualEvent.getTime());
+            assertEquals("getDuration " + i, expectedEvent.getDuration(), actualEvent.getDuration());
+            assertEquals("getValue " + i, expectedEvent.getValue(), actualEvent.getValue());
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Tiles
+    // ------------------------------------------------------------------------
+
+    /**
+     * Test the level of the tiles, whose resolution is not coarser than the
+     * requested one
+     */
+    @Test
+    public void testGetLevel() {
+        assertEquals(0, TimeGraphTileCache.getLevel(-5));
+        assertEquals(0, TimeGraphTileCache.getLevel(0));
+        assertEquals(0, TimeGraphTileCache.getLevel(1));
+        assertEquals(1, TimeGraphTileCache.getLevel(2));
+        assertEquals(1, TimeGraphTileCache.getLevel(3));
+        assertEquals(9, TimeGraphTileCache.getLevel(1023));
+        assertEquals(10, TimeGraphTileCache.getLevel(1024));
+        int maxLevel = TimeGraphTileCache.MAX_LEVEL;
+        assertEquals(maxLevel - 1, TimeGraphTileCache.getLevel((1L << maxLevel) - 1));
+        assertEquals(maxLevel, TimeGraphTileCache.getLevel(1L << maxLevel));
+        assertEquals(maxLevel, TimeGraphTileCache.getLevel(Long.MAX_VALUE));
+    }
+
+    /**
+     * Test the index and start time of the tiles, with negative times and at
+     * the highest level
+     */
+    @Test
+    public void testTiles() {
+        int width = TimeGraphTileCache.TILE_WIDTH;
+        assertEquals(0, TimeGraphTileCache.getTileIndex(0, 0));
+        assertEquals(0, TimeGraphTileCache.getTileIndex(0, width - 1));
+        assertEquals(1, TimeGraphTileCache.getTileIndex(0, width));
+        assertEquals(-1, TimeGraphTileCache.getTileIndex(0, -1));
+        assertEquals(-1, TimeGraphTileCache.getTileIndex(0, -width));
+        assertEquals(-2, TimeGraphTileCache.getTileIndex(0, -width - 1));
+        assertEquals(1, TimeGraphTileCache.getTileIndex(3, 8 * width));
+        assertEquals(0, TimeGraphTileCache.getTileIndex(3, 8 * width - 1));
+        assertEquals(-width, TimeGraphTileCache.getTileStart(0, -1));
+        assertEquals(-16 * width, TimeGraphTileCache.getTileStart(3, -2));
+
+        int maxLevel = TimeGraphTileCache.MAX_LEVEL;
+        assertEquals(1, TimeGraphTileCache.getTileIndex(maxLevel, Long.MAX_VALUE));
+        assertEquals(-2, TimeGraphTileCache.getTileIndex(maxLevel, Long.MIN_VALUE));
+        assertEquals(Long.MIN_VALUE, TimeGraphTileCache.getTileStart(maxLevel, -2));
+        assertEquals(1L << 62, TimeGraphTileCache.getTileStart(maxLevel, 1));
+
+        /* Every time is in its tile, which ends at the start of the next one */
+        long[] times = { Long.MIN_VALUE, -1000000007, -width, -1, 0, 1, width, 1000000007, Long.MAX_VALUE - 1, Long.MAX_VALUE };
+        for (int level = 0; level <= maxLevel; level++) {
+            for (long time : times) {
+                long index = TimeGraphTileCache.getTileIndex(level, time);
+                long start = TimeGraphTileCache.getTileStart(level, index);
+                long end = TimeGraphTileCache.getTileStart(level, index + 1);
+                String message = "level " + level + " time " + time;
+                assertTrue(message, start <= time);
+                assertTrue(message, time < end || end == Long.MAX_VALUE);
+                assertTrue(message, start < end);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Event lists
+    // ------------------------------------------------------------------------
+
+    /**
+     * Test that the merge of the tiles gives the same events as a single
+     * computation over the tiles, and that the cached tiles are reused
+     */
+    @Test
+    public void testGetEventList() {
+        TimeGraphTileCache cache = new TimeGraphTileCache(MAX_SIZE);
+        SyntheticLoader loader = new SyntheticLoader();
+        long[][] ranges = { { 0, 100000 }, { -250000, 12345 }, { -7, 3 }, { 5000000, 5000001 } };
+        long[] resolutions = { 1, 3, 100, 4096, 100000 };
+        for (long[] range : ranges) {
+            for (long resolution : resolutions) {
+                int level = TimeGraphTileCache.getLevel(resolution);
+                long tilesStart = TimeGraphTileCache.getTileStart(level, TimeGraphTileCache.getTileIndex(level, range[0]));
+                long tilesEnd = TimeGraphTileCache.getTileStart(level, TimeGraphTileCache.getTileIndex(level, range[1]) + 1);
+                List<ITimeEvent> expected = compute(fEntry, tilesStart, tilesEnd, 1L << level);
+                assertSameEvents(expected, cache.getEventList(fEntry, range[0], range[1], resolution, fMonitor, loader));
+
+                /* The tiles are cached */
+                int nbLoads = loader.getNbLoads();
+                assertSameEvents(expected, cache.getEventList(fEntry, range[0], range[1], resolution, fMonitor, loader));
+                assertEquals(nbLoads, loader.getNbLoads());
+            }
+        }
+    }
+
+    /**
+     * Test the merge of the events of consecutive tiles
+     */
+    @Test
+    public void testMerge() {
+        ITimeEvent a = new TimeEvent(fEntry, 0, 10);
+        ITimeEvent b = new TimeEvent(fEntry, 10, 10);
+        ITimeEvent bNext = new TimeEvent(fEntry, 10, 20);
+        ITimeEvent c = new TimeEvent(fEntry, 30, 10);
+        List<ITimeEvent> merged = TimeGraphTileCache.merge(Arrays.asList(
+                Arrays.asList(a, b),
+                Collections.emptyList(),
+                Arrays.asList(a, bNext, c)));
+        assertEquals(3, merged.size());
+        assertSame(a, merged.get(0));
+        assertSame(bNext, merged.get(1));
+        assertSame(c, merged.get(2));
+        assertTrue(TimeGraphTileCache.merge(Collections.emptyList()).isEmpty());
+    }
+
+    /**
+     * Test that an entry without events in the range has no event list
+     */
+    @Test
+    public void testNoEvents() {
+        TimeGraphTileCache cache = new TimeGraphTileCache(MAX_SIZE);
+        assertNull(cache.getEventList(fEntry, 0, 100000, 10, fMonitor, (entry, start, end, resolution, monitor) -> null));
+        int level = TimeGraphTileCache.getLevel(10);
+        List<ITimeEvent> tile = cache.getTile(fEntry, level, 0);
+        assertNotNull(tile);
+        assertTrue(tile.isEmpty());
+    }
+
+    // ------------------------------------------------------------------------
+    // Generation
+    // ------------------------------------------------------------------------
+
+    /**
+     * Test that the tiles computed before the cache was cleared are not cached
+     */
+    @Test
+    public void testGeneration() {
+        TimeGraphTileCache cache = new TimeGraphTileCache(MAX_SIZE);
+        List<ITimeEvent> events = Collections.singletonList(new TimeEvent(fEntry, 0, 10));
+
+        long generation = cache.getGeneration();
+        cache.putTile(fEntry, 0, 0, events, generation);
+        assertSame(events, cache.getTile(fEntry, 0, 0));
+
+        cache.clear();
+        assertNull(cache.getTile(fEntry, 0, 0));
+        cache.putTile(fEntry, 0, 0, events, generation);
+        assertNull(cache.getTile(fEntry, 0, 0));
+        cache.putTile(fEntry, 0, 0, events, cache.getGeneration());
+        assertSame(events, cache.getTile(fEntry, 0, 0));
+
+        /* The cache is cleared while a tile is computed */
+        TimeGraphTileCache other = new TimeGraphTileCache(MAX_SIZE);
+        List<ITimeEvent> eventList = other.getEventList(fEntry, 0, 10, 1, fMonitor, (entry, start, end, resolution, monitor) -> {
+            other.clear();
+            return compute(entry, start, end, resolution);
+        });
+        assertNotNull(eventList);
+        assertNull(other.getTile(fEntry, 0, 0));
+    }
+}
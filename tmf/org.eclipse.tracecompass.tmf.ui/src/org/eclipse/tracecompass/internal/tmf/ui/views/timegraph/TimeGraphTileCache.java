@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Matthew Khouzam - Initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.ui.views.timegraph;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.ui.widgets.timegraph.model.ITimeEvent;
+import org.eclipse.tracecompass.tmf.ui.widgets.timegraph.model.TimeGraphEntry;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A cache of the zoomed event lists of the entries of a time graph view, cut
+ * in tiles. A tile is the time range of {@link #TILE_WIDTH} samples at a power
+ * of two resolution, aligned on a multiple of its duration. The same tiles are
+ * found again when the user goes back to a region at a similar zoom level, and
+ * the zoomed event list of an entry is the merge of the tiles that cover the
+ * zoomed range.
+ * <p>
+ * The event list of a tile is computed from its start time to the start time
+ * of the next tile, both included. The last sample of a tile is the first one
+ * of the next tile, so the merged tiles give the same events as a single
+ * computation over the whole range.
+ * <p>
+ * The least recently used tiles are evicted when the estimated size of the
+ * cached events exceeds the maximum size. The cache must be cleared when the
+ * data of the view changes.
+ *
+ * @author Matthew Khouzam
+ */
+public class TimeGraphTileCache {
+
+    /** The number of samples of a tile, as a power of two */
+    private static final int TILE_BITS = 9;
+
+    /** The number of samples of a tile */
+    public static final int TILE_WIDTH = 1 << TILE_BITS;
+
+    /** The highest level whose tile duration fits in a long */
+    public static final int MAX_LEVEL = 62 - TILE_BITS;
+
+    /** The estimated size of a cached event with its reference, in bytes */
+    private static final long EVENT_SIZE = 48;
+
+    /**
+     * The computation of the event list of a tile
+     */
+    @FunctionalInterface
+    public interface ITileLoader {
+        /**
+         * Get the event list of an entry for a tile
+         *
+         * @param entry
+         *            the entry
+         * @param startTime
+         *            the start time of the tile
+         * @param endTime
+         *            the start time of the next tile
+         * @param resolution
+         *            the resolution of the tile
+         * @param monitor
+         *            the progress monitor
+         * @return the event list, or null if the entry has no zoomed event
+         *         list in this tile
+         */
+        @Nullable List<ITimeEvent> load(@NonNull TimeGraphEntry entry, long startTime, long endTime, long resolution, @NonNull IProgressMonitor monitor);
+    }
+
+    private static final class TileKey {
+        private final TimeGraphEntry fEntry;
+        private final int fLevel;
+        private final long fIndex;
+
+        public TileKey(TimeGraphEntry entry, int level, long index) {
+            fEntry = entry;
+            fLevel = level;
+            fIndex = index;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(fEntry), fLevel, fIndex);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            TileKey other = (TileKey) obj;
+            return fEntry == other.fEntry && fLevel == other.fLevel && fIndex == other.fIndex;
+        }
+    }
+
+    private final Cache<TileKey, List<ITimeEvent>> fTiles;
+    private final AtomicLong fGeneration = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param maxSize
+     *            the maximum estimated size of the cached events, in bytes
+     */
+    public TimeGraphTileCache(long maxSize) {
+        fTiles = checkNotNull(CacheBuilder.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((TileKey key, List<ITimeEvent> events) -> (int) Math.min(Integer.MAX_VALUE, (events.size() + 1) * EVENT_SIZE))
+                .build());
+    }
+
+    // ------------------------------------------------------------------------
+    // Tiles
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the level of the tiles for a resolution, so that the resolution of
+     * the tiles is not coarser than the requested one
+     *
+     * @param resolution
+     *            the requested resolution
+     * @return the level, the resolution of its tiles is 2^level
+     */
+    public static int getLevel(long resolution) {
+        return Math.min(MAX_LEVEL, 63 - Long.numberOfLeadingZeros(Math.max(1, resolution)));
+    }
+
+    /**
+     * Get the index of the tile of a level that contains a time
+     *
+     * @param level
+     *            the level
+     * @param time
+     *            the time
+     * @return the index of the tile
+     */
+    public static long getTileIndex(int level, long time) {
+        return time >> (level + TILE_BITS);
+    }
+
+    /**
+     * Get the start time of a tile
+     *
+     * @param level
+     *            the level
+     * @param index
+     *            the index of the tile
+     * @return the start time of the tile, which is also the end time of the
+     *         previous tile, or {@link Long#MAX_VALUE} for the tile after the
+     *         one that contains it
+     */
+    public static long getTileStart(int level, long index) {
+        int shift = level + TILE_BITS;
+        if (index > (Long.MAX_VALUE >> shift)) {
+            /* The last tile ends at the last time */
+            return Long.MAX_VALUE;
+        }
+        return index << shift;
+    }
+
+    /**
+     * Get the generation of the cache, to pass to
+     * {@link #putTile(TimeGraphEntry, int, long, List, long)} for a tile that
+     * is about to be computed
+     *
+     * @return the generation, incremented every time the cache is cleared
+     */
+    public long getGeneration() {
+        return fGeneration.get();
+    }
+
+    /**
+     * Get a cached tile
+     *
+     * @param entry
+     *            the entry
+     * @param level
+     *            the level
+     * @param index
+     *            the index of the tile
+     * @return the event list of the tile, or null if it is not cached
+     */
+    public @Nullable List<ITimeEvent> getTile(TimeGraphEntry entry, int level, long index) {
+        return fTiles.getIfPresent(new TileKey(entry, level, index));
+    }
+
+    /**
+     * Cache a tile, unless the cache was cleared since its computation started
+     *
+     * @param entry
+     *            the entry
+     * @param level
+     *            the level
+     * @param index
+     *            the index of the tile
+     * @param events
+     *            the event list of the tile
+     * @param generation
+     *            the generation of the cache when the computation started
+     */
+    public void putTile(TimeGraphEntry entry, int level, long index, List<ITimeEvent> events, long generation) {
+        synchronized (fGeneration) {
+            if (generation == fGeneration.get()) {
+                fTiles.put(new TileKey(entry, level, index), events);
+            }
+        }
+    }
+
+    /**
+     * Clear the cache, and ignore the tiles whose computation is in progress
+     */
+    public void clear() {
+        synchronized (fGeneration) {
+            fGeneration.incrementAndGet();
+            fTiles.invalidateAll();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Event lists
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the zoomed event list of an entry from the tiles that cover a time
+     * range, computing and caching the missing tiles. The resulting list can
+     * start before and end after the time range.
+     *
+     * @param entry
+     *            the entry
+     * @param startTime
+     *            the start of the time range
+     * @param endTime
+     *            the end of the time range
+     * @param resolution
+     *            the requested resolution
+     * @param monitor
+     *            the progress monitor
+     * @param loader
+     *            the computation of the missing tiles
+     * @return the zoomed event list, or null if the entry has no zoomed event
+     *         list in the range or if the monitor was canceled
+     */
+    public @Nullable List<ITimeEvent> getEventList(@NonNull TimeGraphEntry entry, long startTime, long endTime, long resolution,
+            @NonNull IProgressMonitor monitor, ITileLoader loader) {
+        int level = getLevel(resolution);
+        long firstIndex = getTileIndex(level, startTime);
+        long lastIndex = getTileIndex(level, endTime);
+        List<List<ITimeEvent>> tiles = new ArrayList<>();
+        boolean hasEvents = false;
+        for (long index = firstIndex; index <= lastIndex; index++) {
+            List<ITimeEvent> tile = getTile(entry, level, index);
+            if (tile == null) {
+                long generation = getGeneration();
+                tile = loader.load(entry, getTileStart(level, index), getTileStart(level, index + 1), 1L << level, monitor);
+                if (monitor.isCanceled()) {
+                    return null;
+                }
+                if (tile == null) {
+                    tile = Collections.emptyList();
+                } else {
+                    hasEvents = true;
+                }
+                putTile(entry, level, index, tile, generation);
+            } else if (!tile.isEmpty()) {
+                hasEvents = true;
+            }
+            tiles.add(tile);
+        }
+        return hasEvents ? merge(tiles) : null;
+    }
+
+    /**
+     * Merge the event lists of consecutive tiles. An event that starts before
+     * the last merged event is already part of the list. An event that starts
+     * at the same time replaces it, like in
+     * {@link TimeGraphEntry#addZoomedEvent(ITimeEvent)}.
+     *
+     * @param tiles
+     *            the event lists of the tiles, in time order
+     * @return a new list of the merged events
+     */
+    public static @NonNull List<ITimeEvent> merge(List<List<ITimeEvent>> tiles) {
+        int size = 0;
+        for (List<ITimeEvent> tile : tiles) {
+            size += tile.size();
+        }
+        List<ITimeEvent> events = new ArrayList<>(size);
+        long lastStart = Long.MIN_VALUE;
+        for (List<ITimeEvent> tile : tiles) {
+            for (ITimeEvent event : tile) {
+                long start = event.getTime();
+                if (events.isEmpty() || start > lastStart) {
+                    events.add(event);
+                    lastStart = start;
+                } else if (start == lastStart) {
+                    events.set(events.size() - 1, event);
+                }
+            }
+        }
+        return events;
+    }
+}
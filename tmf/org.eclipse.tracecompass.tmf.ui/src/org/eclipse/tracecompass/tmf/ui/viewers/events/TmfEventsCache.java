@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson
+ * Copyright (c) 2011, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -22,12 +22,14 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCollapseFilter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterResultIndex;
 import org.eclipse.tracecompass.internal.tmf.ui.Activator;
 import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
 import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.TmfCompiledFilter;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
@@ -130,6 +132,7 @@ public class TmfEventsCache {
     private final TmfEventsTable fTable;
     private ITmfFilter fFilter;
     private final List<Integer> fFilterIndex = new ArrayList<>(); // contains the event rank at each 'cache size' filtered events
+    private volatile TmfFilterResultIndex fFilterResultIndex = null; // contains the rank of each filtered event, up to its number of events
     private boolean fCollapseFilterEnabled = false;
 
     /**
@@ -169,6 +172,26 @@ public class TmfEventsCache {
         fCacheStartIndex = 0;
         fCacheEndIndex = 0;
         fFilterIndex.clear();
+        fFilterResultIndex = null;
+    }
+
+    /**
+     * Set the index of the events that match the current filter. The filtered
+     * events that it covers are then found without reading the trace.
+     *
+     * @param index
+     *            The index of the current filter
+     */
+    synchronized void setFilterResultIndex(TmfFilterResultIndex index) {
+        fFilterResultIndex = index;
+        long nbCheckpoints = (index.size() + fCacheSize - 1) / fCacheSize;
+        if (fFilterIndex.size() != nbCheckpoints) {
+            /* The filtered events were not stored, fill in the checkpoints */
+            fFilterIndex.clear();
+            for (long i = 0; i < index.size(); i += fCacheSize) {
+                fFilterIndex.add(Integer.valueOf((int) index.getRank(i)));
+            }
+        }
     }
 
     /**
@@ -182,7 +205,7 @@ public class TmfEventsCache {
      * @since 2.0
      */
     public void applyFilter(ITmfFilter filter, boolean collapseFilterEnabled) {
-        fFilter = filter;
+        fFilter = TmfCompiledFilter.compile(filter);
         fCollapseFilterEnabled = collapseFilterEnabled;
         clear();
     }
@@ -280,6 +303,10 @@ public class TmfEventsCache {
         TmfEventRequest request;
         final ITmfFilter filter = fFilter;
         synchronized (this) {
+            TmfFilterResultIndex resultIndex = fFilterResultIndex;
+            if (resultIndex != null && rank < resultIndex.getNbEvents()) {
+                return (int) resultIndex.getIndex(rank);
+            }
             int start = 0;
             int end = fFilterIndex.size();
 
@@ -408,7 +435,10 @@ public class TmfEventsCache {
                 } else {
                     nbRequested = ITmfEventRequest.ALL_DATA;
                     int i = startIndex / fCacheSize;
-                    if (i < fFilterIndex.size()) {
+                    TmfFilterResultIndex resultIndex = fFilterResultIndex;
+                    if (resultIndex != null && startIndex < resultIndex.size()) {
+                        startIndex = (int) resultIndex.getRank(startIndex);
+                    } else if (i < fFilterIndex.size()) {
                         skipCount = startIndex - (i * fCacheSize);
                         startIndex = fFilterIndex.get(i);
                     }
@@ -20,13 +20,16 @@ package org.eclipse.tracecompass.tmf.ui.viewers.events;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -123,6 +126,7 @@ import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCollapseFilter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterResultIndex;
 import org.eclipse.tracecompass.internal.tmf.ui.Activator;
 import org.eclipse.tracecompass.internal.tmf.ui.Messages;
 import org.eclipse.tracecompass.internal.tmf.ui.commands.CopyToClipboardOperation;
@@ -131,6 +135,7 @@ import org.eclipse.tracecompass.internal.tmf.ui.dialogs.AddBookmarkDialog;
 import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.component.TmfComponent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.event.aspect.TmfContentFieldAspect;
 import org.eclipse.tracecompass.tmf.core.event.collapse.ITmfCollapsibleEvent;
@@ -138,6 +143,7 @@ import org.eclipse.tracecompass.tmf.core.event.lookup.ITmfCallsite;
 import org.eclipse.tracecompass.tmf.core.event.lookup.ITmfModelLookup;
 import org.eclipse.tracecompass.tmf.core.event.lookup.ITmfSourceLookup;
 import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.TmfCompiledFilter;
 import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
 import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
 import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
@@ -157,6 +163,7 @@ import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithPreDefinedEvents;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -698,6 +705,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
     // Filter data
     private long fFilterMatchCount;
     private long fFilterCheckCount;
+    private TmfFilterResultIndex.Builder fFilterResultBuilder;
     private FilterThread fFilterThread;
     private boolean fFilterThreadResume = false;
     private final Object fFilterSyncObj = new Object();
@@ -2160,10 +2168,12 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
      */
     protected class FilterThread extends Thread {
         private final ITmfFilterTreeNode filter;
+        private final TmfCompiledFilter compiledFilter;
         private TmfCollapseFilter collapseFilter = null;
         private TmfEventRequest request;
         private boolean refreshBusy = false;
         private boolean refreshPending = false;
+        private volatile boolean cancelled = false;
         private final Object syncObj = new Object();
 
         /**
@@ -2175,6 +2185,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
         public FilterThread(final ITmfFilterTreeNode filter) {
             super("Filter Thread"); //$NON-NLS-1$
             this.filter = filter;
+            this.compiledFilter = TmfCompiledFilter.compile(filter);
         }
 
         @Override
@@ -2184,7 +2195,25 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             }
             if (fCollapseFilterEnabled) {
                 collapseFilter = new TmfCollapseFilter();
+                fFilterResultBuilder = null;
+            } else if (fFilterCheckCount == 0) {
+                /* The result of a filter can be indexed, unless it collapses events */
+                fFilterResultBuilder = null;
+                String canonicalForm = TmfFilterResultIndex.getCanonicalForm(filter);
+                if (canonicalForm != null) {
+                    TmfFilterResultIndex index = readFilterResultIndex(canonicalForm);
+                    if (index != null) {
+                        /* The same filter was applied before, no need to read the trace */
+                        fCache.setFilterResultIndex(index);
+                        fFilterMatchCount = index.size();
+                        fFilterCheckCount = index.getNbEvents();
+                        done();
+                        return;
+                    }
+                    fFilterResultBuilder = new TmfFilterResultIndex.Builder(canonicalForm);
+                }
             }
+            final TmfFilterResultIndex.Builder resultBuilder = fFilterResultBuilder;
             final int nbRequested = (int) (fTrace.getNbEvents() - fFilterCheckCount);
             if (nbRequested <= 0) {
                 return;
@@ -2198,12 +2227,15 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                         return;
                     }
                     boolean refresh = false;
-                    if (filter.matches(event)) {
+                    if (compiledFilter.matches(event)) {
                         if (collapseFilter == null || collapseFilter.matches(event)) {
                             final long rank = fFilterCheckCount;
                             final int index = (int) fFilterMatchCount;
                             fFilterMatchCount++;
                             fCache.storeEvent(event, rank, index);
+                            if (resultBuilder != null) {
+                                resultBuilder.add(rank);
+                            }
                         } else if (collapseFilter != null) {
                             fCache.updateCollapsedEvent((int) fFilterMatchCount - 1);
                         }
@@ -2216,11 +2248,58 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                     fFilterCheckCount++;
                 }
             };
+            if (fTrace instanceof ITmfTraceWithPreDefinedEvents) {
+                /* Only the content of the events that can match is needed */
+                Set<String> eventTypes = new HashSet<>();
+                for (ITmfEventType eventType : ((ITmfTraceWithPreDefinedEvents) fTrace).getContainedEventTypes()) {
+                    if (compiledFilter.canMatchEventType(eventType.getName())) {
+                        eventTypes.add(eventType.getName());
+                    }
+                }
+                request.setEventTypes(eventTypes);
+            }
             ((ITmfEventProvider) fTrace).sendRequest(request);
             try {
                 request.waitForCompletion();
             } catch (final InterruptedException e) {
             }
+            if (resultBuilder != null && !request.isCancelled() && !request.isFailed()) {
+                writeFilterResultIndex(resultBuilder.build(fFilterCheckCount));
+            }
+            done();
+        }
+
+        private TmfFilterResultIndex readFilterResultIndex(String canonicalForm) {
+            File file = TmfFilterResultIndex.getFile(fTrace, canonicalForm);
+            TmfFilterResultIndex index;
+            try {
+                index = TmfFilterResultIndex.read(file);
+            } catch (IOException e) {
+                Activator.getDefault().logError("Error reading the filter index " + file, e); //$NON-NLS-1$
+                return null;
+            }
+            if (index == null || !index.getFilter().equals(canonicalForm) || index.getNbEvents() != fTrace.getNbEvents()) {
+                /* Another filter with the same hash, or another version of the trace */
+                return null;
+            }
+            /* Keep the most recently used indexes when old ones are deleted */
+            file.setLastModified(System.currentTimeMillis());
+            return index;
+        }
+
+        private void writeFilterResultIndex(TmfFilterResultIndex index) {
+            if (cancelled) {
+                return;
+            }
+            fCache.setFilterResultIndex(index);
+            try {
+                index.save(fTrace);
+            } catch (IOException e) {
+                Activator.getDefault().logError("Error writing the filter index " + TmfFilterResultIndex.getFile(fTrace, index.getFilter()), e); //$NON-NLS-1$
+            }
+        }
+
+        private void done() {
             refreshTable();
             synchronized (fFilterSyncObj) {
                 fFilterThread = null;
@@ -2246,7 +2325,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             Display.getDefault().asyncExec(new Runnable() {
                 @Override
                 public void run() {
-                    if (request.isCancelled()) {
+                    if (cancelled || (request != null && request.isCancelled())) {
                         return;
                     }
                     if (fTable.isDisposed()) {
@@ -2273,6 +2352,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
          * Cancel this filtering thread.
          */
         public void cancel() {
+            cancelled = true;
             if (request != null) {
                 request.cancel();
             }
@@ -739,6 +739,11 @@ public class CallStackView extends AbstractTimeGraphView {
         }
     }
 
+    @Override
+    protected boolean isZoomCacheEnabled() {
+        return true;
+    }
+
     /**
      * @since 1.2
      */
@@ -754,7 +759,7 @@ public class CallStackView extends AbstractTimeGraphView {
         if (end <= start) {
             return null;
         }
-        boolean isZoomThread = Thread.currentThread() instanceof ZoomThread;
+        boolean isZoomThread = isZoomThread();
         List<ITimeEvent> eventList = null;
         try {
             List<ITmfStateInterval> stackIntervals = StateSystemUtils.queryHistoryRange(ss, entry.getQuark(), start, end - 1, resolution, monitor);
@@ -15,6 +15,8 @@ package org.eclipse.tracecompass.tmf.ui.views.timegraph;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +27,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
+import org.eclipse.tracecompass.internal.tmf.ui.views.timegraph.TimeGraphTileCache;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
@@ -43,6 +46,12 @@ import com.google.common.collect.Multimap;
  * from a state system. The state system full state is queried in chronological
  * order before creating the time event lists as this is optimal for state
  * system queries.
+ * <p>
+ * When zooming, the entries whose events come from a single attribute (see
+ * {@link #getZoomQuark(TimeGraphEntry)}) are instead zoomed in batches, the
+ * visible entries first. Their zoomed event lists are cached by tile, and the
+ * tiles that are not cached are computed with one 2D query per batch and per
+ * tile.
  *
  * @since 1.1
  */
@@ -143,17 +152,42 @@ public abstract class AbstractStateSystemTimeGraphView extends AbstractTimeGraph
             if (end < start) {
                 return;
             }
+            final List<@NonNull TimeGraphEntry> fullStateEntries = new ArrayList<>();
             if (fullRange) {
                 redraw();
+            } else {
+                List<@NonNull TimeGraphEntry> quarkEntries = new ArrayList<>();
+                for (TimeGraphEntry entry : entryList) {
+                    sortEntries(checkNotNull(entry), quarkEntries, fullStateEntries);
+                }
+                if (!quarkEntries.isEmpty()) {
+                    LOGGER.config(() -> "[TimeGraphView:ZoomThreadGettingIntervals]"); //$NON-NLS-1$
+                    zoomInBatches(quarkEntries, batch -> zoomByQuark(batch, ss, start, end, resolution, monitor));
+                    if (monitor.isCanceled()) {
+                        return;
+                    }
+                }
+            }
+            /* Refresh the arrows that do not need full states when zooming */
+            LOGGER.config(() -> "[TimeGraphView:ZoomThreadGettingLinks]"); //$NON-NLS-1$
+            links.addAll(getLinkList(ss, start, end, resolution, monitor));
+            if (monitor.isCanceled()) {
+                return;
+            }
+            if (fullStateEntries.isEmpty() && !isFullStateZoomNeeded()) {
+                refresh();
+                return;
             }
             queryFullStates(ss, start, end, resolution, monitor, new IQueryHandler() {
                 @Override
                 public void handle(@NonNull List<List<ITmfStateInterval>> fullStates, @Nullable List<ITmfStateInterval> prevFullState) {
                     LOGGER.config(() -> "[TimeGraphView:ZoomThreadGettingStates]"); //$NON-NLS-1$
-                    if (!fullRange) {
-                        for (TimeGraphEntry entry : entryList) {
-                            zoom(checkNotNull(entry), ss, fullStates, prevFullState, monitor);
+                    for (TimeGraphEntry entry : fullStateEntries) {
+                        if (monitor.isCanceled()) {
+                            LOGGER.info(() -> "[TimeGraphView:ZoomThreadCanceled]"); //$NON-NLS-1$
+                            return;
                         }
+                        zoom(entry, ss, fullStates, prevFullState, monitor);
                     }
                     /* Refresh the arrows when zooming */
                     LOGGER.config(() -> "[TimeGraphView:ZoomThreadGettingLinks]"); //$NON-NLS-1$
@@ -167,9 +201,61 @@ public abstract class AbstractStateSystemTimeGraphView extends AbstractTimeGraph
             refresh();
         }
 
-        private void zoom(@NonNull TimeGraphEntry entry, ITmfStateSystem ss, @NonNull List<List<ITmfStateInterval>> fullStates, @Nullable List<ITmfStateInterval> prevFullState, @NonNull IProgressMonitor monitor) {
-            List<ITimeEvent> eventList = getEventList(entry, ss, fullStates, prevFullState, monitor);
-            if (eventList != null) {
+        /**
+         * Put an entry and its descendants in the list of the entries zoomed
+         * from the intervals of their zoom quark, or in the list of those
+         * zoomed from full states
+         */
+        private void sortEntries(@NonNull TimeGraphEntry entry, List<@NonNull TimeGraphEntry> quarkEntries, List<@NonNull TimeGraphEntry> fullStateEntries) {
+            if (getZoomQuark(entry) >= 0) {
+                quarkEntries.add(entry);
+            } else {
+                fullStateEntries.add(entry);
+            }
+            for (TimeGraphEntry child : entry.getChildren()) {
+                sortEntries(child, quarkEntries, fullStateEntries);
+            }
+        }
+
+        /**
+         * Zoom a batch of entries from the tiles of their zoomed event lists,
+         * getting the intervals of the tiles that are not cached yet with one
+         * 2D query per tile
+         */
+        private void zoomByQuark(@NonNull List<@NonNull TimeGraphEntry> entries, ITmfStateSystem ss, long start, long end, long resolution, @NonNull IProgressMonitor monitor) {
+            TimeGraphTileCache cache = getTileCache();
+            int level = TimeGraphTileCache.getLevel(resolution);
+            long firstIndex = TimeGraphTileCache.getTileIndex(level, start);
+            long lastIndex = TimeGraphTileCache.getTileIndex(level, end);
+            Map<TimeGraphEntry, List<List<ITimeEvent>>> tiles = new HashMap<>();
+            for (TimeGraphEntry entry : entries) {
+                tiles.put(entry, new ArrayList<>());
+            }
+            for (long index = firstIndex; index <= lastIndex; index++) {
+                List<@NonNull TimeGraphEntry> missing = new ArrayList<>();
+                for (TimeGraphEntry entry : entries) {
+                    List<ITimeEvent> tile = cache.getTile(entry, level, index);
+                    if (tile == null) {
+                        missing.add(entry);
+                    } else {
+                        checkNotNull(tiles.get(entry)).add(tile);
+                    }
+                }
+                if (!missing.isEmpty()) {
+                    Map<TimeGraphEntry, List<ITimeEvent>> loaded = loadTiles(missing, ss, level, index, monitor);
+                    if (loaded == null) {
+                        return;
+                    }
+                    for (TimeGraphEntry entry : missing) {
+                        checkNotNull(tiles.get(entry)).add(checkNotNull(loaded.get(entry)));
+                    }
+                }
+            }
+            for (TimeGraphEntry entry : entries) {
+                if (monitor.isCanceled()) {
+                    return;
+                }
+                List<ITimeEvent> eventList = TimeGraphTileCache.merge(checkNotNull(tiles.get(entry)));
                 applyResults(() -> {
                     for (ITimeEvent event : eventList) {
                         if (monitor.isCanceled()) {
@@ -179,12 +265,63 @@ public abstract class AbstractStateSystemTimeGraphView extends AbstractTimeGraph
                     }
                 });
             }
-            for (TimeGraphEntry child : entry.getChildren()) {
+            redraw();
+        }
+
+        /**
+         * Compute and cache a tile of the zoomed event lists of entries
+         *
+         * @return the event lists of the tile, or null if the zoom was
+         *         canceled or the state system disposed
+         */
+        private @Nullable Map<TimeGraphEntry, List<ITimeEvent>> loadTiles(@NonNull List<@NonNull TimeGraphEntry> entries, ITmfStateSystem ss, int level, long index, @NonNull IProgressMonitor monitor) {
+            TimeGraphTileCache cache = getTileCache();
+            long generation = cache.getGeneration();
+            Map<Integer, List<@NonNull ITmfStateInterval>> intervals = new HashMap<>();
+            for (TimeGraphEntry entry : entries) {
+                intervals.put(getZoomQuark(entry), new ArrayList<>());
+            }
+            try {
+                /* The tile ends with the first sample of the next tile */
+                long tileStart = TimeGraphTileCache.getTileStart(level, index);
+                long tileEnd = TimeGraphTileCache.getTileStart(level, index + 1);
+                for (ITmfStateInterval interval : ss.query2D(new ArrayList<>(intervals.keySet()), tileStart, tileEnd, 1L << level)) {
+                    List<@NonNull ITmfStateInterval> list = intervals.get(interval.getAttribute());
+                    if (list != null) {
+                        list.add(interval);
+                    }
+                }
+            } catch (StateSystemDisposedException e) {
+                /* Ignored */
+                return null;
+            }
+            for (List<@NonNull ITmfStateInterval> list : intervals.values()) {
+                list.sort(Comparator.comparingLong(ITmfStateInterval::getStartTime));
+            }
+            Map<TimeGraphEntry, List<ITimeEvent>> tiles = new HashMap<>();
+            for (TimeGraphEntry entry : entries) {
+                List<ITimeEvent> eventList = getEventList(entry, ss, checkNotNull(intervals.get(getZoomQuark(entry))), monitor);
                 if (monitor.isCanceled()) {
-                    LOGGER.info(() -> "[TimeGraphView:ZoomThreadCanceled]"); //$NON-NLS-1$
-                    return;
+                    return null;
                 }
-                zoom(child, ss, fullStates, prevFullState, monitor);
+                List<ITimeEvent> tile = (eventList == null ? Collections.emptyList() : eventList);
+                cache.putTile(entry, level, index, tile, generation);
+                tiles.put(entry, tile);
+            }
+            return tiles;
+        }
+
+        private void zoom(@NonNull TimeGraphEntry entry, ITmfStateSystem ss, @NonNull List<List<ITmfStateInterval>> fullStates, @Nullable List<ITmfStateInterval> prevFullState, @NonNull IProgressMonitor monitor) {
+            List<ITimeEvent> eventList = getEventList(entry, ss, fullStates, prevFullState, monitor);
+            if (eventList != null) {
+                applyResults(() -> {
+                    for (ITimeEvent event : eventList) {
+                        if (monitor.isCanceled()) {
+                            return;
+                        }
+                        entry.addZoomedEvent(event);
+                    }
+                });
             }
         }
 
@@ -394,6 +531,72 @@ public abstract class AbstractStateSystemTimeGraphView extends AbstractTimeGraph
     protected abstract @Nullable List<ITimeEvent> getEventList(@NonNull TimeGraphEntry tgentry, ITmfStateSystem ss,
             @NonNull List<List<ITmfStateInterval>> fullStates, @Nullable List<ITmfStateInterval> prevFullState, @NonNull IProgressMonitor monitor);
 
+    /**
+     * Gets the attribute whose intervals make the zoomed event list of an
+     * entry. The zoom thread gets the intervals of all the entries that have
+     * such an attribute with 2D queries, in batches run on a pool of worker
+     * threads, the entries visible in the view first. Their zoomed event lists
+     * are then built with
+     * {@link #getEventList(TimeGraphEntry, ITmfStateSystem, List, IProgressMonitor)}.
+     * The zoomed event lists of the other entries are built from full states.
+     * <p>
+     * The default implementation returns
+     * {@link ITmfStateSystem#INVALID_ATTRIBUTE} for all the entries.
+     *
+     * @param entry
+     *            The time graph entry
+     * @return The quark of the attribute, or
+     *         {@link ITmfStateSystem#INVALID_ATTRIBUTE} if the zoomed event
+     *         list of the entry is built from full states
+     * @since 2.2
+     */
+    protected int getZoomQuark(@NonNull TimeGraphEntry entry) {
+        return ITmfStateSystem.INVALID_ATTRIBUTE;
+    }
+
+    /**
+     * Gets the list of events for an entry from the intervals of its zoom
+     * quark, see {@link #getZoomQuark(TimeGraphEntry)}.
+     * <p>
+     * Called from the zoom thread's workers, possibly concurrently for
+     * different entries, once per tile of the zoomed range. The tiles are
+     * cached, so the list must only depend on the entry and the intervals.
+     * The default implementation returns null.
+     *
+     * @param entry
+     *            The time graph entry
+     * @param ss
+     *            The state system
+     * @param intervals
+     *            The intervals of the zoom quark that contain the times
+     *            sampled in a tile, sorted by start time
+     * @param monitor
+     *            A progress monitor
+     * @return The list of time graph events
+     * @since 2.2
+     */
+    protected @Nullable List<ITimeEvent> getEventList(@NonNull TimeGraphEntry entry, ITmfStateSystem ss,
+            @NonNull List<@NonNull ITmfStateInterval> intervals, @NonNull IProgressMonitor monitor) {
+        return null;
+    }
+
+    /**
+     * Checks if the zoom thread must query full states once the entries with a
+     * zoom quark are zoomed, when all the entries have one. Full states are
+     * needed for {@link #getLinkList(ITmfStateSystem, List, List, IProgressMonitor)}
+     * and {@link #getViewMarkerList(ITmfStateSystem, List, List, IProgressMonitor)}.
+     * The default implementation returns true, views that have no markers and
+     * whose links, if any, come from
+     * {@link #getLinkList(ITmfStateSystem, long, long, long, IProgressMonitor)}
+     * can return false.
+     *
+     * @return true if the zoom thread must query full states
+     * @since 2.2
+     */
+    protected boolean isFullStateZoomNeeded() {
+        return true;
+    }
+
     /**
      * Gets the list of links (displayed as arrows) for a given list of full
      * states. The default implementation returns an empty list.
@@ -414,6 +617,30 @@ public abstract class AbstractStateSystemTimeGraphView extends AbstractTimeGraph
         return new ArrayList<>();
     }
 
+    /**
+     * Gets the list of links (displayed as arrows) for a time range, without
+     * full states. The zoom thread calls it once the entries with a zoom quark
+     * are zoomed, so views can get the intervals they need with a 2D query,
+     * see {@link ITmfStateSystem#query2D(java.util.Collection, long, long, long)}.
+     * The default implementation returns an empty list.
+     *
+     * @param ss
+     *            The state system
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @param resolution
+     *            The resolution of the zoom
+     * @param monitor
+     *            A progress monitor
+     * @return The list of link events
+     * @since 2.2
+     */
+    protected @NonNull List<ILinkEvent> getLinkList(ITmfStateSystem ss, long start, long end, long resolution, @NonNull IProgressMonitor monitor) {
+        return new ArrayList<>();
+    }
+
     /**
      * Gets the list of markers for a given list of full
      * states. The default implementation returns an empty list.
@@ -22,12 +22,19 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -85,6 +92,7 @@ import org.eclipse.swt.widgets.TreeColumn;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
 import org.eclipse.tracecompass.internal.tmf.ui.Activator;
+import org.eclipse.tracecompass.internal.tmf.ui.views.timegraph.TimeGraphTileCache;
 import org.eclipse.tracecompass.tmf.core.resources.ITmfMarker;
 import org.eclipse.tracecompass.tmf.core.signal.TmfMarkerEventSourceUpdatedSignal;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSelectionRangeUpdatedSignal;
@@ -153,6 +161,22 @@ public abstract class AbstractTimeGraphView extends TmfView implements ITmfTimeA
     private static final String LOG_STRING_WITH_PARAM = "[TimeGraphView:%s] viewId=%s, %s"; //$NON-NLS-1$
     private static final String LOG_STRING = "[TimeGraphView:%s] viewId=%s"; //$NON-NLS-1$
 
+    /** The number of threads that zoom batches of entries, shared by all the views */
+    private static final int NB_ZOOM_WORKERS = Runtime.getRuntime().availableProcessors();
+
+    /** The maximum number of entries of a batch of non-visible entries */
+    private static final int MAX_ZOOM_BATCH_SIZE = 1024;
+
+    /** The maximum estimated size of the cached zoomed event lists of a view */
+    private static final long ZOOM_CACHE_SIZE = Math.min(64L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 16);
+
+    private static final ExecutorService ZOOM_WORKERS = checkNotNull(Executors.newFixedThreadPool(NB_ZOOM_WORKERS, new ThreadFactory() {
+        @Override
+        public Thread newThread(@Nullable Runnable runnable) {
+            return new ZoomWorker(runnable);
+        }
+    }));
+
     /**
      * Redraw state enum
      */
@@ -207,6 +231,9 @@ public abstract class AbstractTimeGraphView extends TmfView implements ITmfTimeA
     /** The zoom thread */
     private ZoomThread fZoomThread;
 
+    /** The cache of the zoomed event lists, cleared when the time range changes */
+    private final TimeGraphTileCache fTileCache = new TimeGraphTileCache(ZOOM_CACHE_SIZE);
+
     /** The next resource action */
     private Action fNextResourceAction;
 
@@ -716,6 +743,19 @@ public abstract class AbstractTimeGraphView extends TmfView implements ITmfTimeA
         }
     }
 
+    /**
+     * Worker thread of the pool on which the zoom threads zoom batches of
+     * entries
+     */
+    private static class ZoomWorker extends Thread {
+        private static final AtomicInteger COUNT = new AtomicInteger();
+
+        public ZoomWorker(@Nullable Runnable runnable) {
+            super(runnable, "Time graph zoom worker " + COUNT.incrementAndGet()); //$NON-NLS-1$
+            setDaemon(true);
+        }
+    }
+
     /**
      * Zoom thread
      * @since 1.1
@@ -725,6 +765,7 @@ public abstract class AbstractTimeGraphView extends TmfView implements ITmfTimeA
         private final long fZoomEndTime;
         private final long fResolution;
         private final @NonNull  IProgressMonitor fMonitor;
+        private final @NonNull Set<ITimeGraphEntry> fVisibleEntries;
 
         /**
          * Constructor
@@ -742,6 +783,7 @@ public abstract class AbstractTimeGraphView extends TmfView implements ITmfTimeA
             fZoomEndTime = endTime;
             fResolution = resolution;
             fMonitor = new NullProgressMonitor();
+            fVisibleEntries = getVisibleEntries();
         }
 
         /**
@@ -812,6 +854,66 @@ public abstract class AbstractTimeGraphView extends TmfView implements ITmfTimeA
          * @since 2.0
          */
         public abstract void doRun();
+
+        /**
+         * Zoom a list of entries in batches on a pool of worker threads. The
+         * entries of the rows that were visible when the zoom thread was
+         * created are zoomed first, spread over all the workers, so that their
+         * results can be applied before those of the other entries. This
+         * method returns when all the batches are done or when the zoom
+         * thread is canceled.
+         * <p>
+         * The zoomer is called concurrently for different batches, and should
+         * apply its results with {@link #applyResults(Runnable)}.
+         *
+         * @param entries
+         *            the entries to zoom
+         * @param zoomer
+         *            the operation that zooms a batch of entries
+         * @since 2.2
+         */
+        protected void zoomInBatches(@NonNull List<@NonNull TimeGraphEntry> entries, @NonNull Consumer<@NonNull List<@NonNull TimeGraphEntry>> zoomer) {
+            List<@NonNull TimeGraphEntry> visible = new ArrayList<>();
+            List<@NonNull TimeGraphEntry> others = new ArrayList<>();
+            for (TimeGraphEntry entry : entries) {
+                if (fVisibleEntries.contains(entry)) {
+                    visible.add(entry);
+                } else {
+                    others.add(entry);
+                }
+            }
+            List<Future<?>> futures = new ArrayList<>();
+            submitBatches(visible, (visible.size() + NB_ZOOM_WORKERS - 1) / NB_ZOOM_WORKERS, zoomer, futures);
+            submitBatches(others, Math.min(MAX_ZOOM_BATCH_SIZE, (others.size() + NB_ZOOM_WORKERS - 1) / NB_ZOOM_WORKERS), zoomer, futures);
+            try {
+                for (Future<?> future : futures) {
+                    if (fMonitor.isCanceled()) {
+                        return;
+                    }
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Activator.getDefault().logError("Error zooming the entries of " + AbstractTimeGraphView.this.getName(), e.getCause()); //$NON-NLS-1$
+            } finally {
+                /* Don't let the workers run the batches of a canceled zoom */
+                for (Future<?> future : futures) {
+                    future.cancel(false);
+                }
+            }
+        }
+
+        private void submitBatches(List<@NonNull TimeGraphEntry> entries, int batchSize, Consumer<@NonNull List<@NonNull TimeGraphEntry>> zoomer, List<Future<?>> futures) {
+            for (int i = 0; i < entries.size(); i += batchSize) {
+                List<@NonNull TimeGraphEntry> batch = entries.subList(i, Math.min(entries.size(), i + batchSize));
+                futures.add(ZOOM_WORKERS.submit(() -> {
+                    if (!fMonitor.isCanceled()) {
+                        zoomer.accept(batch);
+                    }
+                }));
+            }
+        }
     }
 
     private class ZoomThreadByEntry extends ZoomThread {
@@ -861,7 +963,9 @@ public abstract class AbstractTimeGraphView extends TmfView implements ITmfTimeA
                     entry.setZoomedEventList(null);
                 });
             } else {
-                List<ITimeEvent> zoomedEventList = getEventList(entry, getZoomStartTime(), getZoomEndTime(), getResolution(), monitor);
+                List<ITimeEvent> zoomedEventList = isZoomCacheEnabled() ?
+                        fTileCache.getEventList(entry, getZoomStartTime(), getZoomEndTime(), getResolution(), monitor, AbstractTimeGraphView.this::getEventList) :
+                        getEventList(entry, getZoomStartTime(), getZoomEndTime(), getResolution(), monitor);
                 if (zoomedEventList != null) {
                     applyResults(() -> {
                         entry.setZoomedEventList(zoomedEventList);
@@ -1112,6 +1216,9 @@ public abstract class AbstractTimeGraphView extends TmfView implements ITmfTimeA
      *            The start time
      */
     protected void setStartTime(long time) {
+        if (time != fStartTime) {
+            fTileCache.clear();
+        }
         fStartTime = time;
     }
 
@@ -1131,6 +1238,10 @@ public abstract class AbstractTimeGraphView extends TmfView implements ITmfTimeA
      *            The end time
      */
     protected void setEndTime(long time) {
+        if (time != fEndTime) {
+            /* The zoomed event lists can change while the trace is built */
+            fTileCache.clear();
+        }
         fEndTime = time;
     }
 
@@ -1758,6 +1869,36 @@ public abstract class AbstractTimeGraphView extends TmfView implements ITmfTimeA
             long startTime, long endTime, long resolution,
             @NonNull IProgressMonitor monitor);
 
+    /**
+     * Checks if the zoomed event lists returned by
+     * {@link #getEventList(TimeGraphEntry, long, long, long, IProgressMonitor)}
+     * can be cached. The zoom thread then asks for the event lists of tiles:
+     * time ranges of a fixed number of samples at a power of two resolution.
+     * A region that was already visited at a similar zoom level is then
+     * displayed without calling getEventList again. The cache is cleared when
+     * the start or end time of the view changes.
+     * <p>
+     * The default implementation returns false. Views can return true if
+     * their event list for a time range only depends on the entry, the time
+     * range and the resolution, and if a null list means that the entry has
+     * no events in the time range.
+     *
+     * @return true if the zoomed event lists can be cached
+     * @since 2.2
+     */
+    protected boolean isZoomCacheEnabled() {
+        return false;
+    }
+
+    /**
+     * Gets the cache of the zoomed event lists
+     *
+     * @return the cache
+     */
+    TimeGraphTileCache getTileCache() {
+        return fTileCache;
+    }
+
     /**
      * Gets the list of links (displayed as arrows) for a trace in a given
      * timerange.  Default implementation returns an empty list.
@@ -1866,12 +2007,49 @@ public abstract class AbstractTimeGraphView extends TmfView implements ITmfTimeA
         return markerEventSources;
     }
 
+    /**
+     * Check if the current thread computes zoomed event lists, either in a
+     * zoom thread or in one of the workers to which a zoom thread hands out
+     * batches of entries.
+     *
+     * @return true if the current thread is a zoom thread or a zoom worker
+     * @since 2.2
+     */
+    protected static boolean isZoomThread() {
+        Thread thread = Thread.currentThread();
+        return thread instanceof ZoomThread || thread instanceof ZoomWorker;
+    }
+
+    /**
+     * Get the entries of the rows that are currently visible in the time
+     * graph. This can only be done in the UI thread, an empty set is returned
+     * when called from another thread.
+     *
+     * @return the visible entries
+     */
+    private @NonNull Set<ITimeGraphEntry> getVisibleEntries() {
+        ITimeGraphWrapper tgWrapper = fTimeGraphWrapper;
+        if (Display.getCurrent() == null || tgWrapper == null || tgWrapper.isDisposed()) {
+            return Collections.emptySet();
+        }
+        TimeGraphViewer viewer = tgWrapper.getTimeGraphViewer();
+        ITimeGraphEntry[] expandedElements = viewer.getExpandedElements();
+        int topIndex = Math.max(0, viewer.getTopIndex());
+        /* Include the partially visible row at the bottom */
+        int bottomIndex = Math.min(expandedElements.length, topIndex + viewer.getTimeGraphControl().countPerPage() + 1);
+        Set<ITimeGraphEntry> visibleEntries = new HashSet<>();
+        for (int i = topIndex; i < bottomIndex; i++) {
+            visibleEntries.add(expandedElements[i]);
+        }
+        return visibleEntries;
+    }
+
     /**
      * Refresh the display
      */
     protected void refresh() {
         LOGGER.info(() -> getLogMessage("RefreshRequested", null)); //$NON-NLS-1$
-        final boolean zoomThread = Thread.currentThread() instanceof ZoomThread;
+        final boolean zoomThread = isZoomThread();
         TmfUiRefreshHandler.getInstance().queueUpdate(this, new Runnable() {
             @Override
             public void run() {
@@ -2347,6 +2525,7 @@ public abstract class AbstractTimeGraphView extends TmfView implements ITmfTimeA
         fViewContext.remove(viewTrace);
         fFiltersMap.remove(viewTrace);
         fMarkerEventSourcesMap.remove(viewTrace);
+        fTileCache.clear();
         if (viewTrace == fTrace) {
             if (fZoomThread != null) {
                 fZoomThread.cancel();